@@ -0,0 +1,125 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the AES encryption and decryption throughput of the crypt actions of
+ * {@link CryptoEngine}.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AesBenchmark {
+	/** Key used in the benchmark. **/
+	private static final byte[] KEY = Util.hexToByte("a52217e3ee213ef1ffdee3a192e2ac7e");
+	/** Initialization vector used in the benchmark. **/
+	private static final byte[] IV = Util.hexToByte("000102030405060708090a0b0c0d0e0f");
+
+	/** Name of the input file. **/
+	@Param({ BenchmarkInputs.TEST_FILE, BenchmarkInputs.GENERATED })
+	private String input;
+
+	/** Path of the plaintext. **/
+	private Path plaintext;
+	/** Path of the CBC ciphertext of the plaintext. **/
+	private Path ciphertext;
+	/** Path where the parallel CTR output is written. **/
+	private Path ctrOutput;
+	/** Engine used for the CBC benchmarks. **/
+	private CryptoEngine engine;
+	/** Crypter used for the CTR benchmark, reusing its segment buffers. **/
+	private ParallelCtrCrypter crypter;
+
+	/**
+	 * Prepares the plaintext, its ciphertext and the crypters.
+	 * 
+	 * @throws IOException
+	 *             if the input can not be prepared
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		plaintext = BenchmarkInputs.resolve(input);
+		ciphertext = Files.createTempFile("bench", ".enc");
+		ctrOutput = Files.createTempFile("bench", ".ctr");
+		engine = new CryptoEngine(KEY, IV);
+		crypter = new ParallelCtrCrypter(KEY, IV);
+
+		try (FileChannel in = FileChannel.open(plaintext, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(ciphertext, StandardOpenOption.WRITE)) {
+			engine.crypt(CryptoEngine.Mode.ENCRYPT, in, out, CryptoEngine.bufferSize(in.size()));
+		}
+	}
+
+	/**
+	 * Deletes the temporary files.
+	 * 
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.delete(ciphertext);
+		Files.delete(ctrOutput);
+	}
+
+	/**
+	 * Encrypts the input with AES/CBC, discarding the output.
+	 * 
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	@Benchmark
+	public void encryptCbc() throws IOException {
+		try (FileChannel in = FileChannel.open(plaintext, StandardOpenOption.READ)) {
+			engine.crypt(CryptoEngine.Mode.ENCRYPT, in, BenchmarkInputs.discard(), CryptoEngine.bufferSize(in.size()));
+		}
+	}
+
+	/**
+	 * Decrypts the ciphertext with AES/CBC, discarding the output.
+	 * 
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	@Benchmark
+	public void decryptCbc() throws IOException {
+		try (FileChannel in = FileChannel.open(ciphertext, StandardOpenOption.READ)) {
+			engine.crypt(CryptoEngine.Mode.DECRYPT, in, BenchmarkInputs.discard(), CryptoEngine.bufferSize(in.size()));
+		}
+	}
+
+	/**
+	 * Encrypts the input with the parallel AES/CTR crypter.
+	 * 
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	@Benchmark
+	public void cryptCtrParallel() throws IOException {
+		crypter.crypt(plaintext, ctrOutput);
+	}
+}
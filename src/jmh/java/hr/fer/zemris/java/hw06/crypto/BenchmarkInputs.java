@@ -0,0 +1,87 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Input files shared by the benchmarks of the crypto package.
+ * <p>
+ * The input is either <code>hw06test.bin</code> from the project directory or
+ * a file of random data generated in the temporary directory.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+final class BenchmarkInputs {
+	/** Name of the input which denotes the test file of the project. **/
+	static final String TEST_FILE = "hw06test.bin";
+	/** Name of the input which denotes a generated 64 MiB file. **/
+	static final String GENERATED = "generated-64m";
+	/** Size of the generated file. **/
+	private static final int GENERATED_SIZE = 64 * 1024 * 1024;
+
+	/**
+	 * Disables instantiation.
+	 */
+	private BenchmarkInputs() {
+	}
+
+	/**
+	 * Returns the path of the input with the given name, generating the file
+	 * if needed. Generated files are deleted when the JVM exits.
+	 * 
+	 * @param name
+	 *            {@value #TEST_FILE} or {@value #GENERATED}
+	 * @return path of the input
+	 * @throws IOException
+	 *             if the file can not be generated
+	 */
+	static Path resolve(String name) throws IOException {
+		if (name.equals(TEST_FILE)) {
+			return Paths.get(TEST_FILE);
+		}
+
+		Path file = Files.createTempFile("bench", ".bin");
+		file.toFile().deleteOnExit();
+		byte[] chunk = new byte[1024 * 1024];
+		Random random = new Random(42);
+		try (OutputStream out = Files.newOutputStream(file)) {
+			for (int written = 0; written < GENERATED_SIZE; written += chunk.length) {
+				random.nextBytes(chunk);
+				out.write(chunk);
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * Returns a channel which discards everything written to it.
+	 * 
+	 * @return discarding channel
+	 */
+	static WritableByteChannel discard() {
+		return new WritableByteChannel() {
+			@Override
+			public boolean isOpen() {
+				return true;
+			}
+
+			@Override
+			public void close() {
+			}
+
+			@Override
+			public int write(ByteBuffer src) {
+				int remaining = src.remaining();
+				src.position(src.limit());
+				return remaining;
+			}
+		};
+	}
+}
@@ -0,0 +1,63 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures SHA-256 digesting of a file through
+ * {@link CryptoEngine#digest(Path)}, as done by the checksha action of
+ * {@link Crypto}.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DigestBenchmark {
+	/** Name of the input file. **/
+	@Param({ BenchmarkInputs.TEST_FILE, BenchmarkInputs.GENERATED })
+	private String input;
+
+	/** Path of the input file. **/
+	private Path file;
+
+	/**
+	 * Prepares the input file.
+	 * 
+	 * @throws IOException
+	 *             if the input can not be prepared
+	 */
+	@Setup
+	public void setUp() throws IOException {
+		file = BenchmarkInputs.resolve(input);
+	}
+
+	/**
+	 * Digests the whole input file.
+	 * 
+	 * @return digest of the file
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	@Benchmark
+	public byte[] sha256() throws IOException {
+		return CryptoEngine.digest(file);
+	}
+}
@@ -0,0 +1,69 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the throughput of the hex conversions in {@link Util}.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilBenchmark {
+	/** Number of bytes converted in a single operation. **/
+	@Param({ "16", "1024", "65536" })
+	private int size;
+
+	/** Bytes to convert to hex. **/
+	private byte[] bytes;
+	/** Hex text to convert to bytes. **/
+	private String hex;
+
+	/**
+	 * Generates the input data.
+	 */
+	@Setup
+	public void setUp() {
+		bytes = new byte[size];
+		new Random(42).nextBytes(bytes);
+		hex = Util.byteToHex(bytes);
+	}
+
+	/**
+	 * Measures {@link Util#hexToByte(String)}.
+	 * 
+	 * @return converted bytes
+	 */
+	@Benchmark
+	public byte[] hexToByte() {
+		return Util.hexToByte(hex);
+	}
+
+	/**
+	 * Measures {@link Util#byteToHex(byte[])}.
+	 * 
+	 * @return converted text
+	 */
+	@Benchmark
+	public String byteToHex() {
+		return Util.byteToHex(bytes);
+	}
+}
@@ -1,26 +1,25 @@
 package hr.fer.zemris.java.hw06.crypto;
 
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
-import java.security.InvalidAlgorithmParameterException;
-import java.security.InvalidKeyException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.spec.AlgorithmParameterSpec;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
-
-import javax.crypto.BadPaddingException;
-import javax.crypto.Cipher;
-import javax.crypto.IllegalBlockSizeException;
-import javax.crypto.NoSuchPaddingException;
-import javax.crypto.ShortBufferException;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.function.Function;
 
 /**
  * This class allows the user to encrypt/decrypt a file using the AES
@@ -36,11 +35,22 @@ import javax.crypto.spec.SecretKeySpec;
  * can not be easily understood by unauthorized people. Decryption is the
  * reverse process: it is a transformation of ciphertext back into its original
  * form.
+ * <p>
+ * This class is only a command line interface; the actual work is done by
+ * {@link CryptoEngine}, which can also be used directly.
  * 
  * @author Mirna Baksa
  *
  */
 public class Crypto {
+	/** Time between two progress lines, in ms. **/
+	private static final long PROGRESS_PERIOD = 1000;
+	/** Name which denotes the standard input or output instead of a file. **/
+	private static final String STANDARD_STREAM = "-";
+	/** Environment variable with the hex-encoded key. **/
+	private static final String KEY_VARIABLE = "HW06_CRYPTO_KEY";
+	/** Environment variable with the hex-encoded initialization vector. **/
+	private static final String IV_VARIABLE = "HW06_CRYPTO_IV";
 
 	/**
 	 * Main method of the program. The program receives multiple command line
@@ -53,6 +63,56 @@ public class Crypto {
 	 * the keyword is "encrypt" or "decrypt", two more arguments are needed -
 	 * the String representation of the path of the original document and the
 	 * String representation of the path of the document that will be created.
+	 * <p>
+	 * The "checksha" keyword can also be followed by <code>-c</code>, the path
+	 * of a manifest in the <code>sha256sum</code> format and optionally
+	 * <code>-j</code> with the number of worker threads. In that case all the
+	 * files listed in the manifest are checked concurrently, and the program
+	 * exits with status 1 unless all of them match.
+	 * <p>
+	 * The "encrypt-ctr" and "decrypt-ctr" keywords take the same arguments as
+	 * "encrypt" and "decrypt", but use the AES crypto-algorithm in the counter
+	 * mode, which allows the file to be processed on all available processors.
+	 * <p>
+	 * The "encrypt-frames" keyword expects the path of the original and of the
+	 * container which will be created in the authenticated, framed format. The
+	 * "decrypt-frames" keyword expects the path of the container, the path of
+	 * the recreated file and optionally the offset and length of the range to
+	 * decrypt. The "verify-frames" keyword expects the path of the container
+	 * whose frames will be checked.
+	 * <p>
+	 * The digests calculated by "checksha" are stored in a persistent
+	 * {@link DigestCache}, so files which did not change since they were last
+	 * digested are not read again. The cache is bypassed if the
+	 * <code>--no-cache</code> option is given anywhere in the arguments.
+	 * "checksha --invalidate" followed by a path removes the cached digest of
+	 * that file, and "checksha --clear-cache" removes all cached digests.
+	 * <p>
+	 * The path "-" denotes the standard input (for the original of "encrypt"
+	 * and "decrypt" and the file of "checksha") or the standard output (for
+	 * the result of "encrypt" and "decrypt"), so the program can be used in a
+	 * pipeline. When the standard output carries the data, all messages are
+	 * printed out through the standard error. When "checksha" reads the
+	 * standard input, it prints out the digest instead of checking it.
+	 * <p>
+	 * The key and initialization vector are read from the file given by the
+	 * <code>--key-file</code> option (the hex-encoded key followed by the
+	 * hex-encoded initialization vector, separated by whitespace), otherwise
+	 * from the {@value #KEY_VARIABLE} and {@value #IV_VARIABLE} environment
+	 * variables, and only if neither is available they are entered through
+	 * the console. When the standard input or output carries the data, the
+	 * console can not be used.
+	 * <p>
+	 * While "checksha", "encrypt" and "decrypt" run, their {@link Progress} is
+	 * printed out through the standard error every second. When they finish, a
+	 * machine-readable summary line starting with <code>summary</code> is
+	 * printed out through the standard error as well.
+	 * <p>
+	 * The "treesha", "treesha-check" and "treesha-append" keywords expect the
+	 * path of a file. The first one calculates the tree hash of the file and
+	 * stores its leaves in a sidecar file, the second one compares the file to
+	 * its sidecar and reports the changed blocks, and the third one re-hashes
+	 * only the data appended since the sidecar was written.
 	 * 
 	 * @param args
 	 *            command line arguments
@@ -63,21 +123,83 @@ public class Crypto {
 			return;
 		}
 
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		boolean useCache = !arguments.remove("--no-cache");
+		String keyFile = null;
+		int keyFileIndex = arguments.indexOf("--key-file");
+		if (keyFileIndex != -1) {
+			if (keyFileIndex + 1 == arguments.size()) {
+				System.out.println("Invalid input! Expected the path of the key file after --key-file.");
+				return;
+			}
+			keyFile = arguments.remove(keyFileIndex + 1);
+			arguments.remove(keyFileIndex);
+		}
+		args = arguments.toArray(new String[arguments.size()]);
+		if (args.length == 0) {
+			System.out.println("Invalid input!");
+			return;
+		}
+
 		if (args[0].equals("checksha")) {
+			if (args.length >= 2 && (args[1].equals("--invalidate") || args[1].equals("--clear-cache"))) {
+				invalidateCache(args);
+				return;
+			}
+			DigestCache cache = useCache ? DigestCache.open() : null;
+			if (args.length >= 3 && args[1].equals("-c")) {
+				checkManifest(args, cache);
+				return;
+			}
 			if (args.length != 2) {
 				System.out.println("Invalid input! Expected the path of the file to check.");
 				return;
 			}
-			checkSHA(args[1]);
+			if (args[1].equals(STANDARD_STREAM)) {
+				digestStandardInput();
+				return;
+			}
+			checkSHA(args[1], cache);
 		} else if (args[0].equals("encrypt") || args[0].equals("decrypt")) {
 			if (args.length != 3) {
 				System.out.println("Invalid input! Expected the path of the ciphertext and the recreated file.");
 				return;
 			}
-			crypt(args[1], args[2], args[0]);
+			crypt(args[1], args[2], args[0], keyFile);
+		} else if (args[0].equals("encrypt-ctr") || args[0].equals("decrypt-ctr")) {
+			if (args.length != 3) {
+				System.out.println("Invalid input! Expected the path of the ciphertext and the recreated file.");
+				return;
+			}
+			cryptCtr(args[1], args[2], args[0], keyFile);
+		} else if (args[0].equals("encrypt-frames")) {
+			if (args.length != 3) {
+				System.out.println("Invalid input! Expected the path of the original and the container.");
+				return;
+			}
+			encryptFrames(args[1], args[2], keyFile);
+		} else if (args[0].equals("decrypt-frames")) {
+			if (args.length != 3 && args.length != 5) {
+				System.out.println("Invalid input! Expected the path of the container, the recreated file and optionally the offset and length.");
+				return;
+			}
+			decryptFrames(args, keyFile);
+		} else if (args[0].equals("verify-frames")) {
+			if (args.length != 2) {
+				System.out.println("Invalid input! Expected the path of the container.");
+				return;
+			}
+			verifyFrames(args[1], keyFile);
+		} else if (args[0].equals("treesha") || args[0].equals("treesha-check") || args[0].equals("treesha-append")) {
+			if (args.length != 2) {
+				System.out.println("Invalid input! Expected the path of the file.");
+				return;
+			}
+			treeSHA(args[1], args[0]);
 		} else {
-			System.out.println(
-					"Invalid keyword. Only checksha, encrypt and decrypt actions are supported. Input was: " + args[0]);
+			System.out.println("Invalid keyword. Only checksha, encrypt, decrypt, encrypt-ctr, decrypt-ctr, "
+					+ "encrypt-frames, decrypt-frames, verify-frames, treesha, treesha-check and treesha-append "
+					+ "actions are supported. Input was: " + args[0]);
 		}
 
 	}
@@ -93,36 +215,30 @@ public class Crypto {
 	 * 
 	 * @param fileName
 	 *            String representation of the path to be checked
+	 * @param cache
+	 *            digest cache, or <code>null</code> if the file is always read
 	 */
-	private static void checkSHA(String fileName) {
+	private static void checkSHA(String fileName, DigestCache cache) {
 		Scanner sc = new Scanner(System.in);
 		String expDigest = getUserInput("Please provide expected sha-256 digest for " + fileName + ": ", sc);
 		sc.close();
 
-		MessageDigest sha = null;
+		byte[] digest = null;
 		try {
-			sha = MessageDigest.getInstance("SHA-256");
-		} catch (NoSuchAlgorithmException e) {
-			System.out.println("Digest generation error.");
-		}
-
-		try (InputStream inputStream = Files.newInputStream(Paths.get(fileName), StandardOpenOption.READ)) {
-			byte[] buffer = new byte[4096];
-
-			while (true) {
-				int readBytes = inputStream.read(buffer);
-				if (readBytes < 1) {
-					break;
-				}
-
-				sha.update(buffer, 0, readBytes);
+			Path file = Paths.get(fileName);
+			Progress progress = new Progress("checksha", Files.size(file));
+			Progress.Reporter reporter = progress.report(System.err, PROGRESS_PERIOD);
+			try {
+				digest = cache == null ? CryptoEngine.digest(file, progress) : cache.digest(file, progress);
+			} finally {
+				reporter.close();
 			}
 		} catch (IOException | InvalidPathException ex) {
 			System.out.println("An error occured while reading the file.");
 			System.exit(0);
 		}
+		saveCache(cache);
 
-		byte[] digest = sha.digest();
 		System.out.print("Digesting completed. ");
 
 		String calculatedDigest = null;
@@ -142,6 +258,172 @@ public class Crypto {
 
 	}
 
+	/**
+	 * Calculates the SHA-256 digest of the standard input and prints it out
+	 * through the standard output, in the <code>sha256sum</code> format.
+	 */
+	private static void digestStandardInput() {
+		byte[] digest;
+		Progress progress = new Progress("checksha", -1);
+		Progress.Reporter reporter = progress.report(System.err, PROGRESS_PERIOD);
+		try {
+			digest = CryptoEngine.digest(standardInput(), progress);
+		} catch (IOException ex) {
+			System.err.println("An error occured while reading the standard input.");
+			return;
+		} finally {
+			reporter.close();
+		}
+		System.out.println(Util.byteToHex(digest) + "  " + STANDARD_STREAM);
+	}
+
+	/**
+	 * Calculates, checks or updates the tree hash of the file, according to
+	 * the keyword given as an argument.
+	 * 
+	 * @param fileName
+	 *            String representation of the path of the file
+	 * @param mode
+	 *            "treesha", "treesha-check" or "treesha-append"
+	 * @see MerkleTree
+	 */
+	private static void treeSHA(String fileName, String mode) {
+		try {
+			Path file = Paths.get(fileName);
+			Path sidecar = MerkleTree.sidecarOf(file);
+
+			if (mode.equals("treesha")) {
+				MerkleTree tree = MerkleTree.build(file, MerkleTree.DEFAULT_BLOCK_SIZE);
+				tree.write(sidecar);
+				System.out.println("Digesting completed. Root digest of " + fileName + " is "
+						+ Util.byteToHex(tree.root()) + ". Leaves written to " + sidecar + " .");
+				return;
+			}
+
+			MerkleTree stored = MerkleTree.read(sidecar);
+			if (mode.equals("treesha-append")) {
+				MerkleTree tree = stored.append(file);
+				tree.write(sidecar);
+				System.out.println("Digesting completed. Root digest of " + fileName + " is "
+						+ Util.byteToHex(tree.root()) + ". Re-hashed " + (tree.getBlockCount()
+								- stored.getBlockCount() + (stored.getLength() % stored.getBlockSize() == 0 ? 0 : 1))
+						+ " blocks.");
+				return;
+			}
+
+			List<Integer> changed = MerkleTree.build(file, stored.getBlockSize()).diff(stored);
+			if (changed.isEmpty()) {
+				System.out.println("Digest of " + fileName + " matches the digest in " + sidecar + ".");
+			} else {
+				System.out.println("Digest of " + fileName + " does not match the digest in " + sidecar + ". "
+						+ changed.size() + " blocks of " + stored.getBlockSize() + " bytes changed: " + changed);
+			}
+		} catch (IOException | InvalidPathException ex) {
+			System.out.println("An error occured while reading the file. " + ex.getMessage());
+		}
+	}
+
+	/**
+	 * Checks all the files listed in a manifest. The arguments are the command
+	 * line arguments of the program: <code>checksha -c manifest [-j threads]</code>.
+	 * If the number of threads is not given, the number of available processors
+	 * is used.
+	 * <p>
+	 * The result of each check and the final summary are printed out through the
+	 * standard output. If any file failed the check, could not be read or any
+	 * line was improperly formatted, the program exits with status 1.
+	 * 
+	 * @param args
+	 *            command line arguments
+	 * @param cache
+	 *            digest cache, or <code>null</code> if the files are always read
+	 */
+	private static void checkManifest(String[] args, DigestCache cache) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (args.length == 5 && args[3].equals("-j")) {
+			try {
+				threads = Integer.parseInt(args[4]);
+			} catch (NumberFormatException ex) {
+				System.out.println("Invalid number of threads. Was: " + args[4]);
+				return;
+			}
+		} else if (args.length != 3) {
+			System.out.println("Invalid input! Expected checksha -c [manifest] [-j threads].");
+			return;
+		}
+
+		ShaManifestChecker.Summary summary;
+		Progress progress = new Progress("checksha", 0);
+		Progress.Reporter reporter = progress.report(System.err, PROGRESS_PERIOD);
+		try {
+			summary = new ShaManifestChecker(threads, cache).check(Paths.get(args[2]), System.out::println,
+					progress);
+		} catch (IOException | InvalidPathException ex) {
+			System.out.println("An error occured while reading the manifest.");
+			return;
+		} catch (IllegalArgumentException ex) {
+			System.out.println(ex.getMessage());
+			return;
+		} finally {
+			reporter.close();
+		}
+
+		saveCache(cache);
+		System.out.println(summary);
+		if (!summary.isSuccessful()) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Removes cached digests. The arguments are the command line arguments of
+	 * the program: <code>checksha --invalidate file...</code> removes the
+	 * digests of the given files and <code>checksha --clear-cache</code>
+	 * removes all of them.
+	 * 
+	 * @param args
+	 *            command line arguments
+	 */
+	private static void invalidateCache(String[] args) {
+		DigestCache cache = DigestCache.open();
+		if (args[1].equals("--clear-cache")) {
+			cache.clear();
+		} else {
+			if (args.length < 3) {
+				System.out.println("Invalid input! Expected the paths of the files to invalidate.");
+				return;
+			}
+			try {
+				for (int i = 2; i < args.length; i++) {
+					cache.invalidate(Paths.get(args[i]));
+				}
+			} catch (IOException | InvalidPathException ex) {
+				System.out.println("An error occured while reading the file.");
+				return;
+			}
+		}
+		saveCache(cache);
+		System.out.println("Digest cache updated.");
+	}
+
+	/**
+	 * Writes the digest cache, if one is used. A failure to write the cache is
+	 * reported, but does not affect the result of the check.
+	 * 
+	 * @param cache
+	 *            digest cache, or <code>null</code>
+	 */
+	private static void saveCache(DigestCache cache) {
+		if (cache == null) {
+			return;
+		}
+		try {
+			cache.save();
+		} catch (IOException ex) {
+			System.out.println("An error occured while writing the digest cache.");
+		}
+	}
+
 	/**
 	 * Encrypts or decrypts the original using the AES crypto-algorithm,
 	 * resulting with the file with the path output, according to the mode given
@@ -149,7 +431,8 @@ public class Crypto {
 	 * action that needs to be done over the original document.
 	 * <p>
 	 * Original and output arguments are String representations of the paths to
-	 * the documents needed in this method.
+	 * the documents needed in this method, or "-" for the standard input and
+	 * output.
 	 * 
 	 * @param original
 	 *            String representation of the path of the original
@@ -157,40 +440,295 @@ public class Crypto {
 	 *            String representation of the path of the output
 	 * @param mode
 	 *            mode of crypting
+	 * @param keyFile
+	 *            String representation of the path of the key file, or
+	 *            <code>null</code>
 	 */
-	private static void crypt(String original, String output, String mode) {
-		Cipher cipher = initCipher(mode);
-		try (InputStream inputStream = Files.newInputStream(Paths.get(original), StandardOpenOption.READ);
-				OutputStream outputStream = Files.newOutputStream(Paths.get(output))) {
-			byte[] inputBuffer = new byte[4096];
+	private static void crypt(String original, String output, String mode, String keyFile) {
+		boolean standardInput = original.equals(STANDARD_STREAM);
+		boolean standardOutput = output.equals(STANDARD_STREAM);
+		PrintStream messages = standardOutput ? System.err : System.out;
+		CryptoEngine engine = initEngine(keyFile, !standardInput && !standardOutput, messages);
+		CryptoEngine.Mode cryptMode = mode.equals("encrypt") ? CryptoEngine.Mode.ENCRYPT : CryptoEngine.Mode.DECRYPT;
 
-			while (true) {
-				int readBytes = inputStream.read(inputBuffer);
-				if (readBytes < 1) {
-					break;
+		try {
+			if (!standardInput && !standardOutput) {
+				Path originalPath = Paths.get(original);
+				Progress progress = new Progress(mode, Files.size(originalPath));
+				Progress.Reporter reporter = progress.report(System.err, PROGRESS_PERIOD);
+				try {
+					engine.crypt(cryptMode, originalPath, Paths.get(output), progress);
+				} finally {
+					reporter.close();
+				}
+			} else {
+				try (ReadableByteChannel input = standardInput ? standardInput()
+						: FileChannel.open(Paths.get(original), StandardOpenOption.READ);
+						WritableByteChannel out = standardOutput ? standardOutput()
+								: FileChannel.open(Paths.get(output), StandardOpenOption.CREATE,
+										StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+					Progress progress = new Progress(mode, standardInput ? -1 : Files.size(Paths.get(original)));
+					Progress.Reporter reporter = progress.report(System.err, PROGRESS_PERIOD);
+					try {
+						engine.crypt(cryptMode, input, out, progress);
+					} finally {
+						reporter.close();
+					}
 				}
-
-				byte[] outputBuffer = new byte[4096];
-				int updatedBytes = cipher.update(inputBuffer, 0, readBytes, outputBuffer);
-				outputStream.write(outputBuffer, 0, updatedBytes);
 			}
+		} catch (IOException | CryptoException | InvalidPathException e) {
+			messages.println("An error occured while crypting the file.");
+			return;
+		}
+
+		if (mode.equals("encrypt"))
+			messages.print("Encryption ");
+		else
+			messages.print("Decryption ");
+		messages.println("completed. Generated file " + output + " based on file " + original + " .");
+	}
+
+	/**
+	 * Returns the channel of the standard input.
+	 * 
+	 * @return channel of the standard input
+	 */
+	private static ReadableByteChannel standardInput() {
+		return new FileInputStream(FileDescriptor.in).getChannel();
+	}
 
-			byte[] outputBuffer = new byte[4096];
-			int updatedBytes = cipher.doFinal(outputBuffer, 0);
-			outputStream.write(outputBuffer, 0, updatedBytes);
+	/**
+	 * Returns the channel of the standard output.
+	 * 
+	 * @return channel of the standard output
+	 */
+	private static WritableByteChannel standardOutput() {
+		return new FileOutputStream(FileDescriptor.out).getChannel();
+	}
+
+	/**
+	 * Encrypts or decrypts the original using the AES crypto-algorithm in the
+	 * counter mode, resulting with the file with the path output. The segments
+	 * of the file are processed in parallel.
+	 * 
+	 * @param original
+	 *            String representation of the path of the original
+	 * @param output
+	 *            String representation of the path of the output
+	 * @param mode
+	 *            mode of crypting, "encrypt-ctr" or "decrypt-ctr"
+	 * @param keyFile
+	 *            String representation of the path of the key file, or
+	 *            <code>null</code>
+	 * @see ParallelCtrCrypter
+	 */
+	private static void cryptCtr(String original, String output, String mode, String keyFile) {
+		byte[][] keyMaterial = getKeyMaterial(keyFile, true, true, System.out);
 
-		} catch (IOException | IllegalBlockSizeException | ShortBufferException | BadPaddingException | InvalidPathException e ) {
+		try {
+			new ParallelCtrCrypter(keyMaterial[0], keyMaterial[1]).crypt(Paths.get(original), Paths.get(output));
+		} catch (IOException | InvalidPathException | IllegalStateException e) {
 			System.out.println("An error occured while crypting the file.");
 			return;
+		} catch (IllegalArgumentException ex) {
+			System.out.println(ex.getMessage());
+			return;
 		}
 
-		if (mode.equals("encrypt"))
+		if (mode.equals("encrypt-ctr"))
 			System.out.print("Encryption ");
 		else
 			System.out.print("Decryption ");
 		System.out.println("completed. Generated file " + output + " based on file " + original + " .");
 	}
 
+	/**
+	 * Encrypts the original into a container in the authenticated, framed
+	 * format.
+	 * 
+	 * @param original
+	 *            String representation of the path of the original
+	 * @param output
+	 *            String representation of the path of the container
+	 * @param keyFile
+	 *            String representation of the path of the key file, or
+	 *            <code>null</code>
+	 * @see FramedGcmWriter
+	 */
+	private static void encryptFrames(String original, String output, String keyFile) {
+		byte[] password = getKeyMaterial(keyFile, false, true, System.out)[0];
+		try {
+			new FramedGcmWriter(password).encrypt(Paths.get(original), Paths.get(output));
+		} catch (IOException | InvalidPathException | GeneralSecurityException e) {
+			System.out.println("An error occured while crypting the file.");
+			return;
+		}
+
+		System.out.println("Encryption completed. Generated file " + output + " based on file " + original + " .");
+	}
+
+	/**
+	 * Decrypts the container in the authenticated, framed format. The arguments
+	 * are the command line arguments of the program:
+	 * <code>decrypt-frames container output [offset length]</code>. If the
+	 * offset and length are given, only that range of the original is
+	 * recreated.
+	 * 
+	 * @param args
+	 *            command line arguments
+	 * @param keyFile
+	 *            String representation of the path of the key file, or
+	 *            <code>null</code>
+	 * @see FramedGcmReader
+	 */
+	private static void decryptFrames(String[] args, String keyFile) {
+		long offset = 0;
+		long length = -1;
+		if (args.length == 5) {
+			try {
+				offset = Long.parseLong(args[3]);
+				length = Long.parseLong(args[4]);
+			} catch (NumberFormatException ex) {
+				System.out.println("Invalid range. Offset and length must be numbers.");
+				return;
+			}
+		}
+
+		byte[] password = getKeyMaterial(keyFile, false, true, System.out)[0];
+		try (FramedGcmReader reader = new FramedGcmReader(Paths.get(args[1]), password);
+				FileChannel output = FileChannel.open(Paths.get(args[2]), StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			reader.decrypt(offset, length == -1 ? reader.length() : length, output);
+		} catch (IOException | InvalidPathException e) {
+			System.out.println("An error occured while crypting the file. " + e.getMessage());
+			return;
+		}
+
+		System.out.println("Decryption completed. Generated file " + args[2] + " based on file " + args[1] + " .");
+	}
+
+	/**
+	 * Checks the integrity of all the frames of the container in the
+	 * authenticated, framed format. The result of the check is printed out
+	 * through the standard output.
+	 * 
+	 * @param container
+	 *            String representation of the path of the container
+	 * @param keyFile
+	 *            String representation of the path of the key file, or
+	 *            <code>null</code>
+	 * @see FramedGcmReader
+	 */
+	private static void verifyFrames(String container, String keyFile) {
+		byte[] password = getKeyMaterial(keyFile, false, true, System.out)[0];
+		try (FramedGcmReader reader = new FramedGcmReader(Paths.get(container), password)) {
+			List<Integer> failed = reader.verify();
+			if (failed.isEmpty()) {
+				System.out.println("All " + reader.frameCount() + " frames of " + container + " are intact.");
+			} else {
+				System.out.println(failed.size() + " of " + reader.frameCount() + " frames of " + container
+						+ " failed the integrity check: " + failed);
+			}
+		} catch (IOException | InvalidPathException e) {
+			System.out.println("An error occured while verifying the file. " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Gets the password and optionally the initialization vector - from the
+	 * key file if one is given, otherwise from the environment variables, and
+	 * otherwise from the console. In case of missing or invalid input, the
+	 * error message is printed out and the program is terminated.
+	 * 
+	 * @param keyFile
+	 *            String representation of the path of the key file, or
+	 *            <code>null</code>
+	 * @param withIv
+	 *            <code>true</code> if the initialization vector is needed
+	 * @param interactive
+	 *            <code>true</code> if the console can be used
+	 * @param messages
+	 *            stream where the error messages are printed out
+	 * @return password bytes, followed by the initialization vector bytes if
+	 *         requested
+	 */
+	private static byte[][] getKeyMaterial(String keyFile, boolean withIv, boolean interactive,
+			PrintStream messages) {
+		byte[][] keyMaterial = null;
+		try {
+			keyMaterial = readKeyMaterial(keyFile, withIv, System::getenv);
+		} catch (IOException | InvalidPathException ex) {
+			messages.println("An error occured while reading the key file.");
+			System.exit(0);
+		} catch (IllegalArgumentException ex) {
+			messages.println(ex.getMessage());
+			System.exit(0);
+		}
+
+		if (keyMaterial == null) {
+			if (!interactive) {
+				messages.println("The key can not be entered through the console while the standard input or output "
+						+ "carries the data. Use --key-file or the " + KEY_VARIABLE + " and " + IV_VARIABLE
+						+ " environment variables.");
+				System.exit(0);
+			}
+			Scanner sc = new Scanner(System.in);
+			keyMaterial = new byte[withIv ? 2 : 1][];
+			keyMaterial[0] = getHexInput(
+					"Please provide password as hex-encoded text (16 bytes, i.e. 32 hex-digits): ", sc);
+			if (withIv) {
+				keyMaterial[1] = getHexInput(
+						"Please provide initialization vector as hex-encoded text (32 hex-digits): ", sc);
+			}
+			sc.close();
+		}
+		return keyMaterial;
+	}
+
+	/**
+	 * Reads the password and optionally the initialization vector from the key
+	 * file if one is given, otherwise from the {@value #KEY_VARIABLE} and
+	 * {@value #IV_VARIABLE} environment variables.
+	 * 
+	 * @param keyFile
+	 *            String representation of the path of the key file, or
+	 *            <code>null</code>
+	 * @param withIv
+	 *            <code>true</code> if the initialization vector is needed
+	 * @param environment
+	 *            function which returns the value of an environment variable,
+	 *            or <code>null</code> if it is not set
+	 * @return password bytes, followed by the initialization vector bytes if
+	 *         requested, or <code>null</code> if neither the key file nor the
+	 *         environment variables are given
+	 * @throws IOException
+	 *             if the key file can not be read
+	 * @throws IllegalArgumentException
+	 *             if a value is missing or is not valid hex
+	 */
+	static byte[][] readKeyMaterial(String keyFile, boolean withIv, Function<String, String> environment)
+			throws IOException {
+		String[] values;
+		if (keyFile != null) {
+			values = new String(Files.readAllBytes(Paths.get(keyFile)), StandardCharsets.UTF_8).trim()
+					.split("\\s+");
+		} else if (environment.apply(KEY_VARIABLE) != null) {
+			values = new String[] { environment.apply(KEY_VARIABLE), environment.apply(IV_VARIABLE) };
+		} else {
+			return null;
+		}
+
+		byte[][] keyMaterial = new byte[withIv ? 2 : 1][];
+		for (int i = 0; i < keyMaterial.length; i++) {
+			if (i >= values.length || values[i] == null || values[i].isEmpty()) {
+				throw new IllegalArgumentException(
+						"The key " + (withIv ? "and the initialization vector are" : "is") + " missing.");
+			}
+			keyMaterial[i] = Util.hexToByte(values[i]);
+		}
+		return keyMaterial;
+	}
+
 	/**
 	 * Gets the input from the console. Prints out the message with detailed
 	 * information about the input needed.
@@ -209,47 +747,51 @@ public class Crypto {
 	}
 
 	/**
-	 * Initializes the cipher. The method retrieves the password and
-	 * initialization vector from the user and acts accordingly. The argument
-	 * gives information about the mode of the cipher - "encrypt" marks the
-	 * {@link Cipher#ENCRYPT_MODE}, and "decrypt" marks the
-	 * {@link Cipher#DECRYPT_MODE}.
+	 * Gets the hex-encoded input from the console and converts it to an array
+	 * of bytes. In case of invalid input, the error message is printed out and
+	 * the program is terminated.
 	 * 
-	 * @param mode
-	 *            mode of the cipher
-	 * @return initialized cipher
+	 * @param message
+	 *            message about the input needed
+	 * @param sc
+	 *            scanner from where the input is received
+	 * @return bytes represented by the input
 	 */
-	private static Cipher initCipher(String mode) {
-		Scanner sc = new Scanner(System.in);
-		String password = getUserInput("Please provide password as hex-encoded text (16 bytes, i.e. 32 hex-digits): ",
-				sc);
-		String initVector = getUserInput("Please provide initialization vector as hex-encoded text (32 hex-digits): ",
-				sc);
-		sc.close();
-
-		SecretKeySpec keySpec = null;
-		AlgorithmParameterSpec paramSpec = null;
-		try{
-			 keySpec = new SecretKeySpec(Util.hexToByte(password), "AES");
-			 paramSpec = new IvParameterSpec(Util.hexToByte(initVector));
-		}catch(IllegalArgumentException ex){
+	private static byte[] getHexInput(String message, Scanner sc) {
+		String input = getUserInput(message, sc);
+		try {
+			return Util.hexToByte(input);
+		} catch (IllegalArgumentException ex) {
 			System.out.println(ex.getMessage());
 			System.exit(0);
+			return null;
 		}
-		
-		Cipher cipher = null;
-		try {
-			cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-		} catch (NoSuchAlgorithmException | NoSuchPaddingException ex) {
-			System.out.println("Error occured while getting cipher instance.");
-		}
+	}
+
+	/**
+	 * Initializes the crypto engine. The method retrieves the password and
+	 * initialization vector and acts accordingly.
+	 * 
+	 * @param keyFile
+	 *            String representation of the path of the key file, or
+	 *            <code>null</code>
+	 * @param interactive
+	 *            <code>true</code> if the console can be used
+	 * @param messages
+	 *            stream where the error messages are printed out
+	 * @return initialized engine
+	 * @see #getKeyMaterial(String, boolean, boolean, PrintStream)
+	 */
+	private static CryptoEngine initEngine(String keyFile, boolean interactive, PrintStream messages) {
+		byte[][] keyMaterial = getKeyMaterial(keyFile, true, interactive, messages);
+
 		try {
-			cipher.init(mode.equals("encrypt") ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE, keySpec, paramSpec);
-		} catch (InvalidKeyException | InvalidAlgorithmParameterException ex2) {
-			System.out.println("Cipher initialization error occured.");
+			return new CryptoEngine(keyMaterial[0], keyMaterial[1]);
+		} catch (IllegalArgumentException ex) {
+			messages.println(ex.getMessage());
+			System.exit(0);
+			return null;
 		}
-
-		return cipher;
 	}
 
 }
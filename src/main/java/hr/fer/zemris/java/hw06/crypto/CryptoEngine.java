@@ -0,0 +1,539 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Non-interactive API for encrypting and decrypting data with the AES
+ * crypto-algorithm in the CBC mode and for calculating SHA-256 digests.
+ * <p>
+ * An engine is created for a single key and initialization vector and can be
+ * used from multiple threads at once. Each thread gets its own initialized
+ * {@link Cipher} for each mode, which is created and initialized on first use
+ * and reused afterwards, so callers processing many small messages do not pay
+ * for the provider lookup and key setup on every call. Digests and read buffers are
+ * cached per thread in the same way.
+ * <p>
+ * The file and channel operations can report their throughput to a
+ * {@link Progress}, which separates the time spent in I/O from the time spent
+ * in the cipher or digest.
+ * <p>
+ * I/O errors are reported as {@link IOException}s, whereas errors of the
+ * cryptographic operation (for example, invalid padding of the decrypted
+ * data) are reported as {@link CryptoException}s.
+ *
+ * @author Mirna Baksa
+ *
+ */
+public class CryptoEngine {
+	/** Transformation used for crypting. **/
+	public static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+	/** Algorithm used for digesting. **/
+	public static final String DIGEST_ALGORITHM = "SHA-256";
+
+	/** Smallest buffer used for crypting. **/
+	private static final int MIN_BUFFER_SIZE = 8 * 1024;
+	/** Largest buffer used for crypting. **/
+	private static final int MAX_BUFFER_SIZE = 1024 * 1024;
+	/** Size of the buffer used for crypting streams of unknown size. **/
+	private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+	/** Size of the buffer used for digesting. **/
+	private static final int DIGEST_BUFFER_SIZE = 64 * 1024;
+
+	/** Uninitialized ciphers of the current thread, by transformation. **/
+	private static final ThreadLocal<Map<String, Cipher>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+	/** Digest of the current thread. **/
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance(DIGEST_ALGORITHM);
+		} catch (NoSuchAlgorithmException ex) {
+			throw new CryptoException("SHA-256 is not supported on this platform.", ex);
+		}
+	});
+	/** Digest buffer of the current thread. **/
+	private static final ThreadLocal<ByteBuffer> DIGEST_BUFFER = ThreadLocal
+			.withInitial(() -> ByteBuffer.allocate(DIGEST_BUFFER_SIZE));
+
+	/**
+	 * Crypting modes.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	public enum Mode {
+		/** Encryption. **/
+		ENCRYPT(Cipher.ENCRYPT_MODE),
+		/** Decryption. **/
+		DECRYPT(Cipher.DECRYPT_MODE);
+
+		/** Corresponding {@link Cipher} mode. **/
+		private final int cipherMode;
+
+		/**
+		 * Constructs a new mode.
+		 *
+		 * @param cipherMode
+		 *            corresponding {@link Cipher} mode
+		 */
+		Mode(int cipherMode) {
+			this.cipherMode = cipherMode;
+		}
+	}
+
+	/** Encryption key. **/
+	private final SecretKeySpec key;
+	/** Initialization vector. **/
+	private final IvParameterSpec iv;
+	/** Initialized ciphers of the current thread, indexed by the mode. **/
+	private final ThreadLocal<Cipher[]> ciphers = ThreadLocal.withInitial(() -> new Cipher[Mode.values().length]);
+
+	/**
+	 * Constructs a new engine.
+	 *
+	 * @param key
+	 *            128, 192 or 256-bit key
+	 * @param iv
+	 *            16-byte initialization vector
+	 * @throws IllegalArgumentException
+	 *             if the key or the initialization vector is of invalid length
+	 */
+	public CryptoEngine(byte[] key, byte[] iv) {
+		if (key.length != 16 && key.length != 24 && key.length != 32) {
+			throw new IllegalArgumentException("The key must be 16, 24 or 32 bytes long. Was: " + key.length);
+		}
+		if (iv.length != 16) {
+			throw new IllegalArgumentException("The initialization vector must be 16 bytes long. Was: " + iv.length);
+		}
+		this.key = new SecretKeySpec(key, "AES");
+		this.iv = new IvParameterSpec(iv);
+	}
+
+	/**
+	 * Encrypts or decrypts the whole message.
+	 *
+	 * @param mode
+	 *            crypting mode
+	 * @param data
+	 *            message to crypt
+	 * @return crypted message
+	 */
+	public byte[] crypt(Mode mode, byte[] data) {
+		Cipher cipher = cipher(mode);
+		try {
+			return cipher.doFinal(data);
+		} catch (GeneralSecurityException ex) {
+			discardCipher(mode);
+			throw new CryptoException("An error occured while crypting the data.", ex);
+		}
+	}
+
+	/**
+	 * Encrypts or decrypts the original file, writing the result to the output
+	 * file. The output file is created if it does not exist and truncated if
+	 * it does.
+	 *
+	 * @param mode
+	 *            crypting mode
+	 * @param original
+	 *            path of the original
+	 * @param output
+	 *            path of the output
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public void crypt(Mode mode, Path original, Path output) throws IOException {
+		crypt(mode, original, output, null);
+	}
+
+	/**
+	 * Encrypts or decrypts the original file, writing the result to the output
+	 * file and reporting each processed chunk to the progress.
+	 *
+	 * @param mode
+	 *            crypting mode
+	 * @param original
+	 *            path of the original
+	 * @param output
+	 *            path of the output
+	 * @param progress
+	 *            progress of the operation, or <code>null</code>
+	 * @throws IOException
+	 *             in case of an I/O error
+	 * @see #crypt(Mode, Path, Path)
+	 */
+	public void crypt(Mode mode, Path original, Path output, Progress progress) throws IOException {
+		try (FileChannel inputChannel = FileChannel.open(original, StandardOpenOption.READ);
+				FileChannel outputChannel = FileChannel.open(output, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			crypt(mode, inputChannel, outputChannel, bufferSize(inputChannel.size()), progress);
+		}
+	}
+
+	/**
+	 * Encrypts or decrypts all the data from the input stream, writing the
+	 * result to the output stream. The streams are not closed.
+	 *
+	 * @param mode
+	 *            crypting mode
+	 * @param input
+	 *            stream from where the data is read
+	 * @param output
+	 *            stream where the result is written
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public void crypt(Mode mode, InputStream input, OutputStream output) throws IOException {
+		crypt(mode, Channels.newChannel(input), Channels.newChannel(output), STREAM_BUFFER_SIZE);
+		output.flush();
+	}
+
+	/**
+	 * Encrypts or decrypts all the data from the input channel, writing the
+	 * result to the output channel. The channels are not closed.
+	 *
+	 * @param mode
+	 *            crypting mode
+	 * @param input
+	 *            channel from where the data is read
+	 * @param output
+	 *            channel where the result is written
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public void crypt(Mode mode, ReadableByteChannel input, WritableByteChannel output) throws IOException {
+		crypt(mode, input, output, STREAM_BUFFER_SIZE);
+	}
+
+	/**
+	 * Encrypts or decrypts all the data from the input channel, writing the
+	 * result to the output channel and reporting each processed chunk to the
+	 * progress. The channels are not closed.
+	 *
+	 * @param mode
+	 *            crypting mode
+	 * @param input
+	 *            channel from where the data is read
+	 * @param output
+	 *            channel where the result is written
+	 * @param progress
+	 *            progress of the operation, or <code>null</code>
+	 * @throws IOException
+	 *             in case of an I/O error
+	 * @see #crypt(Mode, ReadableByteChannel, WritableByteChannel)
+	 */
+	public void crypt(Mode mode, ReadableByteChannel input, WritableByteChannel output, Progress progress)
+			throws IOException {
+		crypt(mode, input, output, STREAM_BUFFER_SIZE, progress);
+	}
+
+	/**
+	 * Passes all the data from the input channel through the cipher and writes
+	 * the result to the output channel.
+	 * <p>
+	 * A single pair of direct buffers is allocated for the whole run and reused
+	 * for every chunk, so no garbage is produced while crypting.
+	 *
+	 * @param mode
+	 *            crypting mode
+	 * @param input
+	 *            channel from where the data is read
+	 * @param output
+	 *            channel where the result is written
+	 * @param bufferSize
+	 *            size of the input buffer
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	void crypt(Mode mode, ReadableByteChannel input, WritableByteChannel output, int bufferSize)
+			throws IOException {
+		crypt(mode, input, output, bufferSize, null);
+	}
+
+	/**
+	 * Passes all the data from the input channel through the cipher and writes
+	 * the result to the output channel, reporting each chunk to the progress.
+	 * Reads and writes are counted as I/O time, the cipher as work time.
+	 *
+	 * @param mode
+	 *            crypting mode
+	 * @param input
+	 *            channel from where the data is read
+	 * @param output
+	 *            channel where the result is written
+	 * @param bufferSize
+	 *            size of the input buffer
+	 * @param progress
+	 *            progress of the operation, or <code>null</code>
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	void crypt(Mode mode, ReadableByteChannel input, WritableByteChannel output, int bufferSize,
+			Progress progress) throws IOException {
+		Cipher cipher = cipher(mode);
+		ByteBuffer inputBuffer = ByteBuffer.allocateDirect(bufferSize);
+		ByteBuffer outputBuffer = ByteBuffer.allocateDirect(cipher.getOutputSize(bufferSize) + cipher.getBlockSize());
+
+		boolean completed = false;
+		try {
+			long t0 = System.nanoTime();
+			int read;
+			while ((read = input.read(inputBuffer)) != -1) {
+				long t1 = System.nanoTime();
+				inputBuffer.flip();
+				outputBuffer.clear();
+				cipher.update(inputBuffer, outputBuffer);
+				inputBuffer.compact();
+				long t2 = System.nanoTime();
+				writeFully(outputBuffer, output);
+				long t3 = System.nanoTime();
+				if (progress != null) {
+					progress.add(read, (t1 - t0) + (t3 - t2), t2 - t1);
+				}
+				t0 = t3;
+			}
+
+			inputBuffer.flip();
+			outputBuffer.clear();
+			cipher.doFinal(inputBuffer, outputBuffer);
+			completed = true;
+			writeFully(outputBuffer, output);
+		} catch (GeneralSecurityException ex) {
+			throw new CryptoException("An error occured while crypting the data.", ex);
+		} finally {
+			if (!completed) {
+				discardCipher(mode);
+			}
+		}
+	}
+
+	/**
+	 * Returns the initialized cipher of the current thread for the given mode.
+	 * The cipher is created and initialized on first use.
+	 *
+	 * @param mode
+	 *            crypting mode
+	 * @return initialized cipher
+	 */
+	private Cipher cipher(Mode mode) {
+		Cipher[] cached = ciphers.get();
+		Cipher cipher = cached[mode.ordinal()];
+		if (cipher == null) {
+			try {
+				cipher = Cipher.getInstance(TRANSFORMATION);
+				cipher.init(mode.cipherMode, key, iv);
+			} catch (GeneralSecurityException ex) {
+				throw new CryptoException("Cipher initialization error occured.", ex);
+			}
+			cached[mode.ordinal()] = cipher;
+		}
+		return cipher;
+	}
+
+	/**
+	 * Drops the cipher of the current thread for the given mode, which is left
+	 * in an unknown state after a failed operation.
+	 *
+	 * @param mode
+	 *            crypting mode
+	 */
+	private void discardCipher(Mode mode) {
+		ciphers.get()[mode.ordinal()] = null;
+	}
+
+	/**
+	 * Calculates the SHA-256 digest of the file.
+	 *
+	 * @param file
+	 *            path of the file
+	 * @return digest of the file
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public static byte[] digest(Path file) throws IOException {
+		return digest(file, null);
+	}
+
+	/**
+	 * Calculates the SHA-256 digest of the file, reporting each processed
+	 * chunk to the progress.
+	 *
+	 * @param file
+	 *            path of the file
+	 * @param progress
+	 *            progress of the operation, or <code>null</code>
+	 * @return digest of the file
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public static byte[] digest(Path file, Progress progress) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return digest(channel, progress);
+		}
+	}
+
+	/**
+	 * Calculates the SHA-256 digest of all the data from the stream. The
+	 * stream is not closed.
+	 *
+	 * @param input
+	 *            stream from where the data is read
+	 * @return digest of the data
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public static byte[] digest(InputStream input) throws IOException {
+		return digest(Channels.newChannel(input));
+	}
+
+	/**
+	 * Calculates the SHA-256 digest of all the data from the channel. The
+	 * channel is not closed.
+	 *
+	 * @param input
+	 *            channel from where the data is read
+	 * @return digest of the data
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public static byte[] digest(ReadableByteChannel input) throws IOException {
+		return digest(input, null);
+	}
+
+	/**
+	 * Calculates the SHA-256 digest of all the data from the channel,
+	 * reporting each processed chunk to the progress. The channel is not
+	 * closed.
+	 *
+	 * @param input
+	 *            channel from where the data is read
+	 * @param progress
+	 *            progress of the operation, or <code>null</code>
+	 * @return digest of the data
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public static byte[] digest(ReadableByteChannel input, Progress progress) throws IOException {
+		MessageDigest sha = DIGEST.get();
+		ByteBuffer buffer = DIGEST_BUFFER.get();
+		sha.reset();
+
+		try {
+			while (true) {
+				buffer.clear();
+				long t0 = System.nanoTime();
+				int read = input.read(buffer);
+				if (read == -1) {
+					break;
+				}
+				long t1 = System.nanoTime();
+				buffer.flip();
+				sha.update(buffer);
+				if (progress != null) {
+					progress.add(read, t1 - t0, System.nanoTime() - t1);
+				}
+			}
+		} catch (IOException ex) {
+			sha.reset();
+			throw ex;
+		}
+
+		return sha.digest();
+	}
+
+	/**
+	 * Calculates the SHA-256 digest of the data.
+	 *
+	 * @param data
+	 *            data to digest
+	 * @return digest of the data
+	 */
+	public static byte[] digest(byte[] data) {
+		MessageDigest sha = DIGEST.get();
+		sha.reset();
+		return sha.digest(data);
+	}
+
+	/**
+	 * Returns the SHA-256 digest of the current thread, reset.
+	 *
+	 * @return digest of the current thread
+	 */
+	static MessageDigest threadDigest() {
+		MessageDigest sha = DIGEST.get();
+		sha.reset();
+		return sha;
+	}
+
+	/**
+	 * Returns an uninitialized cipher of the current thread for the given
+	 * transformation. Callers must initialize the cipher before each use.
+	 *
+	 * @param transformation
+	 *            cipher transformation
+	 * @return cipher of the current thread
+	 * @throws CryptoException
+	 *             if the transformation is not supported
+	 */
+	static Cipher threadCipher(String transformation) {
+		return CIPHERS.get().computeIfAbsent(transformation, t -> {
+			try {
+				return Cipher.getInstance(t);
+			} catch (GeneralSecurityException ex) {
+				throw new CryptoException(t + " is not supported on this platform.", ex);
+			}
+		});
+	}
+
+	/**
+	 * Chooses the size of the crypting buffer according to the size of the
+	 * input. Small inputs get a buffer big enough to be read at once, whereas
+	 * the buffer for large inputs is capped to {@value #MAX_BUFFER_SIZE} bytes.
+	 *
+	 * @param inputSize
+	 *            size of the input in bytes
+	 * @return size of the buffer
+	 */
+	static int bufferSize(long inputSize) {
+		if (inputSize <= MIN_BUFFER_SIZE) {
+			return MIN_BUFFER_SIZE;
+		}
+		if (inputSize >= MAX_BUFFER_SIZE) {
+			return MAX_BUFFER_SIZE;
+		}
+		return Integer.highestOneBit((int) inputSize - 1) << 1;
+	}
+
+	/**
+	 * Flips the buffer and writes all of its content to the channel.
+	 *
+	 * @param buffer
+	 *            buffer to write
+	 * @param channel
+	 *            channel to write to
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	private static void writeFully(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
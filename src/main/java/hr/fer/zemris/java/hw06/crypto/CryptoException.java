@@ -0,0 +1,36 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+/**
+ * Thrown to indicate an error of the cryptographic operation itself, for
+ * example invalid padding of the decrypted data or an unsupported algorithm.
+ * 
+ * @author Mirna Baksa
+ */
+public class CryptoException extends RuntimeException {
+	/**
+	 * Default serialization version.
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Constructs a CryptoException with a message.
+	 * 
+	 * @param message
+	 *            the detail message
+	 */
+	public CryptoException(String message) {
+		super(message);
+	}
+
+	/**
+	 * Constructs a CryptoException with a message and a cause.
+	 * 
+	 * @param message
+	 *            the detail message
+	 * @param cause
+	 *            the cause of the exception
+	 */
+	public CryptoException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
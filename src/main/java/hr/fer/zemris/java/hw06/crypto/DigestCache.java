@@ -0,0 +1,331 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent cache of SHA-256 file digests.
+ * <p>
+ * Each entry is keyed by the file key (device and inode on Unix systems, or
+ * the absolute path where the file system has no file keys) and remembers the
+ * size and the last-modified time of the file when it was digested. A cached
+ * digest is returned only if both still match, so unchanged files are never
+ * read again, while any write to a file makes its entry stale.
+ * <p>
+ * A file modified within {@value #RACY_WINDOW_MILLIS} ms before it was
+ * digested is not cached, since a further modification in the same time
+ * granule would not change its last-modified time.
+ * <p>
+ * Since the entries are keyed by file keys, the cache can not tell which of
+ * them belong to deleted files. Instead it holds at most
+ * {@value #DEFAULT_CAPACITY} entries: a stale entry is dropped as soon as its
+ * file is digested again, and on {@link #save()} only the most recently used
+ * entries are kept, so the entries of files which are gone age out.
+ * <p>
+ * The cache is stored in a compact text file with one line per entry:
+ * <code>key size mtime digest</code>, separated by tabs, the most recently
+ * used entry first. The default location
+ * is <code>.hw06-digest-cache</code> in the user's home directory, which can
+ * be changed by the <code>hw06.digestcache</code> system property. The cache
+ * can be used from multiple threads at once.
+ *
+ * @author Mirna Baksa
+ *
+ */
+public class DigestCache {
+	/** System property which overrides the default cache location. **/
+	public static final String LOCATION_PROPERTY = "hw06.digestcache";
+	/** Files modified this recently are not cached. **/
+	private static final long RACY_WINDOW_MILLIS = 2000;
+	/** Default maximum number of entries. **/
+	static final int DEFAULT_CAPACITY = 65536;
+
+	/** Path of the cache file. **/
+	private final Path location;
+	/** Maximum number of entries kept on save. **/
+	private final int capacity;
+	/** Source of the use stamps; loaded entries have negative stamps. **/
+	private final AtomicLong clock = new AtomicLong();
+	/** Cached entries by file key. **/
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	/** Whether the cache was modified since it was loaded. **/
+	private volatile boolean modified;
+
+	/**
+	 * Constructs a new, empty cache stored at the given location.
+	 *
+	 * @param location
+	 *            path of the cache file
+	 * @param capacity
+	 *            maximum number of entries kept on save
+	 */
+	private DigestCache(Path location, int capacity) {
+		this.location = location;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Opens the cache at the default location.
+	 *
+	 * @return opened cache
+	 * @see #open(Path)
+	 */
+	public static DigestCache open() {
+		String property = System.getProperty(LOCATION_PROPERTY);
+		Path location = property != null ? Paths.get(property)
+				: Paths.get(System.getProperty("user.home"), ".hw06-digest-cache");
+		return open(location);
+	}
+
+	/**
+	 * Opens the cache stored at the given location. If the file does not exist
+	 * or can not be read, the cache starts empty.
+	 *
+	 * @param location
+	 *            path of the cache file
+	 * @return opened cache
+	 */
+	public static DigestCache open(Path location) {
+		return open(location, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Opens the cache stored at the given location, keeping at most the given
+	 * number of entries.
+	 *
+	 * @param location
+	 *            path of the cache file
+	 * @param capacity
+	 *            maximum number of entries kept on save
+	 * @return opened cache
+	 * @see #open(Path)
+	 */
+	static DigestCache open(Path location, int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be positive.");
+		}
+		DigestCache cache = new DigestCache(location, capacity);
+		try (BufferedReader reader = Files.newBufferedReader(location, StandardCharsets.UTF_8)) {
+			String line;
+			long used = 0;
+			while ((line = reader.readLine()) != null) {
+				String[] parts = line.split("\t");
+				if (parts.length != 4) {
+					continue;
+				}
+				try {
+					cache.entries.put(parts[0], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]),
+							Util.hexToByte(parts[3]), --used));
+				} catch (IllegalArgumentException ex) {
+					continue;
+				}
+			}
+		} catch (IOException ex) {
+			cache.entries.clear();
+		}
+		return cache;
+	}
+
+	/**
+	 * Returns the SHA-256 digest of the file - from the cache if the file did
+	 * not change since it was cached, otherwise by digesting the file and
+	 * caching the result.
+	 *
+	 * @param file
+	 *            path of the file
+	 * @return digest of the file
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public byte[] digest(Path file) throws IOException {
+		return digest(file, null);
+	}
+
+	/**
+	 * Returns the SHA-256 digest of the file, reporting the read data to the
+	 * progress. A cached digest is reported as skipped data.
+	 *
+	 * @param file
+	 *            path of the file
+	 * @param progress
+	 *            progress of the operation, or <code>null</code>
+	 * @return digest of the file
+	 * @throws IOException
+	 *             in case of an I/O error
+	 * @see #digest(Path)
+	 */
+	public byte[] digest(Path file, Progress progress) throws IOException {
+		BasicFileAttributes before = Files.readAttributes(file, BasicFileAttributes.class);
+		String key = keyOf(file, before);
+		long modifiedTime = before.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+
+		Entry entry = entries.get(key);
+		if (entry != null && entry.size == before.size() && entry.modifiedTime == modifiedTime) {
+			entry.used = clock.incrementAndGet();
+			if (progress != null) {
+				progress.skip(entry.size);
+			}
+			return entry.digest.clone();
+		}
+		if (entry != null && entries.remove(key, entry)) {
+			modified = true;
+		}
+
+		long start = System.currentTimeMillis();
+		byte[] digest = CryptoEngine.digest(file, progress);
+
+		BasicFileAttributes after = Files.readAttributes(file, BasicFileAttributes.class);
+		boolean unchanged = after.size() == before.size()
+				&& after.lastModifiedTime().to(TimeUnit.NANOSECONDS) == modifiedTime;
+		boolean racy = start - before.lastModifiedTime().toMillis() < RACY_WINDOW_MILLIS;
+		if (unchanged && !racy) {
+			entries.put(key, new Entry(before.size(), modifiedTime, digest.clone(), clock.incrementAndGet()));
+			modified = true;
+		}
+
+		return digest;
+	}
+
+	/**
+	 * Removes the cached digest of the file.
+	 *
+	 * @param file
+	 *            path of the file
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public void invalidate(Path file) throws IOException {
+		String key;
+		try {
+			key = keyOf(file, Files.readAttributes(file, BasicFileAttributes.class));
+		} catch (NoSuchFileException ex) {
+			key = file.toAbsolutePath().normalize().toString();
+		}
+		if (entries.remove(key) != null) {
+			modified = true;
+		}
+	}
+
+	/**
+	 * Removes all the cached digests.
+	 */
+	public void clear() {
+		entries.clear();
+		modified = true;
+	}
+
+	/**
+	 * Returns the number of cached digests.
+	 *
+	 * @return number of cached digests
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	/**
+	 * Writes the cache to its location, if it was modified. Only the
+	 * {@value #DEFAULT_CAPACITY} most recently used entries are kept, the rest
+	 * is removed. The file is replaced atomically where the file system
+	 * supports it, so a concurrent reader never sees a partially written
+	 * cache.
+	 *
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public void save() throws IOException {
+		if (!modified) {
+			return;
+		}
+
+		List<Map.Entry<String, Entry>> sorted = new ArrayList<>(entries.entrySet());
+		sorted.sort((first, second) -> Long.compare(second.getValue().used, first.getValue().used));
+		if (sorted.size() > capacity) {
+			for (Map.Entry<String, Entry> e : sorted.subList(capacity, sorted.size())) {
+				entries.remove(e.getKey(), e.getValue());
+			}
+			sorted = sorted.subList(0, capacity);
+		}
+
+		Path parent = location.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(parent, ".digest-cache", ".tmp");
+		try {
+			try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+				for (Map.Entry<String, Entry> e : sorted) {
+					Entry entry = e.getValue();
+					writer.write(e.getKey() + "\t" + entry.size + "\t" + entry.modifiedTime + "\t"
+							+ Util.byteToHex(entry.digest) + "\n");
+				}
+			}
+			Files.move(temporary, location, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+		modified = false;
+	}
+
+	/**
+	 * Returns the cache key of the file - its file key, or its absolute path
+	 * if the file system does not provide file keys.
+	 *
+	 * @param file
+	 *            path of the file
+	 * @param attributes
+	 *            attributes of the file
+	 * @return cache key
+	 */
+	private static String keyOf(Path file, BasicFileAttributes attributes) {
+		Object fileKey = attributes.fileKey();
+		return fileKey != null ? fileKey.toString() : file.toAbsolutePath().normalize().toString();
+	}
+
+	/**
+	 * A single cached digest.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class Entry {
+		/** Size of the file when it was digested. **/
+		private final long size;
+		/** Last-modified time of the file when it was digested, in ns. **/
+		private final long modifiedTime;
+		/** Digest of the file. **/
+		private final byte[] digest;
+		/** Stamp of the last use; a greater stamp is a more recent use. **/
+		private volatile long used;
+
+		/**
+		 * Constructs a new entry.
+		 *
+		 * @param size
+		 *            size of the file
+		 * @param modifiedTime
+		 *            last-modified time of the file, in ns
+		 * @param digest
+		 *            digest of the file
+		 * @param used
+		 *            stamp of the last use
+		 */
+		Entry(long size, long modifiedTime, byte[] digest, long used) {
+			this.size = size;
+			this.modifiedTime = modifiedTime;
+			this.digest = digest;
+			this.used = used;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Constants and helper methods of the framed AES-GCM container format shared by
+ * the {@link FramedGcmWriter} and the {@link FramedGcmReader}.
+ * <p>
+ * The container is consisted of:
+ * <ul>
+ * <li>header - magic <code>HW6F</code>, format version (1 byte), plaintext
+ * frame size (4 bytes), random nonce prefix (8 bytes) and plaintext length (8
+ * bytes)</li>
+ * <li>frames - each frame holds up to frame size bytes of plaintext, sealed
+ * independently with AES-GCM and followed by its 16-byte authentication
+ * tag</li>
+ * <li>index - offsets and lengths of all the frames, also sealed with
+ * AES-GCM</li>
+ * <li>trailer - offset of the index (8 bytes) and magic <code>HW6I</code></li>
+ * </ul>
+ * The nonce of the frame with index <code>i</code> is the nonce prefix followed
+ * by <code>i</code> as a 4-byte big-endian number; the index uses
+ * {@value #INDEX_NONCE}. The whole header is authenticated as additional data
+ * of every frame and of the index, so a frame can not be moved to another
+ * position or container, and truncation is detected through the plaintext
+ * length.
+ *
+ * @author Mirna Baksa
+ *
+ */
+final class FramedGcmFormat {
+	/** Magic number at the beginning of the container. **/
+	static final int MAGIC = 0x48573646;
+	/** Magic number at the end of the container. **/
+	static final int TRAILER_MAGIC = 0x48573649;
+	/** Version of the format. **/
+	static final byte VERSION = 1;
+	/** Size of the header in bytes. **/
+	static final int HEADER_SIZE = 4 + 1 + 4 + 8 + 8;
+	/** Size of the trailer in bytes. **/
+	static final int TRAILER_SIZE = 8 + 4;
+	/** Size of the authentication tag in bytes. **/
+	static final int TAG_SIZE = 16;
+	/** Size of the nonce prefix in bytes. **/
+	static final int NONCE_PREFIX_SIZE = 8;
+	/** Nonce suffix used for the index. **/
+	static final int INDEX_NONCE = 0xFFFFFFFF;
+	/** Size of a single index entry in bytes - offset and length. **/
+	static final int INDEX_ENTRY_SIZE = 8 + 4;
+	/** Default plaintext frame size. **/
+	static final int DEFAULT_FRAME_SIZE = 64 * 1024;
+
+	/**
+	 * Disables instantiation.
+	 */
+	private FramedGcmFormat() {
+	}
+
+	/**
+	 * Encodes the header.
+	 *
+	 * @param frameSize
+	 *            plaintext frame size
+	 * @param noncePrefix
+	 *            nonce prefix
+	 * @param plaintextLength
+	 *            length of the plaintext
+	 * @return encoded header
+	 */
+	static byte[] encodeHeader(int frameSize, byte[] noncePrefix, long plaintextLength) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putInt(MAGIC).put(VERSION).putInt(frameSize).put(noncePrefix).putLong(plaintextLength);
+		return header.array();
+	}
+
+	/**
+	 * Returns the number of frames needed for the plaintext of the given
+	 * length.
+	 *
+	 * @param plaintextLength
+	 *            length of the plaintext
+	 * @param frameSize
+	 *            plaintext frame size
+	 * @return number of frames
+	 * @throws IOException
+	 *             if the number of frames exceeds the limit of the format
+	 */
+	static int frameCount(long plaintextLength, int frameSize) throws IOException {
+		long count = (plaintextLength + frameSize - 1) / frameSize;
+		if (count > (Integer.MAX_VALUE - 4 - TAG_SIZE) / INDEX_ENTRY_SIZE) {
+			throw new IOException("The file is too large for the given frame size.");
+		}
+		return (int) count;
+	}
+
+	/**
+	 * Returns the cipher of the current thread, initialized for the frame with
+	 * the given nonce suffix.
+	 *
+	 * @param mode
+	 *            {@link Cipher#ENCRYPT_MODE} or {@link Cipher#DECRYPT_MODE}
+	 * @param key
+	 *            encryption key
+	 * @param header
+	 *            encoded header, used as additional authenticated data
+	 * @param noncePrefix
+	 *            nonce prefix
+	 * @param nonceSuffix
+	 *            index of the frame or {@value #INDEX_NONCE}
+	 * @return initialized cipher
+	 * @throws GeneralSecurityException
+	 *             in case of a cipher initialization error
+	 */
+	static Cipher initCipher(int mode, SecretKeySpec key, byte[] header, byte[] noncePrefix, int nonceSuffix)
+			throws GeneralSecurityException {
+		byte[] nonce = ByteBuffer.allocate(NONCE_PREFIX_SIZE + 4).put(noncePrefix).putInt(nonceSuffix).array();
+		Cipher cipher = CryptoEngine.threadCipher("AES/GCM/NoPadding");
+		cipher.init(mode, key, new GCMParameterSpec(TAG_SIZE * 8, nonce));
+		cipher.updateAAD(header);
+		return cipher;
+	}
+}
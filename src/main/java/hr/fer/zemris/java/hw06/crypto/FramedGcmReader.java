@@ -0,0 +1,289 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static hr.fer.zemris.java.hw06.crypto.FramedGcmFormat.*;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Reads a container in the framed AES-GCM format described in
+ * {@link FramedGcmFormat}.
+ * <p>
+ * The reader decrypts only the frames needed for the requested range of the
+ * plaintext, so a small part of a large container can be retrieved without
+ * decrypting the whole container. All the frames can also be verified in
+ * parallel, reporting exactly which frames were modified.
+ * <p>
+ * The header and the index are authenticated when the reader is opened. If
+ * any of them was modified, or a wrong key was given, an {@link IOException}
+ * is thrown.
+ *
+ * @author Mirna Baksa
+ *
+ * @see FramedGcmWriter
+ */
+public class FramedGcmReader implements Closeable {
+	/** Channel of the container. **/
+	private final FileChannel channel;
+	/** Decryption key. **/
+	private final SecretKeySpec key;
+	/** Encoded header. **/
+	private final byte[] header;
+	/** Plaintext frame size. **/
+	private final int frameSize;
+	/** Nonce prefix. **/
+	private final byte[] noncePrefix;
+	/** Length of the plaintext. **/
+	private final long plaintextLength;
+	/** Offsets of the frames in the container. **/
+	private final long[] frameOffsets;
+	/** Lengths of the frames in the container, including the tag. **/
+	private final int[] frameLengths;
+
+	/**
+	 * Opens the container and authenticates its header and index.
+	 *
+	 * @param container
+	 *            path of the container
+	 * @param key
+	 *            128, 192 or 256-bit key
+	 * @throws IOException
+	 *             if the container can not be read, is not properly formatted
+	 *             or fails the integrity check
+	 */
+	public FramedGcmReader(Path container, byte[] key) throws IOException {
+		this.channel = FileChannel.open(container, StandardOpenOption.READ);
+		this.key = new SecretKeySpec(key, "AES");
+
+		try {
+			long size = channel.size();
+			if (size < HEADER_SIZE + TRAILER_SIZE) {
+				throw new IOException("The file is not a framed container.");
+			}
+
+			ByteBuffer headerBuffer = readFully(0, HEADER_SIZE);
+			this.header = headerBuffer.array().clone();
+			if (headerBuffer.getInt() != MAGIC || headerBuffer.get() != VERSION) {
+				throw new IOException("The file is not a framed container.");
+			}
+			this.frameSize = headerBuffer.getInt();
+			this.noncePrefix = new byte[NONCE_PREFIX_SIZE];
+			headerBuffer.get(noncePrefix);
+			this.plaintextLength = headerBuffer.getLong();
+			if (frameSize < 1 || plaintextLength < 0) {
+				throw new IOException("The container header is corrupted.");
+			}
+
+			ByteBuffer trailer = readFully(size - TRAILER_SIZE, TRAILER_SIZE);
+			long indexOffset = trailer.getLong();
+			if (trailer.getInt() != TRAILER_MAGIC || indexOffset < HEADER_SIZE
+					|| size - TRAILER_SIZE - indexOffset > Integer.MAX_VALUE
+					|| size - TRAILER_SIZE - indexOffset < TAG_SIZE + 4) {
+				throw new IOException("The container trailer is corrupted.");
+			}
+
+			ByteBuffer index = decrypt(INDEX_NONCE, indexOffset, (int) (size - TRAILER_SIZE - indexOffset));
+			int frames = index.getInt();
+			if (frames != FramedGcmFormat.frameCount(plaintextLength, frameSize) || index.remaining() != frames * INDEX_ENTRY_SIZE) {
+				throw new IOException("The container index is corrupted.");
+			}
+
+			this.frameOffsets = new long[frames];
+			this.frameLengths = new int[frames];
+			for (int i = 0; i < frames; i++) {
+				frameOffsets[i] = index.getLong();
+				frameLengths[i] = index.getInt();
+			}
+		} catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Returns the length of the plaintext stored in the container.
+	 *
+	 * @return length of the plaintext
+	 */
+	public long length() {
+		return plaintextLength;
+	}
+
+	/**
+	 * Returns the number of frames in the container.
+	 *
+	 * @return number of frames
+	 */
+	public int frameCount() {
+		return frameOffsets.length;
+	}
+
+	/**
+	 * Decrypts the given range of the plaintext and writes it to the output.
+	 * Only the frames overlapping the range are read and decrypted.
+	 *
+	 * @param offset
+	 *            offset of the first plaintext byte
+	 * @param length
+	 *            number of bytes to decrypt
+	 * @param output
+	 *            channel where the plaintext is written
+	 * @throws IOException
+	 *             in case of an I/O error, if the range is out of bounds or if
+	 *             a frame fails the integrity check
+	 */
+	public void decrypt(long offset, long length, WritableByteChannel output) throws IOException {
+		if (offset < 0 || length < 0 || offset + length > plaintextLength) {
+			throw new IOException("The range " + offset + "+" + length + " is out of bounds. Plaintext length is "
+					+ plaintextLength + ".");
+		}
+		if (length == 0) {
+			return;
+		}
+
+		int first = (int) (offset / frameSize);
+		int last = (int) ((offset + length - 1) / frameSize);
+		for (int i = first; i <= last; i++) {
+			ByteBuffer plaintext = decryptFrame(i);
+			long frameStart = (long) i * frameSize;
+			int from = (int) Math.max(0, offset - frameStart);
+			int to = (int) Math.min(plaintext.limit(), offset + length - frameStart);
+			plaintext.limit(to).position(from);
+
+			while (plaintext.hasRemaining()) {
+				output.write(plaintext);
+			}
+		}
+	}
+
+	/**
+	 * Decrypts the whole plaintext and writes it to the output.
+	 *
+	 * @param output
+	 *            channel where the plaintext is written
+	 * @throws IOException
+	 *             in case of an I/O error or if a frame fails the integrity
+	 *             check
+	 */
+	public void decryptAll(WritableByteChannel output) throws IOException {
+		decrypt(0, plaintextLength, output);
+	}
+
+	/**
+	 * Verifies the integrity of all the frames in parallel.
+	 *
+	 * @return sorted indexes of the frames which failed the integrity check,
+	 *         empty if the container is intact
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public List<Integer> verify() throws IOException {
+		boolean[] failed = new boolean[frameOffsets.length];
+		try {
+			IntStream.range(0, frameOffsets.length).parallel().forEach(i -> {
+				try {
+					decryptFrame(i);
+				} catch (IOException ex) {
+					if (!(ex.getCause() instanceof AEADBadTagException)) {
+						throw new UncheckedIOException(ex);
+					}
+					failed[i] = true;
+				}
+			});
+		} catch (UncheckedIOException ex) {
+			throw ex.getCause();
+		}
+
+		return IntStream.range(0, failed.length).filter(i -> failed[i]).boxed().collect(Collectors.toList());
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Reads and decrypts the frame with the given index.
+	 *
+	 * @param frame
+	 *            index of the frame
+	 * @return decrypted frame, flipped
+	 * @throws IOException
+	 *             in case of an I/O error or if the frame fails the integrity
+	 *             check
+	 */
+	private ByteBuffer decryptFrame(int frame) throws IOException {
+		long expectedSize = Math.min(frameSize, plaintextLength - (long) frame * frameSize) + TAG_SIZE;
+		if (frameLengths[frame] != expectedSize) {
+			throw new IOException("The container index is corrupted.");
+		}
+		return decrypt(frame, frameOffsets[frame], frameLengths[frame]);
+	}
+
+	/**
+	 * Reads and decrypts a sealed block of the container.
+	 *
+	 * @param nonceSuffix
+	 *            index of the frame or {@link FramedGcmFormat#INDEX_NONCE}
+	 * @param position
+	 *            position of the block
+	 * @param length
+	 *            length of the block, including the tag
+	 * @return decrypted block, flipped
+	 * @throws IOException
+	 *             in case of an I/O error or if the block fails the integrity
+	 *             check; in the latter case the cause is an
+	 *             {@link AEADBadTagException}
+	 */
+	private ByteBuffer decrypt(int nonceSuffix, long position, int length) throws IOException {
+		ByteBuffer sealed = readFully(position, length);
+		try {
+			Cipher cipher = initCipher(Cipher.DECRYPT_MODE, key, header, noncePrefix, nonceSuffix);
+			ByteBuffer plaintext = ByteBuffer.allocate(Math.max(0, length - TAG_SIZE));
+			cipher.doFinal(sealed, plaintext);
+			plaintext.flip();
+			return plaintext;
+		} catch (AEADBadTagException ex) {
+			String block = nonceSuffix == INDEX_NONCE ? "The container index" : "Frame " + nonceSuffix;
+			throw new IOException(block + " failed the integrity check.", ex);
+		} catch (GeneralSecurityException ex) {
+			throw new IOException("Cipher error occured.", ex);
+		}
+	}
+
+	/**
+	 * Reads the given number of bytes from the given position of the container.
+	 *
+	 * @param position
+	 *            position to read from
+	 * @param length
+	 *            number of bytes to read
+	 * @return read bytes, flipped
+	 * @throws IOException
+	 *             in case of an I/O error or unexpected end of file
+	 */
+	private ByteBuffer readFully(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) == -1) {
+				throw new IOException("Unexpected end of file.");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
@@ -0,0 +1,133 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static hr.fer.zemris.java.hw06.crypto.FramedGcmFormat.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts a file into the framed AES-GCM container format described in
+ * {@link FramedGcmFormat}.
+ * <p>
+ * Unlike the raw CBC output of {@link Crypto}, every frame of the container is
+ * authenticated, so any modification of the encrypted file is detected, and
+ * any part of the file can later be decrypted without processing the whole
+ * file.
+ *
+ * @author Mirna Baksa
+ *
+ * @see FramedGcmReader
+ */
+public class FramedGcmWriter {
+	/** Encryption key. **/
+	private final SecretKeySpec key;
+	/** Plaintext frame size. **/
+	private final int frameSize;
+
+	/**
+	 * Constructs a new writer which uses the default frame size of 64 KiB.
+	 *
+	 * @param key
+	 *            128, 192 or 256-bit key
+	 */
+	public FramedGcmWriter(byte[] key) {
+		this(key, DEFAULT_FRAME_SIZE);
+	}
+
+	/**
+	 * Constructs a new writer.
+	 *
+	 * @param key
+	 *            128, 192 or 256-bit key
+	 * @param frameSize
+	 *            plaintext frame size, must be positive
+	 */
+	public FramedGcmWriter(byte[] key, int frameSize) {
+		if (frameSize < 1) {
+			throw new IllegalArgumentException("The frame size must be positive. Was: " + frameSize);
+		}
+		this.key = new SecretKeySpec(key, "AES");
+		this.frameSize = frameSize;
+	}
+
+	/**
+	 * Encrypts the original file into a container. The output file is created
+	 * if it does not exist and truncated if it does.
+	 *
+	 * @param original
+	 *            path of the original file
+	 * @param output
+	 *            path of the container
+	 * @throws IOException
+	 *             in case of an I/O error
+	 * @throws GeneralSecurityException
+	 *             in case of a cipher error
+	 */
+	public void encrypt(Path original, Path output) throws IOException, GeneralSecurityException {
+		byte[] noncePrefix = new byte[NONCE_PREFIX_SIZE];
+		new SecureRandom().nextBytes(noncePrefix);
+
+		try (FileChannel input = FileChannel.open(original, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			long plaintextLength = input.size();
+			int frames = frameCount(plaintextLength, frameSize);
+			byte[] header = encodeHeader(frameSize, noncePrefix, plaintextLength);
+			writeFully(ByteBuffer.wrap(header), out);
+
+			ByteBuffer index = ByteBuffer.allocate(4 + frames * INDEX_ENTRY_SIZE);
+			index.putInt(frames);
+
+			ByteBuffer inputBuffer = ByteBuffer.allocateDirect(frameSize);
+			ByteBuffer outputBuffer = ByteBuffer.allocateDirect(frameSize + TAG_SIZE);
+			for (int i = 0; i < frames; i++) {
+				inputBuffer.clear();
+				while (inputBuffer.hasRemaining()) {
+					if (input.read(inputBuffer) == -1) {
+						break;
+					}
+				}
+				inputBuffer.flip();
+
+				Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, key, header, noncePrefix, i);
+				outputBuffer.clear();
+				cipher.doFinal(inputBuffer, outputBuffer);
+				outputBuffer.flip();
+
+				index.putLong(out.position()).putInt(outputBuffer.remaining());
+				writeFully(outputBuffer, out);
+			}
+
+			long indexOffset = out.position();
+			Cipher cipher = initCipher(Cipher.ENCRYPT_MODE, key, header, noncePrefix, INDEX_NONCE);
+			writeFully(ByteBuffer.wrap(cipher.doFinal(index.array())), out);
+			ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE).putLong(indexOffset).putInt(TRAILER_MAGIC);
+			trailer.flip();
+			writeFully(trailer, out);
+		}
+	}
+
+	/**
+	 * Writes all the remaining content of the buffer to the channel.
+	 *
+	 * @param buffer
+	 *            buffer to write, flipped
+	 * @param channel
+	 *            channel to write to
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	private static void writeFully(ByteBuffer buffer, FileChannel channel) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Input stream which reads hexadecimal characters from the underlying reader
+ * and returns the bytes they represent.
+ * <p>
+ * Both upper and lower case letters are allowed. Whitespace between the
+ * characters (for example, line breaks of a wrapped hex dump) is ignored.
+ * Characters are read in batches into an internal buffer, so arbitrarily large
+ * input can be decoded in constant memory.
+ * <p>
+ * If the input contains a character which is not a hexadecimal digit, or ends
+ * with an odd number of digits, an {@link IOException} is thrown.
+ *
+ * @author Mirna Baksa
+ *
+ * @see HexEncoder
+ */
+public class HexDecoder extends InputStream {
+	/** Default number of buffered characters. **/
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** Reader from where the characters are read. **/
+	private final Reader reader;
+	/** Buffered characters. **/
+	private final char[] buffer;
+	/** Position of the next buffered character. **/
+	private int position;
+	/** Number of buffered characters. **/
+	private int limit;
+	/** Number of characters read so far, used for error messages. **/
+	private long consumed;
+
+	/**
+	 * Constructs a new decoder which reads from the given reader.
+	 *
+	 * @param reader
+	 *            reader from where the characters are read
+	 */
+	public HexDecoder(Reader reader) {
+		this(reader, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructs a new decoder which buffers at most the given number of
+	 * characters.
+	 *
+	 * @param reader
+	 *            reader from where the characters are read
+	 * @param bufferSize
+	 *            number of buffered characters, must be positive
+	 */
+	public HexDecoder(Reader reader, int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("The buffer size must be positive. Was: " + bufferSize);
+		}
+		this.reader = reader;
+		this.buffer = new char[bufferSize];
+	}
+
+	@Override
+	public int read() throws IOException {
+		int high = nextDigit();
+		if (high == -1) {
+			return -1;
+		}
+		return (high << 4) | lowDigit();
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+
+		int n = 0;
+		while (n < len) {
+			int high = nextDigit();
+			if (high == -1) {
+				break;
+			}
+			b[off + n++] = (byte) ((high << 4) | lowDigit());
+
+			if (position == limit) {
+				break;
+			}
+		}
+
+		return n == 0 ? -1 : n;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	/**
+	 * Returns the digit which must follow an already read digit.
+	 *
+	 * @return value of the digit
+	 * @throws IOException
+	 *             if the input ended with an odd number of digits
+	 */
+	private int lowDigit() throws IOException {
+		int low = nextDigit();
+		if (low == -1) {
+			throw new IOException("The input was odd - sized.");
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the value of the next hexadecimal digit, skipping whitespace.
+	 *
+	 * @return value of the digit or <code>-1</code> at the end of the input
+	 * @throws IOException
+	 *             in case of an I/O error or an invalid character
+	 */
+	private int nextDigit() throws IOException {
+		while (true) {
+			if (position == limit) {
+				limit = reader.read(buffer, 0, buffer.length);
+				position = 0;
+				if (limit == -1) {
+					limit = 0;
+					return -1;
+				}
+			}
+
+			char c = buffer[position++];
+			consumed++;
+			int digit = Util.digit(c);
+			if (digit != -1) {
+				return digit;
+			}
+			if (!Character.isWhitespace(c)) {
+				throw new IOException("The input had an invalid character '" + c + "' at position " + (consumed - 1) + ".");
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * Output stream which encodes all the bytes written to it into hexadecimal
+ * characters, in lower case, and writes them to the underlying writer.
+ * <p>
+ * The characters are collected in an internal buffer and passed to the writer
+ * in batches, so arbitrarily large input can be encoded in constant memory.
+ *
+ * @author Mirna Baksa
+ *
+ * @see HexDecoder
+ */
+public class HexEncoder extends OutputStream {
+	/** Default number of buffered characters. **/
+	private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+	/** Writer where the characters are written. **/
+	private final Writer writer;
+	/** Buffered characters. **/
+	private final char[] buffer;
+	/** Number of buffered characters. **/
+	private int count;
+
+	/**
+	 * Constructs a new encoder which writes to the given writer.
+	 *
+	 * @param writer
+	 *            writer where the characters are written
+	 */
+	public HexEncoder(Writer writer) {
+		this(writer, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructs a new encoder which buffers at most the given number of
+	 * characters.
+	 *
+	 * @param writer
+	 *            writer where the characters are written
+	 * @param bufferSize
+	 *            number of buffered characters, at least 2
+	 */
+	public HexEncoder(Writer writer, int bufferSize) {
+		if (bufferSize < 2) {
+			throw new IllegalArgumentException("The buffer size must be at least 2. Was: " + bufferSize);
+		}
+		this.writer = writer;
+		this.buffer = new char[bufferSize & ~1];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		if (count == buffer.length) {
+			flushBuffer();
+		}
+		buffer[count++] = Character.forDigit((b & 0xF0) >>> 4, 16);
+		buffer[count++] = Character.forDigit(b & 0x0F, 16);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (count == buffer.length) {
+				flushBuffer();
+			}
+			int chunk = Math.min(len, (buffer.length - count) / 2);
+			Util.byteToHex(b, off, chunk, buffer, count);
+			count += chunk * 2;
+			off += chunk;
+			len -= chunk;
+		}
+	}
+
+	@Override
+	public void flush() throws IOException {
+		flushBuffer();
+		writer.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		flushBuffer();
+		writer.close();
+	}
+
+	/**
+	 * Writes the buffered characters to the writer.
+	 *
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			writer.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+}
@@ -0,0 +1,360 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * SHA-256 tree hash (Merkle tree) of a file.
+ * <p>
+ * The file is split into fixed-size blocks. Each block is digested separately
+ * - in parallel - into a leaf, and pairs of digests are combined level by
+ * level into a single root digest. A leaf is the digest of the byte
+ * <code>0x00</code> followed by the block, and an inner node is the digest of
+ * the byte <code>0x01</code> followed by its two children, so a leaf can never
+ * be mistaken for an inner node. A node without a pair is promoted to the
+ * next level unchanged.
+ * <p>
+ * The leaves are stored in a sidecar file next to the original, so a later
+ * check can locate exactly which blocks changed, and a file which was only
+ * appended to can be re-hashed from its last block onwards.
+ * <p>
+ * The sidecar is a text file: the first line is
+ * <code>sha256-tree blockSize length</code>, followed by one hex-encoded leaf
+ * per line and the line <code>root digest</code>.
+ *
+ * @author Mirna Baksa
+ *
+ */
+public class MerkleTree {
+	/** Default block size. **/
+	public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+	/** Extension of the sidecar file. **/
+	public static final String SIDECAR_EXTENSION = ".sha256tree";
+	/** First word of the sidecar file. **/
+	private static final String SIDECAR_MAGIC = "sha256-tree";
+
+	/** Block buffer of the current thread. **/
+	private static final ThreadLocal<ByteBuffer> BUFFER = new ThreadLocal<>();
+
+	/** Size of a block. **/
+	private final int blockSize;
+	/** Length of the file. **/
+	private final long length;
+	/** Leaf digests. **/
+	private final byte[][] leaves;
+
+	/**
+	 * Constructs a new tree.
+	 *
+	 * @param blockSize
+	 *            size of a block
+	 * @param length
+	 *            length of the file
+	 * @param leaves
+	 *            leaf digests
+	 */
+	private MerkleTree(int blockSize, long length, byte[][] leaves) {
+		this.blockSize = blockSize;
+		this.length = length;
+		this.leaves = leaves;
+	}
+
+	/**
+	 * Builds the tree of the file, digesting the blocks in parallel.
+	 *
+	 * @param file
+	 *            path of the file
+	 * @param blockSize
+	 *            size of a block, must be positive
+	 * @return tree of the file
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public static MerkleTree build(Path file, int blockSize) throws IOException {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("The block size must be positive. Was: " + blockSize);
+		}
+		return hash(file, blockSize, new byte[0][], 0);
+	}
+
+	/**
+	 * Re-hashes a file which was appended to since this tree was built. All
+	 * the leaves before the last block of this tree are reused, so only the
+	 * appended data and the last (possibly partial) block are read.
+	 * <p>
+	 * The method assumes that the original content was not modified; use
+	 * {@link #diff(MerkleTree)} against a full {@link #build(Path, int)} to
+	 * detect modifications.
+	 *
+	 * @param file
+	 *            path of the file
+	 * @return tree of the appended file
+	 * @throws IOException
+	 *             in case of an I/O error or if the file is shorter than when
+	 *             this tree was built
+	 */
+	public MerkleTree append(Path file) throws IOException {
+		int reused = (int) (length / blockSize);
+		return hash(file, blockSize, Arrays.copyOf(leaves, reused), length);
+	}
+
+	/**
+	 * Digests the blocks of the file which are not covered by the given
+	 * leaves.
+	 *
+	 * @param file
+	 *            path of the file
+	 * @param blockSize
+	 *            size of a block
+	 * @param reused
+	 *            leaves of the first blocks, which are not read again
+	 * @param minimumLength
+	 *            minimum expected length of the file
+	 * @return tree of the file
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	private static MerkleTree hash(Path file, int blockSize, byte[][] reused, long minimumLength)
+			throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < minimumLength) {
+				throw new IOException("The file is shorter than when it was hashed.");
+			}
+
+			long count = (size + blockSize - 1) / blockSize;
+			if (count > Integer.MAX_VALUE - 8) {
+				throw new IOException("The file has too many blocks for the given block size.");
+			}
+
+			byte[][] leaves = Arrays.copyOf(reused, (int) count);
+			try {
+				IntStream.range(reused.length, leaves.length).parallel()
+						.forEach(i -> leaves[i] = leaf(channel, (long) i * blockSize, blockSize));
+			} catch (UncheckedIOException ex) {
+				throw ex.getCause();
+			}
+
+			return new MerkleTree(blockSize, size, leaves);
+		}
+	}
+
+	/**
+	 * Digests a single block of the file into a leaf.
+	 *
+	 * @param channel
+	 *            channel of the file
+	 * @param position
+	 *            position of the block
+	 * @param blockSize
+	 *            size of a block
+	 * @return leaf digest
+	 */
+	private static byte[] leaf(FileChannel channel, long position, int blockSize) {
+		ByteBuffer buffer = BUFFER.get();
+		if (buffer == null || buffer.capacity() < blockSize) {
+			buffer = ByteBuffer.allocate(blockSize);
+			BUFFER.set(buffer);
+		}
+
+		buffer.clear().limit(blockSize);
+		try {
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, position + buffer.position()) == -1) {
+					break;
+				}
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+		buffer.flip();
+
+		MessageDigest sha = CryptoEngine.threadDigest();
+		sha.update((byte) 0x00);
+		sha.update(buffer);
+		return sha.digest();
+	}
+
+	/**
+	 * Returns the root digest of the tree. The root of an empty file is the
+	 * digest of no data.
+	 *
+	 * @return root digest
+	 */
+	public byte[] root() {
+		if (leaves.length == 0) {
+			return CryptoEngine.digest(new byte[0]);
+		}
+
+		byte[][] level = leaves;
+		while (level.length > 1) {
+			byte[][] next = new byte[(level.length + 1) / 2][];
+			for (int i = 0; i < next.length; i++) {
+				if (2 * i + 1 == level.length) {
+					next[i] = level[2 * i];
+					continue;
+				}
+				MessageDigest sha = CryptoEngine.threadDigest();
+				sha.update((byte) 0x01);
+				sha.update(level[2 * i]);
+				sha.update(level[2 * i + 1]);
+				next[i] = sha.digest();
+			}
+			level = next;
+		}
+		return level[0].clone();
+	}
+
+	/**
+	 * Returns the indexes of the blocks which differ between this and the
+	 * other tree. Blocks present in only one of the trees are also reported.
+	 *
+	 * @param other
+	 *            tree to compare to
+	 * @return sorted indexes of the differing blocks
+	 * @throws IllegalArgumentException
+	 *             if the trees use different block sizes
+	 */
+	public List<Integer> diff(MerkleTree other) {
+		if (blockSize != other.blockSize) {
+			throw new IllegalArgumentException("The trees use different block sizes.");
+		}
+
+		List<Integer> result = new ArrayList<>();
+		for (int i = 0, n = Math.max(leaves.length, other.leaves.length); i < n; i++) {
+			if (i >= leaves.length || i >= other.leaves.length || !Arrays.equals(leaves[i], other.leaves[i])) {
+				result.add(i);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the size of a block.
+	 *
+	 * @return size of a block
+	 */
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Returns the length of the hashed file.
+	 *
+	 * @return length of the file
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * Returns the number of blocks.
+	 *
+	 * @return number of blocks
+	 */
+	public int getBlockCount() {
+		return leaves.length;
+	}
+
+	/**
+	 * Writes the tree to the sidecar file.
+	 *
+	 * @param sidecar
+	 *            path of the sidecar
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public void write(Path sidecar) throws IOException {
+		try (BufferedWriter writer = Files.newBufferedWriter(sidecar, StandardCharsets.UTF_8)) {
+			writer.write(SIDECAR_MAGIC + " " + blockSize + " " + length + "\n");
+			for (byte[] leaf : leaves) {
+				writer.write(Util.byteToHex(leaf));
+				writer.write('\n');
+			}
+			writer.write("root " + Util.byteToHex(root()) + "\n");
+		}
+	}
+
+	/**
+	 * Reads the tree from the sidecar file.
+	 *
+	 * @param sidecar
+	 *            path of the sidecar
+	 * @return read tree
+	 * @throws IOException
+	 *             in case of an I/O error or if the sidecar is not properly
+	 *             formatted or inconsistent
+	 */
+	public static MerkleTree read(Path sidecar) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(sidecar, StandardCharsets.UTF_8)) {
+			String[] header = String.valueOf(reader.readLine()).split(" ");
+			if (header.length != 3 || !header[0].equals(SIDECAR_MAGIC)) {
+				throw new IOException("The file is not a tree hash sidecar.");
+			}
+
+			int blockSize;
+			long length;
+			try {
+				blockSize = Integer.parseInt(header[1]);
+				length = Long.parseLong(header[2]);
+			} catch (NumberFormatException ex) {
+				throw new IOException("The sidecar header is corrupted.");
+			}
+			if (blockSize < 1 || length < 0) {
+				throw new IOException("The sidecar header is corrupted.");
+			}
+
+			long count = length / blockSize + (length % blockSize == 0 ? 0 : 1);
+			if (count > Integer.MAX_VALUE - 8) {
+				throw new IOException("The sidecar header is corrupted.");
+			}
+
+			// the header is not trusted with the allocation, the leaves are
+			// collected as they are read
+			List<byte[]> leaves = new ArrayList<>();
+			try {
+				for (long i = 0; i < count; i++) {
+					String line = reader.readLine();
+					if (line == null) {
+						throw new IOException("The sidecar leaves are truncated.");
+					}
+					leaves.add(Util.hexToByte(line));
+				}
+			} catch (IllegalArgumentException ex) {
+				throw new IOException("The sidecar leaves are corrupted.");
+			}
+
+			MerkleTree tree = new MerkleTree(blockSize, length, leaves.toArray(new byte[leaves.size()][]));
+			String root = reader.readLine();
+			if (root == null || !root.equals("root " + Util.byteToHex(tree.root()))) {
+				throw new IOException("The sidecar root does not match its leaves.");
+			}
+			return tree;
+		}
+	}
+
+	/**
+	 * Returns the path of the sidecar of the file - the path of the file with
+	 * the {@value #SIDECAR_EXTENSION} extension appended.
+	 *
+	 * @param file
+	 *            path of the file
+	 * @return path of the sidecar
+	 */
+	public static Path sidecarOf(Path file) {
+		return file.resolveSibling(file.getFileName() + SIDECAR_EXTENSION);
+	}
+}
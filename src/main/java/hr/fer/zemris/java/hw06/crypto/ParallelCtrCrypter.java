@@ -0,0 +1,256 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Encrypts or decrypts a file with the AES crypto-algorithm in the counter
+ * (CTR) mode, using multiple threads.
+ * <p>
+ * In the counter mode each 16-byte block of the data is XOR-ed with the
+ * encrypted value of a counter, which starts at the initialization vector and
+ * is incremented by one for each block. The key stream of any block can
+ * therefore be computed independently of the preceding blocks. The file is
+ * split into fixed-size segments, the counter of each segment is derived from
+ * the initialization vector and the segments are processed in parallel on a
+ * {@link ForkJoinPool}. Each segment is written to its own position of the
+ * output, so the result is byte-identical to a single-threaded CTR pass.
+ * <p>
+ * Since encryption and decryption are the same operation in the counter mode,
+ * a single {@link #crypt(Path, Path)} method serves both.
+ *
+ * @author Mirna Baksa
+ *
+ */
+public class ParallelCtrCrypter {
+	/** Size of an AES block in bytes. **/
+	private static final int BLOCK_SIZE = 16;
+	/** Default size of a segment in bytes. **/
+	public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+
+	/** Encryption key. **/
+	private final SecretKeySpec key;
+	/** Initialization vector - the counter of the first block. **/
+	private final byte[] iv;
+	/** Size of a segment in bytes. **/
+	private final int segmentSize;
+	/** Pool on which the segments are processed. **/
+	private final ForkJoinPool pool;
+
+	/** Segment buffers used by the current thread. **/
+	private final ThreadLocal<ByteBuffer[]> buffers;
+
+	/**
+	 * Constructs a new crypter which uses the default segment size and the
+	 * common fork-join pool.
+	 *
+	 * @param key
+	 *            128, 192 or 256-bit key
+	 * @param iv
+	 *            16-byte initialization vector
+	 */
+	public ParallelCtrCrypter(byte[] key, byte[] iv) {
+		this(key, iv, DEFAULT_SEGMENT_SIZE, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs a new crypter.
+	 *
+	 * @param key
+	 *            128, 192 or 256-bit key
+	 * @param iv
+	 *            16-byte initialization vector
+	 * @param segmentSize
+	 *            size of a segment, must be a positive multiple of 16
+	 * @param pool
+	 *            pool on which the segments are processed
+	 */
+	public ParallelCtrCrypter(byte[] key, byte[] iv, int segmentSize, ForkJoinPool pool) {
+		if (iv.length != BLOCK_SIZE) {
+			throw new IllegalArgumentException("The initialization vector must be 16 bytes long.");
+		}
+		if (segmentSize < BLOCK_SIZE || segmentSize % BLOCK_SIZE != 0) {
+			throw new IllegalArgumentException("The segment size must be a positive multiple of 16. Was: " + segmentSize);
+		}
+
+		this.key = new SecretKeySpec(key, "AES");
+		this.iv = iv.clone();
+		this.segmentSize = segmentSize;
+		this.pool = pool;
+		this.buffers = ThreadLocal.withInitial(
+				() -> new ByteBuffer[] { ByteBuffer.allocateDirect(segmentSize), ByteBuffer.allocateDirect(segmentSize) });
+	}
+
+	/**
+	 * Encrypts or decrypts the original file, writing the result to the output
+	 * file. The output file is created if it does not exist and truncated if
+	 * it does.
+	 *
+	 * @param original
+	 *            path of the original file
+	 * @param output
+	 *            path of the output file
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public void crypt(Path original, Path output) throws IOException {
+		try (FileChannel input = FileChannel.open(original, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE,
+						StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			long size = input.size();
+			long segments = (size + segmentSize - 1) / segmentSize;
+
+			try {
+				pool.invoke(new SegmentTask(input, out, size, 0, segments));
+			} catch (UncheckedIOException ex) {
+				throw ex.getCause();
+			}
+		}
+	}
+
+	/**
+	 * Computes the counter of the block with the given index - the
+	 * initialization vector increased by the index, as a 128-bit big-endian
+	 * number.
+	 *
+	 * @param iv
+	 *            initialization vector
+	 * @param blockIndex
+	 *            index of the block
+	 * @return counter of the block
+	 */
+	static byte[] counterFor(byte[] iv, long blockIndex) {
+		byte[] counter = iv.clone();
+		long carry = blockIndex;
+
+		for (int i = counter.length - 1; i >= 0 && carry != 0; i--) {
+			long sum = (counter[i] & 0xFF) + (carry & 0xFF);
+			counter[i] = (byte) sum;
+			carry = (carry >>> 8) + (sum >>> 8);
+		}
+
+		return counter;
+	}
+
+	/**
+	 * Encrypts or decrypts a single segment.
+	 *
+	 * @param input
+	 *            channel of the original file
+	 * @param output
+	 *            channel of the output file
+	 * @param size
+	 *            size of the original file
+	 * @param segment
+	 *            index of the segment
+	 * @throws IOException
+	 *             in case of an I/O error
+	 * @throws GeneralSecurityException
+	 *             in case of a cipher error
+	 */
+	private void cryptSegment(FileChannel input, FileChannel output, long size, long segment)
+			throws IOException, GeneralSecurityException {
+		long position = segment * segmentSize;
+		int length = (int) Math.min(segmentSize, size - position);
+
+		ByteBuffer[] pair = buffers.get();
+		ByteBuffer inputBuffer = pair[0];
+		ByteBuffer outputBuffer = pair[1];
+
+		inputBuffer.clear().limit(length);
+		while (inputBuffer.hasRemaining()) {
+			if (input.read(inputBuffer, position + inputBuffer.position()) == -1) {
+				throw new IOException("Unexpected end of file.");
+			}
+		}
+		inputBuffer.flip();
+
+		Cipher c = CryptoEngine.threadCipher("AES/CTR/NoPadding");
+		c.init(Cipher.ENCRYPT_MODE, key, new IvParameterSpec(counterFor(iv, position / BLOCK_SIZE)));
+		outputBuffer.clear();
+		c.doFinal(inputBuffer, outputBuffer);
+		outputBuffer.flip();
+
+		while (outputBuffer.hasRemaining()) {
+			output.write(outputBuffer, position + outputBuffer.position());
+		}
+	}
+
+	/**
+	 * Task which processes a range of segments, splitting the range in halves
+	 * until a single segment remains.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	private class SegmentTask extends RecursiveAction {
+		/** Default serialization version. **/
+		private static final long serialVersionUID = 1L;
+
+		/** Channel of the original file. **/
+		private final FileChannel input;
+		/** Channel of the output file. **/
+		private final FileChannel output;
+		/** Size of the original file. **/
+		private final long size;
+		/** Index of the first segment, inclusive. **/
+		private final long from;
+		/** Index of the last segment, exclusive. **/
+		private final long to;
+
+		/**
+		 * Constructs a new task.
+		 *
+		 * @param input
+		 *            channel of the original file
+		 * @param output
+		 *            channel of the output file
+		 * @param size
+		 *            size of the original file
+		 * @param from
+		 *            index of the first segment, inclusive
+		 * @param to
+		 *            index of the last segment, exclusive
+		 */
+		SegmentTask(FileChannel input, FileChannel output, long size, long from, long to) {
+			this.input = input;
+			this.output = output;
+			this.size = size;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				long middle = (from + to) >>> 1;
+				invokeAll(new SegmentTask(input, output, size, from, middle),
+						new SegmentTask(input, output, size, middle, to));
+				return;
+			}
+
+			if (from == to) {
+				return;
+			}
+
+			try {
+				cryptSegment(input, output, size, from);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			} catch (GeneralSecurityException ex) {
+				throw new IllegalStateException("Cipher error occured.", ex);
+			}
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput metrics of a long-running operation - crypting or digesting.
+ * <p>
+ * The operation reports each chunk of processed data together with the time
+ * spent waiting for I/O and the time spent in the cipher or digest. From that
+ * the progress computes the throughput, the estimated time to completion and
+ * the split between I/O and computation, which tells a slow disk apart from a
+ * slow (or hung) computation. Data which did not have to be processed at all,
+ * for example because its digest was cached, is counted separately.
+ * <p>
+ * A progress can be updated from multiple threads at once; the times of the
+ * threads are summed up.
+ *
+ * @author Mirna Baksa
+ *
+ */
+public class Progress {
+	/** Number of bytes in a megabyte, as used for throughput. **/
+	private static final double MEGABYTE = 1_000_000.0;
+
+	/** Name of the operation. **/
+	private final String operation;
+	/** Total number of bytes, or <code>-1</code> if unknown. **/
+	private volatile long total;
+	/** Time when the operation started, in ns. **/
+	private final long start = System.nanoTime();
+
+	/** Number of processed bytes. **/
+	private final LongAdder bytes = new LongAdder();
+	/** Number of skipped bytes. **/
+	private final LongAdder skipped = new LongAdder();
+	/** Time spent in I/O, in ns. **/
+	private final LongAdder ioTime = new LongAdder();
+	/** Time spent in the cipher or digest, in ns. **/
+	private final LongAdder workTime = new LongAdder();
+
+	/**
+	 * Constructs a new progress.
+	 *
+	 * @param operation
+	 *            name of the operation, a single word
+	 * @param total
+	 *            total number of bytes, or <code>-1</code> if unknown
+	 */
+	public Progress(String operation, long total) {
+		this.operation = operation;
+		this.total = total;
+	}
+
+	/**
+	 * Increases the total number of bytes, for operations which discover
+	 * their input as they go. If the total was unknown, it becomes the given
+	 * length.
+	 *
+	 * @param length
+	 *            number of bytes to add to the total
+	 */
+	public synchronized void expand(long length) {
+		total = Math.max(total, 0) + length;
+	}
+
+	/**
+	 * Records a processed chunk of data.
+	 *
+	 * @param length
+	 *            number of bytes in the chunk
+	 * @param ioNanos
+	 *            time spent in I/O, in ns
+	 * @param workNanos
+	 *            time spent in the cipher or digest, in ns
+	 */
+	public void add(long length, long ioNanos, long workNanos) {
+		bytes.add(length);
+		ioTime.add(ioNanos);
+		workTime.add(workNanos);
+	}
+
+	/**
+	 * Records data which did not have to be processed.
+	 *
+	 * @param length
+	 *            number of skipped bytes
+	 */
+	public void skip(long length) {
+		skipped.add(length);
+	}
+
+	/**
+	 * Returns the number of processed bytes.
+	 *
+	 * @return number of processed bytes
+	 */
+	public long getBytes() {
+		return bytes.sum();
+	}
+
+	/**
+	 * Returns the number of skipped bytes.
+	 *
+	 * @return number of skipped bytes
+	 */
+	public long getSkipped() {
+		return skipped.sum();
+	}
+
+	/**
+	 * Returns the throughput so far, in megabytes (10<sup>6</sup> bytes) per
+	 * second.
+	 *
+	 * @return throughput in MB/s
+	 */
+	public double getThroughput() {
+		double seconds = elapsedNanos() / 1e9;
+		return seconds == 0 ? 0 : bytes.sum() / MEGABYTE / seconds;
+	}
+
+	/**
+	 * Returns the human-readable status of the operation, for example
+	 * <code>encrypt: 512.0 of 1024.0 MB (50%), 180.3 MB/s, ETA 3 s, I/O 40%, work 60%</code>.
+	 *
+	 * @return status of the operation
+	 */
+	public String status() {
+		long total = this.total;
+		long done = bytes.sum() + skipped.sum();
+		StringBuilder sb = new StringBuilder(operation).append(": ");
+
+		sb.append(String.format(Locale.ROOT, "%.1f", done / MEGABYTE));
+		if (total >= 0) {
+			sb.append(String.format(Locale.ROOT, " of %.1f MB (%d%%)", total / MEGABYTE,
+					total == 0 ? 100 : done * 100 / total));
+		} else {
+			sb.append(" MB");
+		}
+
+		double throughput = getThroughput();
+		sb.append(String.format(Locale.ROOT, ", %.1f MB/s", throughput));
+		if (total >= 0 && throughput > 0) {
+			long remaining = Math.max(0, total - done);
+			sb.append(", ETA ").append((long) Math.ceil(remaining / MEGABYTE / throughput)).append(" s");
+		}
+
+		long io = ioTime.sum();
+		long work = workTime.sum();
+		if (io + work > 0) {
+			sb.append(", I/O ").append(io * 100 / (io + work)).append("%, work ")
+					.append(work * 100 / (io + work)).append('%');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the machine-readable summary of the operation - a single line of
+	 * space-separated <code>key=value</code> pairs, starting with the word
+	 * <code>summary</code>. Times are in seconds and the throughput is in
+	 * MB/s.
+	 *
+	 * @return summary of the operation
+	 */
+	public String summary() {
+		return String.format(Locale.ROOT,
+				"summary operation=%s bytes=%d skipped=%d seconds=%.3f throughput=%.2f io=%.3f work=%.3f",
+				operation, bytes.sum(), skipped.sum(), elapsedNanos() / 1e9, getThroughput(), ioTime.sum() / 1e9,
+				workTime.sum() / 1e9);
+	}
+
+	/**
+	 * Starts printing the status to the stream periodically, until the
+	 * returned reporter is closed. Closing the reporter prints the summary.
+	 *
+	 * @param stream
+	 *            stream where the status is printed, usually the standard error
+	 * @param periodMillis
+	 *            time between two status lines, in ms
+	 * @return started reporter
+	 */
+	public Reporter report(PrintStream stream, long periodMillis) {
+		return new Reporter(stream, periodMillis);
+	}
+
+	/**
+	 * Returns the time elapsed since the operation started.
+	 *
+	 * @return elapsed time in ns
+	 */
+	private long elapsedNanos() {
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Periodically prints the status of the progress on a background thread.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	public class Reporter implements AutoCloseable {
+		/** Stream where the status is printed. **/
+		private final PrintStream stream;
+		/** Executor of the periodic task. **/
+		private final ScheduledExecutorService executor;
+
+		/**
+		 * Constructs and starts a new reporter.
+		 *
+		 * @param stream
+		 *            stream where the status is printed
+		 * @param periodMillis
+		 *            time between two status lines, in ms
+		 */
+		private Reporter(PrintStream stream, long periodMillis) {
+			this.stream = stream;
+			this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+				Thread thread = new Thread(r, "progress-reporter");
+				thread.setDaemon(true);
+				return thread;
+			});
+			executor.scheduleAtFixedRate(() -> stream.println(status()), periodMillis, periodMillis,
+					TimeUnit.MILLISECONDS);
+		}
+
+		/**
+		 * Stops the periodic status and prints the summary.
+		 */
+		@Override
+		public void close() {
+			executor.shutdownNow();
+			try {
+				executor.awaitTermination(1, TimeUnit.SECONDS);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+			stream.println(summary());
+		}
+	}
+}
@@ -0,0 +1,391 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+/**
+ * Checks the SHA-256 digests of multiple files listed in a manifest.
+ * <p>
+ * The manifest uses the format produced by the <code>sha256sum</code> tool:
+ * each line consists of the hex-encoded digest, a space, a mode character (a
+ * space for text mode or <code>*</code> for binary mode) and the path of the
+ * file. The digest must consist of exactly 64 hex digits, otherwise the line
+ * is counted as improperly formatted. Empty lines and lines starting with
+ * <code>#</code> are ignored.
+ * <p>
+ * The files are digested concurrently on a fixed number of worker threads, each
+ * of which owns its own digest and read buffer (see {@link CryptoEngine}). The
+ * result of each check is reported as soon as it is known, while the manifest
+ * is still being read, so the order of the results does not have to match the
+ * order of the manifest. At most {@value #TASKS_PER_THREAD} checks per thread
+ * are queued at once, so a huge manifest is read only as fast as the files are
+ * checked.
+ * <p>
+ * If a {@link DigestCache} is given, files which did not change since they
+ * were last digested are not read again.
+ *
+ * @author Mirna Baksa
+ *
+ */
+public class ShaManifestChecker {
+	/** Number of hex digits of a SHA-256 digest. **/
+	private static final int DIGEST_HEX_LENGTH = 64;
+	/** Maximum number of checks in flight per worker thread. **/
+	private static final int TASKS_PER_THREAD = 4;
+
+	/** Number of worker threads. **/
+	private final int threads;
+	/** Digest cache, or <code>null</code> if the files are always read. **/
+	private final DigestCache cache;
+
+	/**
+	 * Constructs a new checker which uses the given number of worker threads
+	 * and no digest cache.
+	 *
+	 * @param threads
+	 *            number of worker threads, must be positive
+	 */
+	public ShaManifestChecker(int threads) {
+		this(threads, null);
+	}
+
+	/**
+	 * Constructs a new checker which uses the given number of worker threads
+	 * and the given digest cache.
+	 *
+	 * @param threads
+	 *            number of worker threads, must be positive
+	 * @param cache
+	 *            digest cache, or <code>null</code> if the files are always
+	 *            read
+	 */
+	public ShaManifestChecker(int threads, DigestCache cache) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("The number of threads must be positive. Was: " + threads);
+		}
+		this.threads = threads;
+		this.cache = cache;
+	}
+
+	/**
+	 * Checks all the files listed in the given manifest. The result of each
+	 * check is passed to the output as a single line in the form
+	 * <code>path: OK</code> or <code>path: FAILED</code>.
+	 *
+	 * @param manifest
+	 *            path of the manifest
+	 * @param output
+	 *            consumer of the result lines
+	 * @return summary of the check
+	 * @throws IOException
+	 *             if the manifest can not be read
+	 */
+	public Summary check(Path manifest, Consumer<String> output) throws IOException {
+		return check(manifest, output, null);
+	}
+
+	/**
+	 * Checks all the files listed in the given manifest, reporting the read
+	 * data to the progress. The size of each listed file is added to the total
+	 * of the progress as the manifest is read.
+	 *
+	 * @param manifest
+	 *            path of the manifest
+	 * @param output
+	 *            consumer of the result lines
+	 * @param progress
+	 *            progress of the check, or <code>null</code>
+	 * @return summary of the check
+	 * @throws IOException
+	 *             if the manifest can not be read
+	 * @see #check(Path, Consumer)
+	 */
+	public Summary check(Path manifest, Consumer<String> output, Progress progress) throws IOException {
+		Summary summary = new Summary();
+		ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread thread = new Thread(r, "checksha-worker");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		try {
+			CompletionService<Result> service = new ExecutorCompletionService<>(pool);
+			int maxInFlight = threads * TASKS_PER_THREAD;
+			int inFlight = 0;
+
+			try (BufferedReader reader = Files.newBufferedReader(manifest, StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (line.isEmpty() || line.startsWith("#")) {
+						continue;
+					}
+
+					Entry entry = parseLine(line);
+					if (entry == null) {
+						summary.malformed++;
+						continue;
+					}
+
+					if (progress != null) {
+						expand(progress, entry);
+					}
+					if (inFlight == maxInFlight) {
+						report(service.take(), output, summary);
+						inFlight--;
+					}
+					service.submit(() -> checkEntry(entry, progress));
+					inFlight++;
+
+					Future<Result> done;
+					while ((done = service.poll()) != null) {
+						report(done, output, summary);
+						inFlight--;
+					}
+				}
+			}
+
+			for (; inFlight > 0; inFlight--) {
+				report(service.take(), output, summary);
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new IOException("The check was interrupted.", ex);
+		} catch (ExecutionException ex) {
+			throw new IOException("An error occured while checking the files.", ex.getCause());
+		} finally {
+			pool.shutdownNow();
+		}
+
+		return summary;
+	}
+
+	/**
+	 * Reports the result of a finished check.
+	 *
+	 * @param done
+	 *            finished check
+	 * @param output
+	 *            consumer of the result lines
+	 * @param summary
+	 *            summary the result is added to
+	 * @throws InterruptedException
+	 *             never, the check is finished
+	 * @throws ExecutionException
+	 *             if the check ended with an error
+	 */
+	private static void report(Future<Result> done, Consumer<String> output, Summary summary)
+			throws InterruptedException, ExecutionException {
+		Result result = done.get();
+		output.accept(result.toString());
+		summary.add(result.status);
+	}
+
+	/**
+	 * Parses a single manifest line.
+	 *
+	 * @param line
+	 *            line to parse
+	 * @return parsed entry or <code>null</code> if the line is not properly
+	 *         formatted
+	 */
+	static Entry parseLine(String line) {
+		int space = line.indexOf(' ');
+		if (space < 1 || line.length() < space + 3) {
+			return null;
+		}
+
+		char mode = line.charAt(space + 1);
+		if (mode != ' ' && mode != '*') {
+			return null;
+		}
+
+		String digest = line.substring(0, space);
+		if (digest.length() != DIGEST_HEX_LENGTH) {
+			return null;
+		}
+		try {
+			Util.hexToByte(digest);
+		} catch (IllegalArgumentException ex) {
+			return null;
+		}
+
+		return new Entry(digest.toLowerCase(), line.substring(space + 2));
+	}
+
+	/**
+	 * Adds the size of the file of the given entry to the total of the
+	 * progress. Files which can not be accessed are reported later, when they
+	 * are checked.
+	 *
+	 * @param progress
+	 *            progress of the check
+	 * @param entry
+	 *            listed entry
+	 */
+	private static void expand(Progress progress, Entry entry) {
+		try {
+			progress.expand(Files.size(Paths.get(entry.fileName)));
+		} catch (IOException | InvalidPathException ex) {
+			return;
+		}
+	}
+
+	/**
+	 * Digests the file of the given entry and compares the result to the
+	 * expected digest.
+	 *
+	 * @param entry
+	 *            entry to check
+	 * @param progress
+	 *            progress of the check, or <code>null</code>
+	 * @return result of the check
+	 */
+	private Result checkEntry(Entry entry, Progress progress) {
+		byte[] digest;
+		try {
+			Path file = Paths.get(entry.fileName);
+			digest = cache == null ? CryptoEngine.digest(file, progress) : cache.digest(file, progress);
+		} catch (IOException | InvalidPathException ex) {
+			return new Result(entry.fileName, Status.UNREADABLE);
+		}
+
+		String calculatedDigest = Util.byteToHex(digest);
+		return new Result(entry.fileName, calculatedDigest.equals(entry.digest) ? Status.OK : Status.FAILED);
+	}
+
+	/**
+	 * A single manifest entry - expected digest and the file name.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	static class Entry {
+		/** Expected digest, hex-encoded in lower case. **/
+		final String digest;
+		/** Name of the file. **/
+		final String fileName;
+
+		/**
+		 * Constructs a new entry.
+		 *
+		 * @param digest
+		 *            expected digest
+		 * @param fileName
+		 *            name of the file
+		 */
+		Entry(String digest, String fileName) {
+			this.digest = digest;
+			this.fileName = fileName;
+		}
+	}
+
+	/**
+	 * Possible outcomes of a single file check.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	public enum Status {
+		/** The digest matches the expected digest. **/
+		OK,
+		/** The digest does not match the expected digest. **/
+		FAILED,
+		/** The file could not be read. **/
+		UNREADABLE;
+	}
+
+	/**
+	 * Result of a single file check.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class Result {
+		/** Name of the checked file. **/
+		private final String fileName;
+		/** Outcome of the check. **/
+		private final Status status;
+
+		/**
+		 * Constructs a new result.
+		 *
+		 * @param fileName
+		 *            name of the checked file
+		 * @param status
+		 *            outcome of the check
+		 */
+		Result(String fileName, Status status) {
+			this.fileName = fileName;
+			this.status = status;
+		}
+
+		@Override
+		public String toString() {
+			return fileName + ": " + (status == Status.UNREADABLE ? "FAILED open or read" : status.toString());
+		}
+	}
+
+	/**
+	 * Summary of a manifest check.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	public static class Summary {
+		/** Number of files whose digest matched. **/
+		private int ok;
+		/** Number of files whose digest did not match. **/
+		private int failed;
+		/** Number of files that could not be read. **/
+		private int unreadable;
+		/** Number of improperly formatted manifest lines. **/
+		private int malformed;
+
+		/**
+		 * Records the outcome of a single check.
+		 *
+		 * @param status
+		 *            outcome of the check
+		 */
+		private void add(Status status) {
+			switch (status) {
+			case OK:
+				ok++;
+				break;
+			case FAILED:
+				failed++;
+				break;
+			default:
+				unreadable++;
+			}
+		}
+
+		/**
+		 * Returns <code>true</code> if all listed files were read and their
+		 * digests matched.
+		 *
+		 * @return <code>true</code> if the check succeeded
+		 */
+		public boolean isSuccessful() {
+			return failed == 0 && unreadable == 0 && malformed == 0;
+		}
+
+		@Override
+		public String toString() {
+			return "Checked " + (ok + failed + unreadable) + " files: " + ok + " OK, " + failed + " FAILED, "
+					+ unreadable + " unreadable, " + malformed + " improperly formatted lines.";
+		}
+	}
+}
@@ -1,11 +1,19 @@
 package hr.fer.zemris.java.hw06.crypto;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 /**
  * Class with utility methods for converting byte arrays to hexadecimal
  * representations and reverse.
  * <p>
  * {@link Util#byteToHex(byte[])} <br>
  * {@link Util#hexToByte(String)}
+ * <p>
+ * Both conversions are table-driven: each character is validated and decoded
+ * by a single lookup, in the same pass. For input that does not fit into
+ * memory, see {@link HexEncoder} and {@link HexDecoder}.
  * @author Mirna Baksa
  *
  */
@@ -13,6 +21,20 @@ public class Util {
 	/**Alphabet supported for the hexadecimal number system.*/
 	private static final char[] hexAlphabet = "0123456789abcdef".toCharArray();
 
+	/**
+	 * Values of the hexadecimal digits, indexed by the character. Characters
+	 * which are not hexadecimal digits have the value <code>-1</code>.
+	 */
+	private static final byte[] hexDigits = new byte[128];
+
+	static {
+		Arrays.fill(hexDigits, (byte) -1);
+		for (int i = 0; i < hexAlphabet.length; i++) {
+			hexDigits[hexAlphabet[i]] = (byte) i;
+			hexDigits[Character.toUpperCase(hexAlphabet[i])] = (byte) i;
+		}
+	}
+
 	/**
 	 * Converts a String representing hexadecimal values into an array of bytes
 	 * of those same values. Each byte in the array will represent two
@@ -23,71 +45,199 @@ public class Util {
 	 * thrown. Valid input is even - sized and does not contain characters that
 	 * are not in the hexadecimal alphabet (digits 0-9 and letters a-e, both
 	 * upper and lower case).
-	 * 
+	 *
 	 * @param keyText
 	 *            input to convert to byte array
 	 * @return byte array of values represented in the string
 	 */
 	public static byte[] hexToByte(String keyText) {
-		char[] data = keyText.toCharArray();
-		int n = data.length;
-		if ((n & 0x01) != 0) {
-			throw new IllegalArgumentException("The input was odd - sized. Input was: " + keyText);
-		}
+		return hexToByte((CharSequence) keyText);
+	}
 
-		if (!checkValidHexInput(keyText)) {
-			throw new IllegalArgumentException("The input had invalid characters. Input was: " + keyText);
+	/**
+	 * Converts a character sequence representing hexadecimal values into an
+	 * array of bytes of those same values.
+	 *
+	 * @param text
+	 *            input to convert to byte array
+	 * @return byte array of values represented in the sequence
+	 * @see #hexToByte(String)
+	 */
+	public static byte[] hexToByte(CharSequence text) {
+		byte[] result = new byte[decodedLength(text.length(), text)];
+		for (int i = 0, n = result.length; i < n; i++) {
+			result[i] = decode(text.charAt(2 * i), text.charAt(2 * i + 1), text);
 		}
+		return result;
+	}
 
-		byte[] result = new byte[n / 2];
+	/**
+	 * Converts an array of characters representing hexadecimal values into an
+	 * array of bytes of those same values.
+	 *
+	 * @param data
+	 *            input to convert to byte array
+	 * @return byte array of values represented in the array
+	 * @see #hexToByte(String)
+	 */
+	public static byte[] hexToByte(char[] data) {
+		byte[] result = new byte[decodedLength(data.length, data)];
+		for (int i = 0, n = result.length; i < n; i++) {
+			result[i] = decode(data[2 * i], data[2 * i + 1], data);
+		}
+		return result;
+	}
 
-		for (int i = 0; i < n; i += 2) {
-			int digit = Integer.parseInt(keyText.substring(i, i + 2), 16);
-			result[i / 2] = (byte) digit;
+	/**
+	 * Converts a character sequence representing hexadecimal values into bytes
+	 * of those same values, putting them into the given buffer starting at its
+	 * current position.
+	 * <p>
+	 * The whole input is validated before anything is put, so the buffer is
+	 * left unchanged if the input is invalid or does not fit.
+	 *
+	 * @param text
+	 *            input to convert
+	 * @param destination
+	 *            buffer where the bytes are put
+	 * @throws BufferOverflowException
+	 *             if there is not enough space in the buffer
+	 * @see #hexToByte(String)
+	 */
+	public static void hexToByte(CharSequence text, ByteBuffer destination) {
+		int n = decodedLength(text.length(), text);
+		for (int i = 0, length = text.length(); i < length; i++) {
+			if (digit(text.charAt(i)) < 0) {
+				throw new IllegalArgumentException("The input had invalid characters. Input was: " + describe(text));
+			}
+		}
+		if (destination.remaining() < n) {
+			throw new BufferOverflowException();
 		}
 
-		return result;
+		for (int i = 0; i < n; i++) {
+			destination.put(decode(text.charAt(2 * i), text.charAt(2 * i + 1), text));
+		}
 	}
 
 	/**
 	 * Converts an array of bytes into a String representing the hexadecimal
 	 * value of each byte in the array. For each byte in the given array, two
 	 * characters are created in the string, in big - endian notation.
-	 * 
+	 *
 	 * @param byteArray
 	 *            byte array to convert to hex
 	 * @return hexadecimal representation (as a string) of the byte array
 	 */
 	public static String byteToHex(byte[] byteArray) {
 		char[] hex = new char[byteArray.length * 2];
+		byteToHex(byteArray, 0, byteArray.length, hex, 0);
+		return new String(hex);
+	}
 
-		for (int i = 0, n = byteArray.length; i < n; i++) {
-			hex[i * 2] = hexAlphabet[(byteArray[i] & 0xF0) >>> 4];
-			hex[i * 2 + 1] = hexAlphabet[byteArray[i] & 0x0F];
+	/**
+	 * Converts the remaining bytes of the buffer into a String representing
+	 * the hexadecimal value of each byte. The position of the buffer is not
+	 * changed.
+	 *
+	 * @param buffer
+	 *            buffer to convert to hex
+	 * @return hexadecimal representation (as a string) of the remaining bytes
+	 * @see #byteToHex(byte[])
+	 */
+	public static String byteToHex(ByteBuffer buffer) {
+		char[] hex = new char[buffer.remaining() * 2];
+		for (int i = buffer.position(), n = buffer.limit(), j = 0; i < n; i++, j += 2) {
+			byte b = buffer.get(i);
+			hex[j] = hexAlphabet[(b & 0xF0) >>> 4];
+			hex[j + 1] = hexAlphabet[b & 0x0F];
 		}
 		return new String(hex);
 	}
 
 	/**
-	 * Checks if the input is consisted only of valid hexadecimal characters -
-	 * digits <code>0-9</code> and letters <code>a-f</code>. Both upper and
-	 * lower case letters are allowed.
-	 * 
+	 * Converts a range of the byte array into hexadecimal characters, written
+	 * into the given character array. Exactly <code>2 * length</code>
+	 * characters are written.
+	 *
+	 * @param source
+	 *            bytes to convert
+	 * @param offset
+	 *            index of the first byte to convert
+	 * @param length
+	 *            number of bytes to convert
+	 * @param destination
+	 *            array where the characters are written
+	 * @param destinationOffset
+	 *            index of the first character written
+	 */
+	public static void byteToHex(byte[] source, int offset, int length, char[] destination,
+			int destinationOffset) {
+		for (int i = offset, n = offset + length, j = destinationOffset; i < n; i++, j += 2) {
+			destination[j] = hexAlphabet[(source[i] & 0xF0) >>> 4];
+			destination[j + 1] = hexAlphabet[source[i] & 0x0F];
+		}
+	}
+
+	/**
+	 * Returns the value of the hexadecimal digit, or <code>-1</code> if the
+	 * character is not a hexadecimal digit. Both upper and lower case letters
+	 * are allowed.
+	 *
+	 * @param c
+	 *            character to convert
+	 * @return value of the digit or <code>-1</code>
+	 */
+	static int digit(char c) {
+		return c < hexDigits.length ? hexDigits[c] : -1;
+	}
+
+	/**
+	 * Checks that the input length is even and returns the number of bytes the
+	 * input represents.
+	 *
+	 * @param length
+	 *            length of the input
 	 * @param input
-	 *            given input to be checked
-	 * @return <code>true</code> if the input was valid, <code>false</code>
-	 *         otherwise.
+	 *            input, used for the error message
+	 * @return number of bytes represented by the input
 	 */
-	private static boolean checkValidHexInput(String input) {
-		char data[] = input.toLowerCase().toCharArray();
-		String hexChar = new String(hexAlphabet);
+	private static int decodedLength(int length, Object input) {
+		if ((length & 0x01) != 0) {
+			throw new IllegalArgumentException("The input was odd - sized. Input was: " + describe(input));
+		}
+		return length / 2;
+	}
 
-		for (int i = 0, n = data.length; i < n; i++) {
-			if (hexChar.indexOf(data[i]) == -1) {
-				return false;
-			}
+	/**
+	 * Decodes a single byte from two hexadecimal digits.
+	 *
+	 * @param high
+	 *            digit of the upper four bits
+	 * @param low
+	 *            digit of the lower four bits
+	 * @param input
+	 *            input, used for the error message
+	 * @return decoded byte
+	 */
+	private static byte decode(char high, char low, Object input) {
+		int h = digit(high);
+		int l = digit(low);
+		if ((h | l) < 0) {
+			throw new IllegalArgumentException("The input had invalid characters. Input was: " + describe(input));
 		}
-		return true;
+		return (byte) ((h << 4) | l);
+	}
+
+	/**
+	 * Returns the String representation of the input for error messages.
+	 *
+	 * @param input
+	 *            character sequence or character array
+	 * @return String representation of the input
+	 */
+	private static String describe(Object input) {
+		return input instanceof char[] ? new String((char[]) input) : input.toString();
 	}
 
 }
@@ -0,0 +1,239 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded byte buffer connecting two threads - a writer and a reader.
+ * <p>
+ * The writer writes through the {@link #sink()} channel and blocks while the
+ * buffer is full, so a fast writer can never get further ahead of the reader
+ * than the capacity of the buffer. The reader reads through the
+ * {@link #source()} channel and blocks while the buffer is empty. When the
+ * writer closes the sink, the reader receives the rest of the data followed
+ * by the end of stream. When the reader closes the source, the data in the
+ * buffer is dropped and any further write fails, so the writer can stop
+ * early.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class BoundedPipe {
+	/** Circular buffer of the data. **/
+	private final byte[] buffer;
+	/** Index of the first unread byte. **/
+	private int head;
+	/** Number of unread bytes. **/
+	private int count;
+	/** Whether the writer closed the sink. **/
+	private boolean writerClosed;
+	/** Whether the reader closed the source. **/
+	private boolean readerClosed;
+
+	/** Lock guarding the buffer. **/
+	private final ReentrantLock lock = new ReentrantLock();
+	/** Signalled when data is written or the sink is closed. **/
+	private final Condition notEmpty = lock.newCondition();
+	/** Signalled when data is read or the source is closed. **/
+	private final Condition notFull = lock.newCondition();
+
+	/** Writing end of the pipe. **/
+	private final WritableByteChannel sink = new Sink();
+	/** Reading end of the pipe. **/
+	private final ReadableByteChannel source = new Source();
+
+	/**
+	 * Constructs a new pipe.
+	 * 
+	 * @param capacity
+	 *            capacity of the buffer in bytes, must be positive
+	 */
+	public BoundedPipe(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be positive. Was: " + capacity);
+		}
+		this.buffer = new byte[capacity];
+	}
+
+	/**
+	 * Returns the writing end of the pipe.
+	 * 
+	 * @return sink channel
+	 */
+	public WritableByteChannel sink() {
+		return sink;
+	}
+
+	/**
+	 * Returns the reading end of the pipe.
+	 * 
+	 * @return source channel
+	 */
+	public ReadableByteChannel source() {
+		return source;
+	}
+
+	/**
+	 * Closes the writing end of the pipe. The reader receives the rest of the
+	 * data followed by the end of stream.
+	 */
+	public void closeSink() {
+		lock.lock();
+		try {
+			writerClosed = true;
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes the reading end of the pipe. The data in the buffer is dropped
+	 * and any further write fails.
+	 */
+	public void closeSource() {
+		lock.lock();
+		try {
+			readerClosed = true;
+			count = 0;
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the reader closed the source.
+	 * 
+	 * @return <code>true</code> if the source is closed
+	 */
+	public boolean isBroken() {
+		lock.lock();
+		try {
+			return readerClosed;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Writing end of the pipe.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	private class Sink implements WritableByteChannel {
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			int written = src.remaining();
+			lock.lock();
+			try {
+				while (src.hasRemaining()) {
+					if (writerClosed) {
+						throw new IOException("The pipe is closed.");
+					}
+					while (count == buffer.length && !readerClosed) {
+						notFull.await();
+					}
+					if (readerClosed) {
+						throw new IOException("Broken pipe.");
+					}
+
+					int tail = (head + count) % buffer.length;
+					int length = Math.min(src.remaining(),
+							Math.min(buffer.length - count, buffer.length - tail));
+					src.get(buffer, tail, length);
+					count += length;
+					notEmpty.signal();
+				}
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while writing to the pipe.");
+			} finally {
+				lock.unlock();
+			}
+			return written;
+		}
+
+		@Override
+		public boolean isOpen() {
+			lock.lock();
+			try {
+				return !writerClosed;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void close() {
+			closeSink();
+		}
+	}
+
+	/**
+	 * Reading end of the pipe.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	private class Source implements ReadableByteChannel {
+
+		@Override
+		public int read(ByteBuffer dst) throws IOException {
+			if (!dst.hasRemaining()) {
+				return 0;
+			}
+
+			lock.lock();
+			try {
+				if (readerClosed) {
+					throw new IOException("The pipe is closed.");
+				}
+				while (count == 0 && !writerClosed) {
+					notEmpty.await();
+				}
+				if (count == 0) {
+					return -1;
+				}
+
+				int read = 0;
+				while (count > 0 && dst.hasRemaining()) {
+					int length = Math.min(dst.remaining(), Math.min(count, buffer.length - head));
+					dst.put(buffer, head, length);
+					head = (head + length) % buffer.length;
+					count -= length;
+					read += length;
+				}
+				notFull.signal();
+				return read;
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while reading from the pipe.");
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			lock.lock();
+			try {
+				return !readerClosed;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void close() {
+			closeSource();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package hr.fer.zemris.java.hw06.shell;
+
+/**
+ * Cooperative cancellation of commands.
+ * <p>
+ * A command is cancelled by interrupting the thread which executes it - by
+ * the <code>timeout</code> command, by <code>kill</code> for a background
+ * job, or by Ctrl-C in the interactive shell. Long-running commands check
+ * {@link #isCancelled()} between units of work, stop promptly and report
+ * {@link #MESSAGE}. Interruptible channels stop on their own by throwing a
+ * {@link java.nio.channels.ClosedByInterruptException}.
+ * <p>
+ * The shell clears the interrupt after each command, so a cancelled command
+ * does not affect the next one.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class Cancellation {
+	/** Message written by a cancelled command. **/
+	public static final String MESSAGE = "The command was cancelled.";
+
+	/**
+	 * Private constructor, the class only offers static members.
+	 */
+	private Cancellation() {
+	}
+
+	/**
+	 * Returns <code>true</code> if the command executing on the current
+	 * thread was cancelled. The interrupt is not cleared.
+	 * 
+	 * @return <code>true</code> if the command was cancelled
+	 */
+	public static boolean isCancelled() {
+		return Thread.currentThread().isInterrupted();
+	}
+}
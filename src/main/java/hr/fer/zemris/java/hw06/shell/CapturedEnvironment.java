@@ -0,0 +1,256 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An {@link Environment} which captures the output instead of writing it to
+ * the console, for commands which run alongside the shell - background jobs
+ * and parallel invocations. Such a command can not read from the console:
+ * reading a line returns <code>null</code>, as if the input ended.
+ * <p>
+ * The first {@value #MEMORY_LIMIT} bytes of the output are kept in memory and
+ * the rest is spilled to a temporary file, so a command with a large output -
+ * <code>tree / &amp;</code> - does not fill the heap. The output is meant to
+ * be streamed out with {@link #writeOutputTo(WritableByteChannel)}, and the
+ * environment closed once it is written, which deletes the file.
+ * <p>
+ * The output can be written and read from different threads.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class CapturedEnvironment extends RedirectedEnvironment implements Closeable {
+	/** Number of bytes kept in memory before the output is spilled. **/
+	public static final int MEMORY_LIMIT = 1 << 20;
+	/** Length of the chunks in which the spilled output is read. **/
+	private static final int CHUNK = 64 * 1024;
+
+	/** Captured output. **/
+	private final Capture capture;
+
+	/**
+	 * Constructs a new environment.
+	 * 
+	 * @param parent
+	 *            environment of the shell
+	 */
+	public CapturedEnvironment(Environment parent) {
+		this(parent, new Capture());
+	}
+
+	/**
+	 * Constructs a new environment capturing into the given channel.
+	 * 
+	 * @param parent
+	 *            environment of the shell
+	 * @param capture
+	 *            channel where the output is captured
+	 */
+	private CapturedEnvironment(Environment parent, Capture capture) {
+		super(parent, null, capture);
+		this.capture = capture;
+	}
+
+	@Override
+	public String readLine() {
+		return null;
+	}
+
+	/**
+	 * Returns the number of bytes written so far.
+	 * 
+	 * @return size of the captured output
+	 */
+	public long getOutputSize() {
+		synchronized (capture) {
+			return capture.size;
+		}
+	}
+
+	/**
+	 * Returns the output written so far, decoded in the platform default
+	 * charset. The whole output is read into memory, so this is meant for
+	 * small outputs; large ones should be written with
+	 * {@link #writeOutputTo(WritableByteChannel)}.
+	 * 
+	 * @return captured output
+	 * @throws ShellIOException
+	 *             if the spilled output can not be read
+	 */
+	public String getOutput() throws ShellIOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			writeOutputTo(new WritableByteChannel() {
+				@Override
+				public int write(ByteBuffer src) {
+					byte[] chunk = new byte[src.remaining()];
+					src.get(chunk);
+					bytes.write(chunk, 0, chunk.length);
+					return chunk.length;
+				}
+
+				@Override
+				public boolean isOpen() {
+					return true;
+				}
+
+				@Override
+				public void close() {
+				}
+			});
+		} catch (IOException ex) {
+			throw new ShellIOException("An I/O error occured.");
+		}
+		return new String(bytes.toByteArray(), Charset.defaultCharset());
+	}
+
+	/**
+	 * Writes the output captured so far to the channel. The spilled part is
+	 * read and written in chunks.
+	 * 
+	 * @param channel
+	 *            channel where the output is written
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public void writeOutputTo(WritableByteChannel channel) throws IOException {
+		ByteBuffer bytes;
+		long spilled;
+		synchronized (capture) {
+			bytes = ByteBuffer.wrap(capture.memory.toByteArray());
+			spilled = capture.size - capture.memory.size();
+		}
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+
+		ByteBuffer chunk = null;
+		for (long position = 0; position < spilled;) {
+			if (chunk == null) {
+				chunk = ByteBuffer.allocate((int) Math.min(CHUNK, spilled));
+			}
+			chunk.clear();
+			chunk.limit((int) Math.min(chunk.capacity(), spilled - position));
+			synchronized (capture) {
+				if (capture.file == null) {
+					throw new IOException("The output was discarded.");
+				}
+				while (chunk.hasRemaining()) {
+					if (capture.file.read(chunk, position + chunk.position()) < 0) {
+						throw new IOException("The spilled output is truncated.");
+					}
+				}
+			}
+			chunk.flip();
+			position += chunk.remaining();
+			while (chunk.hasRemaining()) {
+				channel.write(chunk);
+			}
+		}
+	}
+
+	/**
+	 * Discards the captured output and deletes the file it was spilled to.
+	 * The output written afterwards is discarded.
+	 */
+	@Override
+	public void close() throws IOException {
+		FileChannel file;
+		synchronized (capture) {
+			capture.closed = true;
+			capture.memory = new ByteArrayOutputStream(0);
+			capture.size = 0;
+			file = capture.file;
+			capture.file = null;
+		}
+		if (file != null) {
+			file.close();
+		}
+	}
+
+	/**
+	 * Channel which captures the output in memory, spilling it to a temporary
+	 * file once it exceeds {@link CapturedEnvironment#MEMORY_LIMIT}. The
+	 * channel is its own lock.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class Capture implements WritableByteChannel {
+		/** Output kept in memory. **/
+		private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+		/** File holding the output after the memory, or <code>null</code>. **/
+		private FileChannel file;
+		/** Total number of captured bytes. **/
+		private long size;
+		/** Whether the output is discarded. **/
+		private boolean closed;
+
+		@Override
+		public synchronized int write(ByteBuffer src) throws IOException {
+			int length = src.remaining();
+			if (closed) {
+				src.position(src.limit());
+				return length;
+			}
+
+			if (file == null && memory.size() + (long) length <= MEMORY_LIMIT) {
+				if (src.hasArray()) {
+					memory.write(src.array(), src.arrayOffset() + src.position(), length);
+					src.position(src.limit());
+				} else {
+					byte[] bytes = new byte[length];
+					src.get(bytes);
+					memory.write(bytes, 0, length);
+				}
+			} else {
+				if (file == null) {
+					file = spillFile();
+				}
+				long position = size - memory.size();
+				while (src.hasRemaining()) {
+					position += file.write(src, position);
+				}
+			}
+			size += length;
+			return length;
+		}
+
+		/**
+		 * Creates the file the output is spilled to. The file is deleted
+		 * when it is closed.
+		 * 
+		 * @return channel of the file
+		 * @throws IOException
+		 *             if the file can not be created
+		 */
+		private static FileChannel spillFile() throws IOException {
+			Path path = Files.createTempFile("myshell-output", ".tmp");
+			try {
+				return FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+						StandardOpenOption.DELETE_ON_CLOSE);
+			} catch (IOException | RuntimeException ex) {
+				Files.deleteIfExists(path);
+				throw ex;
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes a command without loading its class - its name, the name of its
+ * implementation class and its short description, as listed by the help
+ * command. A descriptor can also hold the full description of the command, so
+ * that <code>help</code> for the command does not load the class either.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class CommandDescriptor {
+	/** Command name. **/
+	private final String name;
+	/** Fully qualified name of the implementation class. **/
+	private final String className;
+	/** Short description. **/
+	private final String summary;
+	/** Full description, or <code>null</code> if only the command knows it. **/
+	private final List<String> description;
+
+	/**
+	 * Constructs a new descriptor.
+	 * 
+	 * @param name
+	 *            command name
+	 * @param className
+	 *            fully qualified name of the class implementing
+	 *            {@link ShellCommand}, which must have a public constructor
+	 *            without arguments
+	 * @param summary
+	 *            short description of the command
+	 */
+	public CommandDescriptor(String name, String className, String summary) {
+		this.name = name;
+		this.className = className;
+		this.summary = summary;
+		this.description = null;
+	}
+
+	/**
+	 * Constructs a new descriptor with the full description of the command,
+	 * whose first line is the short description.
+	 * 
+	 * @param name
+	 *            command name
+	 * @param className
+	 *            fully qualified name of the class implementing
+	 *            {@link ShellCommand}, which must have a public constructor
+	 *            without arguments
+	 * @param description
+	 *            full description of the command, as returned by
+	 *            {@link ShellCommand#getCommandDescription()}
+	 * @throws IllegalArgumentException
+	 *             if the description is empty
+	 */
+	public CommandDescriptor(String name, String className, List<String> description) {
+		if (description.isEmpty()) {
+			throw new IllegalArgumentException("The description of " + name + " is empty.");
+		}
+		this.name = name;
+		this.className = className;
+		this.summary = description.get(0);
+		this.description = Collections.unmodifiableList(new ArrayList<>(description));
+	}
+
+	/**
+	 * Returns the command name.
+	 * 
+	 * @return command name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Returns the name of the implementation class.
+	 * 
+	 * @return fully qualified class name
+	 */
+	public String getClassName() {
+		return className;
+	}
+
+	/**
+	 * Returns the short description of the command.
+	 * 
+	 * @return short description
+	 */
+	public String getSummary() {
+		return summary;
+	}
+
+	/**
+	 * Returns the full description of the command.
+	 * 
+	 * @return full description, or <code>null</code> if it is known only to
+	 *         the command
+	 */
+	public List<String> getDescription() {
+		return description;
+	}
+}
@@ -0,0 +1,424 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Latency and resource metrics of the commands executed by the shell.
+ * <p>
+ * For each invocation of a command, the shell records a {@link Sample}: the
+ * wall-clock time, the CPU time of the executing thread, the bytes the
+ * thread allocated and the bytes it read and wrote through system calls -
+ * files, sockets and network file systems alike. Output written to the
+ * console through the shell's buffer is flushed after the command and is
+ * not counted. Each quantity goes into a {@link Histogram} per command name.
+ * <p>
+ * All the quantities except the wall-clock time are counted on the calling
+ * thread only. Work a command hands to other threads - the directory sizes
+ * of <code>ls</code>, <code>du</code>, the listers of <code>tree</code>,
+ * <code>parallel</code> and the stages of a pipeline - is not included, so
+ * the report marks these columns with <code>*</code>.
+ * <p>
+ * CPU time and allocation are taken from the platform's thread management
+ * bean, and the I/O counters from <code>/proc/thread-self/io</code>; a
+ * quantity which the platform does not provide is reported as
+ * <code>-</code>. On a virtual thread the platform reports neither, and the
+ * I/O counters would be those of the carrier thread, so they are not read.
+ * <p>
+ * The metrics can be updated from multiple threads at once.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class CommandMetrics {
+	/** System property naming the file where the report is written at exit. **/
+	public static final String DUMP_PROPERTY = "hw06.stats";
+	/** Per-thread I/O counters on Linux. **/
+	private static final Path THREAD_IO = Paths.get("/proc/thread-self/io");
+	/** Thread management bean. **/
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	/** Whether the CPU time of the current thread is available. **/
+	private static final boolean CPU_SUPPORTED = THREADS.isCurrentThreadCpuTimeSupported();
+	/** Whether the allocated bytes of a thread are available. **/
+	private static final boolean ALLOCATION_SUPPORTED = allocationSupported();
+	/** Whether the I/O counters of the current thread are available. **/
+	private static final boolean IO_SUPPORTED = Files.isReadable(THREAD_IO);
+	/** <code>Thread.isVirtual()</code>, or <code>null</code> before Java 21. **/
+	private static final Method IS_VIRTUAL = isVirtualMethod();
+	/** Note printed under the report. **/
+	private static final String CALLER_ONLY_NOTE = "* calling thread only; work on other threads is not counted";
+
+	/** Metrics of each command by its name. **/
+	private final Map<String, Metrics> commands = new ConcurrentSkipListMap<>();
+
+	/**
+	 * Records an invocation of the command.
+	 * 
+	 * @param name
+	 *            name of the command
+	 * @param sample
+	 *            measured invocation
+	 */
+	public void record(String name, Sample sample) {
+		commands.computeIfAbsent(name, n -> new Metrics()).record(sample);
+	}
+
+	/**
+	 * Forgets all the recorded invocations.
+	 */
+	public void reset() {
+		commands.clear();
+	}
+
+	/**
+	 * Returns <code>true</code> if no invocations were recorded.
+	 * 
+	 * @return <code>true</code> if there are no metrics
+	 */
+	public boolean isEmpty() {
+		return commands.isEmpty();
+	}
+
+	/**
+	 * Returns the report of the metrics - a header line followed by one line
+	 * per command, with the number of invocations, the percentiles and the
+	 * maximum of the wall-clock time, the mean CPU time and allocation, and
+	 * the total bytes read and written. A note under the table says that the
+	 * last four columns count only the calling thread.
+	 * 
+	 * @return lines of the report
+	 */
+	public List<String> report() {
+		List<String> lines = new ArrayList<>();
+		lines.add(String.format(Locale.ROOT, "%-10s %6s %9s %9s %9s %9s %9s %10s %10s %10s", "command", "count",
+				"p50 ms", "p90 ms", "p99 ms", "max ms", "cpu ms*", "alloc*", "read*", "written*"));
+		for (Map.Entry<String, Metrics> entry : commands.entrySet()) {
+			Metrics m = entry.getValue();
+			lines.add(String.format(Locale.ROOT, "%-10s %6d %9.3f %9.3f %9.3f %9.3f %9s %10s %10s %10s",
+					entry.getKey(), m.wall.getCount(), millis(m.wall.getValueAtPercentile(50)),
+					millis(m.wall.getValueAtPercentile(90)), millis(m.wall.getValueAtPercentile(99)),
+					millis(m.wall.getMax()),
+					m.cpu.getCount() == 0 ? "-" : String.format(Locale.ROOT, "%.3f", m.cpu.getMean() / 1e6),
+					m.allocated.getCount() == 0 ? "-" : formatBytes((long) m.allocated.getMean()),
+					m.read.getCount() == 0 ? "-" : formatBytes(m.read.getSum()),
+					m.written.getCount() == 0 ? "-" : formatBytes(m.written.getSum())));
+		}
+		lines.add(CALLER_ONLY_NOTE);
+		return lines;
+	}
+
+	/**
+	 * Writes the report to the file.
+	 * 
+	 * @param file
+	 *            path of the file
+	 * @throws IOException
+	 *             in case of an I/O error
+	 * @see #report()
+	 */
+	public void dump(Path file) throws IOException {
+		Files.write(file, report(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Converts nanoseconds to milliseconds.
+	 * 
+	 * @param nanos
+	 *            time in ns
+	 * @return time in ms
+	 */
+	private static double millis(long nanos) {
+		return nanos / 1e6;
+	}
+
+	/**
+	 * Formats the number of bytes with a decimal unit, for example
+	 * <code>1.5 MB</code>.
+	 * 
+	 * @param bytes
+	 *            number of bytes
+	 * @return formatted number
+	 */
+	public static String formatBytes(long bytes) {
+		if (bytes < 1000) {
+			return bytes + " B";
+		}
+		String units = "kMGTPE";
+		int unit = (int) (Math.log10(bytes) / 3) - 1;
+		return String.format(Locale.ROOT, "%.1f %sB", bytes / Math.pow(1000, unit + 1), units.charAt(unit));
+	}
+
+	/**
+	 * Looks up <code>Thread.isVirtual()</code>, which exists since Java 21.
+	 * 
+	 * @return the method, or <code>null</code> if the platform has no
+	 *         virtual threads
+	 */
+	private static Method isVirtualMethod() {
+		try {
+			return Thread.class.getMethod("isVirtual");
+		} catch (NoSuchMethodException ex) {
+			return null;
+		}
+	}
+
+	/**
+	 * Checks whether the current thread is a virtual thread.
+	 * 
+	 * @return <code>true</code> if the current thread is virtual
+	 */
+	private static boolean isVirtualThread() {
+		if (IS_VIRTUAL == null) {
+			return false;
+		}
+		try {
+			return (Boolean) IS_VIRTUAL.invoke(Thread.currentThread());
+		} catch (ReflectiveOperationException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Checks whether the thread management bean can report allocated bytes.
+	 * 
+	 * @return <code>true</code> if allocation can be measured
+	 */
+	private static boolean allocationSupported() {
+		try {
+			return THREADS instanceof com.sun.management.ThreadMXBean
+					&& ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemorySupported()
+					&& ((com.sun.management.ThreadMXBean) THREADS).isThreadAllocatedMemoryEnabled();
+		} catch (LinkageError ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Histograms of a single command.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class Metrics {
+		/** Wall-clock time, in ns. **/
+		private final Histogram wall = new Histogram();
+		/** CPU time, in ns. **/
+		private final Histogram cpu = new Histogram();
+		/** Allocated bytes. **/
+		private final Histogram allocated = new Histogram();
+		/** Bytes read. **/
+		private final Histogram read = new Histogram();
+		/** Bytes written. **/
+		private final Histogram written = new Histogram();
+
+		/**
+		 * Records an invocation. Quantities which were not measured are
+		 * skipped.
+		 * 
+		 * @param sample
+		 *            measured invocation
+		 */
+		void record(Sample sample) {
+			wall.record(sample.getWallNanos());
+			recordIfMeasured(cpu, sample.getCpuNanos());
+			recordIfMeasured(allocated, sample.getAllocatedBytes());
+			recordIfMeasured(read, sample.getReadBytes());
+			recordIfMeasured(written, sample.getWrittenBytes());
+		}
+
+		/**
+		 * Records the value unless it is negative, meaning it was not
+		 * measured.
+		 * 
+		 * @param histogram
+		 *            histogram of the quantity
+		 * @param value
+		 *            measured value, or <code>-1</code>
+		 */
+		private static void recordIfMeasured(Histogram histogram, long value) {
+			if (value >= 0) {
+				histogram.record(value);
+			}
+		}
+	}
+
+	/**
+	 * Measurement of a single invocation on the current thread. A sample is
+	 * started before the command executes and stopped on the same thread
+	 * when it finishes; quantities the platform does not provide are
+	 * <code>-1</code>. Only the wall-clock time covers the work the command
+	 * hands to other threads.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	public static class Sample {
+		/** Wall-clock time. **/
+		private long wall;
+		/** CPU time. **/
+		private long cpu;
+		/** Allocated bytes. **/
+		private long allocated;
+		/** Bytes read. **/
+		private long read;
+		/** Bytes written. **/
+		private long written;
+
+		/**
+		 * Constructs a new sample from the current counters.
+		 */
+		private Sample() {
+			long[] io = readThreadIo();
+			// reading the counters counts as reading, so it is excluded
+			read = io[0] < 0 ? -1 : io[0] + io[2];
+			written = io[1];
+			allocated = allocatedBytes();
+			cpu = CPU_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : -1;
+			wall = System.nanoTime();
+		}
+
+		/**
+		 * Starts measuring on the current thread.
+		 * 
+		 * @return started sample
+		 */
+		public static Sample start() {
+			return new Sample();
+		}
+
+		/**
+		 * Stops measuring. The sample then holds the differences of the
+		 * counters since it was started.
+		 * 
+		 * @return this sample
+		 */
+		public Sample stop() {
+			wall = System.nanoTime() - wall;
+			cpu = difference(cpu, CPU_SUPPORTED ? THREADS.getCurrentThreadCpuTime() : -1);
+			allocated = difference(allocated, allocatedBytes());
+			long[] io = readThreadIo();
+			read = difference(read, io[0]);
+			written = difference(written, io[1]);
+			return this;
+		}
+
+		/**
+		 * Returns the wall-clock time of the invocation.
+		 * 
+		 * @return time in ns
+		 */
+		public long getWallNanos() {
+			return wall;
+		}
+
+		/**
+		 * Returns the CPU time of the invocation.
+		 * 
+		 * @return time in ns, or <code>-1</code>
+		 */
+		public long getCpuNanos() {
+			return cpu;
+		}
+
+		/**
+		 * Returns the bytes allocated by the invocation.
+		 * 
+		 * @return number of bytes, or <code>-1</code>
+		 */
+		public long getAllocatedBytes() {
+			return allocated;
+		}
+
+		/**
+		 * Returns the bytes read by the invocation.
+		 * 
+		 * @return number of bytes, or <code>-1</code>
+		 */
+		public long getReadBytes() {
+			return read;
+		}
+
+		/**
+		 * Returns the bytes written by the invocation.
+		 * 
+		 * @return number of bytes, or <code>-1</code>
+		 */
+		public long getWrittenBytes() {
+			return written;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(Locale.ROOT, "real %.3f s, calling thread: cpu %s, alloc %s, read %s, written %s",
+					wall / 1e9,
+					cpu < 0 ? "-" : String.format(Locale.ROOT, "%.3f s", cpu / 1e9),
+					allocated < 0 ? "-" : formatBytes(allocated), read < 0 ? "-" : formatBytes(read),
+					written < 0 ? "-" : formatBytes(written));
+		}
+
+		/**
+		 * Returns the difference of the counters, or <code>-1</code> if
+		 * either was not measured.
+		 * 
+		 * @param before
+		 *            counter at the start
+		 * @param after
+		 *            counter at the end
+		 * @return difference, or <code>-1</code>
+		 */
+		private static long difference(long before, long after) {
+			return before < 0 || after < 0 ? -1 : after - before;
+		}
+
+		/**
+		 * Returns the bytes allocated by the current thread so far.
+		 * 
+		 * @return number of bytes, or <code>-1</code>
+		 */
+		private static long allocatedBytes() {
+			if (!ALLOCATION_SUPPORTED) {
+				return -1;
+			}
+			return ((com.sun.management.ThreadMXBean) THREADS).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+
+		/**
+		 * Reads the bytes read and written by the current thread through
+		 * system calls so far.
+		 * 
+		 * @return read and written bytes, or <code>-1</code> for both, and the
+		 *         length of the counters file
+		 */
+		private static long[] readThreadIo() {
+			long[] io = { -1, -1, 0 };
+			if (!IO_SUPPORTED || isVirtualThread()) {
+				return io;
+			}
+			try {
+				byte[] content = Files.readAllBytes(THREAD_IO);
+				io[2] = content.length;
+				for (String line : new String(content, StandardCharsets.US_ASCII).split("\n")) {
+					if (line.startsWith("rchar:")) {
+						io[0] = Long.parseLong(line.substring(6).trim());
+					} else if (line.startsWith("wchar:")) {
+						io[1] = Long.parseLong(line.substring(6).trim());
+					}
+				}
+			} catch (IOException | NumberFormatException ex) {
+				io[0] = io[1] = -1;
+			}
+			return io;
+		}
+	}
+}
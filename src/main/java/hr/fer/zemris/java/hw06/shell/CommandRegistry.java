@@ -0,0 +1,190 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Discovers the commands of the shell through the
+ * {@link ShellCommandProvider} services.
+ * <p>
+ * Each command is registered as a lightweight proxy which knows only its
+ * name and description. The implementation class is loaded and instantiated
+ * when the command is first executed, or when its full description is
+ * requested but not given by the provider; a command which can not be loaded
+ * then reports the failure instead. If two providers contribute a command with the same name, the
+ * one found first on the class path wins. A broken provider is reported and
+ * skipped.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class CommandRegistry {
+
+	/**
+	 * Private constructor, the class only offers static methods.
+	 */
+	private CommandRegistry() {
+	}
+
+	/**
+	 * Loads the commands of all the providers visible to the class loader.
+	 * Providers which can not be loaded are reported through the standard
+	 * error and skipped.
+	 * 
+	 * @param loader
+	 *            class loader which looks up the providers and the commands
+	 * @return map of commands by their names
+	 */
+	public static SortedMap<String, ShellCommand> load(ClassLoader loader) {
+		return load(loader, System.err::println);
+	}
+
+	/**
+	 * Loads the commands of all the providers visible to the class loader.
+	 * A provider which can not be instantiated or whose commands can not be
+	 * listed is reported and skipped, so one broken provider does not keep
+	 * the shell from starting.
+	 * 
+	 * @param loader
+	 *            class loader which looks up the providers and the commands
+	 * @param errors
+	 *            receives a message for each skipped provider
+	 * @return map of commands by their names
+	 */
+	public static SortedMap<String, ShellCommand> load(ClassLoader loader, Consumer<String> errors) {
+		SortedMap<String, ShellCommand> commands = new TreeMap<>();
+		Iterator<ShellCommandProvider> providers = ServiceLoader.load(ShellCommandProvider.class, loader).iterator();
+		while (true) {
+			ShellCommandProvider provider;
+			try {
+				if (!providers.hasNext()) {
+					break;
+				}
+				provider = providers.next();
+			} catch (ServiceConfigurationError ex) {
+				// the iterator moves past the broken provider
+				errors.accept("A command provider could not be loaded: " + ex.getMessage());
+				continue;
+			}
+
+			List<CommandDescriptor> descriptors;
+			try {
+				descriptors = provider.getCommands();
+			} catch (RuntimeException | LinkageError ex) {
+				errors.accept("The commands of " + provider.getClass().getName() + " could not be loaded: " + ex);
+				continue;
+			}
+			ClassLoader providerLoader = provider.getClass().getClassLoader();
+			for (CommandDescriptor descriptor : descriptors) {
+				commands.putIfAbsent(descriptor.getName(), new LazyShellCommand(descriptor, providerLoader));
+			}
+		}
+		return commands;
+	}
+
+	/**
+	 * A command whose implementation is instantiated on first use.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class LazyShellCommand implements ShellCommand {
+		/** Description of the command. **/
+		private final CommandDescriptor descriptor;
+		/** Class loader of the command class. **/
+		private final ClassLoader loader;
+		/** Instance of the command, once created. **/
+		private volatile ShellCommand command;
+
+		/**
+		 * Constructs a new proxy.
+		 * 
+		 * @param descriptor
+		 *            description of the command
+		 * @param loader
+		 *            class loader of the command class
+		 */
+		LazyShellCommand(CommandDescriptor descriptor, ClassLoader loader) {
+			this.descriptor = descriptor;
+			this.loader = loader;
+		}
+
+		/**
+		 * Returns the instance of the command, creating it on the first call.
+		 * 
+		 * @return instance of the command
+		 * @throws IllegalStateException
+		 *             if the command class can not be instantiated
+		 */
+		private ShellCommand command() {
+			ShellCommand result = command;
+			if (result == null) {
+				synchronized (this) {
+					result = command;
+					if (result == null) {
+						try {
+							result = Class.forName(descriptor.getClassName(), true, loader)
+									.asSubclass(ShellCommand.class).getConstructor().newInstance();
+						} catch (ReflectiveOperationException | ClassCastException | LinkageError ex) {
+							throw new IllegalStateException(
+									"The command " + descriptor.getName() + " could not be loaded.", ex);
+						}
+						command = result;
+					}
+				}
+			}
+			return result;
+		}
+
+		@Override
+		public ShellStatus executeCommand(Environment env, String arguments) {
+			ShellCommand command;
+			try {
+				command = command();
+			} catch (IllegalStateException ex) {
+				env.writeln(ex.getMessage());
+				return ShellStatus.FAILURE;
+			}
+			return command.executeCommand(env, arguments);
+		}
+
+		@Override
+		public String getCommandName() {
+			return descriptor.getName();
+		}
+
+		@Override
+		public String getCommandSummary() {
+			return descriptor.getSummary();
+		}
+
+		@Override
+		public boolean takesQuotedArguments() {
+			try {
+				return command().takesQuotedArguments();
+			} catch (IllegalStateException ex) {
+				// executing the command reports the failure
+				return false;
+			}
+		}
+
+		@Override
+		public List<String> getCommandDescription() {
+			List<String> description = descriptor.getDescription();
+			if (description != null) {
+				return description;
+			}
+			try {
+				return command().getCommandDescription();
+			} catch (IllegalStateException ex) {
+				return Arrays.asList(descriptor.getSummary(), ex.getMessage());
+			}
+		}
+	}
+}
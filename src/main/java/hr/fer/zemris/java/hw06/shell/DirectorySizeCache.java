@@ -0,0 +1,431 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded cache of directory sizes, used by the {@link DirectorySizer}.
+ * <p>
+ * A watching cache registers every directory it holds with a
+ * {@link WatchService}. When an entry of a directory is created, deleted or
+ * modified, the size of the directory and the sizes of all its cached
+ * ancestors are dropped, while the sizes of the unchanged sibling subtrees
+ * stay cached, so the next walk only re-lists the changed path. The watch is
+ * registered before the directory is listed, so no change after the listing
+ * can be missed.
+ * <p>
+ * The size of a directory is cached only while all its subdirectories are
+ * watched: dropping a directory - because it changed or because it could not
+ * be watched - drops its ancestors as well. A walk which was running while one
+ * of its directories was dropped does not cache the affected sizes.
+ * <p>
+ * The capacity bounds the number of cached sizes. When the cache is full, the
+ * size of the least recently used directory is evicted, but the directory
+ * stays watched while one of its ancestors is cached, so the sizes of the
+ * ancestors stay valid. The directories listed by the running walks are not
+ * evicted, and a walk caches the subdirectories before their parents, so a
+ * walk of a subtree larger than the capacity evicts its deepest directories
+ * and keeps the listed ones. The watches which no cached size depends on - of
+ * evicted subtrees or of abandoned walks - are cancelled when the last running
+ * walk ends.
+ * <p>
+ * The number of watches is bounded as well, since they are a limited resource
+ * of the whole system (<code>max_user_watches</code> on Linux). A directory
+ * which would exceed the watch limit is not watched, so it is dropped with its
+ * ancestors like any directory which can not be watched: only the subtrees
+ * which fit in the limit are cached, and the watches of the others are
+ * cancelled when the walks end. Since the sizes cached earlier may hold most
+ * of the watches, hitting the limit also evicts the older half of the cached
+ * sizes when the walks end, releasing their watches for the next walks.
+ * <p>
+ * A cache which does not watch simply memoizes the sizes until it is
+ * discarded.
+ *
+ * @author Mirna Baksa
+ *
+ */
+class DirectorySizeCache implements Closeable {
+	/** Sizes of the cached directories, in the order of their last use. **/
+	private final LinkedHashMap<Path, Long> sizes;
+	/** Maximum number of cached directories. **/
+	private final int capacity;
+	/** Whether the cached directories are watched. **/
+	private final boolean watching;
+	/** Maximum number of watched directories. **/
+	private final int watchLimit;
+
+	/** Watch service, created on the first registration. **/
+	private WatchService watcher;
+	/** Watch keys of the watched directories. **/
+	private final Map<Path, WatchKey> keys = new HashMap<>();
+	/** Number of directories dropped so far. **/
+	private long version;
+	/** Version of the last drop of each directory, during running walks. **/
+	private final Map<Path, Long> dropped = new HashMap<>();
+	/** Number of running walks. **/
+	private int walks;
+	/** Directories listed by the running walks, with their number of walks. **/
+	private final Map<Path, Integer> listed = new HashMap<>();
+	/** Number of watches being registered. **/
+	private int registering;
+	/** Whether a directory was not watched because of the limit. **/
+	private boolean watchLimitHit;
+
+	/**
+	 * Constructs a new cache.
+	 *
+	 * @param capacity
+	 *            maximum number of cached directories
+	 * @param watching
+	 *            whether the cached directories are watched for changes
+	 * @param watchLimit
+	 *            maximum number of watched directories
+	 */
+	DirectorySizeCache(int capacity, boolean watching, int watchLimit) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity must be positive. Was: " + capacity);
+		}
+		if (watchLimit < 1) {
+			throw new IllegalArgumentException("The watch limit must be positive. Was: " + watchLimit);
+		}
+		this.capacity = capacity;
+		this.watching = watching;
+		this.watchLimit = watchLimit;
+		this.sizes = new LinkedHashMap<>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns the cached size of the directory and marks it as recently
+	 * used.
+	 *
+	 * @param dir
+	 *            absolute, normalized path of the directory
+	 * @return cached size, or <code>null</code> if the size is not cached
+	 */
+	synchronized Long get(Path dir) {
+		return sizes.get(dir);
+	}
+
+	/**
+	 * Returns the number of cached directories.
+	 *
+	 * @return number of cached directories
+	 */
+	synchronized int size() {
+		return sizes.size();
+	}
+
+	/**
+	 * Returns the number of watched directories.
+	 *
+	 * @return number of watched directories
+	 */
+	synchronized int watchedCount() {
+		return keys.size();
+	}
+
+	/**
+	 * Starts a walk. The listed directories are not evicted until the walk
+	 * ends.
+	 *
+	 * @param dirs
+	 *            absolute, normalized paths of the directories listed by the
+	 *            walk
+	 * @return version which the walk passes to {@link #put(Path, long, long)}
+	 * @see #end(List)
+	 */
+	synchronized long begin(List<Path> dirs) {
+		walks++;
+		for (Path dir : dirs) {
+			listed.merge(dir, 1, Integer::sum);
+		}
+		return version;
+	}
+
+	/**
+	 * Ends a walk started by {@link #begin(List)}. When the last running walk
+	 * ends, the watches which no cached size depends on are cancelled.
+	 *
+	 * @param dirs
+	 *            directories passed to {@link #begin(List)}
+	 */
+	synchronized void end(List<Path> dirs) {
+		for (Path dir : dirs) {
+			listed.computeIfPresent(dir, (path, count) -> count == 1 ? null : count - 1);
+		}
+		while (sizes.size() > capacity) {
+			if (!evict()) {
+				break;
+			}
+		}
+		if (--walks == 0) {
+			dropped.clear();
+			if (watchLimitHit) {
+				watchLimitHit = false;
+				for (int i = sizes.size() / 2; i > 0; i--) {
+					if (!evict()) {
+						break;
+					}
+				}
+			}
+			unwatchUnused();
+		}
+	}
+
+	/**
+	 * Cancels the watches of the directories which are neither cached nor
+	 * descendants of a cached directory.
+	 */
+	private void unwatchUnused() {
+		// every cached size is watched, so there are unused watches only if
+		// there are more watches than sizes
+		if (keys.size() <= sizes.size()) {
+			return;
+		}
+
+		Iterator<Map.Entry<Path, WatchKey>> iterator = keys.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<Path, WatchKey> entry = iterator.next();
+			if (!isCachedOrBelowCached(entry.getKey())) {
+				entry.getValue().cancel();
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the directory or one of its ancestors is cached, without
+	 * marking it as used.
+	 *
+	 * @param dir
+	 *            absolute, normalized path of the directory
+	 * @return <code>true</code> if the size of the directory or of one of its
+	 *         ancestors is cached
+	 */
+	private boolean isCachedOrBelowCached(Path dir) {
+		for (Path path = dir; path != null; path = path.getParent()) {
+			if (sizes.containsKey(path)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Watches the directory before it is listed. If the directory can not be
+	 * watched, or watching it would exceed the watch limit, it and its
+	 * ancestors are dropped, so their sizes are not cached by the running
+	 * walks.
+	 *
+	 * @param dir
+	 *            absolute, normalized path of the directory
+	 */
+	void watch(Path dir) {
+		if (!watching) {
+			return;
+		}
+
+		synchronized (this) {
+			if (keys.containsKey(dir)) {
+				return;
+			}
+			if (keys.size() + registering >= watchLimit) {
+				watchLimitHit = true;
+				drop(dir);
+				return;
+			}
+			registering++;
+		}
+
+		WatchKey key = null;
+		try {
+			WatchService watcher = watcher();
+			key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+					StandardWatchEventKinds.ENTRY_MODIFY);
+		} catch (IOException | ClosedWatchServiceException | UnsupportedOperationException ex) {
+			// the directory is dropped below
+		} finally {
+			synchronized (this) {
+				registering--;
+				if (key != null) {
+					keys.put(dir, key);
+				} else {
+					drop(dir);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Caches the size of a completely walked directory, unless the directory
+	 * or one of its descendants was dropped since the walk began.
+	 *
+	 * @param dir
+	 *            absolute, normalized path of the directory
+	 * @param size
+	 *            size of the directory
+	 * @param since
+	 *            version returned by {@link #begin(List)}
+	 */
+	synchronized void put(Path dir, long size, long since) {
+		Long droppedAt = dropped.get(dir);
+		if (droppedAt != null && droppedAt > since) {
+			return;
+		}
+		if (watching && !keys.containsKey(dir)) {
+			drop(dir);
+			return;
+		}
+
+		sizes.put(dir, size);
+		if (sizes.size() > capacity) {
+			evict();
+		}
+	}
+
+	/**
+	 * Evicts the size of the least recently used directory which is not
+	 * listed by a running walk. The directory stays watched, for the sizes of
+	 * its cached ancestors.
+	 *
+	 * @return <code>true</code> if a size was evicted, <code>false</code> if
+	 *         all the cached directories are listed
+	 */
+	private boolean evict() {
+		Iterator<Path> iterator = sizes.keySet().iterator();
+		while (iterator.hasNext()) {
+			if (!listed.containsKey(iterator.next())) {
+				iterator.remove();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Drops the directory and all its cached ancestors, and stops watching
+	 * them.
+	 *
+	 * @param dir
+	 *            absolute, normalized path of the directory
+	 */
+	synchronized void drop(Path dir) {
+		version++;
+		for (Path path = dir; path != null; path = path.getParent()) {
+			sizes.remove(path);
+			WatchKey key = keys.remove(path);
+			if (key != null) {
+				key.cancel();
+			}
+			if (walks > 0) {
+				dropped.put(path, version);
+			}
+		}
+	}
+
+	/**
+	 * Drops the directory, its ancestors and all its cached descendants.
+	 *
+	 * @param dir
+	 *            absolute, normalized path of the directory
+	 */
+	synchronized void dropSubtree(Path dir) {
+		Set<Path> descendants = new HashSet<>();
+		for (Path path : sizes.keySet()) {
+			if (path.startsWith(dir)) {
+				descendants.add(path);
+			}
+		}
+		for (Path path : keys.keySet()) {
+			if (path.startsWith(dir)) {
+				descendants.add(path);
+			}
+		}
+		for (Path path : descendants) {
+			drop(path);
+		}
+		drop(dir);
+	}
+
+	/**
+	 * Returns the watch service, creating it and starting the thread which
+	 * handles its events on the first call.
+	 *
+	 * @return watch service
+	 * @throws IOException
+	 *             if the watch service can not be created
+	 */
+	private synchronized WatchService watcher() throws IOException {
+		if (watcher == null) {
+			watcher = FileSystems.getDefault().newWatchService();
+			WatchService created = watcher;
+			Thread thread = new Thread(() -> handleEvents(created), "size-cache-watcher");
+			thread.setDaemon(true);
+			thread.start();
+		}
+		return watcher;
+	}
+
+	/**
+	 * Drops the changed directories until the watch service is closed.
+	 *
+	 * @param watcher
+	 *            watch service to take the events from
+	 */
+	private void handleEvents(WatchService watcher) {
+		while (true) {
+			WatchKey key;
+			try {
+				key = watcher.take();
+			} catch (InterruptedException | ClosedWatchServiceException ex) {
+				return;
+			}
+
+			Path dir = (Path) key.watchable();
+			boolean overflow = false;
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+					overflow = true;
+				} else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+					dropSubtree(dir.resolve((Path) event.context()));
+				}
+			}
+			if (overflow || !key.reset()) {
+				dropSubtree(dir);
+			} else {
+				drop(dir);
+			}
+		}
+	}
+
+	/**
+	 * Stops watching the directories and empties the cache.
+	 */
+	@Override
+	public void close() throws IOException {
+		WatchService watcher;
+		synchronized (this) {
+			sizes.clear();
+			keys.clear();
+			watcher = this.watcher;
+			this.watcher = null;
+		}
+		if (watcher != null) {
+			watcher.close();
+		}
+	}
+}
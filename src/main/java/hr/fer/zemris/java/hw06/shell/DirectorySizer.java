@@ -0,0 +1,293 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Computes the sizes of directories - the total size of all the files in
+ * their subtrees.
+ * <p>
+ * Subtrees are walked in parallel on a fork-join pool: each directory is a
+ * task which sums the sizes of its files and forks a task per subdirectory.
+ * File attributes are read through NIO without following symbolic links, so
+ * a link is counted by its own size and a cycle of links can not make the
+ * walk endless. Directories which can not be read count as empty.
+ * <p>
+ * The size of every completely walked directory is cached, so a subtree is
+ * not walked twice. A sizer constructed with a capacity keeps the sizes of at
+ * most that many directories, evicting the least recently used - the deepest
+ * directories of a walk go first, so the measured directories stay cached -
+ * and watches the cached subtrees for changes, up to a limit on the number of
+ * watched directories: a change drops only the changed
+ * directory and its ancestors, so the next walk re-lists just the changed
+ * path and reuses the sizes of the unchanged subtrees. Such a sizer is meant
+ * to be shared by all the commands of a shell. A sizer constructed without a
+ * capacity memoizes the sizes for its lifetime, without watching.
+ * <p>
+ * A walk can be limited in time; directories whose size is not known when
+ * the time runs out are reported as {@value #UNKNOWN}.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class DirectorySizer implements Closeable {
+	/** Size reported for a directory which was not completely walked. **/
+	public static final long UNKNOWN = -1;
+	/** Default number of directories kept by a watching sizer. **/
+	public static final int DEFAULT_CAPACITY = 8192;
+	/**
+	 * Default number of directories watched by a watching sizer, half of the
+	 * smallest default of <code>max_user_watches</code> on Linux.
+	 **/
+	public static final int DEFAULT_WATCH_LIMIT = 4096;
+	/** Pool walking the directories. **/
+	private final ForkJoinPool pool;
+	/** Sizes of the completely walked directories. **/
+	private final DirectorySizeCache cache;
+
+	/**
+	 * Constructs a new sizer which memoizes the sizes for its lifetime.
+	 * 
+	 * @param pool
+	 *            pool walking the directories, see {@link IoPool}
+	 */
+	public DirectorySizer(ForkJoinPool pool) {
+		this.pool = pool;
+		this.cache = new DirectorySizeCache(Integer.MAX_VALUE, false, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructs a new sizer which keeps the sizes of at most the given
+	 * number of directories and watches them for changes.
+	 * 
+	 * @param pool
+	 *            pool walking the directories, see {@link IoPool}
+	 * @param capacity
+	 *            maximum number of cached directories, must be positive
+	 */
+	public DirectorySizer(ForkJoinPool pool, int capacity) {
+		this(pool, capacity, DEFAULT_WATCH_LIMIT);
+	}
+
+	/**
+	 * Constructs a new sizer which keeps the sizes of at most the given
+	 * number of directories and watches at most the given number of
+	 * directories for changes.
+	 * 
+	 * @param pool
+	 *            pool walking the directories, see {@link IoPool}
+	 * @param capacity
+	 *            maximum number of cached directories, must be positive
+	 * @param watchLimit
+	 *            maximum number of watched directories, must be positive
+	 */
+	public DirectorySizer(ForkJoinPool pool, int capacity, int watchLimit) {
+		this.pool = pool;
+		this.cache = new DirectorySizeCache(capacity, true, watchLimit);
+	}
+
+	/**
+	 * Computes the sizes of the directories in parallel, waiting at most the
+	 * given time for all of them together. If the time runs out or the
+	 * calling thread is interrupted, the walks are abandoned and the sizes
+	 * which are not known are {@value #UNKNOWN}; the interrupt is kept.
+	 * 
+	 * @param dirs
+	 *            directories to measure
+	 * @param timeout
+	 *            maximum time to wait, in ns, or {@link Long#MAX_VALUE} for no
+	 *            limit
+	 * @return sizes of the directories, in the order of the arguments
+	 */
+	public long[] sizes(List<Path> dirs, long timeout) {
+		List<Path> paths = new ArrayList<>(dirs.size());
+		for (Path dir : dirs) {
+			paths.add(dir.toAbsolutePath().normalize());
+		}
+
+		long since = cache.begin(paths);
+		try {
+			AtomicBoolean aborted = new AtomicBoolean();
+			long[] result = new long[paths.size()];
+			List<ForkJoinTask<Long>> tasks = new ArrayList<>(paths.size());
+			for (int i = 0; i < result.length; i++) {
+				Long known = cache.get(paths.get(i));
+				if (known != null) {
+					result[i] = known;
+				}
+				tasks.add(known != null ? null : pool.submit(new SizeTask(paths.get(i), since, aborted)));
+			}
+
+			long deadline = timeout == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + timeout;
+			for (int i = 0; i < result.length; i++) {
+				ForkJoinTask<Long> task = tasks.get(i);
+				if (task == null) {
+					continue;
+				}
+				if (!aborted.get()) {
+					try {
+						if (deadline == Long.MAX_VALUE) {
+							result[i] = task.get();
+						} else {
+							result[i] = task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+						}
+						continue;
+					} catch (TimeoutException | ExecutionException ex) {
+						aborted.set(true);
+					} catch (InterruptedException ex) {
+						aborted.set(true);
+						Thread.currentThread().interrupt();
+					}
+				}
+				// an abandoned walk may have finished with a partial sum
+				Long size = cache.get(paths.get(i));
+				result[i] = size == null ? UNKNOWN : size;
+			}
+			return result;
+		} finally {
+			cache.end(paths);
+		}
+	}
+
+	/**
+	 * Computes the size of a single directory, without a time limit.
+	 * 
+	 * @param dir
+	 *            directory to measure
+	 * @return size of the directory, or {@value #UNKNOWN} if the walk was
+	 *         interrupted
+	 */
+	public long size(Path dir) {
+		List<Path> dirs = new ArrayList<>(1);
+		dirs.add(dir);
+		return sizes(dirs, Long.MAX_VALUE)[0];
+	}
+
+	/**
+	 * Returns the number of directories whose sizes are cached.
+	 * 
+	 * @return number of cached directories
+	 */
+	public int getCachedCount() {
+		return cache.size();
+	}
+
+	/**
+	 * Checks whether the size of the directory is cached.
+	 * 
+	 * @param dir
+	 *            directory to check
+	 * @return <code>true</code> if the size of the directory is cached
+	 */
+	boolean isCached(Path dir) {
+		return cache.get(dir.toAbsolutePath().normalize()) != null;
+	}
+
+	/**
+	 * Returns the number of directories watched for changes.
+	 * 
+	 * @return number of watched directories
+	 */
+	int getWatchedCount() {
+		return cache.watchedCount();
+	}
+
+	/**
+	 * Stops watching the cached directories and empties the cache.
+	 */
+	@Override
+	public void close() throws IOException {
+		cache.close();
+	}
+
+	/**
+	 * Task which computes the size of a single directory.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	private class SizeTask extends RecursiveTask<Long> {
+		/** Serial version UID. **/
+		private static final long serialVersionUID = 1L;
+		/** Directory to measure. **/
+		private final Path dir;
+		/** Cache version when the walk began. **/
+		private final long since;
+		/** Whether the walk was abandoned. **/
+		private final AtomicBoolean aborted;
+
+		/**
+		 * Constructs a new task.
+		 * 
+		 * @param dir
+		 *            absolute, normalized path of the directory to measure
+		 * @param since
+		 *            cache version when the walk began
+		 * @param aborted
+		 *            whether the walk was abandoned
+		 */
+		SizeTask(Path dir, long since, AtomicBoolean aborted) {
+			this.dir = dir;
+			this.since = since;
+			this.aborted = aborted;
+		}
+
+		@Override
+		protected Long compute() {
+			Long known = cache.get(dir);
+			if (known != null) {
+				return known;
+			}
+
+			cache.watch(dir);
+			long size = 0;
+			List<SizeTask> subtasks = new ArrayList<>();
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path entry : stream) {
+					if (aborted.get()) {
+						break;
+					}
+					BasicFileAttributes attrs;
+					try {
+						attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+					} catch (IOException ex) {
+						// the entry vanished or can not be read
+						continue;
+					}
+					if (attrs.isDirectory()) {
+						SizeTask subtask = new SizeTask(entry, since, aborted);
+						subtask.fork();
+						subtasks.add(subtask);
+					} else {
+						size += attrs.size();
+					}
+				}
+			} catch (IOException | DirectoryIteratorException ex) {
+				// an unreadable directory counts with what could be read
+			}
+
+			for (SizeTask subtask : subtasks) {
+				size += subtask.join();
+			}
+			if (!aborted.get()) {
+				cache.put(dir, size, since);
+			}
+			return size;
+		}
+	}
+}
@@ -1,6 +1,9 @@
 package hr.fer.zemris.java.hw06.shell;
 
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.SortedMap;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Implementors of this interface offer communication between the user and the
@@ -39,6 +42,54 @@ public interface Environment {
 	 */
 	public void writeln(String text) throws ShellIOException;
 
+	/**
+	 * Returns the channel from where the command reads the data piped into
+	 * it by the previous command of a pipeline, or <code>null</code> if the
+	 * command is not fed by another command. The channel must not be closed.
+	 * 
+	 * @return input channel, or <code>null</code>
+	 */
+	public ReadableByteChannel getInputChannel();
+
+	/**
+	 * Returns the channel for writing raw bytes to the console. The bytes are
+	 * written in order with the text written by {@link #write(String)} and
+	 * {@link #writeln(String)}, and are subject to the same buffering. The
+	 * channel must not be closed.
+	 * 
+	 * @return output channel
+	 */
+	public WritableByteChannel getOutputChannel();
+
+	/**
+	 * Writes all the buffered output to the console.
+	 * 
+	 * @throws ShellIOException
+	 *             in case of an I/O error
+	 */
+	public void flush() throws ShellIOException;
+
+	/**
+	 * Returns <code>true</code> if the output is batched.
+	 * <p>
+	 * In the batched mode, the output is written to the console only when the
+	 * buffer fills, before reading from the console and when {@link #flush()}
+	 * is called - which the shell does after each command. Otherwise each
+	 * write is flushed immediately.
+	 * 
+	 * @return <code>true</code> if the output is batched
+	 */
+	public boolean isBatched();
+
+	/**
+	 * Turns the batched mode of the output on or off.
+	 * 
+	 * @param batched
+	 *            <code>true</code> to batch the output
+	 * @see #isBatched()
+	 */
+	public void setBatched(boolean batched);
+
 	/**
 	 * Returns an unmodifiable map of supported commands.
 	 * 
@@ -46,6 +97,46 @@ public interface Environment {
 	 */
 	public SortedMap<String, ShellCommand> commands();
 
+	/**
+	 * Returns the manager of the background jobs of the shell.
+	 * 
+	 * @return job manager
+	 */
+	public JobManager jobs();
+
+	/**
+	 * Returns the metrics of the commands executed by the shell.
+	 * 
+	 * @return command metrics
+	 */
+	public CommandMetrics metrics();
+
+	/**
+	 * Returns the directory sizer of the shell, which caches the sizes of the
+	 * measured directories across commands.
+	 * 
+	 * @return directory sizer
+	 */
+	public DirectorySizer sizer();
+
+	/**
+	 * Returns the pool on which the commands walk and list the file system.
+	 * The pool is owned by the shell and must not be shut down by the
+	 * commands.
+	 * 
+	 * @return pool for the file system work
+	 * @see IoPool
+	 */
+	public ForkJoinPool ioPool();
+
+	/**
+	 * Returns the symbols of the shell. Changing them through the returned
+	 * object does not print anything.
+	 * 
+	 * @return symbols of the shell
+	 */
+	public ShellSymbols symbols();
+
 	/**
 	 * Returns the multi line symbol for the shell.
 	 * <p>
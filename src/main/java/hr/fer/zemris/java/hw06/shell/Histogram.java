@@ -0,0 +1,161 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of non-negative values with a bounded relative error, in the
+ * style of HdrHistogram.
+ * <p>
+ * Values below {@value #EXACT_LIMIT} are counted exactly. Larger values are
+ * grouped by their power of two, and each power of two is split into
+ * {@value #SUB_BUCKETS} equal sub-buckets, so a value is recorded with a
+ * relative error below 1/{@value #SUB_BUCKETS}. The whole range of
+ * <code>long</code> takes a fixed array of counters and recording a value
+ * costs a few bit operations and an atomic increment, so the histogram can
+ * be updated from multiple threads at once.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class Histogram {
+	/** Number of bits of the sub-bucket index. **/
+	private static final int SUB_BUCKET_BITS = 5;
+	/** Number of sub-buckets of each power of two. **/
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Values below this limit are counted exactly. **/
+	private static final int EXACT_LIMIT = 2 * SUB_BUCKETS;
+	/** Number of counters. **/
+	private static final int BUCKETS = EXACT_LIMIT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+	/** Counters of the buckets. **/
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	/** Number of recorded values. **/
+	private final AtomicLong count = new AtomicLong();
+	/** Sum of recorded values. **/
+	private final AtomicLong sum = new AtomicLong();
+	/** Smallest recorded value. **/
+	private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+	/** Largest recorded value. **/
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a value. Negative values are recorded as <code>0</code>.
+	 * 
+	 * @param value
+	 *            value to record
+	 */
+	public void record(long value) {
+		value = Math.max(0, value);
+		counts.incrementAndGet(indexOf(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		min.accumulateAndGet(value, Math::min);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * Returns the number of recorded values.
+	 * 
+	 * @return number of values
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the sum of the recorded values.
+	 * 
+	 * @return sum of the values
+	 */
+	public long getSum() {
+		return sum.get();
+	}
+
+	/**
+	 * Returns the mean of the recorded values.
+	 * 
+	 * @return mean, or <code>0</code> if no values were recorded
+	 */
+	public double getMean() {
+		long count = this.count.get();
+		return count == 0 ? 0 : (double) sum.get() / count;
+	}
+
+	/**
+	 * Returns the smallest recorded value.
+	 * 
+	 * @return smallest value, or <code>0</code> if no values were recorded
+	 */
+	public long getMin() {
+		return count.get() == 0 ? 0 : min.get();
+	}
+
+	/**
+	 * Returns the largest recorded value.
+	 * 
+	 * @return largest value
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns the value below or at which the given percentage of the recorded
+	 * values lies, within the precision of the histogram.
+	 * 
+	 * @param percentile
+	 *            percentage, between 0 and 100
+	 * @return value at the percentile, or <code>0</code> if no values were
+	 *         recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+
+		long target = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= target) {
+				return Math.max(getMin(), Math.min(getMax(), highestValueOf(i)));
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Returns the index of the bucket of the value.
+	 * 
+	 * @param value
+	 *            non-negative value
+	 * @return index of the bucket
+	 */
+	static int indexOf(long value) {
+		if (value < EXACT_LIMIT) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int top = (int) (value >>> (magnitude - SUB_BUCKET_BITS));
+		return EXACT_LIMIT + (magnitude - SUB_BUCKET_BITS - 1) * SUB_BUCKETS + top - SUB_BUCKETS;
+	}
+
+	/**
+	 * Returns the largest value which falls into the bucket.
+	 * 
+	 * @param index
+	 *            index of the bucket
+	 * @return largest value of the bucket
+	 */
+	static long highestValueOf(int index) {
+		if (index < EXACT_LIMIT) {
+			return index;
+		}
+		int magnitude = (index - EXACT_LIMIT) / SUB_BUCKETS + SUB_BUCKET_BITS + 1;
+		long top = (index - EXACT_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+		int shift = magnitude - SUB_BUCKET_BITS;
+		return ((top + 1) << shift) - 1;
+	}
+}
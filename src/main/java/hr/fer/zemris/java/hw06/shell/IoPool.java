@@ -0,0 +1,37 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Creates the pool on which the commands of a shell walk and list the file
+ * system.
+ * <p>
+ * Walking directories is bound by the latency of the file system rather than
+ * by the CPU, so the pool has several threads per processor. A single pool is
+ * owned by each {@link ShellEnvironment} and {@link ShellServer}, shared by
+ * the directory sizer, <code>du</code> and <code>tree</code> through
+ * {@link Environment#ioPool()}, and shut down with its owner. Its threads are
+ * daemons, so they never keep the shell alive.
+ *
+ * @author Mirna Baksa
+ *
+ */
+public class IoPool {
+	/** Number of threads of the pool. **/
+	public static final int PARALLELISM = Math.max(8, 4 * Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Private constructor, the class only offers static members.
+	 */
+	private IoPool() {
+	}
+
+	/**
+	 * Creates a new pool with {@link #PARALLELISM} threads.
+	 *
+	 * @return new pool
+	 */
+	public static ForkJoinPool create() {
+		return new ForkJoinPool(PARALLELISM);
+	}
+}
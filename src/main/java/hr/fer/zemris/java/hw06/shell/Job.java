@@ -0,0 +1,250 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A command running in the background, started by {@link JobManager}, in a
+ * {@link CapturedEnvironment}.
+ * <p>
+ * The output of the job is captured instead of being written to the console,
+ * so it does not interleave with the output of the shell; it is streamed out
+ * by the <code>wait</code> command and discarded when the job is removed. A
+ * large output is spilled to a temporary file, see
+ * {@link CapturedEnvironment}. A job can not read from the
+ * console - reading a line returns <code>null</code>, as if the input ended.
+ * <p>
+ * Like a Unix subshell, a job sees only the jobs it started itself, so
+ * <code>wait</code> and <code>kill</code> inside a job can not reach the job
+ * itself or the other jobs of the shell.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class Job {
+	/**
+	 * States of a job.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	public enum State {
+		/** The job is running. **/
+		RUNNING("Running"),
+		/** The command finished successfully. **/
+		DONE("Done"),
+		/** The command failed. **/
+		FAILED("Failed"),
+		/** The job was killed. **/
+		KILLED("Killed");
+
+		/** Name of the state, as shown to the user. **/
+		private final String label;
+
+		/**
+		 * Constructs a new state.
+		 * 
+		 * @param label
+		 *            name of the state, as shown to the user
+		 */
+		private State(String label) {
+			this.label = label;
+		}
+
+		@Override
+		public String toString() {
+			return label;
+		}
+	}
+
+	/** Number of the job. **/
+	private final int id;
+	/** Command with the arguments. **/
+	private final String command;
+	/** Environment which captures the output. **/
+	private final CapturedEnvironment jobEnv;
+	/** Result of the command. **/
+	private final Future<ShellStatus> future;
+	/** Current state. **/
+	private volatile State state = State.RUNNING;
+
+	/**
+	 * Constructs and starts a new job.
+	 * 
+	 * @param id
+	 *            number of the job
+	 * @param command
+	 *            command with the arguments, possibly a pipeline
+	 * @param env
+	 *            environment of the shell
+	 * @param executor
+	 *            executor on which the job runs
+	 */
+	Job(int id, String command, Environment env, ExecutorService executor) {
+		this.id = id;
+		this.command = command;
+
+		this.jobEnv = new JobEnvironment(env);
+		this.future = executor.submit(this::run);
+	}
+
+	/**
+	 * Executes the command and records its final state.
+	 * 
+	 * @return status of the command
+	 */
+	private ShellStatus run() {
+		ShellStatus status = ShellStatus.FAILURE;
+		try {
+			status = MyShell.execute(jobEnv, command);
+		} catch (RuntimeException ex) {
+			jobEnv.writeln("The job ended with an error: " + ex);
+		} finally {
+			synchronized (this) {
+				if (state == State.RUNNING) {
+					state = status == ShellStatus.FAILURE ? State.FAILED : State.DONE;
+				}
+			}
+		}
+		return status;
+	}
+
+	/**
+	 * Returns the number of the job.
+	 * 
+	 * @return number of the job
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Returns the command of the job.
+	 * 
+	 * @return command with the arguments
+	 */
+	public String getCommand() {
+		return command;
+	}
+
+	/**
+	 * Returns the current state of the job.
+	 * 
+	 * @return state of the job
+	 */
+	public State getState() {
+		return state;
+	}
+
+	/**
+	 * Returns the number of bytes the job has written so far.
+	 * 
+	 * @return size of the captured output
+	 */
+	public long getOutputSize() {
+		return jobEnv.getOutputSize();
+	}
+
+	/**
+	 * Returns the output the job has written so far, decoded in the platform
+	 * default charset.
+	 * 
+	 * @return captured output
+	 */
+	public String getOutput() {
+		return jobEnv.getOutput();
+	}
+
+	/**
+	 * Writes the output the job has written so far to the channel, in chunks.
+	 * 
+	 * @param channel
+	 *            channel where the output is written
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public void writeOutputTo(WritableByteChannel channel) throws IOException {
+		jobEnv.writeOutputTo(channel);
+	}
+
+	/**
+	 * Discards the captured output of the job. The output the job writes
+	 * afterwards is discarded as well.
+	 */
+	void discardOutput() {
+		try {
+			jobEnv.close();
+		} catch (IOException ex) {
+			// the spill file is deleted when it is closed
+		}
+	}
+
+	/**
+	 * Waits until the job finishes.
+	 * 
+	 * @return final state of the job
+	 * @throws InterruptedException
+	 *             if the waiting thread is interrupted
+	 */
+	public State waitFor() throws InterruptedException {
+		try {
+			future.get();
+		} catch (CancellationException | ExecutionException ex) {
+			// the state is already recorded
+		}
+		return state;
+	}
+
+	/**
+	 * Kills the job by interrupting its thread. Commands which do not react to
+	 * interrupts run until they finish, but their result is discarded.
+	 * 
+	 * @return <code>true</code> if the job was running
+	 */
+	public boolean kill() {
+		synchronized (this) {
+			if (state != State.RUNNING) {
+				return false;
+			}
+			state = State.KILLED;
+		}
+		future.cancel(true);
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + id + "] " + state + " " + command;
+	}
+
+	/**
+	 * Environment of a job, which captures the output and keeps its own
+	 * background jobs.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class JobEnvironment extends CapturedEnvironment {
+		/** Jobs started by the job. **/
+		private final JobManager jobs = new JobManager();
+
+		/**
+		 * Constructs a new environment.
+		 * 
+		 * @param parent
+		 *            environment of the shell
+		 */
+		JobEnvironment(Environment parent) {
+			super(parent);
+		}
+
+		@Override
+		public JobManager jobs() {
+			return jobs;
+		}
+	}
+}
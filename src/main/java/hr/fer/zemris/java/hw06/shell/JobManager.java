@@ -0,0 +1,99 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts and keeps track of the background {@link Job}s of a shell.
+ * <p>
+ * Jobs run on a virtual-thread-per-task executor where the platform offers
+ * one (Java 21 and later), so thousands of mostly-blocked jobs are cheap.
+ * Otherwise they run on a cached pool of daemon threads. Either way the
+ * threads do not keep the shell alive after it exits.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class JobManager {
+	/** Executor on which the jobs run. **/
+	private final ExecutorService executor = newExecutor();
+	/** Jobs by their number. **/
+	private final Map<Integer, Job> jobs = new ConcurrentSkipListMap<>();
+	/** Number of the next job. **/
+	private final AtomicInteger nextId = new AtomicInteger(1);
+
+	/**
+	 * Starts the command as a background job.
+	 * 
+	 * @param env
+	 *            environment of the shell
+	 * @param command
+	 *            command with the arguments, possibly a pipeline
+	 * @return started job
+	 */
+	public Job start(Environment env, String command) {
+		int id = nextId.getAndIncrement();
+		Job job = new Job(id, command, env, executor);
+		jobs.put(id, job);
+		return job;
+	}
+
+	/**
+	 * Returns the job with the given number.
+	 * 
+	 * @param id
+	 *            number of the job
+	 * @return job, or <code>null</code> if there is no such job
+	 */
+	public Job get(int id) {
+		return jobs.get(id);
+	}
+
+	/**
+	 * Returns all the jobs which were not removed, ordered by their numbers.
+	 * 
+	 * @return list of jobs
+	 */
+	public List<Job> list() {
+		return new ArrayList<>(jobs.values());
+	}
+
+	/**
+	 * Forgets the job, after its output was written out, and discards the
+	 * output.
+	 * 
+	 * @param id
+	 *            number of the job
+	 */
+	public void remove(int id) {
+		Job job = jobs.remove(id);
+		if (job != null) {
+			job.discardOutput();
+		}
+	}
+
+	/**
+	 * Creates the executor for the jobs - a virtual-thread-per-task executor
+	 * if the platform supports it, otherwise a cached pool of daemon threads.
+	 * 
+	 * @return executor for the jobs
+	 */
+	private static ExecutorService newExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException ex) {
+			return Executors.newCachedThreadPool(r -> {
+				Thread thread = new Thread(r, "shell-job");
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+	}
+}
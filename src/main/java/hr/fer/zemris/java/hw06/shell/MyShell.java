@@ -1,68 +1,491 @@
 package hr.fer.zemris.java.hw06.shell;
 
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
 import hr.fer.zemris.java.hw06.shell.commands.*;
 
 /**
  * Implements a shell. A shell is a command language interpreter that takes your
  * commands from the user and performs the operation defined by the command.
  * <p>
- * This shell offers 10 different commands: cat, charsets, copy, exit, help,
- * hexdump, ls, mkdir, symbol and tree. For detailed info about each command,
- * see documentation of each command (listed below).
+ * This shell offers 18 different commands: cat, charsets, copy, du, exit,
+ * help, hexdump, jobs, kill, ls, mkdir, parallel, stats, symbol, time,
+ * timeout, tree and wait. For detailed info
+ * about each command, see documentation of each command (listed below).
  * <p>
  * A command can be one-lined or can stretch through multiple lines - in case of
  * multiple line input, each line must end with a multi line character defined
  * by the shell. Quotes are allowed in the arguments representing paths.
+ * <p>
+ * Besides the interactive mode, the shell can execute a script file or a list
+ * of commands given with the <code>-c</code> option, separated by
+ * <code>;</code>. In that case no prompts are printed and the exit code of the
+ * program tells whether all the commands succeeded: {@value #EXIT_SUCCESS} if
+ * they did, {@value #EXIT_FAILURE} if a command failed and
+ * {@value #EXIT_ERROR} if the script could not be read or an I/O error
+ * occured. With the <code>-e</code> option, the script stops at the first
+ * failed command.
+ * <p>
+ * Commands can be connected into a {@link Pipeline} with <code>|</code>, in
+ * which case the output of each command is the input of the next one. A
+ * command ending with <code>&</code> runs in the background as a {@link Job};
+ * jobs are controlled by the jobs, wait and kill commands. A running command
+ * is cancelled by Ctrl-C or by a time limit of the timeout command.
  * 
  * @see CatShellCommand
  * @see CharsetsShellCommand
  * @see CopyShellCommand
+ * @see DuShellCommand
  * @see ExitShellCommand
  * @see HelpShellCommand
  * @see HexdumpShellCommand
+ * @see JobsShellCommand
+ * @see KillShellCommand
  * @see LsShellCommand
  * @see MkdirShellCommand
+ * @see ParallelShellCommand
+ * @see StatsShellCommand
  * @see SymbolShellCommand
+ * @see TimeShellCommand
+ * @see TimeoutShellCommand
  * @see TreeShellCommand
+ * @see WaitShellCommand
  * 
  * @author Mirna Baksa
  *
  */
 public class MyShell {
+	/** Exit code when all the commands succeeded. **/
+	public static final int EXIT_SUCCESS = 0;
+	/** Exit code when a command failed. **/
+	public static final int EXIT_FAILURE = 1;
+	/** Exit code when the script could not be read or an I/O error occured. **/
+	public static final int EXIT_ERROR = 2;
+	/** Exit code when the shell is interrupted at the prompt. **/
+	public static final int EXIT_INTERRUPTED = 130;
+
+	/** Whether the interactive shell is executing a command. **/
+	private static volatile boolean commandRunning;
+
 	/**
 	 * Main method from which the program execution starts.
 	 * <p>
-	 * The method receives input from the console. For detailed info about the
-	 * input call the "help" command. The shell is terminated by the "exit"
-	 * command.
+	 * Without arguments, the method receives input from the console. For
+	 * detailed info about the input call the "help" command. The shell is
+	 * terminated by the "exit" command.
+	 * <p>
+	 * Otherwise the arguments are <code>[-e] script</code> or
+	 * <code>[-e] -c "command; command"</code>, and the commands are executed
+	 * without prompts. Lines of the script which are empty or start with
+	 * <code>#</code> are skipped.
+	 * <p>
+	 * With the arguments <code>--server address</code>, the shell serves
+	 * sessions to network clients instead; see {@link ShellServer}.
+	 * <p>
+	 * If the {@value CommandMetrics#DUMP_PROPERTY} system property is set, the
+	 * report of the command metrics is written to the file it names when the
+	 * shell ends.
 	 * 
 	 * @param args
-	 *            command line arguments - not used
+	 *            command line arguments
 	 */
 	public static void main(String[] args) {
-		Environment env = new ShellEnvironment();
+		if (args.length == 2 && args[0].equals("--server")) {
+			runServer(args[1]);
+			return;
+		}
+
+		ShellEnvironment env = new ShellEnvironment();
+		if (args.length == 0) {
+			runInteractive(env);
+			dumpMetrics(env);
+			env.close();
+			return;
+		}
+
+		boolean stopOnError = false;
+		String commandString = null;
+		String scriptFile = null;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-e")) {
+				stopOnError = true;
+			} else if (args[i].equals("-c") && i + 1 < args.length && commandString == null) {
+				commandString = args[++i];
+			} else if (!args[i].startsWith("-") && scriptFile == null) {
+				scriptFile = args[i];
+			} else {
+				System.err.println("Invalid arguments. Expected [-e] script or [-e] -c \"command; command\".");
+				System.exit(EXIT_ERROR);
+			}
+		}
+		if ((commandString == null) == (scriptFile == null)) {
+			System.err.println("Expected either a script or the -c option.");
+			System.exit(EXIT_ERROR);
+		}
+
+		List<String> commands;
+		if (commandString != null) {
+			commands = splitCommands(commandString);
+		} else {
+			try {
+				commands = parseScript(Files.readAllLines(Paths.get(scriptFile), Charset.defaultCharset()),
+						env.getMorelinesSymbol());
+			} catch (IOException | InvalidPathException ex) {
+				System.err.println("The script " + scriptFile + " could not be read.");
+				System.exit(EXIT_ERROR);
+				return;
+			}
+		}
+
+		int exitCode = runScript(env, commands, stopOnError);
+		dumpMetrics(env);
+		env.close();
+		System.exit(exitCode);
+	}
+
+	/**
+	 * Serves shell sessions on the address until the process is killed.
+	 * 
+	 * @param address
+	 *            address of the server
+	 * @see ShellServer#parseAddress(String)
+	 */
+	private static void runServer(String address) {
+		try (ShellServer server = new ShellServer(ShellServer.parseAddress(address), ShellServer.DEFAULT_WORKERS)) {
+			System.err.println("Listening on " + server.getLocalAddress());
+			server.run();
+		} catch (IOException | IllegalArgumentException ex) {
+			System.err.println("The server could not be started: " + ex.getMessage());
+			System.exit(EXIT_ERROR);
+		}
+	}
+
+	/**
+	 * Writes the report of the command metrics to the file named by the
+	 * {@value CommandMetrics#DUMP_PROPERTY} system property, if it is set.
+	 * 
+	 * @param env
+	 *            environment of the shell
+	 */
+	private static void dumpMetrics(Environment env) {
+		String file = System.getProperty(CommandMetrics.DUMP_PROPERTY);
+		if (file == null) {
+			return;
+		}
+		try {
+			env.metrics().dump(Paths.get(file));
+		} catch (IOException | InvalidPathException ex) {
+			System.err.println("The command metrics could not be written to " + file + ".");
+		}
+	}
+
+	/**
+	 * Reads and executes the commands entered by the user, until the "exit"
+	 * command or the end of the input.
+	 * 
+	 * @param env
+	 *            environment for communicating with the user
+	 */
+	private static void runInteractive(Environment env) {
 		env.writeln("Welcome to MyShell v 1.0");
+		handleInterrupts(Thread.currentThread());
 
 		ShellStatus status = null;
 		do {
-			env.write(env.getPromptSymbol().toString());
-			String input = getCommandArguments(env);
-			String inputParts[] = input.split("\\s+", 2);
-			ShellCommand command = env.commands().get(inputParts[0]);
-			if (command == null) {
+			try {
+				env.write(env.getPromptSymbol().toString());
+				String input = getCommandArguments(env);
+				if (input == null) {
+					break;
+				}
+				commandRunning = true;
+				try {
+					status = execute(env, input);
+				} finally {
+					commandRunning = false;
+					Thread.interrupted();
+				}
+			} catch (ShellIOException ex) {
+				status = ShellStatus.TERMINATE;
+			}
+		} while (!status.equals(ShellStatus.TERMINATE));
+	}
+
+	/**
+	 * Makes Ctrl-C cancel the running command instead of ending the shell. At
+	 * the prompt, Ctrl-C still ends the shell with the exit code
+	 * {@value #EXIT_INTERRUPTED}.
+	 * <p>
+	 * Signals are handled through <code>sun.misc.Signal</code>, which is
+	 * looked up reflectively; on platforms without it Ctrl-C keeps its
+	 * default behaviour.
+	 * 
+	 * @param shell
+	 *            thread executing the commands
+	 */
+	private static void handleInterrupts(Thread shell) {
+		try {
+			Class<?> signalClass = Class.forName("sun.misc.Signal");
+			Class<?> handlerClass = Class.forName("sun.misc.SignalHandler");
+			Object handler = Proxy.newProxyInstance(handlerClass.getClassLoader(), new Class<?>[] { handlerClass },
+					(proxy, method, args) -> {
+						switch (method.getName()) {
+						case "handle":
+							if (commandRunning) {
+								shell.interrupt();
+							} else {
+								System.exit(EXIT_INTERRUPTED);
+							}
+							return null;
+						case "hashCode":
+							return System.identityHashCode(proxy);
+						case "equals":
+							return proxy == args[0];
+						default:
+							return "Ctrl-C handler";
+						}
+					});
+			Object signal = signalClass.getConstructor(String.class).newInstance("INT");
+			signalClass.getMethod("handle", signalClass, handlerClass).invoke(null, signal, handler);
+		} catch (ReflectiveOperationException | LinkageError | IllegalArgumentException ex) {
+			// Ctrl-C ends the shell, as before
+		}
+	}
+
+	/**
+	 * Executes the commands one after another, without printing prompts.
+	 * Execution ends after the "exit" command, after an I/O error or - if
+	 * requested - after the first failed command.
+	 * 
+	 * @param env
+	 *            environment for communicating with the user
+	 * @param commands
+	 *            commands to execute, with their arguments
+	 * @param stopOnError
+	 *            <code>true</code> if the execution ends at the first failed
+	 *            command
+	 * @return exit code - {@link #EXIT_SUCCESS} if all the commands
+	 *         succeeded, {@link #EXIT_FAILURE} if a command failed and
+	 *         {@link #EXIT_ERROR} in case of an I/O error
+	 */
+	public static int runScript(Environment env, List<String> commands, boolean stopOnError) {
+		int exitCode = EXIT_SUCCESS;
+		for (String input : commands) {
+			ShellStatus status;
+			try {
+				status = execute(env, input);
+			} catch (ShellIOException ex) {
+				return EXIT_ERROR;
+			}
+
+			if (status == ShellStatus.TERMINATE) {
+				break;
+			}
+			if (status == ShellStatus.FAILURE) {
+				exitCode = EXIT_FAILURE;
+				if (stopOnError) {
+					break;
+				}
+			}
+		}
+		return exitCode;
+	}
+
+	/**
+	 * Executes a single command or a pipeline of commands separated by
+	 * <code>|</code>. The output of the command is flushed when it finishes.
+	 * <p>
+	 * If the input ends with <code>&</code>, the command is started as a
+	 * background {@link Job} and the method returns immediately.
+	 * 
+	 * @param env
+	 *            environment for communicating with the user
+	 * @param input
+	 *            command name with the arguments, or a pipeline
+	 * @return status returned by the command, or {@link ShellStatus#FAILURE}
+	 *         if there is no such command
+	 * @throws ShellIOException
+	 *             in case of an I/O error
+	 * @see Pipeline
+	 */
+	public static ShellStatus execute(Environment env, String input) throws ShellIOException {
+		String command = input.trim();
+		if (command.endsWith("&")) {
+			command = command.substring(0, command.length() - 1).trim();
+			if (command.isEmpty()) {
 				env.writeln("Invalid command name.");
-				status = ShellStatus.CONTINUE;
+				return ShellStatus.FAILURE;
+			}
+			Job job = env.jobs().start(env, command);
+			env.writeln("[" + job.getId() + "] " + job.getCommand());
+			env.flush();
+			return ShellStatus.CONTINUE;
+		}
+
+		List<String> stages = Pipeline.split(input);
+		ShellStatus status = stages.size() == 1 ? executeCommand(env, input) : new Pipeline(stages).execute(env);
+		env.flush();
+		return status;
+	}
+
+	/**
+	 * Executes a single command. The first word of the input is the command
+	 * name, the rest are its arguments, from which the quotes are removed
+	 * unless the command {@link ShellCommand#takesQuotedArguments() takes
+	 * them}. The invocation is recorded in the {@link CommandMetrics} of the
+	 * shell, and the interrupt of a {@link Cancellation} is cleared when it
+	 * ends.
+	 * 
+	 * @param env
+	 *            environment for communicating with the user
+	 * @param input
+	 *            command name with the arguments
+	 * @return status returned by the command, or {@link ShellStatus#FAILURE}
+	 *         if there is no such command
+	 * @throws ShellIOException
+	 *             in case of an I/O error
+	 */
+	public static ShellStatus executeCommand(Environment env, String input) throws ShellIOException {
+		String inputParts[] = input.trim().split("\\s+", 2);
+		ShellCommand command = env.commands().get(inputParts[0]);
+		if (command == null) {
+			env.writeln("Invalid command name.");
+			return ShellStatus.FAILURE;
+		}
+
+		CommandMetrics.Sample sample = CommandMetrics.Sample.start();
+		try {
+			String arguments = inputParts.length == 1 ? null : inputParts[1];
+			if (arguments != null && !command.takesQuotedArguments()) {
+				arguments = arguments.replaceAll("\"", "");
+			}
+			return command.executeCommand(env, arguments);
+		} finally {
+			env.metrics().record(command.getCommandName(), sample.stop());
+			// a cancelled command must not leave the thread interrupted
+			Thread.interrupted();
+		}
+	}
+
+	/**
+	 * Splits the text into commands separated by <code>;</code>. Separators
+	 * inside quotes are not taken into account, and empty commands are
+	 * skipped.
+	 * 
+	 * @param text
+	 *            text to split
+	 * @return list of commands
+	 */
+	static List<String> splitCommands(String text) {
+		List<String> commands = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		boolean quoted = false;
+
+		for (char c : text.toCharArray()) {
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == ';' && !quoted) {
+				addCommand(commands, sb);
 				continue;
 			}
+			sb.append(c);
+		}
+		addCommand(commands, sb);
 
-			try {
-				status = command.executeCommand(env,
-						inputParts.length == 1 ? null : inputParts[1].replaceAll("\"", ""));
-			} catch (ShellIOException ex ) {
-				status = ShellStatus.TERMINATE;
-			} 
-		} while (!status.equals(ShellStatus.TERMINATE));
+		return commands;
+	}
+
+	/**
+	 * Splits the arguments at the whitespace outside quotes, and removes the
+	 * quotes, so a quoted argument may contain spaces.
+	 * 
+	 * @param text
+	 *            arguments to split
+	 * @return list of arguments
+	 */
+	public static List<String> splitArguments(String text) {
+		List<String> arguments = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		boolean quoted = false;
+		boolean started = false;
+
+		for (char c : text.toCharArray()) {
+			if (c == '"') {
+				quoted = !quoted;
+				started = true;
+			} else if (Character.isWhitespace(c) && !quoted) {
+				if (started) {
+					arguments.add(sb.toString());
+					sb.setLength(0);
+					started = false;
+				}
+			} else {
+				sb.append(c);
+				started = true;
+			}
+		}
+		if (started) {
+			arguments.add(sb.toString());
+		}
+
+		return arguments;
+	}
+
+	/**
+	 * Turns the lines of a script into commands. Lines ending with the more
+	 * lines symbol are joined with the following line, empty lines and lines
+	 * starting with <code>#</code> are skipped, and each line may hold
+	 * multiple commands separated by <code>;</code>.
+	 * 
+	 * @param lines
+	 *            lines of the script
+	 * @param moreLinesSymbol
+	 *            more lines symbol
+	 * @return list of commands
+	 */
+	static List<String> parseScript(List<String> lines, Character moreLinesSymbol) {
+		List<String> commands = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+
+		for (String line : lines) {
+			if (sb.length() == 0 && line.trim().startsWith("#")) {
+				continue;
+			}
+			if (line.endsWith(moreLinesSymbol.toString())) {
+				sb.append(line.substring(0, line.length() - 1) + " ");
+				continue;
+			}
+			sb.append(line);
+			commands.addAll(splitCommands(sb.toString()));
+			sb.setLength(0);
+		}
+		commands.addAll(splitCommands(sb.toString()));
+
+		return commands;
+	}
 
+	/**
+	 * Adds the collected command to the list, unless it is empty, and clears
+	 * the builder.
+	 * 
+	 * @param commands
+	 *            list of commands
+	 * @param sb
+	 *            builder with the collected command
+	 */
+	private static void addCommand(List<String> commands, StringBuilder sb) {
+		String command = sb.toString().trim();
+		if (!command.isEmpty()) {
+			commands.add(command);
+		}
+		sb.setLength(0);
 	}
 
 	/**
@@ -74,12 +497,16 @@ public class MyShell {
 	 * 
 	 * @param env
 	 *            environment for communicating with the user
-	 * @return String representation of all the arguments the user entered
+	 * @return String representation of all the arguments the user entered, or
+	 *         <code>null</code> at the end of the input
 	 */
 	private static String getCommandArguments(Environment env) {
 		StringBuilder sb = new StringBuilder();
 		while (true) {
 			String line = env.readLine();
+			if (line == null) {
+				return sb.length() == 0 ? null : sb.toString();
+			}
 
 			if (line.endsWith(env.getMorelinesSymbol().toString())) {
 				sb.append(line.substring(0, line.length() - 1) + " ");
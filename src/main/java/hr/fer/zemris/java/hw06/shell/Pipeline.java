@@ -0,0 +1,164 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A sequence of commands connected by pipes: <code>cmd1 | cmd2 | ...</code>.
+ * <p>
+ * All the commands run concurrently, each on its own thread, except the last
+ * one, which runs on the calling thread. The output of each command is the
+ * input of the next one; they are connected by a {@link BoundedPipe} of
+ * {@value #PIPE_CAPACITY} bytes, so a fast command blocks until the next one
+ * catches up and no intermediate output is ever fully materialized. The last
+ * command writes to the environment of the pipeline. If a command finishes
+ * without reading all of its input, the previous command fails to write and
+ * stops early.
+ * <p>
+ * The pipeline fails if any of its commands fails. Commands of a pipeline
+ * never terminate the shell.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class Pipeline {
+	/** Capacity of a pipe between two commands, in bytes. **/
+	public static final int PIPE_CAPACITY = 64 * 1024;
+
+	/** Executor of all but the last command. **/
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "pipeline-stage");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Commands of the pipeline, with their arguments. **/
+	private final List<String> stages;
+
+	/**
+	 * Constructs a new pipeline.
+	 * 
+	 * @param stages
+	 *            commands of the pipeline, with their arguments
+	 */
+	public Pipeline(List<String> stages) {
+		this.stages = new ArrayList<>(stages);
+	}
+
+	/**
+	 * Splits the input into the commands of a pipeline, separated by
+	 * <code>|</code>. Separators inside quotes are not taken into account.
+	 * 
+	 * @param input
+	 *            input to split
+	 * @return list of commands, with a single element if the input is not a
+	 *         pipeline
+	 */
+	public static List<String> split(String input) {
+		List<String> stages = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		boolean quoted = false;
+
+		for (char c : input.toCharArray()) {
+			if (c == '"') {
+				quoted = !quoted;
+			} else if (c == '|' && !quoted) {
+				stages.add(sb.toString().trim());
+				sb.setLength(0);
+				continue;
+			}
+			sb.append(c);
+		}
+		stages.add(sb.toString().trim());
+
+		return stages;
+	}
+
+	/**
+	 * Executes the pipeline and waits until all of its commands finish.
+	 * 
+	 * @param env
+	 *            environment of the pipeline; the first command reads its
+	 *            input and the last command writes to it
+	 * @return {@link ShellStatus#FAILURE} if any of the commands failed,
+	 *         {@link ShellStatus#CONTINUE} otherwise
+	 * @throws ShellIOException
+	 *             in case of an I/O error of the environment
+	 */
+	public ShellStatus execute(Environment env) throws ShellIOException {
+		int n = stages.size();
+		BoundedPipe[] pipes = new BoundedPipe[n - 1];
+		for (int i = 0; i < pipes.length; i++) {
+			pipes[i] = new BoundedPipe(PIPE_CAPACITY);
+		}
+
+		List<Future<ShellStatus>> futures = new ArrayList<>();
+		for (int i = 0; i < n - 1; i++) {
+			int index = i;
+			futures.add(EXECUTOR.submit(
+					() -> runStage(env, stages.get(index), index == 0 ? null : pipes[index - 1], pipes[index])));
+		}
+
+		boolean failed = runStage(env, stages.get(n - 1), n == 1 ? null : pipes[n - 2], null) == ShellStatus.FAILURE;
+
+		try {
+			for (Future<ShellStatus> future : futures) {
+				failed |= future.get() == ShellStatus.FAILURE;
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			futures.forEach(f -> f.cancel(true));
+			return ShellStatus.FAILURE;
+		} catch (ExecutionException ex) {
+			return ShellStatus.FAILURE;
+		}
+
+		return failed ? ShellStatus.FAILURE : ShellStatus.CONTINUE;
+	}
+
+	/**
+	 * Runs a single command of the pipeline and closes its ends of the pipes
+	 * when it finishes.
+	 * 
+	 * @param env
+	 *            environment of the pipeline
+	 * @param command
+	 *            command with the arguments
+	 * @param in
+	 *            pipe from the previous command, or <code>null</code> for the
+	 *            first command
+	 * @param out
+	 *            pipe to the next command, or <code>null</code> for the last
+	 *            command
+	 * @return status of the command
+	 * @throws ShellIOException
+	 *             in case of an I/O error of the environment of the pipeline
+	 */
+	private static ShellStatus runStage(Environment env, String command, BoundedPipe in, BoundedPipe out)
+			throws ShellIOException {
+		ReadableByteChannel input = in == null ? env.getInputChannel() : in.source();
+		WritableByteChannel output = out == null ? null : out.sink();
+
+		try {
+			return MyShell.executeCommand(new RedirectedEnvironment(env, input, output), command);
+		} catch (ShellIOException ex) {
+			if (out == null) {
+				throw ex;
+			}
+			return out.isBroken() ? ShellStatus.CONTINUE : ShellStatus.FAILURE;
+		} finally {
+			if (out != null) {
+				out.closeSink();
+			}
+			if (in != null) {
+				in.closeSource();
+			}
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.SortedMap;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * An {@link Environment} whose input and output are redirected to channels,
+ * while everything else - reading lines, the commands and the symbols - is
+ * delegated to the parent environment. A change of a symbol is reported
+ * through the redirected output.
+ * <p>
+ * Text written to a redirected output is encoded in the platform default
+ * charset and written to the channel directly; any buffering is left to the
+ * channel itself. If the output is not redirected, it goes to the parent.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class RedirectedEnvironment implements Environment {
+	/** Parent environment. **/
+	private final Environment parent;
+	/** Channel from where the input is read, or <code>null</code>. **/
+	private final ReadableByteChannel input;
+	/** Channel where the output is written, or <code>null</code>. **/
+	private final WritableByteChannel output;
+	/** Charset of the text output. **/
+	private final Charset charset = Charset.defaultCharset();
+	/** Whether the output is batched. **/
+	private boolean batched = true;
+
+	/**
+	 * Constructs a new environment.
+	 * 
+	 * @param parent
+	 *            parent environment
+	 * @param input
+	 *            channel from where the input is read, or <code>null</code>
+	 *            if there is no input
+	 * @param output
+	 *            channel where the output is written, or <code>null</code>
+	 *            to write to the parent
+	 */
+	public RedirectedEnvironment(Environment parent, ReadableByteChannel input, WritableByteChannel output) {
+		this.parent = parent;
+		this.input = input;
+		this.output = output;
+	}
+
+	@Override
+	public String readLine() throws ShellIOException {
+		return parent.readLine();
+	}
+
+	@Override
+	public void write(String text) throws ShellIOException {
+		if (output == null) {
+			parent.write(text);
+			return;
+		}
+
+		try {
+			ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(charset));
+			while (bytes.hasRemaining()) {
+				output.write(bytes);
+			}
+		} catch (IOException ex) {
+			throw new ShellIOException("An I/O error occured.");
+		}
+	}
+
+	@Override
+	public void writeln(String text) throws ShellIOException {
+		write(text + "\n");
+	}
+
+	@Override
+	public ReadableByteChannel getInputChannel() {
+		return input;
+	}
+
+	@Override
+	public WritableByteChannel getOutputChannel() {
+		return output == null ? parent.getOutputChannel() : output;
+	}
+
+	@Override
+	public void flush() throws ShellIOException {
+		if (output == null) {
+			parent.flush();
+		}
+	}
+
+	@Override
+	public boolean isBatched() {
+		return output == null ? parent.isBatched() : batched;
+	}
+
+	@Override
+	public void setBatched(boolean batched) {
+		if (output == null) {
+			parent.setBatched(batched);
+		} else {
+			this.batched = batched;
+		}
+	}
+
+	@Override
+	public SortedMap<String, ShellCommand> commands() {
+		return parent.commands();
+	}
+
+	@Override
+	public JobManager jobs() {
+		return parent.jobs();
+	}
+
+	@Override
+	public CommandMetrics metrics() {
+		return parent.metrics();
+	}
+
+	@Override
+	public DirectorySizer sizer() {
+		return parent.sizer();
+	}
+
+	@Override
+	public ForkJoinPool ioPool() {
+		return parent.ioPool();
+	}
+
+	@Override
+	public ShellSymbols symbols() {
+		return parent.symbols();
+	}
+
+	@Override
+	public Character getMultilineSymbol() {
+		return parent.getMultilineSymbol();
+	}
+
+	@Override
+	public void setMultilineSymbol(Character symbol) {
+		writeln(ShellSymbols.changed("MULTILINE", parent.symbols().setMultiline(symbol), symbol));
+	}
+
+	@Override
+	public Character getPromptSymbol() {
+		return parent.getPromptSymbol();
+	}
+
+	@Override
+	public void setPromptSymbol(Character symbol) {
+		writeln(ShellSymbols.changed("PROMPT", parent.symbols().setPrompt(symbol), symbol));
+	}
+
+	@Override
+	public Character getMorelinesSymbol() {
+		return parent.getMorelinesSymbol();
+	}
+
+	@Override
+	public void setMorelinesSymbol(Character symbol) {
+		writeln(ShellSymbols.changed("MORELINES", parent.symbols().setMorelines(symbol), symbol));
+	}
+}
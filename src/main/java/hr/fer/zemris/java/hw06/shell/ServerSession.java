@@ -0,0 +1,571 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A session of the {@link ShellServer} - the {@link Environment} of a single
+ * connection.
+ * <p>
+ * The selector thread of the server splits the received bytes into lines
+ * and queues them; the lines are executed on a worker thread, one at a time.
+ * A line longer than {@value #MAX_LINE_LENGTH} bytes is rejected with an
+ * error instead of being executed. Once {@value #MAX_QUEUED_LINES} lines are
+ * waiting, the session stops reading from the connection until the worker
+ * catches up, so a client which sends lines faster than they are executed can
+ * not exhaust the memory of the server either.
+ * Commands which ask the user for input read the next queued line. Output is
+ * collected until it is flushed - after each command, as in the console
+ * shell - and then handed over to the selector thread. A command which
+ * writes faster than the client reads is blocked once
+ * {@value #MAX_QUEUED_OUTPUT} bytes are waiting, so a slow client can not
+ * exhaust the memory of the server.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+class ServerSession implements Environment {
+	/** Size of the buffer for received bytes. **/
+	private static final int READ_BUFFER_SIZE = 8 * 1024;
+	/** Maximum length of a line of input. **/
+	private static final int MAX_LINE_LENGTH = 64 * 1024;
+	/** Output is flushed once this many bytes are collected. **/
+	private static final int FLUSH_THRESHOLD = 64 * 1024;
+	/** Maximum number of bytes waiting to be sent. **/
+	private static final int MAX_QUEUED_OUTPUT = 1024 * 1024;
+	/** Maximum number of received lines waiting to be executed. **/
+	private static final int MAX_QUEUED_LINES = 64;
+	/** Marker queued when the connection ends; compared by identity. **/
+	private static final String END = new String("");
+	/** Marker queued instead of a line which was too long; compared by identity. **/
+	private static final String TOO_LONG = new String("");
+
+	/** Server of the session. **/
+	private final ShellServer server;
+	/** Connection of the session. **/
+	private final SocketChannel channel;
+	/** Selection key of the connection. **/
+	private SelectionKey key;
+	/** Charset of the text. **/
+	private final Charset charset = Charset.defaultCharset();
+
+	/** Buffer for received bytes. **/
+	private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	/** Bytes of the line being received. **/
+	private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+	/** Whether the line being received is longer than the maximum. **/
+	private boolean lineTooLong;
+	/** Received lines waiting to be executed, with room for the end marker. **/
+	private final BlockingQueue<String> lines = new LinkedBlockingQueue<>(MAX_QUEUED_LINES + 1);
+	/** Whether reading is paused because the queue of lines is full. **/
+	private final AtomicBoolean readPaused = new AtomicBoolean();
+	/** Whether a worker is executing the lines. **/
+	private final AtomicBoolean running = new AtomicBoolean();
+	/** Command collected from lines ending with the more lines symbol. **/
+	private final StringBuilder command = new StringBuilder();
+
+	/** Output which was not flushed yet. **/
+	private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+	/** Flushed output waiting to be sent. **/
+	private final Queue<ByteBuffer> queuedOutput = new ConcurrentLinkedQueue<>();
+	/** Number of bytes waiting to be sent, guarded by this session. **/
+	private long queuedBytes;
+	/** Channel through which commands write raw bytes. **/
+	private final WritableByteChannel outputChannel = new OutputChannel();
+	/** Whether the output is batched. **/
+	private volatile boolean batched = true;
+	/** Whether the session is closed once its output is sent. **/
+	private volatile boolean closing;
+	/** Whether the connection is closed. **/
+	private volatile boolean closed;
+
+	/** Background jobs of the session. **/
+	private final JobManager jobs = new JobManager();
+	/** Prompt, multi line and more lines symbols of the session. **/
+	private final ShellSymbols symbols = new ShellSymbols();
+
+	/**
+	 * Constructs a new session.
+	 * 
+	 * @param server
+	 *            server of the session
+	 * @param channel
+	 *            connection of the session
+	 */
+	ServerSession(ShellServer server, SocketChannel channel) {
+		this.server = server;
+		this.channel = channel;
+	}
+
+	/**
+	 * Sets the selection key of the connection.
+	 * 
+	 * @param key
+	 *            selection key
+	 */
+	void setKey(SelectionKey key) {
+		this.key = key;
+	}
+
+	/**
+	 * Greets the client and prints the first prompt.
+	 */
+	void start() {
+		writeln("Welcome to MyShell v 1.0");
+		write(symbols.getPrompt().toString());
+		flush();
+	}
+
+	/**
+	 * Reads the available bytes from the connection and queues the complete
+	 * lines. Bytes left over from a paused read are processed first. If the
+	 * queue of lines fills up, the rest of the bytes is kept and the interest
+	 * in reading is turned off until the worker takes a line. Called by the
+	 * selector thread.
+	 * 
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	void read() throws IOException {
+		int read = 0;
+		do {
+			readBuffer.flip();
+			while (readBuffer.hasRemaining()) {
+				byte b = readBuffer.get();
+				if (b == '\n') {
+					queueLine();
+					if (lines.size() >= MAX_QUEUED_LINES && pauseRead()) {
+						readBuffer.compact();
+						return;
+					}
+				} else if (partialLine.size() < MAX_LINE_LENGTH) {
+					partialLine.write(b);
+				} else {
+					lineTooLong = true;
+				}
+			}
+			readBuffer.clear();
+		} while ((read = channel.read(readBuffer)) > 0);
+		if (read == -1) {
+			close();
+		}
+	}
+
+	/**
+	 * Turns off the interest in reading because the queue of lines is full.
+	 * Called by the selector thread.
+	 * 
+	 * @return <code>true</code> if reading was paused, <code>false</code> if
+	 *         the worker took a line in the meantime
+	 */
+	private boolean pauseRead() {
+		if (key.isValid()) {
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+		}
+		readPaused.set(true);
+		if (lines.size() < MAX_QUEUED_LINES && readPaused.compareAndSet(true, false)) {
+			if (key.isValid()) {
+				key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+			}
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Turns the interest in reading back on and processes the bytes left over
+	 * from the paused read. Called by the selector thread.
+	 * 
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	void resumeRead() throws IOException {
+		if (closed || !key.isValid()) {
+			return;
+		}
+		key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+		read();
+	}
+
+	/**
+	 * Asks the selector thread to resume reading if it was paused and the
+	 * worker made room in the queue of lines. Called after a line is taken.
+	 */
+	private void lineTaken() {
+		if (lines.size() < MAX_QUEUED_LINES && readPaused.compareAndSet(true, false)) {
+			server.requestRead(this);
+		}
+	}
+
+	/**
+	 * Returns the interest in reading - none while reading is paused.
+	 * 
+	 * @return interest set for reading
+	 */
+	private int readInterest() {
+		return readPaused.get() ? 0 : SelectionKey.OP_READ;
+	}
+
+	/**
+	 * Writes the queued output to the connection, as much as it accepts
+	 * without blocking. Called by the selector thread.
+	 * 
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	void write() throws IOException {
+		ByteBuffer head;
+		while ((head = queuedOutput.peek()) != null) {
+			int written = channel.write(head);
+			if (written > 0) {
+				synchronized (this) {
+					queuedBytes -= written;
+					notifyAll();
+				}
+			}
+			if (head.hasRemaining()) {
+				return;
+			}
+			queuedOutput.poll();
+		}
+
+		if (closing) {
+			close();
+		} else if (key.isValid()) {
+			key.interestOps(readInterest());
+		}
+	}
+
+	/**
+	 * Turns on the interest in writing. Called by the selector thread.
+	 */
+	void enableWrite() {
+		if (key != null && key.isValid()) {
+			key.interestOps(readInterest() | SelectionKey.OP_WRITE);
+		}
+	}
+
+	/**
+	 * Closes the connection and kills the background jobs of the session.
+	 */
+	void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		if (key != null) {
+			key.cancel();
+		}
+		try {
+			channel.close();
+		} catch (IOException ex) {
+			// the connection is gone either way
+		}
+		lines.offer(END);
+		synchronized (this) {
+			notifyAll();
+		}
+		for (Job job : jobs.list()) {
+			job.kill();
+		}
+	}
+
+	/**
+	 * Queues the received line and makes sure a worker executes it. A line
+	 * longer than {@value #MAX_LINE_LENGTH} bytes is replaced by a marker, so
+	 * it is rejected instead of being executed truncated.
+	 */
+	private void queueLine() {
+		String line = new String(partialLine.toByteArray(), charset);
+		partialLine.reset();
+		if (lineTooLong) {
+			lineTooLong = false;
+			lines.add(TOO_LONG);
+		} else {
+			lines.add(line.endsWith("\r") ? line.substring(0, line.length() - 1) : line);
+		}
+
+		if (running.compareAndSet(false, true)) {
+			server.getWorkers().execute(this::executeLines);
+		}
+	}
+
+	/**
+	 * Executes the queued lines until there are none left. Runs on a worker
+	 * thread.
+	 */
+	private void executeLines() {
+		do {
+			String line;
+			while (!closed && !closing && (line = lines.poll()) != null) {
+				if (line == END) {
+					return;
+				}
+				lineTaken();
+				executeLine(line);
+			}
+			running.set(false);
+		} while (!closed && !closing && !lines.isEmpty() && running.compareAndSet(false, true));
+	}
+
+	/**
+	 * Executes a single line of input, or collects it if it ends with the
+	 * more lines symbol.
+	 * 
+	 * @param line
+	 *            line of input
+	 */
+	private void executeLine(String line) {
+		ShellStatus status;
+		try {
+			if (line == TOO_LONG) {
+				command.setLength(0);
+				writeln(tooLongMessage());
+				write(symbols.getPrompt().toString());
+				flush();
+				return;
+			}
+			if (line.endsWith(symbols.getMorelines().toString())) {
+				command.append(line.substring(0, line.length() - 1)).append(' ');
+				write(symbols.getMultiline().toString());
+				flush();
+				return;
+			}
+			command.append(line);
+			String input = command.toString();
+			command.setLength(0);
+
+			status = input.trim().isEmpty() ? ShellStatus.CONTINUE : MyShell.execute(this, input);
+			if (status == ShellStatus.TERMINATE) {
+				closing = true;
+				flush();
+				server.requestWrite(this);
+				return;
+			}
+			write(symbols.getPrompt().toString());
+			flush();
+		} catch (ShellIOException ex) {
+			close();
+		}
+	}
+
+	/**
+	 * Returns the message which rejects a line longer than the maximum.
+	 * 
+	 * @return error message
+	 */
+	private static String tooLongMessage() {
+		return "The line is longer than " + MAX_LINE_LENGTH + " bytes and was not executed.";
+	}
+
+	@Override
+	public String readLine() throws ShellIOException {
+		flush();
+		try {
+			String line;
+			while ((line = lines.take()) == TOO_LONG) {
+				lineTaken();
+				writeln(tooLongMessage());
+				flush();
+			}
+			if (line == END) {
+				lines.offer(END);
+				return null;
+			}
+			lineTaken();
+			return line;
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	@Override
+	public void write(String text) throws ShellIOException {
+		writeBytes(text.getBytes(charset));
+	}
+
+	@Override
+	public void writeln(String text) throws ShellIOException {
+		write(text + "\n");
+	}
+
+	/**
+	 * Collects the bytes of the output, flushing them if the output is not
+	 * batched or enough of it was collected.
+	 * 
+	 * @param bytes
+	 *            bytes to write
+	 * @throws ShellIOException
+	 *             if the connection was closed
+	 */
+	private void writeBytes(byte[] bytes) throws ShellIOException {
+		if (closed) {
+			throw new ShellIOException("The connection was closed.");
+		}
+		boolean full;
+		synchronized (output) {
+			output.write(bytes, 0, bytes.length);
+			full = output.size() >= FLUSH_THRESHOLD;
+		}
+		if (full || !batched) {
+			flush();
+		}
+	}
+
+	@Override
+	public ReadableByteChannel getInputChannel() {
+		return null;
+	}
+
+	@Override
+	public WritableByteChannel getOutputChannel() {
+		return outputChannel;
+	}
+
+	@Override
+	public void flush() throws ShellIOException {
+		ByteBuffer bytes;
+		synchronized (output) {
+			if (output.size() == 0) {
+				return;
+			}
+			bytes = ByteBuffer.wrap(output.toByteArray());
+			output.reset();
+		}
+
+		synchronized (this) {
+			queuedOutput.add(bytes);
+			queuedBytes += bytes.remaining();
+		}
+		server.requestWrite(this);
+
+		synchronized (this) {
+			while (queuedBytes > MAX_QUEUED_OUTPUT && !closed) {
+				try {
+					wait();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new ShellIOException("Writing was interrupted.");
+				}
+			}
+		}
+		if (closed) {
+			throw new ShellIOException("The connection was closed.");
+		}
+	}
+
+	@Override
+	public boolean isBatched() {
+		return batched;
+	}
+
+	@Override
+	public void setBatched(boolean batched) {
+		this.batched = batched;
+	}
+
+	@Override
+	public SortedMap<String, ShellCommand> commands() {
+		return server.getCommands();
+	}
+
+	@Override
+	public JobManager jobs() {
+		return jobs;
+	}
+
+	@Override
+	public CommandMetrics metrics() {
+		return server.getMetrics();
+	}
+
+	@Override
+	public DirectorySizer sizer() {
+		return server.getSizer();
+	}
+
+	@Override
+	public ForkJoinPool ioPool() {
+		return server.getIoPool();
+	}
+
+	@Override
+	public ShellSymbols symbols() {
+		return symbols;
+	}
+
+	@Override
+	public Character getMultilineSymbol() {
+		return symbols.getMultiline();
+	}
+
+	@Override
+	public void setMultilineSymbol(Character symbol) {
+		writeln(ShellSymbols.changed("MULTILINE", symbols.setMultiline(symbol), symbol));
+	}
+
+	@Override
+	public Character getPromptSymbol() {
+		return symbols.getPrompt();
+	}
+
+	@Override
+	public void setPromptSymbol(Character symbol) {
+		writeln(ShellSymbols.changed("PROMPT", symbols.setPrompt(symbol), symbol));
+	}
+
+	@Override
+	public Character getMorelinesSymbol() {
+		return symbols.getMorelines();
+	}
+
+	@Override
+	public void setMorelinesSymbol(Character symbol) {
+		writeln(ShellSymbols.changed("MORELINES", symbols.setMorelines(symbol), symbol));
+	}
+
+	/**
+	 * Channel through which commands write raw bytes to the session.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	private class OutputChannel implements WritableByteChannel {
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			int length = src.remaining();
+			byte[] bytes = new byte[length];
+			src.get(bytes);
+			try {
+				writeBytes(bytes);
+			} catch (ShellIOException ex) {
+				throw new IOException(ex.getMessage());
+			}
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return !closed;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -18,6 +18,7 @@ public interface ShellCommand {
 	 * @param arguments
 	 *            arguments for the command
 	 * @return {@link ShellStatus#TERMINATE} if the shell is to be terminated,
+	 *         {@link ShellStatus#FAILURE} if the command failed,
 	 *         {@link ShellStatus#CONTINUE} otherwise.
 	 */
 	public ShellStatus executeCommand(Environment env, String arguments);
@@ -37,4 +38,27 @@ public interface ShellCommand {
 	 * @return command description
 	 */
 	public List<String> getCommandDescription();
+
+	/**
+	 * Gets the concise description of the command - the first element of
+	 * {@link #getCommandDescription()}. Commands registered through a
+	 * {@link ShellCommandProvider} answer without loading their
+	 * implementation.
+	 * 
+	 * @return concise description
+	 */
+	public default String getCommandSummary() {
+		return getCommandDescription().get(0);
+	}
+
+	/**
+	 * Tells whether the command receives its arguments with the quotes, to
+	 * split them itself. By default the shell removes the quotes before
+	 * passing the arguments.
+	 * 
+	 * @return <code>true</code> if the quotes are kept
+	 */
+	public default boolean takesQuotedArguments() {
+		return false;
+	}
 }
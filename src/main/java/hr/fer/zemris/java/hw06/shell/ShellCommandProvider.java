@@ -0,0 +1,26 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.util.List;
+
+/**
+ * Service which contributes commands to the {@link MyShell}.
+ * <p>
+ * Providers are discovered with {@link java.util.ServiceLoader}: a jar on the
+ * class path contributes commands by listing its provider in
+ * <code>META-INF/services/hr.fer.zemris.java.hw06.shell.ShellCommandProvider</code>.
+ * A provider only describes its commands; the command classes are loaded and
+ * instantiated when a command is first used, so the startup time of the shell
+ * does not grow with the number of commands.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public interface ShellCommandProvider {
+
+	/**
+	 * Returns the descriptions of the provided commands.
+	 * 
+	 * @return list of command descriptors
+	 */
+	public List<CommandDescriptor> getCommands();
+}
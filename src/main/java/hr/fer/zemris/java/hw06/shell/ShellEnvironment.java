@@ -1,80 +1,106 @@
 package hr.fer.zemris.java.hw06.shell;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
 import java.util.Collections;
 import java.util.SortedMap;
-import java.util.TreeMap;
-
-import hr.fer.zemris.java.hw06.shell.commands.CatShellCommand;
-import hr.fer.zemris.java.hw06.shell.commands.CharsetsShellCommand;
-import hr.fer.zemris.java.hw06.shell.commands.CopyShellCommand;
-import hr.fer.zemris.java.hw06.shell.commands.ExitShellCommand;
-import hr.fer.zemris.java.hw06.shell.commands.HelpShellCommand;
-import hr.fer.zemris.java.hw06.shell.commands.HexdumpShellCommand;
-import hr.fer.zemris.java.hw06.shell.commands.LsShellCommand;
-import hr.fer.zemris.java.hw06.shell.commands.MkdirShellCommand;
-import hr.fer.zemris.java.hw06.shell.commands.SymbolShellCommand;
-import hr.fer.zemris.java.hw06.shell.commands.TreeShellCommand;
+import java.util.concurrent.ForkJoinPool;
+
 
 /**
  * This class implements the communication process between the {@link MyShell} and the
  * user. All the communication is achieved through methods of this class.
+ * <p>
+ * Text and raw bytes are collected in a single output buffer of
+ * {@value #OUTPUT_BUFFER_SIZE} bytes. The text is encoded into the buffer
+ * directly, in the platform default charset. By default the output is
+ * batched: the buffer is written to the console only when it fills, before
+ * the input is read and at the end of each command.
+ * <p>
+ * The output and the symbols can be used from different threads, so the
+ * commands of a pipeline, background jobs and parallel invocations can
+ * write to the console and change the symbols while the shell runs.
  * 
  * @author Mirna Baksa
  *
  */
-public class ShellEnvironment implements Environment {
+public class ShellEnvironment implements Environment, Closeable {
+	/** Size of the output buffer. **/
+	private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
 	/** Stream from where the input is read. **/
 	private BufferedReader inputStream;
-	/** Stream from where the output is written. **/
-	private BufferedWriter outputStream;
-	/** Multi line symbol. **/
-	private Character multiLineSymbol;
-	/** More lines symbol **/
-	private Character moreLinesSymbol;
-	/** Prompt symbol. **/
-	private Character promptSymbol;
+	/** Channel where the output is written. **/
+	private WritableByteChannel outputChannel;
+	/** Buffer of the output which is not yet written. **/
+	private final ByteBuffer outputBuffer = ByteBuffer.allocate(OUTPUT_BUFFER_SIZE);
+	/** Encoder of the text output. **/
+	private final CharsetEncoder encoder = Charset.defaultCharset().newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+	/** Channel through which commands write raw bytes. **/
+	private final WritableByteChannel bufferedChannel = new BufferedChannel();
+	/** Whether the output is batched. **/
+	private boolean batched = true;
+	/** Prompt, multi line and more lines symbols. **/
+	private final ShellSymbols symbols = new ShellSymbols();
 	/** A map of supported commands. **/
 	private SortedMap<String, ShellCommand> commands;
+	/** Manager of the background jobs. **/
+	private final JobManager jobs = new JobManager();
+	/** Metrics of the executed commands. **/
+	private final CommandMetrics metrics = new CommandMetrics();
+	/** Pool for the file system work of the commands. **/
+	private final ForkJoinPool ioPool = IoPool.create();
+	/** Sizer of the directories, shared by the commands. **/
+	private final DirectorySizer sizer = new DirectorySizer(ioPool, DirectorySizer.DEFAULT_CAPACITY);
 
 	/**
 	 * Constructs a new {@link ShellEnvironment}. Sets the default values for
 	 * the prompt, multi line and more lines symbols.
 	 */
 	public ShellEnvironment() {
+		this(new ConsoleChannel(new FileOutputStream(FileDescriptor.out)));
+	}
+
+	/**
+	 * Constructs a new {@link ShellEnvironment} which writes its output to the
+	 * given channel instead of the console.
+	 * 
+	 * @param outputChannel
+	 *            channel where the output is written
+	 */
+	ShellEnvironment(WritableByteChannel outputChannel) {
 		this.inputStream = new BufferedReader(new InputStreamReader(System.in));
-		this.outputStream = new BufferedWriter(new OutputStreamWriter(System.out));
-		multiLineSymbol = '|';
-		moreLinesSymbol = '\\';
-		promptSymbol = '>';
+		this.outputChannel = outputChannel;
 
 		initCommands();
 	}
 
 	/**
 	 * Initializes the list of currently supported {@link MyShell} commands.
+	 * The commands are discovered through the {@link ShellCommandProvider}
+	 * services and instantiated on first use.
 	 */
 	private void initCommands() {
-		commands = new TreeMap<String, ShellCommand>();
-		commands.put("cat", new CatShellCommand());
-		commands.put("charsets", new CharsetsShellCommand());
-		commands.put("copy", new CopyShellCommand());
-		commands.put("help", new HelpShellCommand());
-		commands.put("hexdump", new HexdumpShellCommand());
-		commands.put("ls", new LsShellCommand());
-		commands.put("mkdir", new MkdirShellCommand());
-		commands.put("tree", new TreeShellCommand());
-		commands.put("exit", new ExitShellCommand());
-		commands.put("symbol", new SymbolShellCommand());
-
+		commands = CommandRegistry.load(MyShell.class.getClassLoader());
 	}
 
 	@Override
 	public String readLine() throws ShellIOException {
+		flush();
 		String line;
 		try {
 			line = inputStream.readLine();
@@ -86,23 +112,96 @@ public class ShellEnvironment implements Environment {
 	}
 
 	@Override
-	public void write(String text) throws ShellIOException {
+	public synchronized void write(String text) throws ShellIOException {
+		encode(text);
+		if (!batched) {
+			flush();
+		}
+	}
+
+	@Override
+	public synchronized void writeln(String text) throws ShellIOException {
+		encode(text);
+		encode("\n");
+		if (!batched) {
+			flush();
+		}
+	}
+
+	@Override
+	public ReadableByteChannel getInputChannel() {
+		return null;
+	}
+
+	@Override
+	public WritableByteChannel getOutputChannel() {
+		return bufferedChannel;
+	}
+
+	@Override
+	public synchronized void flush() throws ShellIOException {
+		outputBuffer.flip();
 		try {
-			outputStream.write(text);
-			outputStream.flush();
+			while (outputBuffer.hasRemaining()) {
+				outputChannel.write(outputBuffer);
+			}
 		} catch (IOException ex) {
 			throw new ShellIOException("An I/O error occured.");
+		} finally {
+			outputBuffer.clear();
 		}
+	}
 
+	@Override
+	public synchronized boolean isBatched() {
+		return batched;
+	}
+
+	@Override
+	public synchronized void setBatched(boolean batched) {
+		this.batched = batched;
+		if (!batched) {
+			flush();
+		}
 	}
 
+	/**
+	 * Stops the file system work of the commands and the watching of the
+	 * cached directory sizes. Called when the shell ends.
+	 */
 	@Override
-	public void writeln(String text) throws ShellIOException {
+	public void close() {
+		ioPool.shutdownNow();
 		try {
-			outputStream.write(text + "\n");
-			outputStream.flush();
+			sizer.close();
 		} catch (IOException ex) {
-			throw new ShellIOException("An I/O error occured.");
+			// nothing more can be done when the shell ends
+		}
+	}
+
+	/**
+	 * Encodes the text into the output buffer, writing the buffer to the
+	 * console whenever it fills.
+	 * 
+	 * @param text
+	 *            text to encode
+	 * @throws ShellIOException
+	 *             in case of an I/O error
+	 */
+	private void encode(String text) throws ShellIOException {
+		CharBuffer chars = CharBuffer.wrap(text);
+		encoder.reset();
+		while (true) {
+			CoderResult result = encoder.encode(chars, outputBuffer, true);
+			if (result.isOverflow()) {
+				flush();
+				continue;
+			}
+			if (encoder.flush(outputBuffer).isOverflow()) {
+				flush();
+				encoder.flush(outputBuffer);
+			}
+			break;
 		}
 	}
 
@@ -111,40 +210,145 @@ public class ShellEnvironment implements Environment {
 		return Collections.unmodifiableSortedMap(commands);
 	}
 
+	@Override
+	public JobManager jobs() {
+		return jobs;
+	}
+
+	@Override
+	public CommandMetrics metrics() {
+		return metrics;
+	}
+
+	@Override
+	public DirectorySizer sizer() {
+		return sizer;
+	}
+
+	@Override
+	public ForkJoinPool ioPool() {
+		return ioPool;
+	}
+
+	@Override
+	public ShellSymbols symbols() {
+		return symbols;
+	}
+
 	@Override
 	public Character getMultilineSymbol() {
-		return multiLineSymbol;
+		return symbols.getMultiline();
 	}
 
 	@Override
 	public void setMultilineSymbol(Character symbol) {
-		writeln("Symbol for MULTILINE changed from '" + multiLineSymbol + "' to '" + symbol + "'.");
-		this.multiLineSymbol = symbol;
-
+		writeln(ShellSymbols.changed("MULTILINE", symbols.setMultiline(symbol), symbol));
 	}
 
 	@Override
 	public Character getPromptSymbol() {
-		return promptSymbol;
+		return symbols.getPrompt();
 	}
 
 	@Override
 	public void setPromptSymbol(Character symbol) {
-		writeln("Symbol for PROMPT changed from '" + promptSymbol + "' to '" + symbol + "'.");
-		this.promptSymbol = symbol;
-
+		writeln(ShellSymbols.changed("PROMPT", symbols.setPrompt(symbol), symbol));
 	}
 
 	@Override
 	public Character getMorelinesSymbol() {
-		return moreLinesSymbol;
+		return symbols.getMorelines();
 	}
 
 	@Override
 	public void setMorelinesSymbol(Character symbol) {
-		writeln("Symbol for MORELINES changed from '" + moreLinesSymbol + "' to '" + symbol + "'.");
-		this.moreLinesSymbol = symbol;
+		writeln(ShellSymbols.changed("MORELINES", symbols.setMorelines(symbol), symbol));
+	}
+
+	/**
+	 * Channel which writes raw bytes through the output buffer. Writes larger
+	 * than the buffer bypass it.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	private class BufferedChannel implements WritableByteChannel {
 
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			synchronized (ShellEnvironment.this) {
+				int length = src.remaining();
+				if (length > outputBuffer.remaining()) {
+					flush();
+				}
+				if (length >= outputBuffer.capacity()) {
+					while (src.hasRemaining()) {
+						outputChannel.write(src);
+					}
+				} else {
+					outputBuffer.put(src);
+				}
+				if (!batched) {
+					flush();
+				}
+				return length;
+			}
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
 	}
 
+	/**
+	 * Channel which writes to the console stream. Unlike a file channel, it
+	 * is not closed when the writing thread is interrupted, so a cancelled
+	 * command can not take the console down with it.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class ConsoleChannel implements WritableByteChannel {
+		/** Stream of the console. **/
+		private final OutputStream stream;
+
+		/**
+		 * Constructs a new channel.
+		 * 
+		 * @param stream
+		 *            stream of the console
+		 */
+		ConsoleChannel(OutputStream stream) {
+			this.stream = stream;
+		}
+
+		@Override
+		public int write(ByteBuffer src) throws IOException {
+			int length = src.remaining();
+			if (src.hasArray()) {
+				stream.write(src.array(), src.arrayOffset() + src.position(), length);
+				src.position(src.limit());
+			} else {
+				byte[] bytes = new byte[length];
+				src.get(bytes);
+				stream.write(bytes);
+			}
+			stream.flush();
+			return length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
 }
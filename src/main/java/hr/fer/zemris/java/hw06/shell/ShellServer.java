@@ -0,0 +1,426 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves shell sessions to many clients from a single JVM.
+ * <p>
+ * Each connection - TCP or, on Java 16 and later, Unix-domain - gets its own
+ * {@link ServerSession}: an {@link Environment} with its own symbols and
+ * background jobs, sharing the commands, the command metrics, the directory
+ * sizes and the {@link IoPool} of the server. The protocol is the interactive shell over a
+ * byte stream: the server sends the prompt, the client sends lines of input
+ * and receives the output of the commands.
+ * <p>
+ * All the connections are multiplexed by a single selector thread, which
+ * only moves bytes; the commands run on a fixed pool of worker threads. The
+ * lines of a session are executed one at a time, in order.
+ * <p>
+ * The server does not authenticate its clients: a bare port is bound to the
+ * loopback interface, and a Unix-domain socket is protected by the
+ * permissions of its file.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class ShellServer implements Closeable {
+	/** Default number of worker threads. **/
+	public static final int DEFAULT_WORKERS = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+	/** Prefix of a Unix-domain socket address. **/
+	private static final String UNIX_PREFIX = "unix:";
+	/** Time the server stops accepting after a failed accept, in ms. **/
+	private static final long ACCEPT_BACKOFF = 100;
+
+	/** Selector of the connections. **/
+	private final Selector selector;
+	/** Channel accepting the connections. **/
+	private final ServerSocketChannel server;
+	/** Selection key of the accepting channel. **/
+	private final SelectionKey acceptKey;
+	/** Time when accepting resumes after a failure, or 0 if accepting. **/
+	private long acceptResumeTime;
+	/** File of the Unix-domain socket, or <code>null</code>. **/
+	private final Path socketFile;
+	/** Pool executing the commands. **/
+	private final ExecutorService workers;
+	/** Commands shared by the sessions. **/
+	private final SortedMap<String, ShellCommand> commands = CommandRegistry.load(MyShell.class.getClassLoader());
+	/** Metrics shared by the sessions. **/
+	private final CommandMetrics metrics = new CommandMetrics();
+	/** Pool for the file system work of the sessions. **/
+	private final ForkJoinPool ioPool = IoPool.create();
+	/** Sizer of the directories shared by the sessions. **/
+	private final DirectorySizer sizer = new DirectorySizer(ioPool, DirectorySizer.DEFAULT_CAPACITY);
+	/** Sessions which have output to be written. **/
+	private final Queue<ServerSession> writeRequests = new ConcurrentLinkedQueue<>();
+	/** Sessions which have room for more input. **/
+	private final Queue<ServerSession> readRequests = new ConcurrentLinkedQueue<>();
+	/** Whether the server was closed. **/
+	private volatile boolean closed;
+
+	/**
+	 * Constructs a new server and binds it to the address. The server starts
+	 * accepting connections when {@link #run()} is called.
+	 * 
+	 * @param address
+	 *            address to bind to, as returned by
+	 *            {@link #parseAddress(String)}
+	 * @param workers
+	 *            number of worker threads
+	 * @throws IOException
+	 *             if the address can not be bound
+	 */
+	public ShellServer(SocketAddress address, int workers) throws IOException {
+		boolean unix = address.getClass().getName().equals("java.net.UnixDomainSocketAddress");
+		this.socketFile = unix ? (Path) reflect(() -> address.getClass().getMethod("getPath").invoke(address)) : null;
+		this.server = unix ? openUnixServer() : ServerSocketChannel.open();
+		try {
+			server.bind(address);
+			server.configureBlocking(false);
+			this.selector = Selector.open();
+			this.acceptKey = server.register(selector, SelectionKey.OP_ACCEPT);
+		} catch (IOException ex) {
+			server.close();
+			throw ex;
+		}
+
+		AtomicInteger counter = new AtomicInteger();
+		this.workers = Executors.newFixedThreadPool(workers, r -> {
+			Thread thread = new Thread(r, "shell-worker-" + counter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Parses the address of the server: <code>unix:path</code> for a
+	 * Unix-domain socket, <code>host:port</code>, or a bare port on the
+	 * loopback interface.
+	 * 
+	 * @param text
+	 *            address to parse
+	 * @return parsed address
+	 * @throws IllegalArgumentException
+	 *             if the address is invalid or Unix-domain sockets are not
+	 *             supported
+	 */
+	public static SocketAddress parseAddress(String text) {
+		if (text.startsWith(UNIX_PREFIX)) {
+			String path = text.substring(UNIX_PREFIX.length());
+			return (SocketAddress) reflect(
+					() -> Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class).invoke(null, path));
+		}
+
+		int colon = text.lastIndexOf(':');
+		try {
+			int port = Integer.parseInt(text.substring(colon + 1));
+			return colon == -1 ? new InetSocketAddress(InetAddress.getLoopbackAddress(), port)
+					: new InetSocketAddress(text.substring(0, colon), port);
+		} catch (NumberFormatException ex) {
+			throw new IllegalArgumentException("Invalid address: " + text);
+		}
+	}
+
+	/**
+	 * Returns the address the server is bound to.
+	 * 
+	 * @return local address
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	public SocketAddress getLocalAddress() throws IOException {
+		return server.getLocalAddress();
+	}
+
+	/**
+	 * Accepts the connections and moves their data until the server is
+	 * closed. The method runs the selector loop on the calling thread.
+	 * <p>
+	 * A connection which can not be accepted - for example because the
+	 * process ran out of file descriptors - is reported through the standard
+	 * error, and the server stops accepting for {@value #ACCEPT_BACKOFF} ms
+	 * instead of spinning, while the existing sessions keep running.
+	 * 
+	 * @throws IOException
+	 *             in case of an I/O error of the selector
+	 */
+	public void run() throws IOException {
+		try {
+			while (!closed) {
+				if (acceptResumeTime == 0) {
+					selector.select();
+				} else {
+					selector.select(Math.max(1, (acceptResumeTime - System.nanoTime()) / 1_000_000));
+					if (System.nanoTime() - acceptResumeTime >= 0) {
+						acceptResumeTime = 0;
+						acceptKey.interestOps(SelectionKey.OP_ACCEPT);
+					}
+				}
+				registerWrites();
+				resumeReads();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						try {
+							accept();
+						} catch (IOException ex) {
+							System.err.println("A connection could not be accepted: " + ex.getMessage());
+							acceptKey.interestOps(0);
+							acceptResumeTime = System.nanoTime() + ACCEPT_BACKOFF * 1_000_000;
+						}
+						continue;
+					}
+
+					ServerSession session = (ServerSession) key.attachment();
+					try {
+						if (key.isReadable()) {
+							session.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							session.write();
+						}
+					} catch (IOException ex) {
+						session.close();
+					}
+				}
+			}
+		} finally {
+			shutdown();
+		}
+	}
+
+	/**
+	 * Stops the server. The selector loop ends and all the connections are
+	 * closed.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		selector.wakeup();
+	}
+
+	/**
+	 * Returns the commands shared by the sessions.
+	 * 
+	 * @return map of commands
+	 */
+	SortedMap<String, ShellCommand> getCommands() {
+		return commands;
+	}
+
+	/**
+	 * Returns the metrics shared by the sessions.
+	 * 
+	 * @return command metrics
+	 */
+	CommandMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Returns the directory sizer shared by the sessions.
+	 * 
+	 * @return directory sizer
+	 */
+	DirectorySizer getSizer() {
+		return sizer;
+	}
+
+	/**
+	 * Returns the pool for the file system work of the sessions.
+	 * 
+	 * @return pool for the file system work
+	 */
+	ForkJoinPool getIoPool() {
+		return ioPool;
+	}
+
+	/**
+	 * Returns the pool executing the commands.
+	 * 
+	 * @return worker pool
+	 */
+	ExecutorService getWorkers() {
+		return workers;
+	}
+
+	/**
+	 * Asks the selector thread to write the output of the session.
+	 * 
+	 * @param session
+	 *            session with output to be written
+	 */
+	void requestWrite(ServerSession session) {
+		writeRequests.add(session);
+		selector.wakeup();
+	}
+
+	/**
+	 * Asks the selector thread to resume reading the input of the session.
+	 * 
+	 * @param session
+	 *            session with room for more input
+	 */
+	void requestRead(ServerSession session) {
+		readRequests.add(session);
+		selector.wakeup();
+	}
+
+	/**
+	 * Accepts a new connection and starts its session.
+	 * 
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel = server.accept();
+		if (channel == null) {
+			return;
+		}
+		ServerSession session;
+		try {
+			channel.configureBlocking(false);
+			session = new ServerSession(this, channel);
+			session.setKey(channel.register(selector, SelectionKey.OP_READ, session));
+		} catch (IOException ex) {
+			channel.close();
+			throw ex;
+		}
+		session.start();
+	}
+
+	/**
+	 * Turns on the interest in writing for the sessions which requested it.
+	 */
+	private void registerWrites() {
+		ServerSession session;
+		while ((session = writeRequests.poll()) != null) {
+			session.enableWrite();
+		}
+	}
+
+	/**
+	 * Resumes reading for the sessions which requested it.
+	 */
+	private void resumeReads() {
+		ServerSession session;
+		while ((session = readRequests.poll()) != null) {
+			try {
+				session.resumeRead();
+			} catch (IOException ex) {
+				session.close();
+			}
+		}
+	}
+
+	/**
+	 * Closes all the connections, the selector and the pools.
+	 */
+	private void shutdown() {
+		for (SelectionKey key : selector.keys()) {
+			if (key.attachment() instanceof ServerSession) {
+				((ServerSession) key.attachment()).close();
+			}
+		}
+		try {
+			server.close();
+			selector.close();
+			sizer.close();
+			if (socketFile != null) {
+				Files.deleteIfExists(socketFile);
+			}
+		} catch (IOException ex) {
+			// nothing more can be done when shutting down
+		}
+		workers.shutdownNow();
+		ioPool.shutdownNow();
+	}
+
+	/**
+	 * Opens a server channel for Unix-domain sockets, which are available
+	 * from Java 16.
+	 * 
+	 * @return opened channel
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	private static ServerSocketChannel openUnixServer() throws IOException {
+		ProtocolFamily unix = reflect(() -> StandardProtocolFamily.valueOf("UNIX"));
+		try {
+			return (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null,
+					unix);
+		} catch (java.lang.reflect.InvocationTargetException ex) {
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException) ex.getCause();
+			}
+			throw new IllegalArgumentException("Unix-domain sockets are not supported.", ex.getCause());
+		} catch (ReflectiveOperationException ex) {
+			throw new IllegalArgumentException("Unix-domain sockets require Java 16 or later.", ex);
+		}
+	}
+
+	/**
+	 * Calls an API which may be missing from the running platform.
+	 * 
+	 * @param call
+	 *            reflective call
+	 * @param <T>
+	 *            type of the result
+	 * @return result of the call
+	 * @throws IllegalArgumentException
+	 *             if the call failed
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> T reflect(ReflectiveCall call) {
+		try {
+			return (T) call.call();
+		} catch (java.lang.reflect.InvocationTargetException ex) {
+			throw new IllegalArgumentException(String.valueOf(ex.getCause().getMessage()), ex.getCause());
+		} catch (ReflectiveOperationException | IllegalArgumentException ex) {
+			throw new IllegalArgumentException("Unix-domain sockets require Java 16 or later.", ex);
+		}
+	}
+
+	/**
+	 * A reflective call which may fail.
+	 * 
+	 * @author Mirna Baksa
+	 *
+	 */
+	private interface ReflectiveCall {
+		/**
+		 * Makes the call.
+		 * 
+		 * @return result of the call
+		 * @throws ReflectiveOperationException
+		 *             if the API is missing or the call failed
+		 */
+		Object call() throws ReflectiveOperationException;
+	}
+}
@@ -3,6 +3,7 @@ package hr.fer.zemris.java.hw06.shell;
  * Implements shell statuses.
  * 
  * @see ShellStatus#CONTINUE
+ * @see ShellStatus#FAILURE
  * @see ShellStatus#TERMINATE
  * @author Mirna Baksa
  *
@@ -12,6 +13,11 @@ public enum ShellStatus {
 	 * Marks that the shell work is to be continued.
 	 */
 	CONTINUE,
+	/**
+	 * Marks that the command failed, but the shell work is to be continued.
+	 * Scripts executed with the stop-on-error option end on this status.
+	 */
+	FAILURE,
 	/**
 	 * Marks that the shell needs to be terminated.
 	 */
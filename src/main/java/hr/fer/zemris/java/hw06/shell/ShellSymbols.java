@@ -0,0 +1,103 @@
+package hr.fer.zemris.java.hw06.shell;
+
+/**
+ * The prompt, multi line and more lines symbols of a shell.
+ * <p>
+ * The symbols are shared by the shell and the commands it runs, so they can
+ * be read and changed from different threads - for example by a
+ * <code>symbol</code> command running in a pipeline or as a background job.
+ * Each change returns the previous symbol, so the caller can report the
+ * change through its own output.
+ *
+ * @author Mirna Baksa
+ *
+ */
+public class ShellSymbols {
+	/** Multi line symbol. **/
+	private Character multiLineSymbol = '|';
+	/** More lines symbol. **/
+	private Character moreLinesSymbol = '\\';
+	/** Prompt symbol. **/
+	private Character promptSymbol = '>';
+
+	/**
+	 * Returns the multi line symbol.
+	 *
+	 * @return multi line symbol
+	 */
+	public synchronized Character getMultiline() {
+		return multiLineSymbol;
+	}
+
+	/**
+	 * Sets the multi line symbol.
+	 *
+	 * @param symbol
+	 *            new multi line symbol
+	 * @return previous multi line symbol
+	 */
+	public synchronized Character setMultiline(Character symbol) {
+		Character previous = multiLineSymbol;
+		multiLineSymbol = symbol;
+		return previous;
+	}
+
+	/**
+	 * Returns the prompt symbol.
+	 *
+	 * @return prompt symbol
+	 */
+	public synchronized Character getPrompt() {
+		return promptSymbol;
+	}
+
+	/**
+	 * Sets the prompt symbol.
+	 *
+	 * @param symbol
+	 *            new prompt symbol
+	 * @return previous prompt symbol
+	 */
+	public synchronized Character setPrompt(Character symbol) {
+		Character previous = promptSymbol;
+		promptSymbol = symbol;
+		return previous;
+	}
+
+	/**
+	 * Returns the more lines symbol.
+	 *
+	 * @return more lines symbol
+	 */
+	public synchronized Character getMorelines() {
+		return moreLinesSymbol;
+	}
+
+	/**
+	 * Sets the more lines symbol.
+	 *
+	 * @param symbol
+	 *            new more lines symbol
+	 * @return previous more lines symbol
+	 */
+	public synchronized Character setMorelines(Character symbol) {
+		Character previous = moreLinesSymbol;
+		moreLinesSymbol = symbol;
+		return previous;
+	}
+
+	/**
+	 * Returns the message which reports a change of a symbol.
+	 *
+	 * @param name
+	 *            name of the symbol
+	 * @param previous
+	 *            previous symbol
+	 * @param symbol
+	 *            new symbol
+	 * @return message about the change
+	 */
+	public static String changed(String name, Character previous, Character symbol) {
+		return "Symbol for " + name + " changed from '" + previous + "' to '" + symbol + "'.";
+	}
+}
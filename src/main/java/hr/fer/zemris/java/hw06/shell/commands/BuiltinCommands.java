@@ -0,0 +1,105 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import hr.fer.zemris.java.hw06.shell.CommandDescriptor;
+import hr.fer.zemris.java.hw06.shell.ShellCommandProvider;
+
+/**
+ * Provides the built-in commands of the {@link hr.fer.zemris.java.hw06.shell.MyShell}.
+ * <p>
+ * The classes are referred to by name and their descriptions are kept here,
+ * so that neither listing the commands nor <code>help</code> for a command
+ * loads them. The descriptions must match the ones of the commands.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class BuiltinCommands implements ShellCommandProvider {
+	/** Package of the built-in commands. **/
+	private static final String PACKAGE = "hr.fer.zemris.java.hw06.shell.commands.";
+
+	/** Descriptors of the built-in commands. **/
+	private static final List<CommandDescriptor> COMMANDS = Collections.unmodifiableList(Arrays.asList(
+			command("cat", "CatShellCommand", "Opens the given file and writes its content to console.", "cat [path]",
+					"cat [path] [charset]", "Path must be a valid file path.",
+					"Defined charset is used to interpret chars from bytes. If not provided, a default platform charset is used.",
+					"Without arguments, writes out the output of the previous command in a pipeline."),
+			command("charsets", "CharsetsShellCommand", "Lists names of supported charsets for users Java platform.",
+					"charsets []", "No arguments are taken. A single charset is written per line."),
+			command("copy", "CopyShellCommand", "Copies one or more files to another location.", "copy [source] [dest]",
+					"Source and dest must be valid file paths.",
+					"If the dest path already exists, the user will be asked if the file should be overwriten.",
+					"If the dest path is a directory, the source file will be copied into the directory using the original file name."),
+			command("du", "DuShellCommand", "Estimates the disk usage of a directory tree.",
+					"du [-d depth] [-a] [-n N] [-h] [path]",
+					"Prints the size of each directory - the total size of its files - and the total.",
+					"-d reports at most depth levels, -a reports the files too,",
+					"-n reports only the N largest entries, -h prints the sizes with units."),
+			command("exit", "ExitShellCommand", "Ends work."),
+			command("help", "HelpShellCommand", "Provides help information for commands.",
+					"help [] :lists all the commands and their short description.",
+					"help [command] :provides information about the specific command."),
+			command("hexdump", "HexdumpShellCommand", "Produces hex-output of the file.", "hexdump [path]",
+					"Path must be valid file path.",
+					"Without arguments, dumps the output of the previous command in a pipeline."),
+			command("jobs", "JobsShellCommand", "Lists the background jobs.", "jobs",
+					"Jobs are started by ending a command with &. A finished job is listed until it is waited for."),
+			command("kill", "KillShellCommand", "Kills background jobs.", "kill [job...]",
+					"The job numbers are listed by the jobs command."),
+			command("ls", "LsShellCommand", "Displays a directory listing. (not recursively).",
+					"ls [-n] [-m seconds] [path]", "The output will be shown in 4 columns.",
+					"Column 1: (d) if object is directory, (r) is readable, (w) is writable, (e) is executable.",
+					"Column 2: size in bytes. The size of a directory is the total size of its subtree.",
+					"Column 3: file creation date/time.", "Column 4: file name.",
+					"-n skips the directory sizes (-), -m limits the time for computing them (? if unknown)."),
+			command("mkdir", "MkdirShellCommand", "Creates a directory.", "mkdir [path]",
+					"The directory name must be a valid directory path."),
+			command("parallel", "ParallelShellCommand", "Runs a command for each of the given files, in parallel.",
+					"parallel [-j N] [-k] command [args] ::: item...",
+					"Each item is a path or a glob, e.g. logs/*.txt, and replaces {} in the arguments or is appended to them.",
+					"-j N runs at most N invocations at once, by default one per processor.",
+					"The output of each invocation is written as a whole; -k keeps the order of the items."),
+			command("stats", "StatsShellCommand", "Writes the latency metrics of the executed commands.",
+					"stats [reset]",
+					"Shows the wall time percentiles, mean CPU time and allocation, and the bytes read and written per command.",
+					"CPU time, allocation and bytes count the calling thread only, not the work of pools and pipeline stages.",
+					"stats reset clears the metrics."),
+			command("symbol", "SymbolShellCommand", "Manipulates the shell symbols.", "symbol [NAME]",
+					"symbol [NAME] [newchar]",
+					"Provided with only one argument, prints out the current character for that name. The argument must be upper-case.",
+					"Provided with two arguments, changes the current character of that name to the given new char."),
+			command("time", "TimeShellCommand", "Executes a command and writes the time and resources it used.",
+					"time [command] [arguments]", "All but the wall time are measured on the calling thread only."),
+			command("timeout", "TimeoutShellCommand", "Executes a command with a time limit.",
+					"timeout [seconds] [command] [arguments]",
+					"The command is cancelled if it runs longer than the limit."),
+			command("tree", "TreeShellCommand", "Prints the directory tree.", "tree [-L depth] [-f] [-c] [path]",
+					"Path must be valid directory name/path, the default is the current directory.",
+					"-L descends at most depth levels, -f prints the files too,",
+					"-c prints the number of subdirectories and files of each directory."),
+			command("wait", "WaitShellCommand", "Waits for background jobs to finish.", "wait [job...]",
+					"Without arguments, waits for all the jobs.", "The output of each job is written when it finishes.")));
+
+	@Override
+	public List<CommandDescriptor> getCommands() {
+		return COMMANDS;
+	}
+
+	/**
+	 * Creates the descriptor of a built-in command.
+	 * 
+	 * @param name
+	 *            command name
+	 * @param simpleClassName
+	 *            simple name of the command class
+	 * @param description
+	 *            full description, the first line is the short description
+	 * @return command descriptor
+	 */
+	private static CommandDescriptor command(String name, String simpleClassName, String... description) {
+		return new CommandDescriptor(name, PACKAGE + simpleClassName, Arrays.asList(description));
+	}
+}
@@ -1,7 +1,12 @@
 package hr.fer.zemris.java.hw06.shell.commands;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.UnsupportedCharsetException;
@@ -15,6 +20,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import hr.fer.zemris.java.hw06.shell.Cancellation;
 import hr.fer.zemris.java.hw06.shell.Environment;
 import hr.fer.zemris.java.hw06.shell.ShellCommand;
 import hr.fer.zemris.java.hw06.shell.ShellStatus;
@@ -27,11 +33,17 @@ import hr.fer.zemris.java.hw06.shell.ShellStatus;
  * used to interpret chars from bytes. If not provided, a default platform
  * charset should be used. This command opens the given file and writes its content
  * to console.
+ * <p>
+ * Without arguments, the command writes out the data piped into it by the
+ * previous command of a pipeline.
  * 
  * @author Mirna Baksa
  *
  */
 public class CatShellCommand implements ShellCommand {
+	/** Size of the read buffer. **/
+	private static final int BUFFER_SIZE = 64 * 1024;
+
 	/** Command name. **/
 	private final String commandName = "cat";
 
@@ -39,63 +51,131 @@ public class CatShellCommand implements ShellCommand {
 	private final List<String> description = new ArrayList<>(Arrays.asList(
 			"Opens the given file and writes its content to console.", "cat [path]", "cat [path] [charset]",
 			"Path must be a valid file path.",
-			"Defined charset is used to interpret chars from bytes. If not provided, a default platform charset is used."));
+			"Defined charset is used to interpret chars from bytes. If not provided, a default platform charset is used.",
+			"Without arguments, writes out the output of the previous command in a pipeline."));
 
 	@Override
 	public ShellStatus executeCommand(Environment env, String arguments) {
+		if (arguments == null && env.getInputChannel() != null) {
+			try {
+				copy(env.getInputChannel(), env.getOutputChannel());
+			} catch (IOException e) {
+				env.writeln(Cancellation.isCancelled() ? Cancellation.MESSAGE : "An I/O error occured.");
+				return ShellStatus.FAILURE;
+			}
+			return ShellStatus.CONTINUE;
+		}
+
 		if (arguments == null) {
 			env.writeln("At least one argument is expected when using the cat command.");
 			env.writeln("See help cat for more info.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 
 		String[] argList = arguments.split("\\s+");
 
-		Charset charset = Charset.defaultCharset();
+		Charset charset = null;
 		if (argList.length == 2) {
 			try {
 				charset = Charset.forName(argList[1]);
 			} catch (IllegalCharsetNameException ex) {
 				env.writeln("The given charset name " + argList[1] + "is not valid.");
-				return ShellStatus.CONTINUE;
+				return ShellStatus.FAILURE;
 			} catch (UnsupportedCharsetException ex2) {
 				env.writeln("The given charset name " + argList[1] + "is not supported.");
-				return ShellStatus.CONTINUE;
+				return ShellStatus.FAILURE;
 			}
 		}
 
 		Path path;
 		try{
-			path = Paths.get(arguments);
+			path = Paths.get(argList.length == 2 ? argList[0] : arguments);
 		}catch(InvalidPathException ex){
 			env.writeln("Invalid path.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 		
 		if(!path.toFile().isFile()){
 			env.writeln("The given path must be a file.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 
-		try (InputStream inputStream = Files.newInputStream(path, StandardOpenOption.READ);) {
-			byte[] buffer = new byte[4096];
-
-			while (true) {
-				int readBytes = inputStream.read(buffer);
-				if (readBytes < 1) {
-					break;
-				}
-
-				env.write(new String(buffer, 0, readBytes, charset));
+		try {
+			if (charset == null) {
+				copy(path, env.getOutputChannel());
+			} else {
+				decode(path, charset, env);
 			}
 		} catch (IOException e) {
-			env.writeln("An I/O error occured.");
-			return ShellStatus.CONTINUE;
+			env.writeln(Cancellation.isCancelled() ? Cancellation.MESSAGE : "An I/O error occured.");
+			return ShellStatus.FAILURE;
 		}
 		env.writeln("");
 		return ShellStatus.CONTINUE;
 	}
 
+	/**
+	 * Copies the bytes of the file to the output unchanged. Used when the file
+	 * is in the platform default charset, which is also the charset of the
+	 * console, so decoding and encoding the text again is not necessary.
+	 * 
+	 * @param path
+	 *            path of the file
+	 * @param output
+	 *            channel where the bytes are written
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	private static void copy(Path path, WritableByteChannel output) throws IOException {
+		try (FileChannel input = FileChannel.open(path, StandardOpenOption.READ)) {
+			copy(input, output);
+		}
+	}
+
+	/**
+	 * Copies all the bytes from the input to the output unchanged.
+	 * 
+	 * @param input
+	 *            channel from where the bytes are read
+	 * @param output
+	 *            channel where the bytes are written
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	private static void copy(ReadableByteChannel input, WritableByteChannel output) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		while (input.read(buffer) != -1) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				output.write(buffer);
+			}
+			buffer.clear();
+		}
+	}
+
+	/**
+	 * Decodes the file in the given charset and writes the text to the
+	 * console. Characters are never split between two reads.
+	 * 
+	 * @param path
+	 *            path of the file
+	 * @param charset
+	 *            charset of the file
+	 * @param env
+	 *            environment for writing the text
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	private static void decode(Path path, Charset charset, Environment env) throws IOException {
+		try (Reader reader = new InputStreamReader(Files.newInputStream(path, StandardOpenOption.READ), charset)) {
+			char[] buffer = new char[BUFFER_SIZE];
+			int read;
+			while ((read = reader.read(buffer)) != -1) {
+				env.write(new String(buffer, 0, read));
+			}
+		}
+	}
+
 	@Override
 	public String getCommandName() {
 		return commandName;
@@ -14,6 +14,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import hr.fer.zemris.java.hw06.shell.Cancellation;
 import hr.fer.zemris.java.hw06.shell.Environment;
 import hr.fer.zemris.java.hw06.shell.ShellCommand;
 import hr.fer.zemris.java.hw06.shell.ShellStatus;
@@ -27,7 +28,8 @@ import hr.fer.zemris.java.hw06.shell.ShellStatus;
  * source file to that directory. If the destination is a file that exists, the
  * user will be asked to allow the overwriting of the existing file. If the file
  * does not exist, the file will be created and the content of the source file
- * copied into it. The name of the copied file is the source file name.
+ * copied into it. The name of the copied file is the source file name. If
+ * the command is cancelled, the partially copied file is deleted.
  * 
  * @author Mirna Baksa
  *
@@ -47,14 +49,14 @@ public class CopyShellCommand implements ShellCommand {
 		if (arguments == null) {
 			env.writeln("The copy command expects exactly two arguments.");
 			env.writeln("See help copy for more info.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 
 		String argList[] = arguments.split("\\s+");
 		if (argList.length != 2) {
 			env.writeln("The copy command expects exactly two arguments.");
 			env.writeln("See help copy for more info.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 
 		Path input;
@@ -64,19 +66,19 @@ public class CopyShellCommand implements ShellCommand {
 			output = Paths.get(argList[1]);
 		}catch(InvalidPathException ex){
 			env.writeln("Invalid path.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 
 		if (input.toFile().isDirectory()) {
 			env.writeln("Invalid argument. First path must be a file path.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 
 		if (output.toFile().exists() && !output.toFile().isDirectory()) {
 			env.writeln("Overwrite " + output.toString() + "? Input yes/no.");
 			env.writeln(env.getPromptSymbol().toString());
 			String userInput = env.readLine();
-			if (userInput.toLowerCase().equals("no")) {
+			if (userInput == null || userInput.toLowerCase().equals("no")) {
 				env.writeln("No action was done.");
 				return ShellStatus.CONTINUE;
 			}
@@ -90,7 +92,7 @@ public class CopyShellCommand implements ShellCommand {
 				OutputStream outputStream = Files.newOutputStream(output);) {
 			byte[] buffer = new byte[4096];
 
-			while (true) {
+			while (!Cancellation.isCancelled()) {
 				int readBytes = inputStream.read(buffer);
 				if (readBytes < 1) {
 					break;
@@ -99,7 +101,20 @@ public class CopyShellCommand implements ShellCommand {
 				outputStream.write(buffer, 0, readBytes);
 			}
 		} catch (IOException e) {
-			env.writeln("An I/O error occured.");
+			if (!Cancellation.isCancelled()) {
+				env.writeln("An I/O error occured.");
+				return ShellStatus.FAILURE;
+			}
+		}
+
+		if (Cancellation.isCancelled()) {
+			try {
+				Files.deleteIfExists(output);
+			} catch (IOException e) {
+				env.writeln("The partial copy " + output + " could not be deleted.");
+			}
+			env.writeln(Cancellation.MESSAGE);
+			return ShellStatus.FAILURE;
 		}
 
 		return ShellStatus.CONTINUE;
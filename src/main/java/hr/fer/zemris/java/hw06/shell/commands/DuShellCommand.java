@@ -0,0 +1,538 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hr.fer.zemris.java.hw06.shell.Cancellation;
+import hr.fer.zemris.java.hw06.shell.CommandMetrics;
+import hr.fer.zemris.java.hw06.shell.Environment;
+import hr.fer.zemris.java.hw06.shell.ShellCommand;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+/**
+ * Estimates the disk usage of a directory tree.
+ * <p>
+ * The size of a directory is the total size of the files in its subtree. The
+ * subtrees are summed in parallel on the I/O pool of the shell, one task per
+ * directory. Symbolic links are not followed and count by their own size. A
+ * file with several hard links is counted only once, in the directory where
+ * it is found first.
+ * <p>
+ * The command prints the size of each directory after the sizes of its
+ * subdirectories, which are sorted by name, so the last line is the size of
+ * the whole tree. The lines are streamed: each task publishes its sorted
+ * entries as soon as its directory is listed, and the line of a directory is
+ * written as soon as its subtree is summed and the lines before it are
+ * written. The output of a large tree therefore starts long before the walk
+ * ends, and only the summed entries which are not printed yet are kept. The
+ * options are:
+ * <p>
+ * <code>-d depth</code> - report at most <code>depth</code> levels below the
+ * directory; the sizes still include the whole subtrees. <br>
+ * <code>-a</code> - report the files as well as the directories. <br>
+ * <code>-n N</code> - report only the <code>N</code> largest entries, largest
+ * first, followed by the total. They are kept in a bounded heap while the
+ * tree is summed, so the entries are never all kept or sorted. <br>
+ * <code>-h</code> - print the sizes with decimal units, e.g.
+ * <code>1.5 MB</code>.
+ *
+ * @author Mirna Baksa
+ *
+ */
+public class DuShellCommand implements ShellCommand {
+	/** Length of the output written at once. **/
+	private static final int CHUNK = 8192;
+	/** Attributes read through the unix view. **/
+	private static final String UNIX_ATTRIBUTES = "unix:size,isDirectory,nlink,fileKey";
+	/** Whether the file system supports the unix view. **/
+	private static volatile boolean unixView = true;
+
+	/** Command name. **/
+	private final String commandName = "du";
+
+	/** Command description. **/
+	private List<String> description = new ArrayList<>(Arrays.asList("Estimates the disk usage of a directory tree.",
+			"du [-d depth] [-a] [-n N] [-h] [path]",
+			"Prints the size of each directory - the total size of its files - and the total.",
+			"-d reports at most depth levels, -a reports the files too,",
+			"-n reports only the N largest entries, -h prints the sizes with units."));
+
+	@Override
+	public ShellStatus executeCommand(Environment env, String arguments) {
+		int maxDepth = Integer.MAX_VALUE;
+		int top = 0;
+		boolean all = false;
+		boolean human = false;
+		String rest = arguments == null ? "" : arguments.trim();
+		while (rest.startsWith("-")) {
+			String[] parts = rest.split("\\s+", 2);
+			if (parts[0].equals("-a")) {
+				all = true;
+			} else if (parts[0].equals("-h")) {
+				human = true;
+			} else if (parts[0].equals("-d") || parts[0].equals("-n")) {
+				String[] value = parts.length == 1 ? new String[] { "" } : parts[1].split("\\s+", 2);
+				int number;
+				try {
+					number = Integer.parseInt(value[0]);
+				} catch (NumberFormatException ex) {
+					number = -1;
+				}
+				if (parts[0].equals("-d") && number >= 0) {
+					maxDepth = number;
+				} else if (parts[0].equals("-n") && number > 0) {
+					top = number;
+				} else {
+					env.writeln("Expected a " + (parts[0].equals("-d") ? "non-negative depth" : "positive count")
+							+ ". Was: " + arguments);
+					return ShellStatus.FAILURE;
+				}
+				parts = value;
+			} else {
+				break;
+			}
+			rest = parts.length == 1 ? "" : parts[1];
+		}
+
+		Path dir;
+		try{
+			dir = Paths.get(rest.isEmpty() ? "." : rest);
+		}catch(InvalidPathException ex){
+			env.writeln("Invalid directory path.");
+			return ShellStatus.FAILURE;
+		}
+
+		if (!dir.toFile().isDirectory()) {
+			env.writeln("Invalid directory path.");
+			return ShellStatus.FAILURE;
+		}
+
+		Usage usage = new Usage(maxDepth, top, all);
+		Usage.SumTask root = usage.new SumTask(dir, 0);
+		env.ioPool().execute(root);
+		StringBuilder out = new StringBuilder(CHUNK + 256);
+		try {
+			if (top > 0) {
+				long total = root.get();
+				List<Entry> largest = new ArrayList<>(usage.largest);
+				largest.sort(Comparator.comparingLong((Entry e) -> e.size).reversed());
+				for (Entry entry : largest) {
+					line(env, out, entry.size, entry.path.toString(), human);
+				}
+				line(env, out, total, "total", human);
+			} else {
+				print(env, out, root, human);
+			}
+		} catch (InterruptedException ex) {
+			usage.aborted = true;
+			Thread.currentThread().interrupt();
+			env.write(out.toString());
+			env.writeln(Cancellation.MESSAGE);
+			return ShellStatus.FAILURE;
+		} catch (ExecutionException ex) {
+			usage.aborted = true;
+			env.write(out.toString());
+			env.writeln("An I/O error occured.");
+			return ShellStatus.FAILURE;
+		}
+
+		if (usage.unreadable.get() > 0) {
+			out.append(usage.unreadable.get()).append(" directories could not be read.\n");
+		}
+		env.write(out.toString());
+
+		return ShellStatus.CONTINUE;
+	}
+
+	@Override
+	public String getCommandName() {
+		return commandName;
+	}
+
+	@Override
+	public List<String> getCommandDescription() {
+		return Collections.unmodifiableList(description);
+	}
+
+	/**
+	 * Adds the reported entries of the subtree to the output, the entries of
+	 * a directory before the directory itself, as soon as they are summed.
+	 * The output is written before waiting for the walk, and the printed
+	 * entries are released.
+	 *
+	 * @param env
+	 *            environment to enable communication between the command and
+	 *            the user
+	 * @param out
+	 *            output which is not written yet
+	 * @param task
+	 *            task summing the root of the subtree
+	 * @param human
+	 *            whether the sizes are printed with units
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting
+	 * @throws ExecutionException
+	 *             if the summation failed
+	 */
+	private static void print(Environment env, StringBuilder out, Usage.SumTask task, boolean human)
+			throws InterruptedException, ExecutionException {
+		if (task.listed.getCount() > 0) {
+			flush(env, out);
+			task.listed.await();
+		}
+		List<Usage.SumTask> children = task.children;
+		if (children != null) {
+			for (int i = 0; i < children.size(); i++) {
+				print(env, out, children.get(i), human);
+				children.set(i, null);
+			}
+		}
+
+		if (!task.isDone()) {
+			flush(env, out);
+		}
+		line(env, out, task.get(), task.path.toString(), human);
+	}
+
+	/**
+	 * Writes the output which is not written yet.
+	 *
+	 * @param env
+	 *            environment to enable communication between the command and
+	 *            the user
+	 * @param out
+	 *            output which is not written yet
+	 */
+	private static void flush(Environment env, StringBuilder out) {
+		if (out.length() > 0) {
+			env.write(out.toString());
+			out.setLength(0);
+		}
+	}
+
+	/**
+	 * Adds a line to the output, writing the output once it is long enough.
+	 *
+	 * @param env
+	 *            environment to enable communication between the command and
+	 *            the user
+	 * @param out
+	 *            output which is not written yet
+	 * @param size
+	 *            size to print
+	 * @param name
+	 *            name to print
+	 * @param human
+	 *            whether the size is printed with units
+	 */
+	private static void line(Environment env, StringBuilder out, long size, String name, boolean human) {
+		String text = human ? CommandMetrics.formatBytes(size) : Long.toString(size);
+		for (int i = text.length(); i < 10; i++) {
+			out.append(' ');
+		}
+		out.append(text).append(' ').append(name).append('\n');
+		if (out.length() >= CHUNK) {
+			flush(env, out);
+		}
+	}
+
+	/**
+	 * Reads the attributes of the entry which are needed for summing, in a
+	 * single call and without following symbolic links.
+	 *
+	 * @param entry
+	 *            entry to read the attributes of
+	 * @return attributes of the entry
+	 * @throws IOException
+	 *             in case of file info retrieval error
+	 */
+	private static Stat stat(Path entry) throws IOException {
+		if (unixView) {
+			try {
+				Map<String, Object> attrs = Files.readAttributes(entry, UNIX_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+				return new Stat((Long) attrs.get("size"), (Boolean) attrs.get("isDirectory"),
+						(Integer) attrs.get("nlink"), attrs.get("fileKey"));
+			} catch (UnsupportedOperationException | IllegalArgumentException ex) {
+				unixView = false;
+			}
+		}
+		BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+		return new Stat(attrs.size(), attrs.isDirectory(), 1, attrs.fileKey());
+	}
+
+	/**
+	 * Attributes of an entry needed for summing.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class Stat {
+		/** Size of the entry. **/
+		private final long size;
+		/** Whether the entry is a directory. **/
+		private final boolean directory;
+		/** Number of hard links to the entry. **/
+		private final int links;
+		/** Key identifying the file, or <code>null</code>. **/
+		private final Object fileKey;
+
+		/**
+		 * Constructs new attributes.
+		 *
+		 * @param size
+		 *            size of the entry
+		 * @param directory
+		 *            whether the entry is a directory
+		 * @param links
+		 *            number of hard links to the entry
+		 * @param fileKey
+		 *            key identifying the file, or <code>null</code>
+		 */
+		Stat(long size, boolean directory, int links, Object fileKey) {
+			this.size = size;
+			this.directory = directory;
+			this.links = links;
+			this.fileKey = fileKey;
+		}
+	}
+
+	/**
+	 * A summed entry among the largest ones.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class Entry {
+		/** Path of the entry. **/
+		private final Path path;
+		/** Total size of the entry. **/
+		private final long size;
+
+		/**
+		 * Constructs a new entry.
+		 *
+		 * @param path
+		 *            path of the entry
+		 * @param size
+		 *            total size of the entry
+		 */
+		Entry(Path path, long size) {
+			this.path = path;
+			this.size = size;
+		}
+	}
+
+	/**
+	 * A single summation of a tree, collecting the reported entries.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class Usage {
+		/** Maximum depth of the reported entries. **/
+		private final int maxDepth;
+		/** Number of the largest entries to report, or 0 for all. **/
+		private final int top;
+		/** Whether the files are reported. **/
+		private final boolean all;
+
+		/** Keys of the counted files with several hard links. **/
+		private final Set<Object> linked = ConcurrentHashMap.newKeySet();
+		/** The largest entries so far, the smallest first. **/
+		private final PriorityQueue<Entry> largest = new PriorityQueue<>(Comparator.comparingLong(e -> e.size));
+		/** Size an entry must exceed to be among the largest, once full. **/
+		private volatile long threshold = -1;
+		/** Number of directories which could not be read. **/
+		private final AtomicLong unreadable = new AtomicLong();
+		/** Whether the summation was abandoned. **/
+		private volatile boolean aborted;
+
+		/**
+		 * Constructs a new summation.
+		 *
+		 * @param maxDepth
+		 *            maximum depth of the reported entries
+		 * @param top
+		 *            number of the largest entries to report, or 0 for all
+		 * @param all
+		 *            whether the files are reported
+		 */
+		Usage(int maxDepth, int top, boolean all) {
+			this.maxDepth = maxDepth;
+			this.top = top;
+			this.all = all;
+		}
+
+		/**
+		 * Offers the entry to the heap of the largest entries.
+		 *
+		 * @param entry
+		 *            entry to offer
+		 */
+		private void offer(Entry entry) {
+			if (entry.size <= threshold) {
+				return;
+			}
+			synchronized (largest) {
+				if (largest.size() < top) {
+					largest.add(entry);
+				} else if (entry.size > largest.peek().size) {
+					largest.poll();
+					largest.add(entry);
+				}
+				if (largest.size() == top) {
+					threshold = largest.peek().size;
+				}
+			}
+		}
+
+		/**
+		 * Reports the entry at the given depth: adds it to the entries of its
+		 * directory, or offers it to the heap of the largest entries.
+		 *
+		 * @param entry
+		 *            task of the entry to report
+		 * @param depth
+		 *            depth of the entry below the root
+		 * @param size
+		 *            size of the entry, if it is summed
+		 * @param siblings
+		 *            reported entries of its directory, or <code>null</code>
+		 */
+		private void report(SumTask entry, int depth, long size, List<SumTask> siblings) {
+			if (top == 0) {
+				if (siblings != null) {
+					siblings.add(entry);
+				}
+			} else if (depth <= maxDepth) {
+				offer(new Entry(entry.path, size));
+			}
+		}
+
+		/**
+		 * Task which sums a single directory. A file reported with the
+		 * <code>-a</code> option is a task which is completed with its size
+		 * without running.
+		 *
+		 * @author Mirna Baksa
+		 *
+		 */
+		private class SumTask extends RecursiveTask<Long> {
+			/** Serial version UID. **/
+			private static final long serialVersionUID = 1L;
+			/** Path of the directory, or of the file. **/
+			private final Path path;
+			/** Depth of the entry below the root. **/
+			private final int depth;
+			/** Reported entries sorted by name, or <code>null</code>. **/
+			private volatile List<SumTask> children;
+			/** Released once the reported entries are known. **/
+			private final CountDownLatch listed = new CountDownLatch(1);
+
+			/**
+			 * Constructs a new task.
+			 *
+			 * @param path
+			 *            directory to sum
+			 * @param depth
+			 *            depth of the directory below the root
+			 */
+			SumTask(Path path, int depth) {
+				this.path = path;
+				this.depth = depth;
+			}
+
+			/**
+			 * Constructs a summed file.
+			 *
+			 * @param path
+			 *            path of the file
+			 * @param depth
+			 *            depth of the file below the root
+			 * @param size
+			 *            size of the file
+			 */
+			SumTask(Path path, int depth, long size) {
+				this(path, depth);
+				complete(size);
+				listed.countDown();
+			}
+
+			@Override
+			protected Long compute() {
+				boolean reportChildren = top == 0 && depth < maxDepth;
+				List<SumTask> reported = reportChildren ? new ArrayList<>() : null;
+				List<SumTask> subtasks = new ArrayList<>();
+				long size = 0;
+
+				try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+					for (Path entry : stream) {
+						if (aborted) {
+							break;
+						}
+						Stat stat;
+						try {
+							stat = stat(entry);
+						} catch (IOException ex) {
+							continue;
+						}
+						if (stat.directory) {
+							SumTask subtask = new SumTask(entry, depth + 1);
+							subtask.fork();
+							subtasks.add(subtask);
+							if (reported != null) {
+								reported.add(subtask);
+							}
+							continue;
+						}
+						if (stat.links > 1 && stat.fileKey != null && !linked.add(stat.fileKey)) {
+							continue;
+						}
+						size += stat.size;
+						if (all) {
+							report(new SumTask(entry, depth + 1, stat.size), depth + 1, stat.size, reported);
+						}
+					}
+				} catch (IOException | DirectoryIteratorException ex) {
+					unreadable.incrementAndGet();
+				} finally {
+					if (reported != null) {
+						reported.sort(Comparator.comparing(e -> e.path.getFileName().toString()));
+					}
+					children = reported;
+					listed.countDown();
+				}
+
+				for (SumTask subtask : subtasks) {
+					long childSize = subtask.join();
+					size += childSize;
+					if (top > 0) {
+						report(subtask, depth + 1, childSize, null);
+					}
+				}
+				return size;
+			}
+		}
+	}
+
+}
@@ -34,12 +34,12 @@ public class HelpShellCommand implements ShellCommand {
 	public ShellStatus executeCommand(Environment env, String arguments) {
 		SortedMap<String, ShellCommand> commands = env.commands();
 		if (arguments == null) {
-			commands.forEach((k, v) -> env.writeln(k + "  " + v.getCommandDescription().get(0)));
+			commands.forEach((k, v) -> env.writeln(k + "  " + v.getCommandSummary()));
 		} else {
 			ShellCommand command = commands.get(arguments);
 			if(command == null){
 				env.writeln("Invalid input.");
-				return ShellStatus.CONTINUE;
+				return ShellStatus.FAILURE;
 			}
 			List<String> commandInfo = command.getCommandDescription();
 			for (String info : commandInfo) {
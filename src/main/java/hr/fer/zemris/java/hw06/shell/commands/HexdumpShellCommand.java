@@ -1,8 +1,11 @@
 package hr.fer.zemris.java.hw06.shell.commands;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -12,17 +15,29 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import hr.fer.zemris.java.hw06.shell.Cancellation;
 import hr.fer.zemris.java.hw06.shell.Environment;
 import hr.fer.zemris.java.hw06.shell.ShellCommand;
 import hr.fer.zemris.java.hw06.shell.ShellStatus;
 /**
  * Produces hexadecimal view of data read from a file.
  * <p>
- * The command expects a single argument: a valid file name. 
+ * The command expects a single argument: a valid file name. Without
+ * arguments, the command dumps the data piped into it by the previous command
+ * of a pipeline.
  * @author Mirna Baksa
  *
  */
 public class HexdumpShellCommand  implements ShellCommand {
+	/** Number of bytes shown in a line. **/
+	private static final int BYTES_PER_LINE = 16;
+	/** Largest length of a line, in bytes. **/
+	private static final int LINE_LENGTH = 3 * BYTES_PER_LINE + 4 + 2 * BYTES_PER_LINE + 1;
+	/** Number of lines rendered at once. **/
+	private static final int LINES_PER_BLOCK = 1024;
+	/** Upper-case hexadecimal digits, as ASCII bytes. **/
+	private static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
 	/** Command name. **/
 	private final String commandName = "hexdump";
 
@@ -30,64 +45,129 @@ public class HexdumpShellCommand  implements ShellCommand {
 	private List<String> description = new ArrayList<>(
 			Arrays.asList("Produces hex-output of the file.",
 					"hexdump [path]",
-					"Path must be valid file path."));
+					"Path must be valid file path.",
+					"Without arguments, dumps the output of the previous command in a pipeline."));
 	
 
 	@Override
 	public ShellStatus executeCommand(Environment env, String arguments) {
+		if (arguments == null && env.getInputChannel() != null) {
+			try {
+				dump(env.getInputChannel(), env.getOutputChannel());
+			} catch (IOException e) {
+				env.writeln(Cancellation.isCancelled() ? Cancellation.MESSAGE : "An I/O error occured.");
+				return ShellStatus.FAILURE;
+			}
+			return ShellStatus.CONTINUE;
+		}
+
+		if (arguments == null) {
+			env.writeln("The hexdump command expects exactly one argument - file name.");
+			env.writeln("See help hexdump for more info.");
+			return ShellStatus.FAILURE;
+		}
+
 		Path path;
 		try{
 			path = Paths.get(arguments);
 		}catch(InvalidPathException ex){
 			env.writeln("Invalid path.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 		
 		if(!path.toFile().isFile()){
 			env.writeln("The file path is invalid.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 		
-		try (InputStream inputStream = Files.newInputStream(path, StandardOpenOption.READ); ) {
-			byte[] buffer = new byte[16];
-			
-			while (true) {
-				int readByte = inputStream.read(buffer);
-				if (readByte == -1) {
-					break;
-				}
-				
-				for(int i = 0; i < 16; i++){
-					if(i == 7) {
-						env.write("| ");
-					}
-					
-					if(i >= readByte){
-						env.write(String.format("%2s ", " "));
-					}else{
-						env.write(String.format("%02X ", buffer[i]));
-					}
-				}
-				
-				env.write("| ");
-				
-				for(int i = 0; i < readByte; i++){
-					if(buffer[i] < 32 || buffer[i] > 127){
-						env.write(". ");
-					}else{
-						env.write(String.format("%c ", buffer[i]));
-					}
-				}
-				env.write("\n");
-				
-			}
+		try (FileChannel input = FileChannel.open(path, StandardOpenOption.READ)) {
+			dump(input, env.getOutputChannel());
 		}catch(IOException e){
-			env.writeln("An I/O error occured.");
+			env.writeln(Cancellation.isCancelled() ? Cancellation.MESSAGE : "An I/O error occured.");
+			return ShellStatus.FAILURE;
 		}
 		
 		return ShellStatus.CONTINUE;
 	}
 
+	/**
+	 * Writes the hex-output of all the data from the input to the output.
+	 * <p>
+	 * The data is read in large blocks and each block is rendered into a
+	 * reused buffer of lines, which is written to the output at once. Each
+	 * line shows {@value #BYTES_PER_LINE} bytes.
+	 * 
+	 * @param input
+	 *            channel from where the data is read
+	 * @param output
+	 *            channel where the hex-output is written
+	 * @throws IOException
+	 *             in case of an I/O error
+	 */
+	private static void dump(ReadableByteChannel input, WritableByteChannel output) throws IOException {
+		ByteBuffer data = ByteBuffer.allocate(BYTES_PER_LINE * LINES_PER_BLOCK);
+		ByteBuffer lines = ByteBuffer.allocate(LINE_LENGTH * LINES_PER_BLOCK);
+		byte[] line = new byte[BYTES_PER_LINE];
+
+		while (true) {
+			int read = input.read(data);
+			if (read == -1 && data.position() == 0) {
+				break;
+			}
+			if (read != -1 && data.hasRemaining()) {
+				continue;
+			}
+
+			data.flip();
+			lines.clear();
+			while (data.hasRemaining()) {
+				int length = Math.min(BYTES_PER_LINE, data.remaining());
+				data.get(line, 0, length);
+				renderLine(line, length, lines);
+			}
+			data.clear();
+
+			lines.flip();
+			while (lines.hasRemaining()) {
+				output.write(lines);
+			}
+		}
+	}
+
+	/**
+	 * Renders a single line of the hex-output: the hexadecimal values of the
+	 * bytes, separated in two groups, followed by their characters. Bytes
+	 * which are not printable are shown as dots.
+	 * 
+	 * @param line
+	 *            bytes of the line
+	 * @param length
+	 *            number of bytes in the line
+	 * @param destination
+	 *            buffer where the line is rendered
+	 */
+	private static void renderLine(byte[] line, int length, ByteBuffer destination) {
+		for (int i = 0; i < BYTES_PER_LINE; i++) {
+			if (i == 7) {
+				destination.put((byte) '|').put((byte) ' ');
+			}
+
+			if (i >= length) {
+				destination.put((byte) ' ').put((byte) ' ');
+			} else {
+				destination.put(HEX_DIGITS[(line[i] & 0xF0) >>> 4]).put(HEX_DIGITS[line[i] & 0x0F]);
+			}
+			destination.put((byte) ' ');
+		}
+
+		destination.put((byte) '|').put((byte) ' ');
+
+		for (int i = 0; i < length; i++) {
+			destination.put(line[i] < 32 ? (byte) '.' : line[i]).put((byte) ' ');
+		}
+		destination.put((byte) '\n');
+	}
+
 	@Override
 	public String getCommandName() {
 		return commandName;
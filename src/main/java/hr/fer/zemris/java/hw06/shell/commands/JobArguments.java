@@ -0,0 +1,51 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import hr.fer.zemris.java.hw06.shell.Environment;
+import hr.fer.zemris.java.hw06.shell.Job;
+
+/**
+ * Parses the job numbers given to the job control commands.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+class JobArguments {
+
+	/**
+	 * Private constructor, the class only offers a static method.
+	 */
+	private JobArguments() {
+	}
+
+	/**
+	 * Returns the jobs with the numbers given in the arguments, separated by
+	 * whitespace. A number may be written as <code>%n</code>. If a number is
+	 * invalid or there is no such job, the method writes an error message.
+	 * 
+	 * @param env
+	 *            environment of the shell
+	 * @param arguments
+	 *            job numbers
+	 * @return list of jobs, or <code>null</code> if a number is invalid
+	 */
+	static List<Job> parse(Environment env, String arguments) {
+		List<Job> jobs = new ArrayList<>();
+		for (String argument : arguments.trim().split("\\s+")) {
+			Job job = null;
+			try {
+				job = env.jobs().get(Integer.parseInt(argument.startsWith("%") ? argument.substring(1) : argument));
+			} catch (NumberFormatException ex) {
+				// reported below
+			}
+			if (job == null) {
+				env.writeln("No such job: " + argument);
+				return null;
+			}
+			jobs.add(job);
+		}
+		return jobs;
+	}
+}
@@ -0,0 +1,54 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import hr.fer.zemris.java.hw06.shell.Environment;
+import hr.fer.zemris.java.hw06.shell.Job;
+import hr.fer.zemris.java.hw06.shell.ShellCommand;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+/**
+ * Lists the background jobs.
+ * <p>
+ * For each job, the command writes its number, state, the number of bytes
+ * of output captured so far and the command.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class JobsShellCommand implements ShellCommand {
+	/** Command name. **/
+	private final String commandName = "jobs";
+
+	/** Command description. **/
+	private List<String> description = new ArrayList<>(Arrays.asList("Lists the background jobs.", "jobs",
+			"Jobs are started by ending a command with &. A finished job is listed until it is waited for."));
+
+	@Override
+	public ShellStatus executeCommand(Environment env, String arguments) {
+		if (arguments != null) {
+			env.writeln("The command takes no arguments.");
+			return ShellStatus.FAILURE;
+		}
+
+		for (Job job : env.jobs().list()) {
+			env.writeln(String.format("[%d] %-8s %8d bytes  %s", job.getId(), job.getState(), job.getOutputSize(),
+					job.getCommand()));
+		}
+		return ShellStatus.CONTINUE;
+	}
+
+	@Override
+	public String getCommandName() {
+		return commandName;
+	}
+
+	@Override
+	public List<String> getCommandDescription() {
+		return Collections.unmodifiableList(description);
+	}
+
+}
@@ -0,0 +1,62 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import hr.fer.zemris.java.hw06.shell.Environment;
+import hr.fer.zemris.java.hw06.shell.Job;
+import hr.fer.zemris.java.hw06.shell.ShellCommand;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+/**
+ * Kills background jobs.
+ * <p>
+ * Recieves the numbers of the jobs to kill. A killed job is interrupted; its
+ * output captured so far can still be read with the wait command.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class KillShellCommand implements ShellCommand {
+	/** Command name. **/
+	private final String commandName = "kill";
+
+	/** Command description. **/
+	private List<String> description = new ArrayList<>(Arrays.asList("Kills background jobs.", "kill [job...]",
+			"The job numbers are listed by the jobs command."));
+
+	@Override
+	public ShellStatus executeCommand(Environment env, String arguments) {
+		if (arguments == null) {
+			env.writeln("Expected at least one job number.");
+			return ShellStatus.FAILURE;
+		}
+
+		List<Job> jobs = JobArguments.parse(env, arguments);
+		if (jobs == null) {
+			return ShellStatus.FAILURE;
+		}
+
+		for (Job job : jobs) {
+			if (job.kill()) {
+				env.writeln("[" + job.getId() + "] Killed " + job.getCommand());
+			} else {
+				env.writeln("[" + job.getId() + "] Already finished.");
+			}
+		}
+		return ShellStatus.CONTINUE;
+	}
+
+	@Override
+	public String getCommandName() {
+		return commandName;
+	}
+
+	@Override
+	public List<String> getCommandDescription() {
+		return Collections.unmodifiableList(description);
+	}
+
+}
@@ -1,24 +1,25 @@
 package hr.fer.zemris.java.hw06.shell.commands;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.attribute.BasicFileAttributeView;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
-import java.sql.Date;
-import java.text.SimpleDateFormat;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
+import hr.fer.zemris.java.hw06.shell.Cancellation;
+import hr.fer.zemris.java.hw06.shell.DirectorySizer;
 import hr.fer.zemris.java.hw06.shell.Environment;
 import hr.fer.zemris.java.hw06.shell.ShellCommand;
 import hr.fer.zemris.java.hw06.shell.ShellStatus;
@@ -31,54 +32,144 @@ import hr.fer.zemris.java.hw06.shell.ShellStatus;
  * <p>
  * Column 1: (d) if object is directory, (r) is readable, (w) is writable, (e)
  * is executable. <br>
- * Column 2: size in bytes. <br>
+ * Column 2: size in bytes; for a directory, the total size of its subtree,
+ * computed in parallel by the {@link DirectorySizer} of the shell, which
+ * keeps the sizes for the later listings. <br>
  * Column 3: file creation date/time. <br>
  * Column 4: file name.
+ * <p>
+ * All the metadata of an entry is fetched in a single bulk read of its
+ * attributes, through the unix view where the file system supports it, so
+ * listing a directory costs one stat per entry - which matters on network file
+ * systems, where every stat is a round trip. The access of an owned entry is
+ * decided from its numeric owner and mode, compared with the user id of the
+ * shell resolved once, so no user names are looked up. A symbolic link is
+ * shown with the type and access of its target, checked with the file system,
+ * but with its own size.
+ * <p>
+ * With the <code>-n</code> option the directory sizes are skipped and shown
+ * as <code>-</code>. The <code>-m seconds</code> option limits the time for
+ * computing them; sizes which are not known in time are shown as
+ * <code>?</code>.
  * 
  * @author Mirna Baksa
  *
  */
 public class LsShellCommand implements ShellCommand {
+	/** Formatter of the creation date and time, shared by all listings. **/
+	private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter
+			.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+	/** Attributes read through the unix view. **/
+	private static final String UNIX_ATTRIBUTES = "unix:size,creationTime,isDirectory,isSymbolicLink,uid,mode";
+	/** User id of an unknown owner or user. **/
+	private static final int UNKNOWN_UID = -1;
+	/** User id of the superuser. **/
+	private static final int ROOT_UID = 0;
+	/** User id of the process running the shell. **/
+	private static final int PROCESS_UID = processUid();
+	/** Whether the file system supports the unix view. **/
+	private static volatile boolean unixView = true;
+	/** Width of the size column. **/
+	private static final int SIZE_WIDTH = 10;
+
 	/** Command name. **/
 	private final String commandName = "ls";
 
 	/** Command description. **/
 	private List<String> description = new ArrayList<>(Arrays.asList("Displays a directory listing. (not recursively).",
-			"ls [path]", "The output will be shown in 4 columns.",
+			"ls [-n] [-m seconds] [path]", "The output will be shown in 4 columns.",
 			"Column 1: (d) if object is directory, (r) is readable, (w) is writable, (e) is executable.",
-			"Column 2: size in bytes.", "Column 3: file creation date/time.", "Column 4: file name."));
+			"Column 2: size in bytes. The size of a directory is the total size of its subtree.",
+			"Column 3: file creation date/time.", "Column 4: file name.",
+			"-n skips the directory sizes (-), -m limits the time for computing them (? if unknown)."));
 
 	@Override
 	public ShellStatus executeCommand(Environment env, String arguments) {
 		if (arguments == null) {
 			env.writeln("The ls command expects exactly one argument - directory name.");
 			env.writeln("See help ls for more info.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
-		
+
+		boolean computeSizes = true;
+		long timeout = Long.MAX_VALUE;
+		String rest = arguments.trim();
+		while (rest.startsWith("-")) {
+			String[] parts = rest.split("\\s+", 2);
+			if (parts.length == 1) {
+				break;
+			}
+			if (parts[0].equals("-n")) {
+				computeSizes = false;
+				rest = parts[1];
+			} else if (parts[0].equals("-m")) {
+				String[] value = parts[1].split("\\s+", 2);
+				double seconds;
+				try {
+					seconds = Double.parseDouble(value[0]);
+				} catch (NumberFormatException ex) {
+					seconds = -1;
+				}
+				if (!(seconds > 0) || value.length == 1) {
+					env.writeln("Expected a positive number of seconds and a directory. Was: " + arguments);
+					return ShellStatus.FAILURE;
+				}
+				timeout = seconds >= Long.MAX_VALUE / 1e9 ? Long.MAX_VALUE : (long) (seconds * 1e9);
+				rest = value[1];
+			} else {
+				break;
+			}
+		}
+
 		Path path;
 		try{
-			path = Paths.get(arguments);
+			path = Paths.get(rest);
 		}catch(InvalidPathException ex){
 			env.writeln("Invalid path.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 		
 		if (!path.toFile().isDirectory()) {
 			env.writeln("Invalid argument input. Expected directory path. Was: " + arguments);
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 
-		LSVisitor visitor = new LSVisitor(env, path);
+		Listing listing = new Listing(env);
 		try {
-			Files.walkFileTree(path, visitor);
-		} catch (IOException e) {
+			listing.read(path);
+		} catch (IOException | DirectoryIteratorException e) {
 			env.writeln("An I/O error occured.");
+			return ShellStatus.FAILURE;
+		}
+		if (Cancellation.isCancelled()) {
+			env.writeln(Cancellation.MESSAGE);
+			return ShellStatus.FAILURE;
+		}
+
+		listing.print(computeSizes, timeout);
+		if (Cancellation.isCancelled()) {
+			env.writeln(Cancellation.MESSAGE);
+			return ShellStatus.FAILURE;
 		}
 
 		return ShellStatus.CONTINUE;
 	}
 
+	/**
+	 * Resolves the user id of the process running the shell, as the owner of
+	 * its <code>/proc/self</code> directory.
+	 *
+	 * @return user id of the process, or {@link #UNKNOWN_UID} if it can not be
+	 *         resolved
+	 */
+	private static int processUid() {
+		try {
+			return (Integer) Files.getAttribute(Paths.get("/proc/self"), "unix:uid");
+		} catch (IOException | UnsupportedOperationException | IllegalArgumentException ex) {
+			return UNKNOWN_UID;
+		}
+	}
+
 	@Override
 	public String getCommandName() {
 		return commandName;
@@ -90,18 +181,23 @@ public class LsShellCommand implements ShellCommand {
 	}
 
 	/**
-	 * Implements a file visitor to execute the {@link LsShellCommand}.
+	 * Reads the entries of a directory and prints them for the
+	 * {@link LsShellCommand}.
 	 * 
 	 * @author Mirna Baksa
 	 *
 	 */
-	private class LSVisitor implements FileVisitor<Path> {
+	private static class Listing {
 		/**
 		 * Environment to enable communication between the command and the user
 		 **/
 		private Environment env;
-		/** Starting path **/
-		private Path start;
+		/** Paths of the listed entries. **/
+		private List<Path> entries = new ArrayList<>();
+		/** Attributes of the listed entries. **/
+		private List<Stat> entryAttributes = new ArrayList<>();
+		/** Buffer the lines are built in, reused for every line. **/
+		private StringBuilder line = new StringBuilder(80);
 
 		/**
 		 * Default constructor.
@@ -109,161 +205,213 @@ public class LsShellCommand implements ShellCommand {
 		 * @param env
 		 *            environment to enable communication between the command
 		 *            and the user
-		 * @param start
-		 *            starting path
 		 */
-		public LSVisitor(Environment env, Path start) {
+		public Listing(Environment env) {
 			this.env = env;
-			this.start = start;
-		}
-
-		@Override
-		public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-			if (start.equals(dir))
-				return FileVisitResult.CONTINUE;
-			try {
-				buildPrintInfo(dir, attrs);
-			} catch (IOException e) {
-				env.writeln("An error occured while retreving file info.");
-				return FileVisitResult.TERMINATE;
-			}
-
-			return FileVisitResult.SKIP_SUBTREE;
 		}
 
-		@Override
-		public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-			try {
-				buildPrintInfo(file, attrs);
-			} catch (IOException e) {
-				env.writeln("An error occured while retreving file info.");
-				return FileVisitResult.TERMINATE;
+		/**
+		 * Reads the entries of the directory and their attributes. An entry
+		 * whose attributes can not be read is left out.
+		 * 
+		 * @param dir
+		 *            directory to list
+		 * @throws IOException
+		 *             if the directory can not be read
+		 */
+		public void read(Path dir) throws IOException {
+			try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+				for (Path entry : stream) {
+					if (Cancellation.isCancelled()) {
+						return;
+					}
+					try {
+						entryAttributes.add(readAttributes(entry));
+						entries.add(entry);
+					} catch (IOException ex) {
+						continue;
+					}
+				}
 			}
-
-			return FileVisitResult.CONTINUE;
-
-		}
-
-		@Override
-		public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-			return FileVisitResult.CONTINUE;
-		}
-
-		@Override
-		public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-			return FileVisitResult.CONTINUE;
 		}
 
 		/**
-		 * Returns the formatted creation date and time of the file/directory
-		 * represented by the path given as an argument.
+		 * Reads all the attributes of the entry in a single call, without
+		 * following symbolic links.
 		 * 
-		 * @param path
-		 *            path to retrieve the date and time for
-		 * @return formatted date and time
+		 * @param entry
+		 *            entry to read the attributes of
+		 * @return attributes of the entry, with the owner and mode if the unix
+		 *         view is supported
 		 * @throws IOException
 		 *             in case of file info retrieval error
 		 */
-		private String getDateTime(Path path) throws IOException {
-			SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-			BasicFileAttributeView faView = Files.getFileAttributeView(path, BasicFileAttributeView.class,
-					LinkOption.NOFOLLOW_LINKS);
-			BasicFileAttributes attributes = faView.readAttributes();
-			FileTime fileTime = attributes.creationTime();
-			String formattedDateTime = sdf.format(new Date(fileTime.toMillis()));
-			return formattedDateTime;
+		private Stat readAttributes(Path entry) throws IOException {
+			if (unixView) {
+				try {
+					Map<String, Object> attrs = Files.readAttributes(entry, UNIX_ATTRIBUTES, LinkOption.NOFOLLOW_LINKS);
+					return new Stat((Long) attrs.get("size"), (Boolean) attrs.get("isDirectory"),
+							(Boolean) attrs.get("isSymbolicLink"), (FileTime) attrs.get("creationTime"),
+							(Integer) attrs.get("uid"), (Integer) attrs.get("mode"));
+				} catch (UnsupportedOperationException | IllegalArgumentException ex) {
+					unixView = false;
+				}
+			}
+			BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+			return new Stat(attrs.size(), attrs.isDirectory(), attrs.isSymbolicLink(), attrs.creationTime(),
+					UNKNOWN_UID, -1);
 		}
 
 		/**
-		 * Gets the attributes of a file with the path given as an argument.
-		 * <p>
-		 * To the String representation of the file attributes, the method will
-		 * append: (d) if object is directory, (r) is readable, (w) is writable,
-		 * (e) is executable, or (-) if not.
+		 * Prints the collected entries. The sizes of the directories are
+		 * computed in parallel by the {@link DirectorySizer} of the shell
+		 * before the first line is printed.
 		 * 
-		 * @param p
-		 *            path of the file.
-		 * @return path attributes
+		 * @param computeSizes
+		 *            <code>false</code> to skip the sizes of the directories
+		 * @param timeout
+		 *            maximum time for computing the sizes, in ns
 		 */
-		private String getAttributes(Path p) {
-			StringBuilder sb = new StringBuilder();
-			File object = p.toFile();
+		public void print(boolean computeSizes, long timeout) {
+			List<Path> dirs = new ArrayList<>();
+			for (int i = 0; i < entries.size(); i++) {
+				if (entryAttributes.get(i).directory) {
+					dirs.add(entries.get(i));
+				}
+			}
+			long[] dirSizes = computeSizes ? env.sizer().sizes(dirs, timeout) : null;
 
-			sb.append(object.isDirectory() ? "d" : "-");
-			sb.append(object.canRead() ? "r" : "-");
-			sb.append(object.canWrite() ? "w" : "-");
-			sb.append(object.canExecute() ? "x" : "-");
+			int dirIndex = 0;
+			for (int i = 0; i < entries.size(); i++) {
+				Stat attrs = entryAttributes.get(i);
+				String size;
+				if (!attrs.directory) {
+					size = Long.toString(attrs.size);
+				} else if (dirSizes == null) {
+					size = "-";
+				} else {
+					long dirSize = dirSizes[dirIndex++];
+					size = dirSize == DirectorySizer.UNKNOWN ? "?" : Long.toString(dirSize);
+				}
 
-			return sb.toString();
+				printLine(entries.get(i), attrs, size);
+			}
 		}
 
 		/**
-		 * Prints the file info to the console.
+		 * Prints the info of the file/directory: its attributes, size, date
+		 * and time of the creation and name.
 		 * 
+		 * @param file
+		 *            path of the file/directory
 		 * @param attrs
-		 *            file attributes
+		 *            attributes of the file/directory
 		 * @param size
 		 *            size of the file/directory
-		 * @param formattedDateTime
-		 *            date and time of the creation
-		 * @param name
-		 *            name of the file/directory
 		 */
-		private void printLine(String attrs, Long size, String formattedDateTime, String name) {
-			String output = String.format("%s %10d %s %s", attrs, size, formattedDateTime, name);
-			env.writeln(output);
+		private void printLine(Path file, Stat attrs, String size) {
+			line.setLength(0);
+			appendPermissions(file, attrs);
+			line.append(' ');
+			for (int i = size.length(); i < SIZE_WIDTH; i++) {
+				line.append(' ');
+			}
+			line.append(size).append(' ');
+			DATE_TIME_FORMATTER.formatTo(attrs.creationTime.toInstant(), line);
+			line.append(' ').append(file.getFileName());
+			env.writeln(line.toString());
 		}
 
 		/**
-		 * Builds the print info of the file/directory represented with the path
-		 * give as an argument. The print info is consisted of file attributes,
-		 * file/directory size, date and time of the creation and file/directory
-		 * name.
+		 * Appends the attributes of the file/directory to the line: (d) if
+		 * object is directory, (r) is readable, (w) is writable, (e) is
+		 * executable, or (-) if not.
+		 * <p>
+		 * The access is decided from the mode when the user owns the file. The
+		 * superuser can read everything and execute what anyone can, but a
+		 * read-only file system still denies writing, so that bit is checked
+		 * with the file system. Otherwise the access depends on the user's
+		 * groups, so it is checked with the file system as well. The type and
+		 * access of a symbolic link are those of its target, so they are
+		 * checked with the file system too.
 		 * 
 		 * @param file
-		 *            file to build the info for
+		 *            path of the file/directory
 		 * @param attrs
-		 *            file attributes
-		 * @throws IOException
-		 *             in case of file info retrieval error
+		 *            attributes of the file/directory
 		 */
-		private void buildPrintInfo(Path file, BasicFileAttributes attrs) throws IOException {
-			String attributes = getAttributes(file);
-			String formattedDateTime = null;
-			formattedDateTime = getDateTime(file);
-			
-			long size = 0;
-			if(file.toFile().isDirectory()){
-				size = getDirectorySize(file.toFile());
-			}else {
-				size = attrs.size();
+		private void appendPermissions(Path file, Stat attrs) {
+			if (attrs.link) {
+				line.append(Files.isDirectory(file) ? 'd' : '-');
+			} else {
+				line.append(attrs.directory ? 'd' : '-');
 			}
-			
-			printLine(attributes, size, formattedDateTime, file.getFileName().toString());
+
+			if (!attrs.link && attrs.mode >= 0 && PROCESS_UID != UNKNOWN_UID) {
+				if (PROCESS_UID == ROOT_UID) {
+					boolean executable = attrs.directory || (attrs.mode & 0111) != 0;
+					line.append('r');
+					line.append(Files.isWritable(file) ? 'w' : '-');
+					line.append(executable ? 'x' : '-');
+					return;
+				}
+				if (attrs.uid == PROCESS_UID) {
+					line.append((attrs.mode & 0400) != 0 ? 'r' : '-');
+					line.append((attrs.mode & 0200) != 0 ? 'w' : '-');
+					line.append((attrs.mode & 0100) != 0 ? 'x' : '-');
+					return;
+				}
+			}
+
+			line.append(Files.isReadable(file) ? 'r' : '-');
+			line.append(Files.isWritable(file) ? 'w' : '-');
+			line.append(Files.isExecutable(file) ? 'x' : '-');
 		}
+	}
+
+	/**
+	 * Attributes of an entry needed for its line.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class Stat {
+		/** Size of the entry. **/
+		private final long size;
+		/** Whether the entry is a directory. **/
+		private final boolean directory;
+		/** Whether the entry is a symbolic link. **/
+		private final boolean link;
+		/** Creation time of the entry. **/
+		private final FileTime creationTime;
+		/** User id of the owner, or {@link LsShellCommand#UNKNOWN_UID}. **/
+		private final int uid;
+		/** Mode of the entry, or -1 if unknown. **/
+		private final int mode;
 
 		/**
-		 * Gets the directory size - the sizes of all files contained in the directory, including the
-		 * sizes of the directories in the starting directory.
-		 * @param file directory to determine the size of
-		 * @return size of the directory
+		 * Constructs new attributes.
+		 *
+		 * @param size
+		 *            size of the entry
+		 * @param directory
+		 *            whether the entry is a directory
+		 * @param link
+		 *            whether the entry is a symbolic link
+		 * @param creationTime
+		 *            creation time of the entry
+		 * @param uid
+		 *            user id of the owner
+		 * @param mode
+		 *            mode of the entry
 		 */
-		private long getDirectorySize(File file) {
-			File[] files = file.listFiles();
-			if(files == null) return 0;
-			
-			long size = 0;
-			
-			for(File f : files){
-				
-				if(f.isDirectory()){
-					size += getDirectorySize(f);
-				}else{
-					size += f.length();
-				}
-			}
-			
-			return size;
+		Stat(long size, boolean directory, boolean link, FileTime creationTime, int uid, int mode) {
+			this.size = size;
+			this.directory = directory;
+			this.link = link;
+			this.creationTime = creationTime;
+			this.uid = uid;
+			this.mode = mode;
 		}
 	}
 
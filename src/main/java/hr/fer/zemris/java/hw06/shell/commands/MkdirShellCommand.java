@@ -37,14 +37,14 @@ public class MkdirShellCommand implements ShellCommand {
 			path = Paths.get(arguments);
 		}catch(InvalidPathException ex){
 			env.writeln("Invalid directory path.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 		
 		try {
 			Files.createDirectories(path);
 		} catch (Exception ex) {
 			env.writeln("There was an error in creating the directory: " + arguments);
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 		env.writeln("Directory " + arguments + " was created.");
 		return ShellStatus.CONTINUE;
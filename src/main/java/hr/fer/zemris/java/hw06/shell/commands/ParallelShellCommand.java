@@ -0,0 +1,285 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import hr.fer.zemris.java.hw06.shell.Cancellation;
+import hr.fer.zemris.java.hw06.shell.CapturedEnvironment;
+import hr.fer.zemris.java.hw06.shell.Environment;
+import hr.fer.zemris.java.hw06.shell.MyShell;
+import hr.fer.zemris.java.hw06.shell.ShellCommand;
+import hr.fer.zemris.java.hw06.shell.ShellIOException;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+/**
+ * Runs a command once for each of the given arguments, in parallel.
+ * <p>
+ * The arguments are <code>parallel [-j N] [-k] command [args] ::: item...</code>.
+ * Each item is either a path or a glob such as <code>logs/*.txt</code>, which
+ * is expanded to the matching files of its directory, sorted by name. The
+ * item replaces each <code>{}</code> in the command arguments, or is appended
+ * to them if there is no <code>{}</code>. The arguments are split like the
+ * input of the shell, so a quoted item or argument may contain spaces, and it
+ * is passed quoted to the command.
+ * <p>
+ * At most <code>N</code> invocations - by default one per processor - run at
+ * once, on a pool of worker threads. Each invocation is executed like a
+ * command of the shell, so it is recorded in the metrics, in a
+ * {@link CapturedEnvironment}, and its output is written as a whole once it
+ * finishes, so the outputs of different invocations never interleave. They
+ * are written in the order in which the invocations finish, or - with
+ * <code>-k</code> - in the order of the items. The command fails if any of
+ * the invocations failed.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class ParallelShellCommand implements ShellCommand {
+	/** Command name. **/
+	private final String commandName = "parallel";
+	/** Separator between the command and the items. **/
+	private static final String SEPARATOR = ":::";
+	/** Placeholder for the item in the command arguments. **/
+	private static final String PLACEHOLDER = "{}";
+
+	/** Command description. **/
+	private List<String> description = new ArrayList<>(Arrays.asList(
+			"Runs a command for each of the given files, in parallel.",
+			"parallel [-j N] [-k] command [args] ::: item...",
+			"Each item is a path or a glob, e.g. logs/*.txt, and replaces {} in the arguments or is appended to them.",
+			"-j N runs at most N invocations at once, by default one per processor.",
+			"The output of each invocation is written as a whole; -k keeps the order of the items."));
+
+	@Override
+	public ShellStatus executeCommand(Environment env, String arguments) {
+		if (arguments == null) {
+			env.writeln("Expected a command and its items.");
+			env.writeln("See help parallel for more info.");
+			return ShellStatus.FAILURE;
+		}
+
+		List<String> argList = MyShell.splitArguments(arguments);
+		int separator = argList.indexOf(SEPARATOR);
+		if (separator == -1) {
+			env.writeln("Expected " + SEPARATOR + " between the command and its items.");
+			return ShellStatus.FAILURE;
+		}
+
+		int threads = Runtime.getRuntime().availableProcessors();
+		boolean keepOrder = false;
+		int index = 0;
+		for (; index < separator && argList.get(index).startsWith("-"); index++) {
+			String option = argList.get(index);
+			if (option.equals("-k")) {
+				keepOrder = true;
+			} else if (option.equals("-j") && index + 1 < separator) {
+				try {
+					threads = Integer.parseInt(argList.get(++index));
+				} catch (NumberFormatException ex) {
+					threads = 0;
+				}
+				if (threads < 1) {
+					env.writeln("The number of jobs must be a positive integer.");
+					return ShellStatus.FAILURE;
+				}
+			} else {
+				env.writeln("Invalid option: " + option);
+				return ShellStatus.FAILURE;
+			}
+		}
+
+		if (index == separator) {
+			env.writeln("Expected a command before " + SEPARATOR + ".");
+			return ShellStatus.FAILURE;
+		}
+		String command = argList.get(index);
+		if (!env.commands().containsKey(command)) {
+			env.writeln("Invalid command name.");
+			return ShellStatus.FAILURE;
+		}
+		List<String> template = argList.subList(index + 1, separator);
+
+		List<String> items = new ArrayList<>();
+		for (String item : argList.subList(separator + 1, argList.size())) {
+			try {
+				items.addAll(expand(item));
+			} catch (IOException | InvalidPathException ex) {
+				env.writeln("Invalid item: " + item);
+				return ShellStatus.FAILURE;
+			}
+		}
+
+		List<String> invocations = new ArrayList<>(items.size());
+		for (String item : items) {
+			String invocationArguments = substitute(template, item);
+			invocations.add(invocationArguments.isEmpty() ? command : command + " " + invocationArguments);
+		}
+		return run(env, invocations, threads, keepOrder);
+	}
+
+	/**
+	 * Runs each of the invocations and writes their outputs.
+	 * 
+	 * @param env
+	 *            environment of the shell
+	 * @param invocations
+	 *            command name with the arguments of each invocation
+	 * @param threads
+	 *            maximum number of invocations running at once
+	 * @param keepOrder
+	 *            <code>true</code> to write the outputs in the order of the
+	 *            invocations
+	 * @return {@link ShellStatus#FAILURE} if any of the invocations failed,
+	 *         {@link ShellStatus#CONTINUE} otherwise
+	 */
+	private static ShellStatus run(Environment env, List<String> invocations, int threads,
+			boolean keepOrder) {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, invocations.size())),
+				r -> {
+					Thread thread = new Thread(r, "parallel-worker");
+					thread.setDaemon(true);
+					return thread;
+				});
+		CompletionService<CapturedEnvironment> completion = new ExecutorCompletionService<>(executor);
+
+		List<Future<CapturedEnvironment>> futures = new ArrayList<>(invocations.size());
+		List<CapturedEnvironment> failed = Collections.synchronizedList(new ArrayList<>());
+		for (String invocation : invocations) {
+			futures.add(completion.submit(() -> {
+				CapturedEnvironment captured = new CapturedEnvironment(env);
+				try {
+					if (MyShell.executeCommand(captured, invocation) == ShellStatus.FAILURE) {
+						failed.add(captured);
+					}
+				} catch (ShellIOException ex) {
+					failed.add(captured);
+				}
+				return captured;
+			}));
+		}
+
+		try {
+			for (int i = 0; i < futures.size(); i++) {
+				Future<CapturedEnvironment> future = keepOrder ? futures.get(i) : completion.take();
+				try (CapturedEnvironment captured = future.get()) {
+					captured.writeOutputTo(env.getOutputChannel());
+				}
+				env.flush();
+			}
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			env.writeln(Cancellation.MESSAGE);
+			return ShellStatus.FAILURE;
+		} catch (ExecutionException ex) {
+			env.writeln("An invocation ended with an error: " + ex.getCause());
+			return ShellStatus.FAILURE;
+		} catch (IOException ex) {
+			throw new ShellIOException("An I/O error occured.");
+		} finally {
+			executor.shutdownNow();
+		}
+
+		if (!failed.isEmpty()) {
+			env.writeln(failed.size() + " of " + invocations.size() + " invocations failed.");
+			return ShellStatus.FAILURE;
+		}
+		return ShellStatus.CONTINUE;
+	}
+
+	/**
+	 * Expands the item into paths. An item containing glob characters is
+	 * matched against the files of its directory, otherwise it is returned
+	 * as it is.
+	 * 
+	 * @param item
+	 *            path or glob
+	 * @return sorted list of paths
+	 * @throws IOException
+	 *             if the directory can not be read
+	 */
+	static List<String> expand(String item) throws IOException {
+		if (!item.matches(".*[*?\\[{].*")) {
+			return Collections.singletonList(item);
+		}
+
+		Path glob = Paths.get(item);
+		Path directory = glob.getParent();
+		List<String> paths = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory == null ? Paths.get(".") : directory,
+				glob.getFileName().toString())) {
+			for (Path path : stream) {
+				paths.add(directory == null ? path.getFileName().toString() : path.toString());
+			}
+		}
+		Collections.sort(paths);
+		return paths;
+	}
+
+	/**
+	 * Builds the arguments of a single invocation, replacing each
+	 * {@value #PLACEHOLDER} by the item, or appending the item if there is no
+	 * placeholder. The arguments which contain whitespace are quoted.
+	 * 
+	 * @param template
+	 *            arguments given to the command
+	 * @param item
+	 *            item of the invocation
+	 * @return arguments of the invocation
+	 */
+	static String substitute(List<String> template, String item) {
+		List<String> arguments = new ArrayList<>(template.size() + 1);
+		boolean placed = false;
+		for (String argument : template) {
+			if (argument.contains(PLACEHOLDER)) {
+				argument = argument.replace(PLACEHOLDER, item);
+				placed = true;
+			}
+			arguments.add(quote(argument));
+		}
+		if (!placed) {
+			arguments.add(quote(item));
+		}
+		return String.join(" ", arguments);
+	}
+
+	/**
+	 * Quotes the argument if it contains whitespace.
+	 * 
+	 * @param argument
+	 *            argument to quote
+	 * @return argument as it is passed to the shell
+	 */
+	private static String quote(String argument) {
+		return argument.matches(".*\\s.*") ? "\"" + argument + "\"" : argument;
+	}
+
+	@Override
+	public boolean takesQuotedArguments() {
+		return true;
+	}
+
+	@Override
+	public String getCommandName() {
+		return commandName;
+	}
+
+	@Override
+	public List<String> getCommandDescription() {
+		return Collections.unmodifiableList(description);
+	}
+
+}
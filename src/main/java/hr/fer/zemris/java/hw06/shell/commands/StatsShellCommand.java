@@ -0,0 +1,70 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import hr.fer.zemris.java.hw06.shell.CommandMetrics;
+import hr.fer.zemris.java.hw06.shell.Environment;
+import hr.fer.zemris.java.hw06.shell.ShellCommand;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+/**
+ * Writes the latency and resource metrics of the commands executed so far.
+ * <p>
+ * For each command, the report shows the number of invocations, the 50th,
+ * 90th and 99th percentile and the maximum of the wall-clock time, the mean
+ * CPU time and allocation, and the total bytes read and written. The last
+ * four count only the thread which called the command. With the argument
+ * <code>reset</code>, the metrics are cleared instead.
+ * 
+ * @see CommandMetrics
+ * @author Mirna Baksa
+ *
+ */
+public class StatsShellCommand implements ShellCommand {
+	/** Command name. **/
+	private final String commandName = "stats";
+
+	/** Command description. **/
+	private List<String> description = new ArrayList<>(Arrays.asList(
+			"Writes the latency metrics of the executed commands.", "stats [reset]",
+			"Shows the wall time percentiles, mean CPU time and allocation, and the bytes read and written per command.",
+			"CPU time, allocation and bytes count the calling thread only, not the work of pools and pipeline stages.",
+			"stats reset clears the metrics."));
+
+	@Override
+	public ShellStatus executeCommand(Environment env, String arguments) {
+		CommandMetrics metrics = env.metrics();
+		if (arguments != null) {
+			if (!arguments.trim().equals("reset")) {
+				env.writeln("Invalid argument. Was: " + arguments);
+				return ShellStatus.FAILURE;
+			}
+			metrics.reset();
+			env.writeln("The metrics were cleared.");
+			return ShellStatus.CONTINUE;
+		}
+
+		if (metrics.isEmpty()) {
+			env.writeln("No commands were executed.");
+			return ShellStatus.CONTINUE;
+		}
+		for (String line : metrics.report()) {
+			env.writeln(line);
+		}
+		return ShellStatus.CONTINUE;
+	}
+
+	@Override
+	public String getCommandName() {
+		return commandName;
+	}
+
+	@Override
+	public List<String> getCommandDescription() {
+		return Collections.unmodifiableList(description);
+	}
+
+}
@@ -34,7 +34,7 @@ public class SymbolShellCommand implements ShellCommand {
 	public ShellStatus executeCommand(Environment env, String arguments) {
 		if (arguments == null) {
 			env.writeln("The symbol command must receive at least one argument.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 		String parts[] = arguments.split("\\s+");
 		if (parts.length == 1) {
@@ -53,6 +53,7 @@ public class SymbolShellCommand implements ShellCommand {
 			}
 			default: {
 				env.writeln("Invalid symbol command input. Was: " + parts[0]);
+				return ShellStatus.FAILURE;
 			}
 			}
 		} else if (parts.length == 2) {
@@ -71,12 +72,13 @@ public class SymbolShellCommand implements ShellCommand {
 			}
 			default: {
 				env.writeln("Invalid symbol command input.");
-				break;
+				return ShellStatus.FAILURE;
 			}
 			}
 		} else {
 			env.writeln("Invalid number of arguments. Arguments were: " + arguments);
 			env.writeln("See help " + commandName + " for more info.");
+			return ShellStatus.FAILURE;
 		}
 
 		return ShellStatus.CONTINUE;
@@ -0,0 +1,68 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import hr.fer.zemris.java.hw06.shell.CommandMetrics;
+import hr.fer.zemris.java.hw06.shell.Environment;
+import hr.fer.zemris.java.hw06.shell.ShellCommand;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+/**
+ * Executes a command and writes how long it took and how many resources it
+ * used: the wall-clock and CPU time, the allocated bytes and the bytes read
+ * and written. All but the wall-clock time are measured on the calling
+ * thread only.
+ * 
+ * @see CommandMetrics
+ * @author Mirna Baksa
+ *
+ */
+public class TimeShellCommand implements ShellCommand {
+	/** Command name. **/
+	private final String commandName = "time";
+
+	/** Command description. **/
+	private List<String> description = new ArrayList<>(Arrays.asList(
+			"Executes a command and writes the time and resources it used.", "time [command] [arguments]",
+			"All but the wall time are measured on the calling thread only."));
+
+	@Override
+	public ShellStatus executeCommand(Environment env, String arguments) {
+		if (arguments == null) {
+			env.writeln("Expected a command to time.");
+			return ShellStatus.FAILURE;
+		}
+
+		String parts[] = arguments.trim().split("\\s+", 2);
+		ShellCommand command = env.commands().get(parts[0]);
+		if (command == null) {
+			env.writeln("Invalid command name.");
+			return ShellStatus.FAILURE;
+		}
+
+		CommandMetrics.Sample sample = CommandMetrics.Sample.start();
+		ShellStatus status;
+		try {
+			status = command.executeCommand(env, parts.length == 1 ? null : parts[1]);
+		} finally {
+			sample.stop();
+			env.metrics().record(command.getCommandName(), sample);
+		}
+		env.writeln(sample.toString());
+		return status;
+	}
+
+	@Override
+	public String getCommandName() {
+		return commandName;
+	}
+
+	@Override
+	public List<String> getCommandDescription() {
+		return Collections.unmodifiableList(description);
+	}
+
+}
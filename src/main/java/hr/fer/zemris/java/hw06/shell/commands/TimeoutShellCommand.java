@@ -0,0 +1,109 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import hr.fer.zemris.java.hw06.shell.Cancellation;
+import hr.fer.zemris.java.hw06.shell.Environment;
+import hr.fer.zemris.java.hw06.shell.ShellCommand;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+/**
+ * Executes a command with a time limit.
+ * <p>
+ * The arguments are the limit in seconds, which may have a fraction, followed
+ * by the command and its arguments. If the command runs longer, it is
+ * cancelled (see {@link Cancellation}) and the timeout command fails.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class TimeoutShellCommand implements ShellCommand {
+	/** Command name. **/
+	private final String commandName = "timeout";
+
+	/** State of a command which is still running. **/
+	private static final int RUNNING = 0;
+	/** State of a command which finished in time. **/
+	private static final int FINISHED = 1;
+	/** State of a command which ran out of time. **/
+	private static final int TIMED_OUT = 2;
+
+	/** Timer which cancels the commands. **/
+	private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "command-timeout");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** Command description. **/
+	private List<String> description = new ArrayList<>(Arrays.asList("Executes a command with a time limit.",
+			"timeout [seconds] [command] [arguments]", "The command is cancelled if it runs longer than the limit."));
+
+	@Override
+	public ShellStatus executeCommand(Environment env, String arguments) {
+		String parts[] = arguments == null ? new String[0] : arguments.trim().split("\\s+", 3);
+		if (parts.length < 2) {
+			env.writeln("Expected the time limit in seconds and a command.");
+			env.writeln("See help timeout for more info.");
+			return ShellStatus.FAILURE;
+		}
+
+		double seconds;
+		try {
+			seconds = Double.parseDouble(parts[0]);
+		} catch (NumberFormatException ex) {
+			seconds = -1;
+		}
+		if (!(seconds > 0) || Double.isInfinite(seconds)) {
+			env.writeln("The time limit must be a positive number of seconds. Was: " + parts[0]);
+			return ShellStatus.FAILURE;
+		}
+
+		ShellCommand command = env.commands().get(parts[1]);
+		if (command == null) {
+			env.writeln("Invalid command name.");
+			return ShellStatus.FAILURE;
+		}
+
+		Thread thread = Thread.currentThread();
+		AtomicInteger state = new AtomicInteger(RUNNING);
+		ScheduledFuture<?> timer = TIMER.schedule(() -> {
+			if (state.compareAndSet(RUNNING, TIMED_OUT)) {
+				thread.interrupt();
+			}
+		}, (long) (seconds * 1_000_000_000L), TimeUnit.NANOSECONDS);
+
+		ShellStatus status;
+		try {
+			status = command.executeCommand(env, parts.length == 2 ? null : parts[2]);
+		} finally {
+			timer.cancel(false);
+		}
+
+		if (!state.compareAndSet(RUNNING, FINISHED)) {
+			Thread.interrupted();
+			env.writeln("The command timed out after " + parts[0] + " s.");
+			return ShellStatus.FAILURE;
+		}
+		return status;
+	}
+
+	@Override
+	public String getCommandName() {
+		return commandName;
+	}
+
+	@Override
+	public List<String> getCommandDescription() {
+		return Collections.unmodifiableList(description);
+	}
+
+}
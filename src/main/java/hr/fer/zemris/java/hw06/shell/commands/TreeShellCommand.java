@@ -1,18 +1,24 @@
 package hr.fer.zemris.java.hw06.shell.commands;
 
 import java.io.IOException;
-import java.nio.file.FileVisitResult;
-import java.nio.file.FileVisitor;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import hr.fer.zemris.java.hw06.shell.Cancellation;
 import hr.fer.zemris.java.hw06.shell.Environment;
 import hr.fer.zemris.java.hw06.shell.ShellCommand;
 import hr.fer.zemris.java.hw06.shell.ShellStatus;
@@ -20,40 +26,94 @@ import hr.fer.zemris.java.hw06.shell.ShellStatus;
 /**
  * Prints a directory tree.
  * <p>
- * The command expects a single argument - a valid directory name. Each
- * directory level shifts output two characters to the right.
- * 
+ * The command expects a directory name, or uses the current directory if
+ * there is none. Each directory level shifts output two characters to the
+ * right. The entries of a directory are printed sorted by name, and the
+ * output ends with the total number of directories and files. The options
+ * are:
+ * <p>
+ * <code>-L depth</code> - descend at most <code>depth</code> levels below the
+ * directory. <br>
+ * <code>-f</code> - print the files as well as the directories. <br>
+ * <code>-c</code> - print the number of subdirectories and files next to each
+ * directory.
+ * <p>
+ * The directories are listed in parallel, ahead of the output: the I/O pool
+ * of the shell lists the next directories in the order in which they will be
+ * printed, while the command prints the ones already listed. The number of
+ * directories listed ahead is bounded, and only the listings of the
+ * directories on the current path are kept, so the memory does not grow with
+ * the size of the tree. Symbolic links are not followed. The walk stops when
+ * the command is cancelled.
+ *
  * @author Mirna Baksa
  *
  */
 public class TreeShellCommand implements ShellCommand {
+	/** Maximum number of directories listed ahead of the output. **/
+	private static final int PREFETCH = 256;
+	/** Number of subdirectories of a directory listed ahead of the output. **/
+	private static final int PREFETCH_PER_DIRECTORY = 16;
+	/** Length of the output written at once. **/
+	private static final int CHUNK = 8192;
+
 	/** Command name. **/
 	private final String commandName = "tree";
 
 	/** Command description. **/
-	private List<String> description = new ArrayList<>(
-			Arrays.asList("Prints the directory tree.", "tree [path]", "Path must be valid directory name/path."));
+	private List<String> description = new ArrayList<>(Arrays.asList("Prints the directory tree.",
+			"tree [-L depth] [-f] [-c] [path]", "Path must be valid directory name/path, the default is the current directory.",
+			"-L descends at most depth levels, -f prints the files too,",
+			"-c prints the number of subdirectories and files of each directory."));
 
 	@Override
 	public ShellStatus executeCommand(Environment env, String arguments) {
+		int maxDepth = Integer.MAX_VALUE;
+		boolean showFiles = false;
+		boolean showCounts = false;
+		String rest = arguments == null ? "" : arguments.trim();
+		while (rest.startsWith("-")) {
+			String[] parts = rest.split("\\s+", 2);
+			if (parts[0].equals("-f")) {
+				showFiles = true;
+			} else if (parts[0].equals("-c")) {
+				showCounts = true;
+			} else if (parts[0].equals("-L")) {
+				String[] value = parts.length == 1 ? new String[] { "" } : parts[1].split("\\s+", 2);
+				try {
+					maxDepth = Integer.parseInt(value[0]);
+				} catch (NumberFormatException ex) {
+					maxDepth = -1;
+				}
+				if (maxDepth < 1) {
+					env.writeln("Expected a positive depth. Was: " + arguments);
+					return ShellStatus.FAILURE;
+				}
+				parts = value;
+			} else {
+				break;
+			}
+			rest = parts.length == 1 ? "" : parts[1];
+		}
+
 		Path dir;
 		try{
-			dir = Paths.get(arguments);
+			dir = Paths.get(rest.isEmpty() ? "." : rest);
 		}catch(InvalidPathException ex){
 			env.writeln("Invalid directory path.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
-		
+
 		if (!dir.toFile().isDirectory()) {
 			env.writeln("Invalid directory path.");
-			return ShellStatus.CONTINUE;
+			return ShellStatus.FAILURE;
 		}
 
-		TreeVisitor visitor = new TreeVisitor(env);
-		try {
-			Files.walkFileTree(dir, visitor);
-		} catch (IOException e) {
-			env.writeln("An I/O error occured.");
+		TreeWalk walk = new TreeWalk(env, maxDepth, showFiles, showCounts);
+		walk.run(dir);
+		if (Cancellation.isCancelled()) {
+			env.writeln(Cancellation.MESSAGE);
+			return ShellStatus.FAILURE;
 		}
 
 		return ShellStatus.CONTINUE;
@@ -70,50 +130,335 @@ public class TreeShellCommand implements ShellCommand {
 	}
 
 	/**
-	 * Implements a file visitor to print out the tree of a directory.
+	 * Lists the directory: the names of its entries sorted by name, and which
+	 * of them are directories. A directory which can not be read has no
+	 * entries, and an entry whose attributes can not be read is left out.
+	 *
+	 * @param dir
+	 *            directory to list
+	 * @return listing of the directory
+	 */
+	private static Listing list(Path dir) {
+		List<String> names = new ArrayList<>();
+		List<String> dirs = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+			for (Path entry : stream) {
+				BasicFileAttributes attrs;
+				try {
+					attrs = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+				} catch (IOException ex) {
+					continue;
+				}
+				String name = entry.getFileName().toString();
+				names.add(name);
+				if (attrs.isDirectory()) {
+					dirs.add(name);
+				}
+			}
+		} catch (IOException | DirectoryIteratorException ex) {
+			// an unreadable directory is printed without entries
+		}
+
+		Collections.sort(names);
+		Collections.sort(dirs);
+		Listing listing = new Listing(names.size(), dirs.size());
+		for (int i = 0, j = 0; i < names.size(); i++) {
+			listing.names[i] = names.get(i);
+			listing.directory[i] = j < dirs.size() && dirs.get(j).equals(names.get(i));
+			if (listing.directory[i]) {
+				j++;
+			}
+		}
+		return listing;
+	}
+
+	/**
+	 * Entries of a listed directory.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class Listing {
+		/** Names of the entries, sorted. **/
+		private final String[] names;
+		/** Whether the entries are directories. **/
+		private final boolean[] directory;
+		/** Number of subdirectories. **/
+		private final int dirCount;
+
+		/**
+		 * Constructs a new, empty listing.
+		 *
+		 * @param size
+		 *            number of entries
+		 * @param dirCount
+		 *            number of subdirectories
+		 */
+		Listing(int size, int dirCount) {
+			this.names = new String[size];
+			this.directory = new boolean[size];
+			this.dirCount = dirCount;
+		}
+	}
+
+	/**
+	 * A directory of the tree which is printed.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class Node {
+		/** Path of the directory. **/
+		private final Path path;
+		/** Depth of the directory below the root. **/
+		private final int depth;
+		/** Listing in progress, or <code>null</code> if not started. **/
+		private Future<Listing> listing;
+
+		/**
+		 * Constructs a new node.
+		 *
+		 * @param path
+		 *            path of the directory
+		 * @param depth
+		 *            depth of the directory below the root
+		 */
+		Node(Path path, int depth) {
+			this.path = path;
+			this.depth = depth;
+		}
+	}
+
+	/**
+	 * A printed directory whose entries are being printed.
+	 *
 	 * @author Mirna Baksa
 	 *
 	 */
-	private class TreeVisitor implements FileVisitor<Path> {
+	private static class Frame {
+		/** Printed directory. **/
+		private final Node node;
+		/** Entries of the directory. **/
+		private final Listing listing;
+		/** Nodes of the subdirectories, <code>null</code> for the files. **/
+		private final Node[] children;
+		/** Index of the next entry to print. **/
+		private int next;
+		/** Index of the next entry to consider for listing ahead. **/
+		private int nextPrefetch;
+
+		/**
+		 * Constructs a new frame.
+		 *
+		 * @param node
+		 *            printed directory
+		 * @param listing
+		 *            entries of the directory
+		 */
+		Frame(Node node, Listing listing) {
+			this.node = node;
+			this.listing = listing;
+			this.children = new Node[listing.names.length];
+			for (int i = 0; i < children.length; i++) {
+				if (listing.directory[i]) {
+					children[i] = new Node(node.path.resolve(listing.names[i]), node.depth + 1);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A single walk of the tree, printing the directories in order while the
+	 * next ones are being listed.
+	 *
+	 * @author Mirna Baksa
+	 *
+	 */
+	private static class TreeWalk {
 		/** Enables communication between the command and the user **/
-		private Environment env;
-		/** Current directory level. **/
-		private int level;
+		private final Environment env;
+		/** Maximum depth of the listed directories. **/
+		private final int maxDepth;
+		/** Whether the files are printed. **/
+		private final boolean showFiles;
+		/** Whether the counts of the entries are printed. **/
+		private final boolean showCounts;
+
+		/** Directories on the current path. **/
+		private final Deque<Frame> stack = new ArrayDeque<>();
+		/** Output which is not written yet. **/
+		private final StringBuilder out = new StringBuilder(CHUNK + 256);
+		/** Number of directories listed ahead of the output. **/
+		private int prefetched;
+		/** Number of printed directories, without the root. **/
+		private long dirs;
+		/** Number of files in the listed directories. **/
+		private long files;
 
 		/**
-		 * Constructs a new visitor.
-		 * 
+		 * Constructs a new walk.
+		 *
 		 * @param env
-		 *            enables communication between the command and the user.
+		 *            enables communication between the command and the user
+		 * @param maxDepth
+		 *            maximum depth of the listed directories
+		 * @param showFiles
+		 *            whether the files are printed
+		 * @param showCounts
+		 *            whether the counts of the entries are printed
 		 */
-		public TreeVisitor(Environment env) {
+		TreeWalk(Environment env, int maxDepth, boolean showFiles, boolean showCounts) {
 			this.env = env;
-			this.level = 1;
+			this.maxDepth = maxDepth;
+			this.showFiles = showFiles;
+			this.showCounts = showCounts;
 		}
 
-		@Override
-		public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
-			env.writeln(String.format("%" + (level * 2) + "s", dir.getFileName().toString()));
-			level++;
-			return FileVisitResult.CONTINUE;
+		/**
+		 * Prints the tree of the directory, followed by the totals. Stops
+		 * when the command is cancelled.
+		 *
+		 * @param dir
+		 *            root of the tree
+		 */
+		void run(Path dir) {
+			try {
+				Node root = new Node(dir, 0);
+				Path name = dir.getFileName();
+				if (!enter(root, name == null ? dir.toString() : name.toString())) {
+					return;
+				}
+
+				while (!stack.isEmpty()) {
+					if (Cancellation.isCancelled()) {
+						return;
+					}
+					Frame frame = stack.peek();
+					if (frame.next == frame.children.length) {
+						stack.pop();
+						continue;
+					}
+
+					int index = frame.next++;
+					prefetch(frame);
+					Node child = frame.children[index];
+					if (child == null) {
+						if (showFiles) {
+							line(frame.node.depth + 1, frame.listing.names[index]);
+						}
+						continue;
+					}
+
+					dirs++;
+					if (!enter(child, frame.listing.names[index])) {
+						return;
+					}
+				}
+
+				out.append('\n').append(dirs).append(dirs == 1 ? " directory, " : " directories, ").append(files)
+						.append(files == 1 ? " file" : " files").append('\n');
+			} finally {
+				flush();
+				for (Frame frame : stack) {
+					for (Node child : frame.children) {
+						if (child != null && child.listing != null) {
+							child.listing.cancel(true);
+						}
+					}
+				}
+			}
 		}
 
-		@Override
-		public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-			return FileVisitResult.CONTINUE;
+		/**
+		 * Prints the directory and, unless it is at the maximum depth, lists
+		 * it and starts printing its entries.
+		 *
+		 * @param node
+		 *            directory to enter
+		 * @param name
+		 *            printed name of the directory
+		 * @return <code>false</code> if the command was cancelled
+		 */
+		private boolean enter(Node node, String name) {
+			if (node.depth == maxDepth) {
+				line(node.depth, name);
+				return true;
+			}
+
+			Listing listing;
+			try {
+				listing = node.listing == null ? list(node.path) : node.listing.get();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return false;
+			} catch (ExecutionException ex) {
+				listing = new Listing(0, 0);
+			}
+			if (node.listing != null) {
+				node.listing = null;
+				prefetched--;
+			}
+
+			int fileCount = listing.names.length - listing.dirCount;
+			files += fileCount;
+			if (showCounts) {
+				line(node.depth, name + " [" + listing.dirCount + (listing.dirCount == 1 ? " directory, " : " directories, ")
+						+ fileCount + (fileCount == 1 ? " file]" : " files]"));
+			} else {
+				line(node.depth, name);
+			}
+
+			Frame frame = new Frame(node, listing);
+			stack.push(frame);
+			prefetch(frame);
+			return true;
 		}
 
-		@Override
-		public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
-			return FileVisitResult.CONTINUE;
+		/**
+		 * Starts listing the next subdirectories of the frame ahead of the
+		 * output, as long as the bounds allow.
+		 *
+		 * @param frame
+		 *            frame whose subdirectories are listed
+		 */
+		private void prefetch(Frame frame) {
+			int end = Math.min(frame.children.length, frame.next + PREFETCH_PER_DIRECTORY);
+			while (frame.nextPrefetch < end && prefetched < PREFETCH) {
+				Node child = frame.children[frame.nextPrefetch++];
+				if (child != null && child.depth < maxDepth) {
+					child.listing = env.ioPool().submit(() -> list(child.path));
+					prefetched++;
+				}
+			}
 		}
 
-		@Override
-		public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
-			level--;
-			return FileVisitResult.CONTINUE;
+		/**
+		 * Adds a line of the tree to the output.
+		 *
+		 * @param depth
+		 *            depth of the entry below the root
+		 * @param text
+		 *            text of the line
+		 */
+		private void line(int depth, String text) {
+			for (int i = 0; i < depth; i++) {
+				out.append("  ");
+			}
+			out.append(text).append('\n');
+			if (out.length() >= CHUNK) {
+				flush();
+			}
 		}
 
+		/**
+		 * Writes the output which is not written yet.
+		 */
+		private void flush() {
+			if (out.length() > 0) {
+				env.write(out.toString());
+				out.setLength(0);
+			}
+		}
 	}
 
 }
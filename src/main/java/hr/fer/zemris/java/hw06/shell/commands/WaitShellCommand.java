@@ -0,0 +1,80 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import hr.fer.zemris.java.hw06.shell.Environment;
+import hr.fer.zemris.java.hw06.shell.Job;
+import hr.fer.zemris.java.hw06.shell.ShellCommand;
+import hr.fer.zemris.java.hw06.shell.ShellIOException;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+/**
+ * Waits for background jobs to finish.
+ * <p>
+ * Recieves the numbers of the jobs, or no arguments to wait for all the jobs.
+ * When a job finishes, the command writes its final state and streams its
+ * captured output in chunks, and the job and its output are forgotten. The command fails if any of the jobs
+ * failed or was killed.
+ * <p>
+ * Inside a background job, only the jobs started by that job can be waited
+ * for, so the job never waits for itself.
+ * 
+ * @author Mirna Baksa
+ *
+ */
+public class WaitShellCommand implements ShellCommand {
+	/** Command name. **/
+	private final String commandName = "wait";
+
+	/** Command description. **/
+	private List<String> description = new ArrayList<>(Arrays.asList("Waits for background jobs to finish.",
+			"wait [job...]", "Without arguments, waits for all the jobs.",
+			"The output of each job is written when it finishes."));
+
+	@Override
+	public ShellStatus executeCommand(Environment env, String arguments) {
+		List<Job> jobs = arguments == null ? env.jobs().list() : JobArguments.parse(env, arguments);
+		if (jobs == null) {
+			return ShellStatus.FAILURE;
+		}
+
+		ShellStatus status = ShellStatus.CONTINUE;
+		for (Job job : jobs) {
+			Job.State state;
+			try {
+				state = job.waitFor();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				env.writeln("Waiting was interrupted.");
+				return ShellStatus.FAILURE;
+			}
+
+			env.writeln("[" + job.getId() + "] " + state + " " + job.getCommand());
+			try {
+				job.writeOutputTo(env.getOutputChannel());
+			} catch (IOException ex) {
+				throw new ShellIOException("An I/O error occured.");
+			}
+			env.jobs().remove(job.getId());
+			if (state != Job.State.DONE) {
+				status = ShellStatus.FAILURE;
+			}
+		}
+		return status;
+	}
+
+	@Override
+	public String getCommandName() {
+		return commandName;
+	}
+
+	@Override
+	public List<String> getCommandDescription() {
+		return Collections.unmodifiableList(description);
+	}
+
+}
@@ -0,0 +1,77 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw06.crypto.CryptoEngine.Mode;
+
+@SuppressWarnings("javadoc")
+public class CryptoEngineTest {
+	private static final byte[] KEY = Util.hexToByte("a52217e3ee213ef1ffdee3a192e2ac7e");
+	private static final byte[] IV = Util.hexToByte("000102030405060708090a0b0c0d0e0f");
+
+	@Test
+	public void testRoundTripBytes() {
+		CryptoEngine engine = new CryptoEngine(KEY, IV);
+		byte[] data = "Hello, World!".getBytes();
+		byte[] encrypted = engine.crypt(Mode.ENCRYPT, data);
+		assertEquals(16, encrypted.length);
+		assertArrayEquals(data, engine.crypt(Mode.DECRYPT, encrypted));
+		assertArrayEquals(encrypted, engine.crypt(Mode.ENCRYPT, data));
+	}
+
+	@Test
+	public void testStreamsMatchBytes() throws Exception {
+		CryptoEngine engine = new CryptoEngine(KEY, IV);
+		byte[] data = new byte[200_000];
+		new Random(3).nextBytes(data);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		engine.crypt(Mode.ENCRYPT, new ByteArrayInputStream(data), out);
+		assertArrayEquals(engine.crypt(Mode.ENCRYPT, data), out.toByteArray());
+	}
+
+	@Test
+	public void testEnginesDoNotShareState() {
+		CryptoEngine first = new CryptoEngine(KEY, IV);
+		CryptoEngine second = new CryptoEngine(new byte[16], IV);
+		byte[] data = new byte[32];
+		byte[] expected = first.crypt(Mode.ENCRYPT, data);
+		second.crypt(Mode.ENCRYPT, data);
+		assertArrayEquals(expected, first.crypt(Mode.ENCRYPT, data));
+	}
+
+	@Test(expected = CryptoException.class)
+	public void testBadPadding() {
+		CryptoEngine engine = new CryptoEngine(KEY, IV);
+		engine.crypt(Mode.DECRYPT, new byte[16]);
+	}
+
+	@Test
+	public void testUsableAfterFailure() {
+		CryptoEngine engine = new CryptoEngine(KEY, IV);
+		byte[] data = "data".getBytes();
+		try {
+			engine.crypt(Mode.DECRYPT, new byte[15]);
+			fail();
+		} catch (CryptoException ex) {
+		}
+		assertArrayEquals(data, engine.crypt(Mode.DECRYPT, engine.crypt(Mode.ENCRYPT, data)));
+	}
+
+	@Test
+	public void testDigest() {
+		assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+				Util.byteToHex(CryptoEngine.digest(new byte[0])));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidKey() {
+		new CryptoEngine(new byte[15], IV);
+	}
+}
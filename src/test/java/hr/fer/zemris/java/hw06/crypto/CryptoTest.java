@@ -0,0 +1,143 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw06.crypto.CryptoEngine.Mode;
+
+@SuppressWarnings("javadoc")
+public class CryptoTest {
+	private static final String KEY = "a52217e3ee213ef1ffdee3a192e2ac7e";
+	private static final String IV = "000102030405060708090a0b0c0d0e0f";
+
+	private final Map<String, String> environment = new HashMap<>();
+	private Path keyFile;
+
+	@Before
+	public void setUp() throws Exception {
+		keyFile = Files.createTempFile("crypto", ".key");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.delete(keyFile);
+	}
+
+	private byte[][] readKeyFile(String content, boolean withIv) throws IOException {
+		Files.write(keyFile, content.getBytes(StandardCharsets.UTF_8));
+		return Crypto.readKeyMaterial(keyFile.toString(), withIv, environment::get);
+	}
+
+	@Test
+	public void testKeyFile() throws Exception {
+		byte[][] keyMaterial = readKeyFile(KEY + "\n  " + IV.toUpperCase() + "\n", true);
+		assertArrayEquals(Util.hexToByte(KEY), keyMaterial[0]);
+		assertArrayEquals(Util.hexToByte(IV), keyMaterial[1]);
+
+		keyMaterial = readKeyFile(KEY, false);
+		assertEquals(1, keyMaterial.length);
+		assertArrayEquals(Util.hexToByte(KEY), keyMaterial[0]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testKeyFileBadHex() throws Exception {
+		readKeyFile(KEY.replace('e', 'x') + " " + IV, true);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testKeyFileMissingIv() throws Exception {
+		readKeyFile(KEY + "\n", true);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testKeyFileEmpty() throws Exception {
+		readKeyFile("", false);
+	}
+
+	@Test
+	public void testKeyFileWrongLength() throws Exception {
+		byte[][] keyMaterial = readKeyFile(KEY.substring(2) + " " + IV, true);
+		try {
+			new CryptoEngine(keyMaterial[0], keyMaterial[1]);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+
+		keyMaterial = readKeyFile(KEY + " " + IV + "00", true);
+		try {
+			new CryptoEngine(keyMaterial[0], keyMaterial[1]);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissingKeyFile() throws Exception {
+		Crypto.readKeyMaterial(keyFile.resolveSibling(keyFile.getFileName() + ".missing").toString(), true,
+				environment::get);
+	}
+
+	@Test
+	public void testEnvironment() throws Exception {
+		environment.put("HW06_CRYPTO_KEY", KEY);
+		environment.put("HW06_CRYPTO_IV", IV);
+		byte[][] keyMaterial = Crypto.readKeyMaterial(null, true, environment::get);
+		assertArrayEquals(Util.hexToByte(KEY), keyMaterial[0]);
+		assertArrayEquals(Util.hexToByte(IV), keyMaterial[1]);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testEnvironmentMissingIv() throws Exception {
+		environment.put("HW06_CRYPTO_KEY", KEY);
+		Crypto.readKeyMaterial(null, true, environment::get);
+	}
+
+	@Test
+	public void testKeyFileTakesPrecedence() throws Exception {
+		environment.put("HW06_CRYPTO_KEY", IV);
+		environment.put("HW06_CRYPTO_IV", KEY);
+		byte[][] keyMaterial = readKeyFile(KEY + " " + IV, true);
+		assertArrayEquals(Util.hexToByte(KEY), keyMaterial[0]);
+		assertArrayEquals(Util.hexToByte(IV), keyMaterial[1]);
+	}
+
+	@Test
+	public void testNoKeySource() throws Exception {
+		environment.put("HW06_CRYPTO_IV", IV);
+		assertNull(Crypto.readKeyMaterial(null, true, environment::get));
+	}
+
+	@Test
+	public void testStreamRoundTrip() throws Exception {
+		environment.put("HW06_CRYPTO_KEY", KEY);
+		environment.put("HW06_CRYPTO_IV", IV);
+		byte[][] keyMaterial = Crypto.readKeyMaterial(null, true, environment::get);
+		CryptoEngine engine = new CryptoEngine(keyMaterial[0], keyMaterial[1]);
+
+		byte[] data = new byte[100_000];
+		new Random(7).nextBytes(data);
+		ByteArrayOutputStream encrypted = new ByteArrayOutputStream();
+		engine.crypt(Mode.ENCRYPT, Channels.newChannel(new ByteArrayInputStream(data)), Channels.newChannel(encrypted),
+				new Progress("encrypt", -1));
+		assertArrayEquals(engine.crypt(Mode.ENCRYPT, data), encrypted.toByteArray());
+
+		ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+		engine.crypt(Mode.DECRYPT, Channels.newChannel(new ByteArrayInputStream(encrypted.toByteArray())),
+				Channels.newChannel(decrypted), new Progress("decrypt", -1));
+		assertArrayEquals(data, decrypted.toByteArray());
+	}
+}
@@ -0,0 +1,141 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class DigestCacheTest {
+	private static final FileTime OLD = FileTime.fromMillis(1_000_000_000_000L);
+
+	private Path file;
+	private Path location;
+
+	@Before
+	public void setUp() throws Exception {
+		file = Files.createTempFile("cached", ".bin");
+		location = Files.createTempFile("digests", ".cache");
+		Files.delete(location);
+		write("first");
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(location);
+		Files.delete(file);
+	}
+
+	private void write(String content) throws Exception {
+		Files.write(file, content.getBytes("UTF-8"));
+		Files.setLastModifiedTime(file, OLD);
+	}
+
+	@Test
+	public void testDigestMatchesEngine() throws Exception {
+		DigestCache cache = DigestCache.open(location);
+		assertArrayEquals(CryptoEngine.digest(file), cache.digest(file));
+		assertEquals(1, cache.size());
+	}
+
+	@Test
+	public void testUnchangedFileIsNotRead() throws Exception {
+		DigestCache cache = DigestCache.open(location);
+		byte[] first = cache.digest(file);
+
+		// same size and modification time - the stale digest proves a hit
+		write("other");
+		assertArrayEquals(first, cache.digest(file));
+	}
+
+	@Test
+	public void testModifiedFileIsRead() throws Exception {
+		DigestCache cache = DigestCache.open(location);
+		byte[] first = cache.digest(file);
+
+		write("other");
+		Files.setLastModifiedTime(file, FileTime.fromMillis(OLD.toMillis() + 1000));
+		byte[] second = cache.digest(file);
+		assertFalse(Arrays.equals(first, second));
+		assertArrayEquals(CryptoEngine.digest(file), second);
+	}
+
+	@Test
+	public void testRecentlyModifiedFileIsNotCached() throws Exception {
+		Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		DigestCache cache = DigestCache.open(location);
+		cache.digest(file);
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testSaveAndOpen() throws Exception {
+		DigestCache cache = DigestCache.open(location);
+		byte[] first = cache.digest(file);
+		cache.save();
+
+		write("other");
+		DigestCache reopened = DigestCache.open(location);
+		assertEquals(1, reopened.size());
+		assertArrayEquals(first, reopened.digest(file));
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		DigestCache cache = DigestCache.open(location);
+		cache.digest(file);
+
+		write("other");
+		cache.invalidate(file);
+		assertEquals(0, cache.size());
+		assertArrayEquals(CryptoEngine.digest(file), cache.digest(file));
+
+		cache.clear();
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testStaleEntryIsDropped() throws Exception {
+		DigestCache cache = DigestCache.open(location);
+		cache.digest(file);
+
+		write("changed");
+		Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		assertArrayEquals(CryptoEngine.digest(file), cache.digest(file));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void testSaveKeepsMostRecentlyUsed() throws Exception {
+		Path other = Files.createTempFile("cached", ".bin");
+		try {
+			Files.write(other, "second".getBytes("UTF-8"));
+			Files.setLastModifiedTime(other, OLD);
+
+			DigestCache cache = DigestCache.open(location, 1);
+			cache.digest(other);
+			byte[] first = cache.digest(file);
+			cache.save();
+			assertEquals(1, cache.size());
+
+			write("other");
+			DigestCache reopened = DigestCache.open(location, 1);
+			assertEquals(1, reopened.size());
+			assertArrayEquals(first, reopened.digest(file));
+		} finally {
+			Files.delete(other);
+		}
+	}
+
+	@Test
+	public void testCorruptedCacheStartsEmpty() throws Exception {
+		Files.write(location, "garbage\nmore\tgarbage\tand\tzz\n".getBytes("UTF-8"));
+		assertEquals(0, DigestCache.open(location).size());
+	}
+}
@@ -0,0 +1,91 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class FramedGcmTest {
+	private static final byte[] KEY = Util.hexToByte("a52217e3ee213ef1ffdee3a192e2ac7e");
+
+	private byte[] data;
+	private Path original;
+	private Path container;
+
+	@Before
+	public void setUp() throws Exception {
+		data = new byte[1000];
+		new Random(7).nextBytes(data);
+		original = Files.createTempFile("frames", ".bin");
+		container = Files.createTempFile("frames", ".enc");
+		Files.write(original, data);
+		new FramedGcmWriter(KEY, 64).encrypt(original, container);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.delete(original);
+		Files.delete(container);
+	}
+
+	private byte[] decrypt(long offset, long length) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (FramedGcmReader reader = new FramedGcmReader(container, KEY)) {
+			reader.decrypt(offset, length, Channels.newChannel(out));
+		}
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		assertArrayEquals(data, decrypt(0, data.length));
+	}
+
+	@Test
+	public void testRange() throws Exception {
+		assertArrayEquals(Arrays.copyOfRange(data, 100, 300), decrypt(100, 200));
+		assertArrayEquals(Arrays.copyOfRange(data, 960, 1000), decrypt(960, 40));
+		assertEquals(0, decrypt(10, 0).length);
+	}
+
+	@Test(expected = IOException.class)
+	public void testRangeOutOfBounds() throws Exception {
+		decrypt(990, 20);
+	}
+
+	@Test
+	public void testVerifyDetectsModifiedFrame() throws Exception {
+		byte[] sealed = Files.readAllBytes(container);
+		sealed[FramedGcmFormat.HEADER_SIZE + 2 * (64 + FramedGcmFormat.TAG_SIZE) + 5] ^= 1;
+		Files.write(container, sealed);
+
+		try (FramedGcmReader reader = new FramedGcmReader(container, KEY)) {
+			assertEquals(16, reader.frameCount());
+			assertEquals(Arrays.asList(2), reader.verify());
+		}
+		assertArrayEquals(Arrays.copyOfRange(data, 0, 128), decrypt(0, 128));
+	}
+
+	@Test(expected = IOException.class)
+	public void testWrongKey() throws Exception {
+		new FramedGcmReader(container, new byte[16]).close();
+	}
+
+	@Test(expected = IOException.class)
+	public void testModifiedHeader() throws Exception {
+		byte[] sealed = Files.readAllBytes(container);
+		sealed[FramedGcmFormat.HEADER_SIZE - 1] ^= 1;
+		Files.write(container, sealed);
+		new FramedGcmReader(container, KEY).close();
+	}
+}
@@ -0,0 +1,80 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class HexDecoderTest {
+
+	private static byte[] decode(String text, int bufferSize, int chunk) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (HexDecoder decoder = new HexDecoder(new StringReader(text), bufferSize)) {
+			byte[] buffer = new byte[chunk];
+			int n;
+			while ((n = decoder.read(buffer, 0, chunk)) != -1) {
+				output.write(buffer, 0, n);
+			}
+		}
+		return output.toByteArray();
+	}
+
+	@Test
+	public void testChunkBoundaries() throws Exception {
+		byte[] data = new byte[1000];
+		new Random(42).nextBytes(data);
+		String hex = Util.byteToHex(data);
+
+		for (int bufferSize : new int[] { 1, 2, 3, 7, 2000, 4096 }) {
+			for (int chunk : new int[] { 1, 3, 64, 2000 }) {
+				assertArrayEquals(data, decode(hex, bufferSize, chunk));
+			}
+		}
+	}
+
+	@Test
+	public void testSingleBytes() throws Exception {
+		try (HexDecoder decoder = new HexDecoder(new StringReader("01AE22"))) {
+			assertEquals(0x01, decoder.read());
+			assertEquals(0xae, decoder.read());
+			assertEquals(0x22, decoder.read());
+			assertEquals(-1, decoder.read());
+		}
+	}
+
+	@Test
+	public void testWhitespaceIsIgnored() throws Exception {
+		assertArrayEquals(new byte[] { 1, -82, 34 }, decode("0 1ae\n\t22\r\n", 3, 2));
+	}
+
+	@Test
+	public void testEmpty() throws Exception {
+		assertEquals(0, decode("", 4, 4).length);
+		assertEquals(0, decode(" \n", 4, 4).length);
+	}
+
+	@Test(expected = IOException.class)
+	public void testOddInput() throws Exception {
+		decode("01ae2", 2, 16);
+	}
+
+	@Test(expected = IOException.class)
+	public void testOddInputAtBufferBoundary() throws Exception {
+		decode("01a", 3, 16);
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidCharacter() throws Exception {
+		decode("01ag22", 4, 16);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBufferSize() {
+		new HexDecoder(new StringReader(""), 0);
+	}
+}
@@ -0,0 +1,48 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class HexEncoderTest {
+
+	@Test
+	public void testChunkBoundaries() throws Exception {
+		byte[] data = new byte[1000];
+		new Random(42).nextBytes(data);
+
+		for (int bufferSize : new int[] { 2, 3, 7, 16, 2000, 4096 }) {
+			StringWriter writer = new StringWriter();
+			try (HexEncoder encoder = new HexEncoder(writer, bufferSize)) {
+				encoder.write(data, 0, 1);
+				encoder.write(data[1]);
+				encoder.write(data, 2, 500);
+				encoder.write(data, 502, 0);
+				encoder.write(data, 502, data.length - 502);
+			}
+			assertEquals(Util.byteToHex(data), writer.toString());
+		}
+	}
+
+	@Test
+	public void testFlush() throws Exception {
+		StringWriter writer = new StringWriter();
+		HexEncoder encoder = new HexEncoder(writer);
+		encoder.write(new byte[] { 1, -82 });
+		assertEquals("", writer.toString());
+		encoder.flush();
+		assertEquals("01ae", writer.toString());
+		encoder.write(34);
+		encoder.close();
+		assertEquals("01ae22", writer.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidBufferSize() {
+		new HexEncoder(new StringWriter(), 1);
+	}
+}
@@ -0,0 +1,93 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class MerkleTreeTest {
+	private byte[] data;
+	private Path file;
+
+	@Before
+	public void setUp() throws Exception {
+		data = new byte[1000];
+		new Random(5).nextBytes(data);
+		file = Files.createTempFile("tree", ".bin");
+		Files.write(file, data);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.deleteIfExists(MerkleTree.sidecarOf(file));
+		Files.delete(file);
+	}
+
+	@Test
+	public void testSingleBlockRoot() throws Exception {
+		MerkleTree tree = MerkleTree.build(file, 4096);
+		byte[] prefixed = new byte[data.length + 1];
+		System.arraycopy(data, 0, prefixed, 1, data.length);
+		assertArrayEquals(CryptoEngine.digest(prefixed), tree.root());
+	}
+
+	@Test
+	public void testDiffLocatesChangedBlock() throws Exception {
+		MerkleTree original = MerkleTree.build(file, 100);
+		assertEquals(10, original.getBlockCount());
+
+		data[555] ^= 1;
+		Files.write(file, data);
+		MerkleTree modified = MerkleTree.build(file, 100);
+		assertEquals(Arrays.asList(5), modified.diff(original));
+		assertFalse(Arrays.equals(original.root(), modified.root()));
+	}
+
+	@Test
+	public void testAppendMatchesFullBuild() throws Exception {
+		MerkleTree original = MerkleTree.build(file, 64);
+		Files.write(file, new byte[] { 1, 2, 3, 4, 5 }, StandardOpenOption.APPEND);
+
+		MerkleTree appended = original.append(file);
+		MerkleTree full = MerkleTree.build(file, 64);
+		assertArrayEquals(full.root(), appended.root());
+		assertEquals(Collections.emptyList(), full.diff(appended));
+	}
+
+	@Test
+	public void testSidecarRoundTrip() throws Exception {
+		MerkleTree tree = MerkleTree.build(file, 128);
+		Path sidecar = MerkleTree.sidecarOf(file);
+		tree.write(sidecar);
+
+		MerkleTree read = MerkleTree.read(sidecar);
+		assertEquals(tree.getLength(), read.getLength());
+		assertArrayEquals(tree.root(), read.root());
+		assertEquals(Collections.emptyList(), tree.diff(read));
+	}
+
+	@Test
+	public void testCorruptedHeaders() throws Exception {
+		Path sidecar = MerkleTree.sidecarOf(file);
+		String[] headers = { "sha256-tree 1 9223372036854775807", "sha256-tree 1 4294967296", "sha256-tree 0 10",
+				"sha256-tree 64 -1", "sha256-tree 64 1000", "sha256-tree 64" };
+		for (String header : headers) {
+			Files.write(sidecar, Arrays.asList(header, "00"));
+			try {
+				MerkleTree.read(sidecar);
+				fail(header);
+			} catch (IOException expected) {
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class ParallelCtrCrypterTest {
+
+	@Test
+	public void testCounterFor() {
+		byte[] iv = Util.hexToByte("000000000000000000000000000000ff");
+		assertEquals("00000000000000000000000000000100", Util.byteToHex(ParallelCtrCrypter.counterFor(iv, 1)));
+		assertEquals("000000000000000000000000000000ff", Util.byteToHex(ParallelCtrCrypter.counterFor(iv, 0)));
+	}
+
+	@Test
+	public void testCounterForWrapsAround() {
+		byte[] iv = Util.hexToByte("ffffffffffffffffffffffffffffffff");
+		assertEquals("00000000000000000000000000000000", Util.byteToHex(ParallelCtrCrypter.counterFor(iv, 1)));
+		byte[] iv2 = Util.hexToByte("0000000000000000ffffffffffffffff");
+		assertEquals("00000000000000010000000000000001", Util.byteToHex(ParallelCtrCrypter.counterFor(iv2, 2)));
+	}
+
+	@Test
+	public void testMatchesSingleThreaded() throws Exception {
+		byte[] key = Util.hexToByte("a52217e3ee213ef1ffdee3a192e2ac7e");
+		byte[] iv = Util.hexToByte("000102030405060708090a0b0c0dfffe");
+		byte[] data = new byte[10_000];
+		new Random(42).nextBytes(data);
+
+		Path original = Files.createTempFile("ctr", ".bin");
+		Path output = Files.createTempFile("ctr", ".enc");
+		Path recreated = Files.createTempFile("ctr", ".dec");
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			Files.write(original, data);
+			ParallelCtrCrypter crypter = new ParallelCtrCrypter(key, iv, 64, pool);
+			crypter.crypt(original, output);
+			crypter.crypt(output, recreated);
+
+			Cipher cipher = Cipher.getInstance("AES/CTR/NoPadding");
+			cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(iv));
+			assertArrayEquals(cipher.doFinal(data), Files.readAllBytes(output));
+			assertArrayEquals(data, Files.readAllBytes(recreated));
+		} finally {
+			pool.shutdown();
+			Files.delete(original);
+			Files.delete(output);
+			Files.delete(recreated);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSegmentSize() {
+		new ParallelCtrCrypter(new byte[16], new byte[16], 100, ForkJoinPool.commonPool());
+	}
+}
@@ -0,0 +1,55 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.channels.Channels;
+import java.util.Random;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class ProgressTest {
+
+	@Test
+	public void testStatus() {
+		Progress progress = new Progress("encrypt", 4_000_000);
+		progress.add(1_000_000, 300, 100);
+		progress.skip(1_000_000);
+		String status = progress.status();
+		assertTrue(status, status.startsWith("encrypt: 2.0 of 4.0 MB (50%), "));
+		assertTrue(status, status.endsWith("I/O 75%, work 25%"));
+		assertTrue(status, status.contains("ETA"));
+	}
+
+	@Test
+	public void testUnknownTotal() {
+		Progress progress = new Progress("decrypt", -1);
+		progress.add(500_000, 0, 0);
+		String status = progress.status();
+		assertTrue(status, status.startsWith("decrypt: 0.5 MB, "));
+		assertFalse(status, status.contains("ETA"));
+
+		progress.expand(1_000_000);
+		assertTrue(progress.status().startsWith("decrypt: 0.5 of 1.0 MB (50%)"));
+	}
+
+	@Test
+	public void testSummary() {
+		Progress progress = new Progress("checksha", 10);
+		progress.add(10, 2_000_000, 1_000_000);
+		String summary = progress.summary();
+		assertTrue(summary, summary.matches("summary operation=checksha bytes=10 skipped=0 seconds=\\d+\\.\\d{3} "
+				+ "throughput=\\d+\\.\\d{2} io=0\\.002 work=0\\.001"));
+	}
+
+	@Test
+	public void testDigestReportsAllBytes() throws Exception {
+		byte[] data = new byte[200_000];
+		new Random(3).nextBytes(data);
+		Progress progress = new Progress("checksha", data.length);
+		byte[] digest = CryptoEngine.digest(Channels.newChannel(new ByteArrayInputStream(data)), progress);
+		assertArrayEquals(CryptoEngine.digest(data), digest);
+		assertEquals(data.length, progress.getBytes());
+	}
+}
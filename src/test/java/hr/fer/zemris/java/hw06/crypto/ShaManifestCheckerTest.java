@@ -0,0 +1,98 @@
+package hr.fer.zemris.java.hw06.crypto;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class ShaManifestCheckerTest {
+	private static final String DIGEST = "3F2504E04F8911D39A0C0305E82C33013F2504E04F8911D39A0C0305E82C3301";
+
+	@Test
+	public void testParseLineText() {
+		ShaManifestChecker.Entry entry = ShaManifestChecker.parseLine(DIGEST + "  some file.bin");
+		assertEquals(DIGEST.toLowerCase(), entry.digest);
+		assertEquals("some file.bin", entry.fileName);
+	}
+
+	@Test
+	public void testParseLineBinary() {
+		ShaManifestChecker.Entry entry = ShaManifestChecker.parseLine(DIGEST + " *hw06test.bin");
+		assertEquals(DIGEST.toLowerCase(), entry.digest);
+		assertEquals("hw06test.bin", entry.fileName);
+	}
+
+	@Test
+	public void testParseLineMalformed() {
+		assertNull(ShaManifestChecker.parseLine(DIGEST));
+		assertNull(ShaManifestChecker.parseLine(DIGEST + " xhw06test.bin"));
+		assertNull(ShaManifestChecker.parseLine(DIGEST.replace('F', 'g') + "  hw06test.bin"));
+		assertNull(ShaManifestChecker.parseLine(" hw06test.bin"));
+		assertNull(ShaManifestChecker.parseLine("3f25 *hw06test.bin"));
+		assertNull(ShaManifestChecker.parseLine(DIGEST + "00  hw06test.bin"));
+	}
+
+	@Test
+	public void testCheckManifest() throws Exception {
+		Path dir = Files.createTempDirectory("manifest");
+		Path good = dir.resolve("good.bin");
+		Path bad = dir.resolve("bad.bin");
+		Path manifest = dir.resolve("files.sha256");
+		try {
+			Files.write(good, "good".getBytes(StandardCharsets.UTF_8));
+			Files.write(bad, "bad".getBytes(StandardCharsets.UTF_8));
+			Files.write(manifest, Arrays.asList(
+					"# checked files",
+					Util.byteToHex(CryptoEngine.digest(good)) + "  " + good,
+					Util.byteToHex(CryptoEngine.digest(good)) + " *" + bad,
+					"3f25 *" + good), StandardCharsets.UTF_8);
+
+			List<String> lines = Collections.synchronizedList(new ArrayList<>());
+			ShaManifestChecker.Summary summary = new ShaManifestChecker(2).check(manifest, lines::add);
+			Collections.sort(lines);
+			assertEquals(Arrays.asList(bad + ": FAILED", good + ": OK"), lines);
+			assertFalse(summary.isSuccessful());
+			assertEquals("Checked 2 files: 1 OK, 1 FAILED, 0 unreadable, 1 improperly formatted lines.",
+					summary.toString());
+		} finally {
+			Files.deleteIfExists(manifest);
+			Files.deleteIfExists(bad);
+			Files.deleteIfExists(good);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testManifestLongerThanTasksInFlight() throws Exception {
+		Path dir = Files.createTempDirectory("manifest");
+		Path good = dir.resolve("good.bin");
+		Path manifest = dir.resolve("files.sha256");
+		try {
+			Files.write(good, "good".getBytes(StandardCharsets.UTF_8));
+			String line = Util.byteToHex(CryptoEngine.digest(good)) + "  " + good;
+			Files.write(manifest, Collections.nCopies(1000, line), StandardCharsets.UTF_8);
+
+			List<String> lines = Collections.synchronizedList(new ArrayList<>());
+			ShaManifestChecker.Summary summary = new ShaManifestChecker(1).check(manifest, lines::add);
+			assertEquals(Collections.nCopies(1000, good + ": OK"), lines);
+			assertTrue(summary.isSuccessful());
+		} finally {
+			Files.deleteIfExists(manifest);
+			Files.deleteIfExists(good);
+			Files.delete(dir);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidThreads() {
+		new ShaManifestChecker(0);
+	}
+}
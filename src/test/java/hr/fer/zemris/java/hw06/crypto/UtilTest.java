@@ -2,6 +2,9 @@ package hr.fer.zemris.java.hw06.crypto;
 
 import static org.junit.Assert.*;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
 import org.junit.Test;
 
 @SuppressWarnings("javadoc")
@@ -68,4 +71,83 @@ public class UtilTest {
 		assertEquals(true, hex.equals(""));
 	}
 	
+	@Test
+	public void testhexToByteCharSequence() {
+		assertArrayEquals(new byte[]{1, -82, 34}, Util.hexToByte(new StringBuilder("01AE22")));
+	}
+
+	@Test
+	public void testhexToByteCharArray() {
+		assertArrayEquals(new byte[]{63, 37, 4, -32}, Util.hexToByte("3f2504E0".toCharArray()));
+		assertEquals(0, Util.hexToByte(new char[0]).length);
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testhexToByteCharArrayOdd() {
+		Util.hexToByte("ae2".toCharArray());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testhexToByteCharArrayInvalid() {
+		Util.hexToByte("0g".toCharArray());
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void testhexToByteNonAscii() {
+		Util.hexToByte(new StringBuilder("0\u0101"));
+	}
+
+	@Test
+	public void testhexToByteBuffer() {
+		ByteBuffer buffer = ByteBuffer.allocate(5);
+		buffer.put((byte) 7);
+		Util.hexToByte("01ae22", buffer);
+		assertEquals(4, buffer.position());
+		assertArrayEquals(new byte[]{7, 1, -82, 34, 0}, buffer.array());
+	}
+
+	@Test
+	public void testhexToByteBufferInvalidLeavesBufferUnchanged() {
+		ByteBuffer buffer = ByteBuffer.allocate(4);
+		try {
+			Util.hexToByte("01ae2g", buffer);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			Util.hexToByte("01ae2", buffer);
+			fail();
+		} catch (IllegalArgumentException expected) {
+		}
+		assertEquals(0, buffer.position());
+		assertArrayEquals(new byte[4], buffer.array());
+	}
+
+	@Test
+	public void testhexToByteBufferOverflowLeavesBufferUnchanged() {
+		ByteBuffer buffer = ByteBuffer.allocate(2);
+		try {
+			Util.hexToByte("01ae22", buffer);
+			fail();
+		} catch (BufferOverflowException expected) {
+		}
+		assertEquals(0, buffer.position());
+		assertArrayEquals(new byte[2], buffer.array());
+	}
+
+	@Test
+	public void testbyteToHexBuffer() {
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[]{0, 1, -82, 34});
+		buffer.position(1);
+		assertEquals("01ae22", Util.byteToHex(buffer));
+		assertEquals(1, buffer.position());
+	}
+
+	@Test
+	public void testbyteToHexRange() {
+		char[] hex = "xxxxxxxx".toCharArray();
+		Util.byteToHex(new byte[]{63, 37, 4, -32}, 1, 2, hex, 2);
+		assertEquals("xx2504xx", new String(hex));
+	}
+
 }
@@ -0,0 +1,79 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class BoundedPipeTest {
+
+	@Test
+	public void testTransfersAllDataThroughSmallBuffer() throws Exception {
+		byte[] data = new byte[100_000];
+		new Random(7).nextBytes(data);
+		BoundedPipe pipe = new BoundedPipe(1000);
+
+		CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+			try {
+				for (int i = 0; i < data.length; i += 3333) {
+					pipe.sink().write(ByteBuffer.wrap(data, i, Math.min(3333, data.length - i)));
+				}
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			} finally {
+				pipe.closeSink();
+			}
+		});
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteBuffer buffer = ByteBuffer.allocate(777);
+		while (pipe.source().read(buffer) != -1) {
+			out.write(buffer.array(), 0, buffer.position());
+			buffer.clear();
+		}
+		writer.get(10, TimeUnit.SECONDS);
+		assertArrayEquals(data, out.toByteArray());
+	}
+
+	@Test
+	public void testWriterBlocksWhenFull() throws Exception {
+		BoundedPipe pipe = new BoundedPipe(10);
+		CompletableFuture<Integer> writer = CompletableFuture.supplyAsync(() -> {
+			try {
+				return pipe.sink().write(ByteBuffer.wrap(new byte[25]));
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		});
+
+		Thread.sleep(100);
+		assertFalse(writer.isDone());
+
+		ByteBuffer buffer = ByteBuffer.allocate(25);
+		while (buffer.hasRemaining()) {
+			pipe.source().read(buffer);
+		}
+		assertEquals(Integer.valueOf(25), writer.get(10, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testClosedSourceBreaksPipe() throws Exception {
+		BoundedPipe pipe = new BoundedPipe(10);
+		pipe.sink().write(ByteBuffer.wrap(new byte[10]));
+		pipe.closeSource();
+		assertTrue(pipe.isBroken());
+		try {
+			pipe.sink().write(ByteBuffer.wrap(new byte[1]));
+			fail();
+		} catch (IOException ex) {
+			// expected
+		}
+	}
+}
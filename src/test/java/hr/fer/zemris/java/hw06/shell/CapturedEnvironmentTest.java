@@ -0,0 +1,54 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class CapturedEnvironmentTest {
+
+	@Test
+	public void testSmallOutput() throws Exception {
+		try (CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment())) {
+			env.writeln("hello");
+			assertEquals("hello\n", env.getOutput());
+			assertEquals(6, env.getOutputSize());
+		}
+	}
+
+	@Test
+	public void testLargeOutputIsSpilledAndStreamed() throws Exception {
+		byte[] line = new byte[1000];
+		Arrays.fill(line, (byte) 'x');
+		line[line.length - 1] = '\n';
+		int lines = 3 * CapturedEnvironment.MEMORY_LIMIT / line.length;
+
+		CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment());
+		String text = new String(line, Charset.defaultCharset());
+		for (int i = 0; i < lines; i++) {
+			env.write(text);
+		}
+		assertEquals((long) lines * line.length, env.getOutputSize());
+
+		ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+		WritableByteChannel channel = Channels.newChannel(streamed);
+		env.writeOutputTo(channel);
+		byte[] bytes = streamed.toByteArray();
+		assertEquals(lines * line.length, bytes.length);
+		for (int i = 0; i < lines; i++) {
+			assertEquals(ByteBuffer.wrap(line), ByteBuffer.wrap(bytes, i * line.length, line.length));
+		}
+
+		env.close();
+		assertEquals(0, env.getOutputSize());
+		env.write("discarded");
+		assertEquals("", env.getOutput());
+	}
+}
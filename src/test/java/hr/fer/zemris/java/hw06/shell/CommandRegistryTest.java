@@ -0,0 +1,149 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw06.shell.commands.BuiltinCommands;
+
+@SuppressWarnings("javadoc")
+public class CommandRegistryTest {
+
+	public static class TestProvider implements ShellCommandProvider {
+		@Override
+		public List<CommandDescriptor> getCommands() {
+			return Arrays.asList(new CommandDescriptor("lazytest", LazyTestCommand.class.getName(), "Created on first use."),
+					new CommandDescriptor("described", LazyTestCommand.class.getName(),
+							Arrays.asList("Described by the provider.", "described")),
+					new CommandDescriptor("broken", "no.such.Command", "Can not be loaded."));
+		}
+	}
+
+	public static class ThrowingProvider implements ShellCommandProvider {
+		@Override
+		public List<CommandDescriptor> getCommands() {
+			throw new IllegalStateException("broken provider");
+		}
+	}
+
+	public static class LazyTestCommand implements ShellCommand {
+		public LazyTestCommand() {
+			instances.incrementAndGet();
+		}
+
+		@Override
+		public ShellStatus executeCommand(Environment env, String arguments) {
+			env.writeln("lazy");
+			return ShellStatus.CONTINUE;
+		}
+
+		@Override
+		public String getCommandName() {
+			return "lazytest";
+		}
+
+		@Override
+		public List<String> getCommandDescription() {
+			return Collections.singletonList("Created on first use.");
+		}
+	}
+
+	private static final AtomicInteger instances = new AtomicInteger();
+
+	private final SortedMap<String, ShellCommand> commands = CommandRegistry.load(getClass().getClassLoader());
+
+	@Test
+	public void testBuiltinSummariesMatchDescriptions() throws Exception {
+		for (String name : Arrays.asList("cat", "charsets", "copy", "exit", "help", "hexdump", "ls", "mkdir",
+				"symbol", "tree")) {
+			ShellCommand command = commands.get(name);
+			assertNotNull(name, command);
+			assertEquals(name, command.getCommandName());
+			assertEquals(name, command.getCommandDescription().get(0), command.getCommandSummary());
+		}
+		for (CommandDescriptor descriptor : new BuiltinCommands().getCommands()) {
+			ShellCommand command = Class.forName(descriptor.getClassName()).asSubclass(ShellCommand.class)
+					.getConstructor().newInstance();
+			assertEquals(descriptor.getName(), command.getCommandName());
+			assertEquals(descriptor.getName(), command.getCommandDescription(), descriptor.getDescription());
+			assertEquals(descriptor.getSummary(), descriptor.getDescription().get(0));
+		}
+	}
+
+	@Test
+	public void testDescriptionFromProviderDoesNotCreateCommand() {
+		instances.set(0);
+		ShellCommand command = commands.get("described");
+		assertEquals("Described by the provider.", command.getCommandSummary());
+		assertEquals(Arrays.asList("Described by the provider.", "described"), command.getCommandDescription());
+		assertEquals(0, instances.get());
+	}
+
+	@Test
+	public void testHelpOfBrokenCommand() {
+		CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment());
+		assertEquals(ShellStatus.CONTINUE, MyShell.execute(env, "help broken"));
+		assertEquals("Can not be loaded.\nThe command broken could not be loaded.\n", env.getOutput());
+	}
+
+	@Test
+	public void testThirdPartyCommandIsCreatedOnFirstUse() {
+		instances.set(0);
+		ShellCommand command = commands.get("lazytest");
+		assertEquals("lazytest", command.getCommandName());
+		assertEquals("Created on first use.", command.getCommandSummary());
+		assertEquals(0, instances.get());
+
+		CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment());
+		assertEquals(ShellStatus.CONTINUE, command.executeCommand(env, null));
+		command.executeCommand(env, null);
+		assertEquals("lazy\nlazy\n", env.getOutput());
+		assertEquals(1, instances.get());
+	}
+
+	@Test
+	public void testBrokenCommandFails() {
+		CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment());
+		assertEquals(ShellStatus.FAILURE, commands.get("broken").executeCommand(env, null));
+		assertEquals("The command broken could not be loaded.\n", env.getOutput());
+	}
+
+	@Test
+	public void testBrokenProvidersAreSkipped() throws Exception {
+		Path services = Files.createTempFile("providers", ".txt");
+		try {
+			Files.write(services, Arrays.asList("no.such.Provider", ThrowingProvider.class.getName(),
+					TestProvider.class.getName()));
+			URL url = services.toUri().toURL();
+			ClassLoader loader = new ClassLoader(getClass().getClassLoader()) {
+				@Override
+				public Enumeration<URL> getResources(String name) throws IOException {
+					return name.equals("META-INF/services/" + ShellCommandProvider.class.getName())
+							? Collections.enumeration(Collections.singletonList(url))
+							: super.getResources(name);
+				}
+			};
+
+			List<String> errors = new ArrayList<>();
+			SortedMap<String, ShellCommand> loaded = CommandRegistry.load(loader, errors::add);
+			assertEquals(Arrays.asList("broken", "described", "lazytest"), new ArrayList<>(loaded.keySet()));
+			assertEquals(2, errors.size());
+			assertTrue(errors.get(0), errors.get(0).contains("no.such.Provider"));
+			assertTrue(errors.get(1), errors.get(1).contains("broken provider"));
+		} finally {
+			Files.delete(services);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class DirectorySizeCacheTest {
+	private Path root;
+	private Path sub;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("cache").toAbsolutePath().normalize();
+		sub = Files.createDirectory(root.resolve("sub"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		Files.delete(sub);
+		Files.delete(root);
+	}
+
+	@Test
+	public void testAbandonedWalkIsNotWatched() throws Exception {
+		try (DirectorySizeCache cache = new DirectorySizeCache(10, true, 10)) {
+			cache.begin(Collections.<Path>emptyList());
+			cache.watch(root);
+			cache.watch(sub);
+			assertEquals(2, cache.watchedCount());
+			cache.end(Collections.<Path>emptyList());
+			assertEquals(0, cache.watchedCount());
+		}
+	}
+
+	@Test
+	public void testWatchLimitDropsAncestors() throws Exception {
+		try (DirectorySizeCache cache = new DirectorySizeCache(10, true, 1)) {
+			long since = cache.begin(Collections.<Path>emptyList());
+			cache.watch(root);
+			cache.watch(sub);
+			assertTrue(cache.watchedCount() <= 1);
+			cache.put(sub, 5, since);
+			cache.put(root, 7, since);
+			cache.end(Collections.<Path>emptyList());
+
+			assertNull(cache.get(root));
+			assertTrue(cache.watchedCount() <= 1);
+		}
+	}
+
+	@Test
+	public void testEvictionKeepsAncestorsCached() throws Exception {
+		try (DirectorySizeCache cache = new DirectorySizeCache(1, true, 10)) {
+			long since = cache.begin(Collections.<Path>emptyList());
+			cache.watch(root);
+			cache.watch(sub);
+			cache.put(sub, 5, since);
+			cache.put(root, 7, since);
+			cache.end(Collections.<Path>emptyList());
+
+			assertNull(cache.get(sub));
+			assertEquals(Long.valueOf(7), cache.get(root));
+			assertEquals(2, cache.watchedCount());
+
+			cache.drop(root);
+			cache.begin(Collections.<Path>emptyList());
+			cache.end(Collections.<Path>emptyList());
+			assertEquals(0, cache.watchedCount());
+		}
+	}
+}
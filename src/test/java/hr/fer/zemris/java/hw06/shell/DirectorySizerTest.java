@@ -0,0 +1,143 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class DirectorySizerTest {
+	private final ForkJoinPool pool = IoPool.create();
+	private Path root;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("sizer");
+		Files.write(root.resolve("a.txt"), new byte[10]);
+		Path sub = Files.createDirectories(root.resolve("sub/deeper"));
+		Files.write(root.resolve("sub/b.txt"), new byte[100]);
+		Files.write(sub.resolve("c.txt"), new byte[1000]);
+		Files.createDirectory(root.resolve("empty"));
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		pool.shutdownNow();
+		try (Stream<Path> paths = Files.walk(root)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	@Test
+	public void testSize() {
+		assertEquals(1110, new DirectorySizer(pool).size(root));
+	}
+
+	@Test
+	public void testSizesInOrder() {
+		long[] sizes = new DirectorySizer(pool).sizes(
+				Arrays.asList(root.resolve("sub"), root.resolve("empty"), root.resolve("sub/deeper")), Long.MAX_VALUE);
+		assertArrayEquals(new long[] { 1100, 0, 1000 }, sizes);
+	}
+
+	@Test
+	public void testSizesAreMemoized() throws Exception {
+		DirectorySizer sizer = new DirectorySizer(pool);
+		assertEquals(1110, sizer.size(root));
+
+		Files.write(root.resolve("sub/deeper/d.txt"), new byte[5]);
+		assertEquals(1110, sizer.size(root));
+		assertEquals(1005, new DirectorySizer(pool).size(root.resolve("sub/deeper")));
+	}
+
+	@Test
+	public void testSymbolicLinksAreNotFollowed() throws Exception {
+		try {
+			Files.createSymbolicLink(root.resolve("sub/loop"), root);
+		} catch (UnsupportedOperationException | IOException ex) {
+			return;
+		}
+		long size = new DirectorySizer(pool).size(root);
+		assertTrue(size > 1110 && size < 2220);
+	}
+
+	@Test
+	public void testInterruptedWalk() {
+		Thread.currentThread().interrupt();
+		try {
+			long[] sizes = new DirectorySizer(pool).sizes(Arrays.asList(root), Long.MAX_VALUE);
+			assertTrue(Thread.currentThread().isInterrupted());
+			assertTrue(sizes[0] == DirectorySizer.UNKNOWN || sizes[0] == 1110);
+		} finally {
+			Thread.interrupted();
+		}
+	}
+
+	@Test
+	public void testChangeDropsOnlyChangedPath() throws Exception {
+		try (DirectorySizer sizer = new DirectorySizer(pool, 100)) {
+			assertEquals(1110, sizer.size(root));
+			assertEquals(4, sizer.getCachedCount());
+
+			Files.write(root.resolve("sub/deeper/d.txt"), new byte[5]);
+			long end = System.currentTimeMillis() + 10_000;
+			while (sizer.getCachedCount() != 1 && System.currentTimeMillis() < end) {
+				Thread.sleep(10);
+			}
+			// only the sibling subtree stays cached
+			assertEquals(1, sizer.getCachedCount());
+			assertEquals(1115, sizer.size(root));
+			assertEquals(4, sizer.getCachedCount());
+		}
+	}
+
+	@Test
+	public void testCapacityIsBounded() throws Exception {
+		try (DirectorySizer sizer = new DirectorySizer(pool, 2)) {
+			assertEquals(1110, sizer.size(root));
+			assertEquals(2, sizer.getCachedCount());
+			assertTrue(sizer.isCached(root));
+			assertEquals(1100, sizer.size(root.resolve("sub")));
+			assertEquals(2, sizer.getCachedCount());
+		}
+	}
+
+	@Test
+	public void testWatchesAreBounded() throws Exception {
+		try (DirectorySizer sizer = new DirectorySizer(pool, 100, 2)) {
+			assertEquals(1110, sizer.size(root));
+			assertTrue(sizer.getWatchedCount() <= 2);
+			assertFalse(sizer.isCached(root));
+			assertEquals(1110, sizer.size(root));
+			assertTrue(sizer.getWatchedCount() <= 2);
+		}
+	}
+
+	@Test
+	public void testWalkLargerThanCapacityKeepsListedDirectories() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			Files.createDirectories(root.resolve("sub/many/d" + i));
+		}
+		try (DirectorySizer sizer = new DirectorySizer(pool, 3)) {
+			long[] sizes = sizer.sizes(Arrays.asList(root.resolve("sub"), root.resolve("empty")), Long.MAX_VALUE);
+			assertArrayEquals(new long[] { 1100, 0 }, sizes);
+			assertTrue(sizer.isCached(root.resolve("sub")));
+			assertTrue(sizer.isCached(root.resolve("empty")));
+			assertEquals(3, sizer.getCachedCount());
+			// the evicted subdirectories stay watched for the cached sizes
+			assertEquals(24, sizer.getWatchedCount());
+
+			assertEquals(1110, sizer.size(root));
+			assertTrue(sizer.isCached(root));
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class HistogramTest {
+
+	@Test
+	public void testSmallValuesAreExact() {
+		Histogram histogram = new Histogram();
+		for (int i = 1; i <= 50; i++) {
+			histogram.record(i);
+		}
+		assertEquals(50, histogram.getCount());
+		assertEquals(1, histogram.getMin());
+		assertEquals(50, histogram.getMax());
+		assertEquals(25, histogram.getValueAtPercentile(50));
+		assertEquals(50, histogram.getValueAtPercentile(100));
+		assertEquals(25.5, histogram.getMean(), 1e-9);
+	}
+
+	@Test
+	public void testRelativeError() {
+		Histogram histogram = new Histogram();
+		for (long value = 1; value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+			Histogram single = new Histogram();
+			single.record(value);
+			histogram.record(value);
+			long reported = Histogram.highestValueOf(Histogram.indexOf(value));
+			assertTrue(reported >= value);
+			assertTrue((double) (reported - value) / value < 1.0 / 32);
+			assertEquals(value, single.getValueAtPercentile(50));
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		Histogram histogram = new Histogram();
+		for (int i = 0; i < 1000; i++) {
+			histogram.record(1_000_000);
+		}
+		for (int i = 0; i < 10; i++) {
+			histogram.record(500_000_000);
+		}
+		assertEquals(1_000_000, histogram.getValueAtPercentile(50), 1_000_000 / 32);
+		assertEquals(1_000_000, histogram.getValueAtPercentile(99), 1_000_000 / 32);
+		assertEquals(500_000_000, histogram.getValueAtPercentile(99.9), 500_000_000 / 32);
+		assertEquals(500_000_000, histogram.getMax());
+	}
+
+	@Test
+	public void testEmpty() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		assertEquals(0, histogram.getMin());
+		assertEquals(0, histogram.getMean(), 0);
+	}
+}
@@ -0,0 +1,61 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class JobManagerTest {
+	private final Environment env = new ShellEnvironment();
+
+	@Test
+	public void testOutputIsCaptured() throws Exception {
+		Job job = env.jobs().start(env, "symbol PROMPT");
+		assertEquals(Job.State.DONE, job.waitFor());
+		assertTrue(job.getOutput().contains(">"));
+		assertEquals(job.getOutput().getBytes().length, job.getOutputSize());
+	}
+
+	@Test
+	public void testFailedJob() throws Exception {
+		Job job = env.jobs().start(env, "nosuchcommand");
+		assertEquals(Job.State.FAILED, job.waitFor());
+		assertEquals("Invalid command name.\n", job.getOutput());
+	}
+
+	@Test
+	public void testListAndRemove() throws Exception {
+		Job first = env.jobs().start(env, "symbol PROMPT");
+		Job second = env.jobs().start(env, "symbol MORELINE");
+		assertTrue(second.getId() > first.getId());
+		assertSame(first, env.jobs().get(first.getId()));
+		assertEquals(2, env.jobs().list().size());
+
+		first.waitFor();
+		env.jobs().remove(first.getId());
+		assertNull(env.jobs().get(first.getId()));
+		assertEquals(1, env.jobs().list().size());
+	}
+
+	@Test
+	public void testKillFinishedJob() throws Exception {
+		Job job = env.jobs().start(env, "symbol PROMPT");
+		job.waitFor();
+		assertFalse(job.kill());
+		assertEquals(Job.State.DONE, job.getState());
+	}
+
+	@Test
+	public void testJobDoesNotWaitForItself() throws Exception {
+		Job sibling = env.jobs().start(env, "symbol PROMPT");
+		Job job = env.jobs().start(env, "wait");
+		assertEquals(Job.State.DONE, job.waitFor());
+		assertEquals("", job.getOutput());
+		assertSame(sibling, env.jobs().get(sibling.getId()));
+
+		// the killing job gets the next number and tries to kill itself
+		Job killer = env.jobs().start(env, "kill " + (job.getId() + 1));
+		assertEquals(Job.State.FAILED, killer.waitFor());
+		assertTrue(killer.getOutput().startsWith("No such job"));
+	}
+}
@@ -0,0 +1,42 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class MyShellTest {
+
+	@Test
+	public void testSplitCommands() {
+		assertEquals(Arrays.asList("ls .", "tree \"a;b\"", "exit"),
+				MyShell.splitCommands(" ls . ;tree \"a;b\";; exit;"));
+	}
+
+	@Test
+	public void testSplitArguments() {
+		assertEquals(Arrays.asList("cat", "a b.txt", "x"), MyShell.splitArguments(" cat \"a b.txt\"   x "));
+		assertEquals(Arrays.asList("", "b"), MyShell.splitArguments("\"\" b"));
+	}
+
+	@Test
+	public void testSplitEmpty() {
+		assertEquals(Collections.emptyList(), MyShell.splitCommands(" ; "));
+	}
+
+	@Test
+	public void testParseScript() {
+		assertEquals(Arrays.asList("symbol PROMPT", "ls   .", "mkdir a", "mkdir b"),
+				MyShell.parseScript(Arrays.asList("# comment", "symbol PROMPT", "", "ls \\", " .",
+						"mkdir a; mkdir b"), '\\'));
+	}
+
+	@Test
+	public void testSplitPipeline() {
+		assertEquals(Arrays.asList("cat a", "hexdump"), Pipeline.split("cat a |hexdump"));
+		assertEquals(Arrays.asList("cat \"a|b\""), Pipeline.split("cat \"a|b\""));
+	}
+}
@@ -0,0 +1,172 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class ShellEnvironmentTest {
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** Channel which records every write it receives. **/
+	private static class RecordingChannel implements WritableByteChannel {
+		private final List<byte[]> writes = new ArrayList<>();
+
+		@Override
+		public int write(ByteBuffer src) {
+			byte[] bytes = new byte[src.remaining()];
+			src.get(bytes);
+			writes.add(bytes);
+			return bytes.length;
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		String output() {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			for (byte[] bytes : writes) {
+				output.write(bytes, 0, bytes.length);
+			}
+			return new String(output.toByteArray(), Charset.defaultCharset());
+		}
+	}
+
+	private final RecordingChannel channel = new RecordingChannel();
+	private final ShellEnvironment env = new ShellEnvironment(channel);
+
+	private static ByteBuffer bytes(String text) {
+		return ByteBuffer.wrap(text.getBytes(Charset.defaultCharset()));
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+	@Test
+	public void testBatchedOutputWaitsForFlush() throws Exception {
+		env.writeln("one");
+		env.getOutputChannel().write(bytes("two"));
+		assertTrue(channel.writes.isEmpty());
+
+		env.flush();
+		assertEquals(1, channel.writes.size());
+		assertEquals("one\ntwo", channel.output());
+	}
+
+	@Test
+	public void testNonBatchedOutputIsFlushedImmediately() throws Exception {
+		env.write("pending");
+		env.setBatched(false);
+		assertEquals("pending", channel.output());
+
+		env.write("a");
+		assertEquals("pendinga", channel.output());
+		env.writeln("b");
+		assertEquals("pendingab\n", channel.output());
+		env.getOutputChannel().write(bytes("c"));
+		assertEquals("pendingab\nc", channel.output());
+		assertEquals(4, channel.writes.size());
+	}
+
+	@Test
+	public void testLargeWriteBypassesBufferInOrder() throws Exception {
+		String large = repeat('x', BUFFER_SIZE + 10);
+		env.write("before ");
+		ByteBuffer src = bytes(large);
+		assertEquals(large.length(), env.getOutputChannel().write(src));
+		assertFalse(src.hasRemaining());
+		env.write(" after");
+		env.flush();
+
+		assertEquals(3, channel.writes.size());
+		assertEquals("before ", new String(channel.writes.get(0), Charset.defaultCharset()));
+		assertEquals(large.length(), channel.writes.get(1).length);
+		assertEquals("before " + large + " after", channel.output());
+	}
+
+	@Test
+	public void testWriteWhichDoesNotFitFlushesFirst() throws Exception {
+		String first = repeat('a', BUFFER_SIZE - 10);
+		env.write(first);
+		env.getOutputChannel().write(bytes(repeat('b', 20)));
+		assertEquals(first, channel.output());
+
+		env.flush();
+		assertEquals(first + repeat('b', 20), channel.output());
+	}
+
+	@Test
+	public void testMixedTextAndBytesKeepOrder() throws Exception {
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			String text = "line " + i;
+			String raw = repeat((char) ('a' + i % 26), i % 100);
+			env.writeln(text);
+			env.getOutputChannel().write(bytes(raw));
+			expected.append(text).append('\n').append(raw);
+			if (i % 500 == 0) {
+				String large = repeat('L', BUFFER_SIZE * 2);
+				env.getOutputChannel().write(bytes(large));
+				expected.append(large);
+			}
+		}
+		String longText = repeat('T', BUFFER_SIZE * 3 + 7);
+		env.write(longText);
+		expected.append(longText);
+		env.flush();
+
+		assertEquals(expected.toString(), channel.output());
+	}
+
+	@Test
+	public void testRedirectedSymbolChangeIsCaptured() throws Exception {
+		CapturedEnvironment captured = new CapturedEnvironment(env);
+		captured.setPromptSymbol('#');
+		assertEquals("Symbol for PROMPT changed from '>' to '#'.\n", captured.getOutput());
+		assertEquals(Character.valueOf('#'), env.getPromptSymbol());
+
+		env.flush();
+		assertEquals("", channel.output());
+	}
+
+	@Test
+	public void testConcurrentWritesKeepLines() throws Exception {
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			String line = repeat((char) ('a' + t), 100);
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					env.writeln(line);
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		env.flush();
+
+		String[] lines = channel.output().split("\n");
+		assertEquals(8000, lines.length);
+		for (String line : lines) {
+			assertEquals(repeat(line.charAt(0), 100), line);
+		}
+	}
+}
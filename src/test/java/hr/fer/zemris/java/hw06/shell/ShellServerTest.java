@@ -0,0 +1,138 @@
+package hr.fer.zemris.java.hw06.shell;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+@SuppressWarnings("javadoc")
+public class ShellServerTest {
+	private ShellServer server;
+	private Thread selectorThread;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new ShellServer(ShellServer.parseAddress("0"), 4);
+		selectorThread = new Thread(() -> {
+			try {
+				server.run();
+			} catch (Exception ex) {
+				// the test fails on its own
+			}
+		});
+		selectorThread.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		server.close();
+		selectorThread.join(5000);
+	}
+
+	private Socket connect() throws Exception {
+		Socket socket = new Socket();
+		socket.connect(server.getLocalAddress());
+		socket.setSoTimeout(5000);
+		return socket;
+	}
+
+	private static BufferedReader reader(Socket socket) throws Exception {
+		return new BufferedReader(new InputStreamReader(socket.getInputStream(), Charset.defaultCharset()));
+	}
+
+	private static void send(Socket socket, String line) throws Exception {
+		OutputStream out = socket.getOutputStream();
+		out.write((line + "\n").getBytes(Charset.defaultCharset()));
+		out.flush();
+	}
+
+	@Test
+	public void testParseAddress() {
+		InetSocketAddress address = (InetSocketAddress) ShellServer.parseAddress("4000");
+		assertTrue(address.getAddress().isLoopbackAddress());
+		assertEquals(4000, address.getPort());
+		assertEquals(5000, ((InetSocketAddress) ShellServer.parseAddress("localhost:5000")).getPort());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidAddress() {
+		ShellServer.parseAddress("localhost:port");
+	}
+
+	@Test
+	public void testSessionsHaveTheirOwnSymbols() throws Exception {
+		try (Socket first = connect(); Socket second = connect()) {
+			BufferedReader firstIn = reader(first);
+			BufferedReader secondIn = reader(second);
+			assertEquals("Welcome to MyShell v 1.0", firstIn.readLine());
+			assertEquals("Welcome to MyShell v 1.0", secondIn.readLine());
+
+			send(first, "symbol PROMPT #");
+			assertEquals(">Symbol for PROMPT changed from '>' to '#'.", firstIn.readLine());
+			send(first, "symbol PROMPT");
+			assertEquals("#Symbol for PROMPT is : '#'.", firstIn.readLine());
+
+			send(second, "symbol PROMPT");
+			assertEquals(">Symbol for PROMPT is : '>'.", secondIn.readLine());
+		}
+	}
+
+	@Test
+	public void testExitClosesConnection() throws Exception {
+		try (Socket socket = connect()) {
+			BufferedReader in = reader(socket);
+			in.readLine();
+			send(socket, "exit");
+			assertEquals(">", in.readLine());
+			assertNull(in.readLine());
+		}
+	}
+
+	@Test
+	public void testTooLongLineIsRejected() throws Exception {
+		try (Socket socket = connect()) {
+			BufferedReader in = reader(socket);
+			in.readLine();
+
+			StringBuilder line = new StringBuilder("symbol PROMPT ");
+			while (line.length() <= 64 * 1024) {
+				line.append('#');
+			}
+			send(socket, line.toString());
+			assertEquals(">The line is longer than 65536 bytes and was not executed.", in.readLine());
+
+			send(socket, "symbol PROMPT");
+			assertEquals(">Symbol for PROMPT is : '>'.", in.readLine());
+		}
+	}
+
+	@Test
+	public void testPipelinedLinesAreAllExecuted() throws Exception {
+		try (Socket socket = connect()) {
+			BufferedReader in = reader(socket);
+			in.readLine();
+
+			StringBuilder lines = new StringBuilder();
+			for (int i = 0; i < 1000; i++) {
+				lines.append("symbol PROMPT\n");
+			}
+			OutputStream out = socket.getOutputStream();
+			out.write(lines.toString().getBytes(Charset.defaultCharset()));
+			out.flush();
+
+			for (int i = 0; i < 1000; i++) {
+				assertEquals(">Symbol for PROMPT is : '>'.", in.readLine());
+			}
+			send(socket, "symbol PROMPT #");
+			assertEquals(">Symbol for PROMPT changed from '>' to '#'.", in.readLine());
+		}
+	}
+}
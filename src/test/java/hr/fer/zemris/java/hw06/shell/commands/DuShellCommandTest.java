@@ -0,0 +1,108 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw06.shell.CapturedEnvironment;
+import hr.fer.zemris.java.hw06.shell.ShellEnvironment;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+@SuppressWarnings("javadoc")
+public class DuShellCommandTest {
+	private final CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment());
+	private Path root;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("du");
+		Files.createDirectories(root.resolve("a/deep"));
+		Files.createDirectories(root.resolve("b"));
+		Files.write(root.resolve("a/deep/big.bin"), new byte[1000]);
+		Files.write(root.resolve("a/mid.bin"), new byte[50]);
+		Files.write(root.resolve("b/small.bin"), new byte[10]);
+		Files.write(root.resolve("top.bin"), new byte[100]);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		try (Stream<Path> paths = Files.walk(root)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	private String run(String arguments) {
+		CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment());
+		assertEquals(ShellStatus.CONTINUE, new DuShellCommand().executeCommand(env, arguments));
+		return env.getOutput();
+	}
+
+	private static String line(long size, Object name) {
+		return String.format("%10d %s\n", size, name);
+	}
+
+	@Test
+	public void testTree() {
+		assertEquals(line(1000, root.resolve("a/deep")) + line(1050, root.resolve("a")) + line(10, root.resolve("b"))
+				+ line(1160, root), run(root.toString()));
+	}
+
+	@Test
+	public void testDepthLimit() {
+		assertEquals(line(1050, root.resolve("a")) + line(10, root.resolve("b")) + line(1160, root),
+				run("-d 1 " + root));
+		assertEquals(line(1160, root), run("-d 0 " + root));
+	}
+
+	@Test
+	public void testFiles() {
+		assertEquals(line(1000, root.resolve("a/deep/big.bin")) + line(1000, root.resolve("a/deep"))
+				+ line(50, root.resolve("a/mid.bin")) + line(1050, root.resolve("a"))
+				+ line(10, root.resolve("b/small.bin")) + line(10, root.resolve("b"))
+				+ line(100, root.resolve("top.bin")) + line(1160, root), run("-a " + root));
+	}
+
+	@Test
+	public void testWideTreeIsWrittenInOrder() throws Exception {
+		StringBuilder expected = new StringBuilder(line(1000, root.resolve("a/deep")) + line(1050, root.resolve("a"))
+				+ line(10, root.resolve("b")));
+		for (int i = 0; i < 500; i++) {
+			Path dir = Files.createDirectories(root.resolve(String.format("c%03d", i)));
+			expected.append(line(0, dir));
+		}
+		expected.append(line(1160, root));
+		assertEquals(expected.toString(), run(root.toString()));
+	}
+
+	@Test
+	public void testLargest() {
+		assertEquals(line(1050, root.resolve("a")) + line(1000, root.resolve("a/deep")) + line(1160, "total"),
+				run("-n 2 " + root));
+		assertEquals(line(1050, root.resolve("a")) + line(100, root.resolve("top.bin")) + line(1160, "total"),
+				run("-n 2 -a -d 1 " + root));
+	}
+
+	@Test
+	public void testHardLinksAreCountedOnce() throws Exception {
+		try {
+			Files.createLink(root.resolve("b/link.bin"), root.resolve("a/deep/big.bin"));
+		} catch (UnsupportedOperationException ex) {
+			return;
+		}
+		assertEquals(line(1160, root), run("-d 0 " + root));
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		assertEquals(ShellStatus.FAILURE, new DuShellCommand().executeCommand(env, "-n 0 " + root));
+		assertEquals(ShellStatus.FAILURE, new DuShellCommand().executeCommand(env, "-d x " + root));
+		assertEquals(ShellStatus.FAILURE, new DuShellCommand().executeCommand(env, root.resolve("top.bin").toString()));
+	}
+}
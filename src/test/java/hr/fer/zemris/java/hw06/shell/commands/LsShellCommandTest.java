@@ -0,0 +1,97 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw06.shell.CapturedEnvironment;
+import hr.fer.zemris.java.hw06.shell.ShellEnvironment;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+@SuppressWarnings("javadoc")
+public class LsShellCommandTest {
+	private final CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment());
+	private Path root;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("ls");
+		Files.write(root.resolve("file.txt"), new byte[42]);
+		Files.createDirectories(root.resolve("dir/sub"));
+		Files.write(root.resolve("dir/sub/inner.txt"), new byte[1000]);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		try (Stream<Path> paths = Files.walk(root)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	private List<String> lines() {
+		String[] lines = env.getOutput().split("\n");
+		Arrays.sort(lines, Comparator.comparing(l -> l.substring(l.lastIndexOf(' ') + 1)));
+		return Arrays.asList(lines);
+	}
+
+	@Test
+	public void testListing() {
+		assertEquals(ShellStatus.CONTINUE, new LsShellCommand().executeCommand(env, root.toString()));
+		List<String> lines = lines();
+		assertEquals(2, lines.size());
+		assertTrue(lines.get(0), lines.get(0).matches("drwx       1000 \\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d dir"));
+		assertTrue(lines.get(1), lines.get(1).matches("-rw-         42 \\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d file.txt"));
+	}
+
+	@Test
+	public void testSkippedSizes() {
+		assertEquals(ShellStatus.CONTINUE, new LsShellCommand().executeCommand(env, "-n " + root));
+		assertTrue(lines().get(0).startsWith("drwx          - "));
+	}
+
+	@Test
+	public void testPermissionsFromMode() throws Exception {
+		Files.delete(root.resolve("dir/sub/inner.txt"));
+		Files.delete(root.resolve("dir/sub"));
+		Files.delete(root.resolve("dir"));
+		Files.setPosixFilePermissions(root.resolve("file.txt"), PosixFilePermissions.fromString("--x--x--x"));
+		boolean superuser = "root".equals(Files.getOwner(root).getName());
+
+		assertEquals(ShellStatus.CONTINUE, new LsShellCommand().executeCommand(env, root.toString()));
+		assertTrue(env.getOutput(), env.getOutput().startsWith(superuser ? "-rwx" : "---x"));
+	}
+
+	@Test
+	public void testSymbolicLinksShowTheirTargets() throws Exception {
+		Files.setPosixFilePermissions(root.resolve("file.txt"), PosixFilePermissions.fromString("rw-------"));
+		try {
+			Files.createSymbolicLink(root.resolve("link-dir"), root.resolve("dir"));
+			Files.createSymbolicLink(root.resolve("link-file"), root.resolve("file.txt"));
+		} catch (UnsupportedOperationException | IOException ex) {
+			return;
+		}
+
+		assertEquals(ShellStatus.CONTINUE, new LsShellCommand().executeCommand(env, "-n " + root));
+		List<String> lines = lines();
+		assertEquals(4, lines.size());
+		assertTrue(lines.get(2), lines.get(2).startsWith("drwx "));
+		assertTrue(lines.get(3), lines.get(3).startsWith("-rw- "));
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		assertEquals(ShellStatus.FAILURE, new LsShellCommand().executeCommand(env, "-m x " + root));
+		assertEquals(ShellStatus.FAILURE, new LsShellCommand().executeCommand(env, root.resolve("file.txt").toString()));
+	}
+}
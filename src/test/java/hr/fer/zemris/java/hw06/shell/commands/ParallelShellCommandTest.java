@@ -0,0 +1,89 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw06.shell.CapturedEnvironment;
+import hr.fer.zemris.java.hw06.shell.MyShell;
+import hr.fer.zemris.java.hw06.shell.ShellEnvironment;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+@SuppressWarnings("javadoc")
+public class ParallelShellCommandTest {
+
+	@Test
+	public void testSubstitute() {
+		assertEquals("a.txt", ParallelShellCommand.substitute(Collections.<String>emptyList(), "a.txt"));
+		assertEquals("UTF-8 a.txt", ParallelShellCommand.substitute(Arrays.asList("UTF-8"), "a.txt"));
+		assertEquals("a.txt out/a.txt", ParallelShellCommand.substitute(Arrays.asList("{}", "out/{}"), "a.txt"));
+		assertEquals("\"a b.txt\" \"out/a b.txt\"",
+				ParallelShellCommand.substitute(Arrays.asList("{}", "out/{}"), "a b.txt"));
+	}
+
+	@Test
+	public void testQuotedItemsThroughShell() throws Exception {
+		Path dir = Files.createTempDirectory("parallel");
+		Path file = dir.resolve("my file.txt");
+		try {
+			Files.write(file, "spaced\n".getBytes(StandardCharsets.UTF_8));
+			ShellEnvironment shell = new ShellEnvironment();
+			CapturedEnvironment env = new CapturedEnvironment(shell);
+			assertEquals(ShellStatus.CONTINUE, MyShell.execute(env, "parallel hexdump ::: \"" + file + "\""));
+			assertTrue(env.getOutput(), env.getOutput().contains("73 70 61 63 65 64"));
+
+			// the invocation is recorded like a command of the shell
+			assertTrue(shell.metrics().report().stream().anyMatch(line -> line.startsWith("hexdump ")));
+		} finally {
+			Files.delete(file);
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testExpand() throws Exception {
+		Path dir = Files.createTempDirectory("parallel");
+		try {
+			Files.createFile(dir.resolve("b.txt"));
+			Files.createFile(dir.resolve("a.txt"));
+			Files.createFile(dir.resolve("c.bin"));
+
+			assertEquals(Arrays.asList(dir.resolve("a.txt").toString(), dir.resolve("b.txt").toString()),
+					ParallelShellCommand.expand(dir.resolve("*.txt").toString()));
+			assertEquals(Arrays.asList("plain"), ParallelShellCommand.expand("plain"));
+		} finally {
+			for (String name : Arrays.asList("a.txt", "b.txt", "c.bin")) {
+				Files.delete(dir.resolve(name));
+			}
+			Files.delete(dir);
+		}
+	}
+
+	@Test
+	public void testOrderedOutput() {
+		CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment());
+		ShellStatus status = new ParallelShellCommand().executeCommand(env,
+				"-j 4 -k symbol ::: PROMPT MORELINE MULTILINE");
+		assertEquals(ShellStatus.CONTINUE, status);
+
+		String output = env.getOutput();
+		int prompt = output.indexOf("PROMPT");
+		int moreLines = output.indexOf("MORELINE ");
+		int multiLine = output.indexOf("MULTILINE");
+		assertTrue(prompt >= 0 && prompt < moreLines && moreLines < multiLine);
+	}
+
+	@Test
+	public void testFailedInvocation() {
+		CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment());
+		ShellStatus status = new ParallelShellCommand().executeCommand(env, "mkdir ::: \0invalid");
+		assertEquals(ShellStatus.FAILURE, status);
+		assertTrue(env.getOutput().contains("1 of 1 invocations failed."));
+	}
+}
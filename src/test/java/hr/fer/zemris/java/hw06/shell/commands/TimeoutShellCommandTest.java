@@ -0,0 +1,78 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw06.shell.CapturedEnvironment;
+import hr.fer.zemris.java.hw06.shell.Environment;
+import hr.fer.zemris.java.hw06.shell.ShellCommand;
+import hr.fer.zemris.java.hw06.shell.ShellEnvironment;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+@SuppressWarnings("javadoc")
+public class TimeoutShellCommandTest {
+
+	private static class SleepCommand implements ShellCommand {
+		@Override
+		public ShellStatus executeCommand(Environment env, String arguments) {
+			long end = System.currentTimeMillis() + Long.parseLong(arguments);
+			while (System.currentTimeMillis() < end) {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					env.writeln("cancelled");
+					return ShellStatus.FAILURE;
+				}
+			}
+			env.writeln("done");
+			return ShellStatus.CONTINUE;
+		}
+
+		@Override
+		public String getCommandName() {
+			return "sleep";
+		}
+
+		@Override
+		public List<String> getCommandDescription() {
+			return Collections.singletonList("Sleeps.");
+		}
+	}
+
+	private final CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment()) {
+		@Override
+		public SortedMap<String, ShellCommand> commands() {
+			SortedMap<String, ShellCommand> commands = new TreeMap<>();
+			commands.put("sleep", new SleepCommand());
+			return commands;
+		}
+	};
+
+	@Test
+	public void testCommandWithinLimit() {
+		assertEquals(ShellStatus.CONTINUE, new TimeoutShellCommand().executeCommand(env, "5 sleep 20"));
+		assertEquals("done\n", env.getOutput());
+	}
+
+	@Test
+	public void testCommandIsCancelled() {
+		long start = System.nanoTime();
+		assertEquals(ShellStatus.FAILURE, new TimeoutShellCommand().executeCommand(env, "0.1 sleep 10000"));
+		assertTrue(System.nanoTime() - start < 5_000_000_000L);
+		assertEquals("cancelled\nThe command timed out after 0.1 s.\n", env.getOutput());
+		assertFalse(Thread.currentThread().isInterrupted());
+	}
+
+	@Test
+	public void testInvalidLimit() {
+		assertEquals(ShellStatus.FAILURE, new TimeoutShellCommand().executeCommand(env, "-1 sleep 10"));
+		assertEquals(ShellStatus.FAILURE, new TimeoutShellCommand().executeCommand(env, "1 nosuchcommand"));
+	}
+}
@@ -0,0 +1,84 @@
+package hr.fer.zemris.java.hw06.shell.commands;
+
+import static org.junit.Assert.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw06.shell.CapturedEnvironment;
+import hr.fer.zemris.java.hw06.shell.ShellEnvironment;
+import hr.fer.zemris.java.hw06.shell.ShellStatus;
+
+@SuppressWarnings("javadoc")
+public class TreeShellCommandTest {
+	private final CapturedEnvironment env = new CapturedEnvironment(new ShellEnvironment());
+	private Path root;
+
+	@Before
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("tree");
+		Files.createDirectories(root.resolve("b/inner"));
+		Files.createDirectories(root.resolve("a"));
+		Files.write(root.resolve("b/file.txt"), new byte[1]);
+		Files.write(root.resolve("top.txt"), new byte[1]);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		try (Stream<Path> paths = Files.walk(root)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		}
+	}
+
+	private String run(String arguments) {
+		assertEquals(ShellStatus.CONTINUE, new TreeShellCommand().executeCommand(env, arguments));
+		return env.getOutput();
+	}
+
+	@Test
+	public void testTree() {
+		assertEquals(root.getFileName() + "\n  a\n  b\n    inner\n\n3 directories, 2 files\n", run(root.toString()));
+	}
+
+	@Test
+	public void testFilesAndCounts() {
+		assertEquals(root.getFileName() + " [2 directories, 1 file]\n  a [0 directories, 0 files]\n  b [1 directory, 1 file]\n"
+				+ "    file.txt\n    inner [0 directories, 0 files]\n  top.txt\n\n3 directories, 2 files\n",
+				run("-f -c " + root));
+	}
+
+	@Test
+	public void testDepthLimit() {
+		assertEquals(root.getFileName() + "\n  a\n  b\n\n2 directories, 1 file\n", run("-L 1 " + root));
+	}
+
+	@Test
+	public void testOrderOfWideTree() throws Exception {
+		StringBuilder expected = new StringBuilder(root.getFileName().toString()).append("\n  a\n  b\n    inner\n");
+		for (int i = 0; i < 600; i++) {
+			String name = String.format("c%03d", i);
+			Files.createDirectories(root.resolve(name).resolve("sub"));
+			expected.append("  ").append(name).append("\n    sub\n");
+		}
+		expected.append("\n1203 directories, 2 files\n");
+		assertEquals(expected.toString(), run(root.toString()));
+	}
+
+	@Test
+	public void testInvalidArguments() {
+		assertEquals(ShellStatus.FAILURE, new TreeShellCommand().executeCommand(env, "-L 0 " + root));
+		assertEquals(ShellStatus.FAILURE, new TreeShellCommand().executeCommand(env, root.resolve("top.txt").toString()));
+	}
+
+	@Test
+	public void testRootDirectory() {
+		assertEquals(ShellStatus.CONTINUE, new TreeShellCommand().executeCommand(env, "-L 1 /"));
+		assertTrue(env.getOutput().startsWith("/\n"));
+	}
+}